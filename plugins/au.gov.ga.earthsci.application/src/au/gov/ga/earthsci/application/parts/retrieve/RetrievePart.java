@@ -34,8 +34,11 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.TableItem;
 
 import au.gov.ga.earthsci.common.ui.util.SWTUtil;
@@ -44,6 +47,7 @@ import au.gov.ga.earthsci.core.retrieve.IRetrievalListener;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalServiceListener;
 import au.gov.ga.earthsci.core.retrieve.RetrievalAdapter;
+import au.gov.ga.earthsci.core.retrieve.RetrievalSchedulerStatistics;
 
 /**
  * Part that displays progress of {@link IRetrieval}s running in the
@@ -53,10 +57,13 @@ import au.gov.ga.earthsci.core.retrieve.RetrievalAdapter;
  */
 public class RetrievePart implements IRetrievalServiceListener
 {
+	private final static int STATISTICS_REFRESH_MILLIS = 1000;
+
 	@Inject
 	private IRetrievalService retrievalService;
 
 	private TableViewer viewer;
+	private Label statisticsLabel;
 
 	private final List<IRetrieval> retrievals = new ArrayList<IRetrieval>();
 	private final Set<Object> updatingElements = new HashSet<Object>();
@@ -72,7 +79,16 @@ public class RetrievePart implements IRetrievalServiceListener
 
 		retrievalService.addListener(this);
 
+		GridLayout layout = new GridLayout();
+		layout.marginWidth = 0;
+		layout.marginHeight = 0;
+		parent.setLayout(layout);
+
+		statisticsLabel = new Label(parent, SWT.NONE);
+		statisticsLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
 		viewer = new TableViewer(parent, SWT.V_SCROLL);
+		viewer.getControl().setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
 		viewer.setContentProvider(ArrayContentProvider.getInstance());
 		viewer.setInput(retrievals);
 		viewer.getTable().setLinesVisible(true);
@@ -102,6 +118,30 @@ public class RetrievePart implements IRetrievalServiceListener
 		});*/
 
 		createColumns();
+		updateStatistics();
+	}
+
+	private void updateStatistics()
+	{
+		if (statisticsLabel.isDisposed())
+		{
+			return;
+		}
+
+		RetrievalSchedulerStatistics statistics = retrievalService.getSchedulerStatistics();
+		statisticsLabel.setText("Running: " + statistics.getRunning() + "   Queued: " + statistics.getQueued()
+				+ "   Average wait: " + statistics.getAverageWaitMillis() + " ms   Longest wait: "
+				+ statistics.getOldestWaitMillis() + " ms   Completed: " + Math.round(statistics.getCompletedPerMinute())
+				+ " per minute");
+
+		statisticsLabel.getDisplay().timerExec(STATISTICS_REFRESH_MILLIS, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				updateStatistics();
+			}
+		});
 	}
 
 	@PreDestroy
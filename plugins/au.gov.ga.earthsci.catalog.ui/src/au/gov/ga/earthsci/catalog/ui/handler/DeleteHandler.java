@@ -23,6 +23,8 @@ import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.ui.services.IServiceConstants;
 
 import au.gov.ga.earthsci.catalog.ICatalogTreeNode;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
 
 /**
  * Handles deletion of removeable catalog tree nodes.
@@ -41,11 +43,30 @@ public class DeleteHandler
 				if (node != null && node.isRemoveable())
 				{
 					node.removeFromParent();
+					removeRetrievals(node);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Cancel any queued retrievals requested by the given node (such as lazy
+	 * loading of its children) or the nodes below it.
+	 */
+	private void removeRetrievals(ICatalogTreeNode node)
+	{
+		IRetrievalService service = RetrievalServiceFactory.getServiceInstance();
+		if (service == null)
+		{
+			return;
+		}
+		service.removeCaller(node);
+		for (ICatalogTreeNode child : node.getChildren())
+		{
+			removeRetrievals(child);
+		}
+	}
+
 	@CanExecute
 	public boolean canExecute(@Optional @Named(IServiceConstants.ACTIVE_SELECTION) ICatalogTreeNode[] selectedNodes)
 	{
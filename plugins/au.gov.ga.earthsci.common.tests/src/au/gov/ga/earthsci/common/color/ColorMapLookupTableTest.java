@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.color;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+
+/**
+ * Unit tests for the {@link ColorMapLookupTable} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ColorMapLookupTableTest
+{
+	@SuppressWarnings("serial")
+	private static final Map<Double, Color> ENTRIES = new HashMap<Double, Color>()
+	{
+		{
+			put(-100.0, new Color(255, 0, 0, 255));
+			put(0.0, new Color(0, 255, 0, 128));
+			put(50.0, new Color(0, 0, 255, 255));
+			put(400.0, new Color(255, 255, 255, 0));
+		}
+	};
+
+	@Test
+	public void testInterpolatedModesMatchColorMap()
+	{
+		for (InterpolationMode mode : new InterpolationMode[] { InterpolationMode.INTERPOLATE_RGB,
+				InterpolationMode.INTERPOLATE_HUE })
+		{
+			ColorMap map = new ColorMap(null, null, ENTRIES, null, mode, false);
+			ColorMapLookupTable table = new ColorMapLookupTable(map, 4096);
+			Random random = new Random(0);
+			for (int i = 0; i < 1000; i++)
+			{
+				double value = random.nextDouble() * 600 - 150;
+				assertColorsClose(map.getColor(value).getRGB(), table.getColor(value), 2);
+			}
+		}
+	}
+
+	@Test
+	public void testNearestMatchMatchesColorMap()
+	{
+		ColorMap map = new ColorMap(null, null, ENTRIES, null, InterpolationMode.NEAREST_MATCH, false);
+		ColorMapLookupTable table = new ColorMapLookupTable(map, 16);
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++)
+		{
+			double value = random.nextDouble() * 600 - 150;
+			assertEquals(map.getColor(value).getRGB(), table.getColor(value));
+		}
+		//midpoints between entries take the higher entry's colour
+		double[] midpoints = { -50, 25, 225 };
+		for (double midpoint : midpoints)
+		{
+			assertEquals(map.getColor(midpoint).getRGB(), table.getColor(midpoint));
+		}
+	}
+
+	@Test
+	public void testNearestMatchKeepsNarrowBands()
+	{
+		Map<Double, Color> entries = new HashMap<Double, Color>();
+		entries.put(0.0, Color.RED);
+		entries.put(1.0, Color.GREEN);
+		entries.put(1000.0, Color.BLUE);
+		ColorMap map = new ColorMap(null, null, entries, null, InterpolationMode.NEAREST_MATCH, false);
+
+		assertEquals(Color.RED.getRGB(), map.getColor(0.4f));
+		assertEquals(Color.GREEN.getRGB(), map.getColor(0.6f));
+		assertEquals(Color.GREEN.getRGB(), map.getColor(500f));
+		assertEquals(Color.BLUE.getRGB(), map.getColor(501f));
+		assertEquals(Color.RED.getRGB(), map.getColor(Float.NEGATIVE_INFINITY));
+		assertEquals(Color.BLUE.getRGB(), map.getColor(Float.POSITIVE_INFINITY));
+
+		float[] values = { 0.4f, 0.6f, 500.5f };
+		int[] out = new int[values.length];
+		map.getLookupTable().map(values, out);
+		assertEquals(Color.RED.getRGB(), out[0]);
+		assertEquals(Color.GREEN.getRGB(), out[1]);
+		assertEquals(Color.BLUE.getRGB(), out[2]);
+	}
+
+	@Test
+	public void testEntriesAndRangeEnds()
+	{
+		ColorMap map = new ColorMap(null, null, ENTRIES, null, InterpolationMode.INTERPOLATE_RGB, false);
+		ColorMapLookupTable table = new ColorMapLookupTable(map, 1024);
+		assertEquals(ENTRIES.get(-100.0).getRGB(), table.getColor(-100));
+		assertEquals(ENTRIES.get(400.0).getRGB(), table.getColor(400));
+		assertEquals(ENTRIES.get(-100.0).getRGB(), table.getColor(Double.NEGATIVE_INFINITY));
+		assertEquals(ENTRIES.get(400.0).getRGB(), table.getColor(1e10));
+		assertEquals(map.getColor(Double.NaN).getRGB(), table.getColor(Double.NaN));
+	}
+
+	@Test
+	public void testExactMatch()
+	{
+		ColorMap map =
+				new ColorMap(null, null, ENTRIES, new Color(1, 2, 3, 4), InterpolationMode.EXACT_MATCH, false);
+		ColorMapLookupTable table = ColorMapLookupTable.get(map, 16);
+		float[] values = { -100, 0, 49.999f, 50, 400, Float.NaN };
+		int[] out = new int[values.length];
+		table.map(values, out);
+		for (int i = 0; i < values.length; i++)
+		{
+			assertEquals(map.getColor((double) values[i]).getRGB(), out[i]);
+		}
+		assertEquals(new Color(1, 2, 3, 4).getRGB(), out[2]);
+	}
+
+	@Test
+	public void testPercentages()
+	{
+		for (InterpolationMode mode : new InterpolationMode[] { InterpolationMode.INTERPOLATE_RGB,
+				InterpolationMode.EXACT_MATCH })
+		{
+			Map<Double, Color> entries = new HashMap<Double, Color>();
+			entries.put(0.0, Color.RED);
+			entries.put(0.5, Color.GREEN);
+			entries.put(1.0, Color.BLUE);
+			ColorMap map = new ColorMap(null, null, entries, null, mode, true);
+			ColorMapLookupTable table = ColorMapLookupTable.get(map);
+
+			float[] values = { 100, 150, 175, 200, 250 };
+			int[] out = new int[values.length];
+			table.map(values, 200, 100, out);
+			for (int i = 0; i < values.length; i++)
+			{
+				Color expected = map.getColor(values[i], 100, 200);
+				assertColorsClose(expected == null ? 0 : expected.getRGB(), out[i], 1);
+				assertEquals(table.getColor(values[i], 100, 200), out[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testFloatOutput()
+	{
+		ColorMap map = new ColorMap(null, null, ENTRIES, null, InterpolationMode.INTERPOLATE_RGB, false);
+		ColorMapLookupTable table = ColorMapLookupTable.get(map);
+		float[] values = { -100, 10, 300, Float.NaN };
+		int[] argb = new int[values.length];
+		float[] rgba = new float[values.length * 4];
+		float[] rgb = new float[values.length * 3];
+		table.map(values, argb);
+		table.map(values, rgba, ColorType.RGBA);
+		table.map(values, rgb, ColorType.RGB);
+		for (int i = 0; i < values.length; i++)
+		{
+			Color color = new Color(argb[i], true);
+			float[] components = color.getRGBComponents(null);
+			for (int c = 0; c < 4; c++)
+			{
+				assertEquals(components[c], rgba[i * 4 + c], 0f);
+			}
+			for (int c = 0; c < 3; c++)
+			{
+				assertEquals(components[c], rgb[i * 3 + c], 0f);
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyMapReturnsNodata()
+	{
+		ColorMap map = new ColorMap(null, null, null, Color.MAGENTA, InterpolationMode.INTERPOLATE_RGB, false);
+		ColorMapLookupTable table = ColorMapLookupTable.get(map);
+		assertEquals(Color.MAGENTA.getRGB(), table.getColor(0));
+		assertEquals(Color.MAGENTA.getRGB(), table.getColor(Double.NaN));
+	}
+
+	@Test
+	public void testIdenticalMapsShareTable()
+	{
+		ColorMap map1 = new ColorMap("one", null, ENTRIES, null, InterpolationMode.INTERPOLATE_HUE, false);
+		ColorMap map2 = new ColorMap("two", "other", ENTRIES, null, InterpolationMode.INTERPOLATE_HUE, false);
+		ColorMap map3 = new ColorMap("three", null, ENTRIES, null, InterpolationMode.INTERPOLATE_RGB, false);
+
+		assertSame(map1.getLookupTable(), map2.getLookupTable());
+		assertNotSame(map1.getLookupTable(), map3.getLookupTable());
+		assertNotSame(ColorMapLookupTable.get(map1, 256), ColorMapLookupTable.get(map1, 512));
+	}
+
+	@Test
+	public void testMutableMapTableFollowsChanges()
+	{
+		MutableColorMap map = new MutableColorMap(ENTRIES);
+		ColorMapLookupTable before = map.getLookupTable();
+		map.changeColor(50.0, Color.YELLOW);
+		ColorMapLookupTable after = map.getLookupTable();
+		assertNotSame(before, after);
+		assertEquals(Color.YELLOW.getRGB(), after.getColor(50));
+		assertEquals(Color.YELLOW.getRGB(), map.getColor(50f));
+	}
+
+	private static void assertColorsClose(int expected, int actual, int tolerance)
+	{
+		for (int shift = 0; shift < 32; shift += 8)
+		{
+			int e = (expected >>> shift) & 0xff;
+			int a = (actual >>> shift) & 0xff;
+			assertTrue("Expected " + Integer.toHexString(expected) + " but got " + Integer.toHexString(actual),
+					Math.abs(e - a) <= tolerance);
+		}
+	}
+}
@@ -215,6 +215,8 @@ public class ColorMap implements INamed, IDescribed, Colormap
 
 	String description;
 
+	private volatile ColorMapLookupTable lookupTable;
+
 	/**
 	 * Create a new colour map using the provided entries. The instance will use
 	 * RGB interpolation, will return {@code RGB(0,0,0,0)} for NODATA values and
@@ -287,10 +289,35 @@ public class ColorMap implements INamed, IDescribed, Colormap
 		return mode.getColor(value, entries, nodataColour);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * Uses this map's {@link #getLookupTable() lookup table}, so no objects
+	 * are allocated.
+	 */
 	@Override
 	public int getColor(float v)
 	{
-		return getColor((double) v).getRGB();
+		return getLookupTable().getColor(v);
+	}
+
+	/**
+	 * Return a compiled lookup table for this colour map, for mapping large
+	 * numbers of values to colours. The table is shared between identical
+	 * colour maps.
+	 * 
+	 * @return The lookup table for this colour map
+	 * @see ColorMapLookupTable#get(ColorMap)
+	 */
+	public ColorMapLookupTable getLookupTable()
+	{
+		ColorMapLookupTable table = lookupTable;
+		if (table == null)
+		{
+			table = ColorMapLookupTable.get(this);
+			lookupTable = table;
+		}
+		return table;
 	}
 
 	/**
@@ -0,0 +1,510 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.color;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.common.color.ColorType.Channel;
+import au.gov.ga.earthsci.worldwind.common.util.Validate;
+
+/**
+ * A compiled, immutable form of a {@link ColorMap}, for mapping large numbers
+ * of values to colours without {@link java.util.TreeMap} lookups or
+ * {@link Color} allocations.
+ * <p/>
+ * For the interpolating modes, the colour map is sampled at {@code resolution}
+ * evenly spaced values between its first and last entries, and values are
+ * mapped to the nearest sample. Values outside the entry range are clamped,
+ * which matches the behaviour of the colour map itself. For
+ * {@link InterpolationMode#EXACT_MATCH} and
+ * {@link InterpolationMode#NEAREST_MATCH} the entries are binary searched
+ * instead, as sampling would lose exact matches and entries that are closer
+ * together than the sample spacing.
+ * <p/>
+ * Identical colour maps can share a lookup table; use {@link #get(ColorMap)}
+ * to retrieve a cached instance.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ColorMapLookupTable
+{
+	public final static int DEFAULT_RESOLUTION = 4096;
+
+	private final static int CACHE_SIZE = 32;
+	private final static Map<Key, ColorMapLookupTable> cache = new LinkedHashMap<Key, ColorMapLookupTable>(16,
+			0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Entry<Key, ColorMapLookupTable> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final int resolution;
+	private final boolean valuesArePercentages;
+	private final boolean exactMatch;
+	private final boolean nearestMatch;
+	private final int nodata;
+	private final int nan;
+
+	//sampled modes
+	private final int[] table;
+	private final double first;
+	private final double scale;
+
+	//searched modes
+	private final double[] keys;
+	private final int[] keyColors;
+
+	/**
+	 * Get a lookup table with the {@link #DEFAULT_RESOLUTION} for the given
+	 * colour map, sharing a cached instance if one exists for an identical
+	 * colour map.
+	 * 
+	 * @see #get(ColorMap, int)
+	 */
+	public static ColorMapLookupTable get(ColorMap map)
+	{
+		return get(map, DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Get a lookup table for the given colour map, sharing a cached instance if
+	 * one exists for an identical colour map (same entries, mode, nodata colour
+	 * and value type; names and descriptions are ignored).
+	 * <p/>
+	 * Callers should hold onto the result for the duration of a bulk mapping
+	 * operation, rather than calling this for each value.
+	 * 
+	 * @param map
+	 *            Colour map to compile
+	 * @param resolution
+	 *            Number of samples in the table (only used for interpolating
+	 *            maps)
+	 * @return Lookup table for the colour map
+	 */
+	@SuppressWarnings("nls")
+	public static ColorMapLookupTable get(ColorMap map, int resolution)
+	{
+		Validate.notNull(map, "A ColorMap is required");
+		Validate.isTrue(resolution > 0, "resolution must be a positive integer.");
+
+		Key key = new Key(map, resolution);
+		synchronized (cache)
+		{
+			ColorMapLookupTable table = cache.get(key);
+			if (table != null)
+			{
+				return table;
+			}
+		}
+
+		//compile outside the lock; if two threads race, the tables are identical
+		ColorMapLookupTable table = new ColorMapLookupTable(map, resolution);
+		synchronized (cache)
+		{
+			cache.put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Compile a new lookup table for the given colour map. Prefer
+	 * {@link #get(ColorMap, int)}, which shares tables between identical maps.
+	 * 
+	 * @param map
+	 *            Colour map to compile
+	 * @param resolution
+	 *            Number of samples in the table (only used for interpolating
+	 *            maps)
+	 */
+	@SuppressWarnings("nls")
+	public ColorMapLookupTable(ColorMap map, int resolution)
+	{
+		Validate.notNull(map, "A ColorMap is required");
+		Validate.isTrue(resolution > 0, "resolution must be a positive integer.");
+
+		this.resolution = resolution;
+		this.valuesArePercentages = map.isPercentageBased();
+		this.exactMatch = map.getMode() == InterpolationMode.EXACT_MATCH;
+		this.nearestMatch = map.getMode() == InterpolationMode.NEAREST_MATCH && !map.isEmpty();
+		this.nodata = toARGB(map.getNodataColour());
+		this.nan = toARGB(map.getColor(Double.NaN));
+
+		if (exactMatch || nearestMatch)
+		{
+			Map<Double, Color> entries = map.getEntries();
+			keys = new double[entries.size()];
+			keyColors = new int[entries.size()];
+			int i = 0;
+			for (Entry<Double, Color> entry : entries.entrySet())
+			{
+				keys[i] = entry.getKey();
+				keyColors[i] = toARGB(entry.getValue());
+				i++;
+			}
+			table = null;
+			first = 0;
+			scale = 0;
+		}
+		else if (map.isEmpty())
+		{
+			keys = null;
+			keyColors = null;
+			table = new int[] { nodata };
+			first = 0;
+			scale = 0;
+		}
+		else
+		{
+			keys = null;
+			keyColors = null;
+			first = map.getFirstEntry().getKey();
+			double last = map.getLastEntry().getKey();
+			double range = last - first;
+			int samples = range > 0 ? resolution : 1;
+			scale = range > 0 ? (samples - 1) / range : 0;
+			table = new int[samples];
+			for (int i = 0; i < samples; i++)
+			{
+				double value = samples == 1 ? first : first + range * i / (samples - 1);
+				table[i] = toARGB(map.getColor(value));
+			}
+		}
+	}
+
+	/**
+	 * @return The number of samples in this table
+	 */
+	public int getResolution()
+	{
+		return resolution;
+	}
+
+	/**
+	 * @return Whether the compiled colour map uses percentages in the range
+	 *         {@code [0,1]} as keys
+	 * @see ColorMap#isPercentageBased()
+	 */
+	public boolean isPercentageBased()
+	{
+		return valuesArePercentages;
+	}
+
+	/**
+	 * @return The ARGB nodata colour of the compiled colour map
+	 */
+	public int getNodataColor()
+	{
+		return nodata;
+	}
+
+	/**
+	 * Return the ARGB colour for the given value.
+	 * 
+	 * @see ColorMap#getColor(double)
+	 */
+	public int getColor(double value)
+	{
+		if (value != value) //NaN
+		{
+			return nan;
+		}
+		if (exactMatch)
+		{
+			int index = Arrays.binarySearch(keys, value);
+			return index >= 0 ? keyColors[index] : nodata;
+		}
+		if (nearestMatch)
+		{
+			return getNearestColor(value);
+		}
+		return table[index(value * scale - first * scale)];
+	}
+
+	/**
+	 * Return the colour of the entry nearest to the given value, choosing the
+	 * higher entry when the value is exactly between two entries, which
+	 * matches {@link InterpolationMode#NEAREST_MATCH}.
+	 */
+	private int getNearestColor(double value)
+	{
+		int index = Arrays.binarySearch(keys, value);
+		if (index >= 0)
+		{
+			return keyColors[index];
+		}
+		int ceiling = -index - 1;
+		if (ceiling == 0)
+		{
+			return keyColors[0];
+		}
+		if (ceiling == keys.length)
+		{
+			return keyColors[keys.length - 1];
+		}
+		int floor = ceiling - 1;
+		return Math.abs(keys[ceiling] - value) > Math.abs(keys[floor] - value) ? keyColors[floor]
+				: keyColors[ceiling];
+	}
+
+	/**
+	 * Return the ARGB colour for the given absolute value.
+	 * 
+	 * @see ColorMap#getColor(double, double, double)
+	 */
+	public int getColor(double absoluteValue, double min, double max)
+	{
+		return getColor(valuesArePercentages ? toPercentage(absoluteValue, min, max) : absoluteValue);
+	}
+
+	/**
+	 * Map the given values to ARGB colours.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param out
+	 *            Array to write the colours to, at least as long as values
+	 * @see ColorMap#getColor(double)
+	 */
+	public void map(float[] values, int[] out)
+	{
+		map(values, 0, 1, false, out);
+	}
+
+	/**
+	 * Map the given absolute values to ARGB colours. If this table is
+	 * percentage based, the values are converted to percentages between min
+	 * and max.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param min
+	 *            The minimum absolute value in the source data
+	 * @param max
+	 *            The maximum absolute value in the source data
+	 * @param out
+	 *            Array to write the colours to, at least as long as values
+	 * @see ColorMap#getColor(double, double, double)
+	 */
+	public void map(float[] values, double min, double max, int[] out)
+	{
+		map(values, min, max, valuesArePercentages, out);
+	}
+
+	/**
+	 * Map the given values to colours, writing the channels of the given
+	 * {@link ColorType} as floats in the range {@code [0,1]}.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param out
+	 *            Array to write the colours to, at least
+	 *            {@code values.length * type.getNumComponents()} long
+	 * @param type
+	 *            Channels to write for each colour
+	 * @see ColorMap#getColor(double)
+	 */
+	public void map(float[] values, float[] out, ColorType type)
+	{
+		map(values, 0, 1, false, out, type);
+	}
+
+	/**
+	 * Map the given absolute values to colours, writing the channels of the
+	 * given {@link ColorType} as floats in the range {@code [0,1]}. If this
+	 * table is percentage based, the values are converted to percentages
+	 * between min and max.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param min
+	 *            The minimum absolute value in the source data
+	 * @param max
+	 *            The maximum absolute value in the source data
+	 * @param out
+	 *            Array to write the colours to, at least
+	 *            {@code values.length * type.getNumComponents()} long
+	 * @param type
+	 *            Channels to write for each colour
+	 * @see ColorMap#getColor(double, double, double)
+	 */
+	public void map(float[] values, double min, double max, float[] out, ColorType type)
+	{
+		map(values, min, max, valuesArePercentages, out, type);
+	}
+
+	private void map(float[] values, double min, double max, boolean percentages, int[] out)
+	{
+		double a = coefficient(min, max, percentages);
+		double b = offset(min, max, percentages);
+		for (int i = 0; i < values.length; i++)
+		{
+			out[i] = getColor(values[i], a, b, min, max, percentages);
+		}
+	}
+
+	private void map(float[] values, double min, double max, boolean percentages, float[] out, ColorType type)
+	{
+		int components = type.getNumComponents();
+		int r = type.getChannelIndex(Channel.RED);
+		int g = type.getChannelIndex(Channel.GREEN);
+		int b = type.getChannelIndex(Channel.BLUE);
+		int alpha = type.getChannelIndex(Channel.ALPHA);
+
+		double ca = coefficient(min, max, percentages);
+		double cb = offset(min, max, percentages);
+		for (int i = 0, o = 0; i < values.length; i++, o += components)
+		{
+			int argb = getColor(values[i], ca, cb, min, max, percentages);
+			if (r >= 0)
+				out[o + r] = ((argb >> 16) & 0xff) / 255f;
+			if (g >= 0)
+				out[o + g] = ((argb >> 8) & 0xff) / 255f;
+			if (b >= 0)
+				out[o + b] = (argb & 0xff) / 255f;
+			if (alpha >= 0)
+				out[o + alpha] = ((argb >>> 24) & 0xff) / 255f;
+		}
+	}
+
+	/**
+	 * Lookup the colour for a value, where a and b are the coefficients of the
+	 * linear transform from value to table index (combining the percentage
+	 * conversion with the table scale).
+	 */
+	private int getColor(float value, double a, double b, double min, double max, boolean percentages)
+	{
+		if (value != value) //NaN
+		{
+			return nan;
+		}
+		if (exactMatch || nearestMatch)
+		{
+			//searched modes can't use the linear transform, as it would introduce rounding errors
+			return getColor(percentages ? toPercentage(value, min, max) : value);
+		}
+		return table[index(value * a + b)];
+	}
+
+	private double coefficient(double min, double max, boolean percentages)
+	{
+		if (!percentages)
+		{
+			return scale;
+		}
+		double range = Math.abs(max - min);
+		return range == 0 ? 0 : scale / range;
+	}
+
+	private double offset(double min, double max, boolean percentages)
+	{
+		double b = -first * scale;
+		if (!percentages)
+		{
+			return b;
+		}
+		return b - Math.min(min, max) * coefficient(min, max, percentages);
+	}
+
+	private int index(double sample)
+	{
+		int index = (int) (sample + 0.5);
+		//casting clamps infinities, but negative samples round towards zero
+		return sample < 0 ? 0 : index >= table.length ? table.length - 1 : index;
+	}
+
+	private static double toPercentage(double absoluteValue, double min, double max)
+	{
+		double lo = Math.min(min, max);
+		double hi = Math.max(min, max);
+		return lo == hi ? 0 : (absoluteValue - lo) / (hi - lo);
+	}
+
+	private static int toARGB(Color color)
+	{
+		return color == null ? 0 : color.getRGB();
+	}
+
+	/**
+	 * Cache key identifying the parts of a colour map that affect its colours.
+	 */
+	private static class Key
+	{
+		private final double[] keys;
+		private final int[] colors;
+		private final InterpolationMode mode;
+		private final int nodata;
+		private final boolean valuesArePercentages;
+		private final int resolution;
+		private final int hash;
+
+		public Key(ColorMap map, int resolution)
+		{
+			Map<Double, Color> entries = map.getEntries();
+			keys = new double[entries.size()];
+			colors = new int[entries.size()];
+			int i = 0;
+			for (Entry<Double, Color> entry : entries.entrySet())
+			{
+				keys[i] = entry.getKey();
+				colors[i] = toARGB(entry.getValue());
+				i++;
+			}
+			mode = map.getMode();
+			nodata = toARGB(map.getNodataColour());
+			valuesArePercentages = map.isPercentageBased();
+			this.resolution = mode == InterpolationMode.EXACT_MATCH ? 0 : resolution;
+
+			int h = Arrays.hashCode(keys);
+			h = 31 * h + Arrays.hashCode(colors);
+			h = 31 * h + mode.hashCode();
+			h = 31 * h + nodata;
+			h = 31 * h + (valuesArePercentages ? 1 : 0);
+			h = 31 * h + this.resolution;
+			hash = h;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+			{
+				return true;
+			}
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && mode == other.mode && nodata == other.nodata
+					&& valuesArePercentages == other.valuesArePercentages && resolution == other.resolution
+					&& Arrays.equals(keys, other.keys) && Arrays.equals(colors, other.colors);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+}
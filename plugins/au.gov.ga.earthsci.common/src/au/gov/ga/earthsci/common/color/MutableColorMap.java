@@ -214,6 +214,32 @@ public class MutableColorMap extends ColorMap
 		}
 	}
 
+	@Override
+	public int getColor(float v)
+	{
+		return getColor((double) v).getRGB();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * As this map can change, the lookup table is not retained; it is a
+	 * snapshot of this map's current state.
+	 */
+	@Override
+	public ColorMapLookupTable getLookupTable()
+	{
+		entriesLock.readLock().lock();
+		try
+		{
+			return ColorMapLookupTable.get(this);
+		}
+		finally
+		{
+			entriesLock.readLock().unlock();
+		}
+	}
+
 	/**
 	 * Add a new entry to the colour map
 	 * 
@@ -42,6 +42,26 @@ public class HashReadWriteLocker
 		getLock(key, true).writeLock().lock();
 	}
 
+	/**
+	 * Acquire the write lock for the given key only if it is not currently
+	 * held by another thread for reading or writing.
+	 * 
+	 * @param key
+	 *            Object to lock
+	 * @return True if the write lock was acquired, in which case the caller
+	 *         must call {@link #unlockWrite(Object)}
+	 */
+	public boolean tryLockWrite(Object key)
+	{
+		if (getLock(key, true).writeLock().tryLock())
+		{
+			return true;
+		}
+		//release this thread's reference to the lock
+		getLock(key, false);
+		return false;
+	}
+
 	public void unlockRead(Object key)
 	{
 		getLock(key, false).readLock().unlock();
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import static org.junit.Assert.*;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RetrievalScheduler} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalSchedulerTest
+{
+	private RetrievalScheduler scheduler;
+	private List<Retrieval> dispatched;
+
+	@Before
+	public void setup()
+	{
+		scheduler = new RetrievalScheduler();
+		dispatched = new ArrayList<Retrieval>();
+	}
+
+	@Test
+	public void testGlobalCap() throws Exception
+	{
+		scheduler.setMaxConcurrent(2);
+		Retrieval a = retrieval("http://a.com/1", 0);
+		Retrieval b = retrieval("http://b.com/1", 0);
+		Retrieval c = retrieval("http://c.com/1", 0);
+		scheduler.schedule(a);
+		scheduler.schedule(b);
+		scheduler.schedule(c);
+
+		assertEquals(Arrays.asList(a, b), dispatched);
+		assertTrue(scheduler.isQueued(c));
+		assertEquals(1, scheduler.getStatistics().getQueued());
+		assertEquals(2, scheduler.getStatistics().getRunning());
+
+		scheduler.finished(a);
+		assertEquals(Arrays.asList(a, b, c), dispatched);
+		assertFalse(scheduler.isQueued(c));
+		assertEquals(0, scheduler.getStatistics().getQueued());
+		assertEquals(2, scheduler.getStatistics().getRunning());
+	}
+
+	@Test
+	public void testPerHostCap() throws Exception
+	{
+		scheduler.setMaxConcurrentPerHost(2);
+		Retrieval a1 = retrieval("http://a.com/1", 0);
+		Retrieval a2 = retrieval("http://A.com/2", 0);
+		Retrieval a3 = retrieval("http://a.com/3", 0);
+		Retrieval b1 = retrieval("http://b.com/1", 0);
+		scheduler.schedule(a1);
+		scheduler.schedule(a2);
+		scheduler.schedule(a3);
+		scheduler.schedule(b1);
+
+		//a3 is held back by its busy host, but doesn't block b1
+		assertEquals(Arrays.asList(a1, a2, b1), dispatched);
+		assertTrue(scheduler.isQueued(a3));
+
+		scheduler.finished(b1);
+		assertTrue(scheduler.isQueued(a3));
+
+		scheduler.finished(a1);
+		assertEquals(Arrays.asList(a1, a2, b1, a3), dispatched);
+	}
+
+	@Test
+	public void testPriorityOrdering() throws Exception
+	{
+		scheduler.setMaxConcurrent(1);
+		Retrieval blocker = retrieval("http://a.com/0", 0);
+		Retrieval low = retrieval("http://a.com/1", IRetrievalProperties.PRIORITY_BACKGROUND);
+		Retrieval normal1 = retrieval("http://a.com/2", IRetrievalProperties.PRIORITY_NORMAL);
+		Retrieval high = retrieval("http://a.com/3", IRetrievalProperties.PRIORITY_VISIBLE);
+		Retrieval normal2 = retrieval("http://a.com/4", IRetrievalProperties.PRIORITY_NORMAL);
+		scheduler.schedule(blocker);
+		scheduler.schedule(low);
+		scheduler.schedule(normal1);
+		scheduler.schedule(high);
+		scheduler.schedule(normal2);
+
+		finishAll();
+		assertEquals(Arrays.asList(blocker, high, normal1, normal2, low), dispatched);
+	}
+
+	@Test
+	public void testRemove() throws Exception
+	{
+		scheduler.setMaxConcurrent(1);
+		Retrieval blocker = retrieval("http://a.com/0", 0);
+		Retrieval removed = retrieval("http://a.com/1", 0);
+		Retrieval kept = retrieval("http://a.com/2", 0);
+		scheduler.schedule(blocker);
+		scheduler.schedule(removed);
+		scheduler.schedule(kept);
+
+		assertTrue(scheduler.remove(removed));
+		assertFalse(scheduler.isQueued(removed));
+		assertFalse(scheduler.remove(removed));
+		assertFalse(scheduler.remove(blocker));
+
+		finishAll();
+		assertEquals(Arrays.asList(blocker, kept), dispatched);
+	}
+
+	@Test
+	public void testReprioritise() throws Exception
+	{
+		scheduler.setMaxConcurrent(1);
+		Retrieval blocker = retrieval("http://a.com/0", 0);
+		Retrieval first = retrieval("http://a.com/1", IRetrievalProperties.PRIORITY_NORMAL);
+		Retrieval second = retrieval("http://a.com/2", IRetrievalProperties.PRIORITY_NORMAL);
+		Retrieval third = retrieval("http://a.com/3", IRetrievalProperties.PRIORITY_NORMAL);
+		scheduler.schedule(blocker);
+		scheduler.schedule(first);
+		scheduler.schedule(second);
+		scheduler.schedule(third);
+
+		third.setPriority(IRetrievalProperties.PRIORITY_VISIBLE);
+		first.setPriority(IRetrievalProperties.PRIORITY_BACKGROUND);
+		//re-prioritising a running retrieval has no effect on the queue
+		blocker.setPriority(IRetrievalProperties.PRIORITY_BACKGROUND);
+
+		finishAll();
+		assertEquals(Arrays.asList(blocker, third, second, first), dispatched);
+	}
+
+	@Test
+	public void testFailedDispatchFreesSlot() throws Exception
+	{
+		scheduler.setMaxConcurrent(1);
+		Retrieval failing = new TestRetrieval(new URL("http://a.com/0"), 0, false);
+		Retrieval next = retrieval("http://a.com/1", 0);
+		scheduler.schedule(failing);
+		scheduler.schedule(next);
+
+		assertEquals(Arrays.asList(failing, next), dispatched);
+		assertEquals(1, scheduler.getStatistics().getRunning());
+	}
+
+	@Test
+	public void testScheduleTwiceIsIgnored() throws Exception
+	{
+		Retrieval a = retrieval("http://a.com/1", 0);
+		scheduler.schedule(a);
+		scheduler.schedule(a);
+		assertEquals(Arrays.asList(a), dispatched);
+		assertEquals(1, scheduler.getStatistics().getRunning());
+	}
+
+	@Test
+	public void testCancelBeforeScheduleIsNotDispatched() throws Exception
+	{
+		scheduler = new CancellingScheduler();
+		Retrieval retrieval = new Retrieval(this, new URL("http://a.com/1"), properties(0), null, scheduler);
+		retrieval.start();
+
+		assertTrue(retrieval.isCanceled());
+		assertFalse(scheduler.isQueued(retrieval));
+		assertEquals(0, scheduler.getStatistics().getRunning());
+	}
+
+	@Test
+	public void testCancelBeforeScheduleIsRemovedFromQueue() throws Exception
+	{
+		scheduler = new CancellingScheduler();
+		scheduler.setMaxConcurrent(1);
+		Retrieval blocker = retrieval("http://a.com/0", 0);
+		scheduler.schedule(blocker);
+		Retrieval retrieval = new Retrieval(this, new URL("http://a.com/1"), properties(0), null, scheduler);
+		retrieval.start();
+
+		assertTrue(retrieval.isCanceled());
+		assertFalse(scheduler.isQueued(retrieval));
+
+		finishAll();
+		assertEquals(0, scheduler.getStatistics().getRunning());
+	}
+
+	private void finishAll()
+	{
+		for (int i = 0; i < dispatched.size(); i++)
+		{
+			scheduler.finished(dispatched.get(i));
+		}
+	}
+
+	private Retrieval retrieval(String url, int priority) throws MalformedURLException
+	{
+		return new TestRetrieval(new URL(url), priority, true);
+	}
+
+	/**
+	 * {@link Retrieval} that records when it is dispatched, rather than
+	 * starting a retrieval job.
+	 */
+	private class TestRetrieval extends Retrieval
+	{
+		private final boolean dispatchResult;
+
+		public TestRetrieval(URL url, int priority, boolean dispatchResult)
+		{
+			super(RetrievalSchedulerTest.this, url, properties(priority), null, scheduler);
+			this.dispatchResult = dispatchResult;
+		}
+
+		@Override
+		boolean dispatch()
+		{
+			dispatched.add(this);
+			return dispatchResult;
+		}
+	}
+
+	/**
+	 * {@link RetrievalScheduler} that cancels each retrieval just before it is
+	 * scheduled, simulating a cancel() racing with {@link Retrieval#start()}.
+	 */
+	private static class CancellingScheduler extends RetrievalScheduler
+	{
+		@Override
+		public void schedule(Retrieval retrieval)
+		{
+			retrieval.cancel();
+			super.schedule(retrieval);
+		}
+	}
+
+	private static RetrievalProperties properties(int priority)
+	{
+		RetrievalProperties properties = new RetrievalProperties();
+		properties.setPriority(priority);
+		return properties;
+	}
+}
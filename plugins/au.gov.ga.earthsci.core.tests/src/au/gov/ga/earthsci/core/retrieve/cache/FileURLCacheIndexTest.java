@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FileURLCacheIndex} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FileURLCacheIndexTest
+{
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("FileURLCacheIndexTest", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void teardown()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testGetUnknownReturnsNull()
+	{
+		FileURLCacheIndex index = new FileURLCacheIndex(directory);
+		assertNull(index.get("a", "http://example.com/1"));
+		assertFalse(new File(directory, FileURLCacheIndex.JOURNAL_FILENAME).exists());
+	}
+
+	@Test
+	public void testGetOrCreateAllocatesSequentialFilenames()
+	{
+		FileURLCacheIndex index = new FileURLCacheIndex(directory);
+		assertEquals("0.png", index.getOrCreate("a", "http://example.com/1.png", ".png"));
+		assertEquals("1.png", index.getOrCreate("a", "http://example.com/2.png", ".png"));
+		assertEquals("0.png", index.getOrCreate("a", "http://example.com/1.png", ".png"));
+		assertEquals("0", index.getOrCreate("b", "http://example.com/3", ""));
+	}
+
+	@Test
+	public void testJournalIsReplayed()
+	{
+		FileURLCacheIndex index = new FileURLCacheIndex(directory);
+		index.getOrCreate("a", "http://example.com/1", "");
+		index.getOrCreate("a", "http://example.com/2", "");
+
+		//simulate a crash by not closing the first index
+		FileURLCacheIndex replayed = new FileURLCacheIndex(directory);
+		assertEquals("1", replayed.get("a", "http://example.com/2"));
+		assertEquals("2", replayed.getOrCreate("a", "http://example.com/3", ""));
+	}
+
+	@Test
+	public void testTruncatedJournalRecordIsDiscarded() throws IOException
+	{
+		FileURLCacheIndex index = new FileURLCacheIndex(directory);
+		index.getOrCreate("a", "http://example.com/1", "");
+		index.getOrCreate("a", "http://example.com/2", "");
+
+		File journal = new File(directory, FileURLCacheIndex.JOURNAL_FILENAME);
+		RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+		try
+		{
+			raf.setLength(raf.length() - 2);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		FileURLCacheIndex replayed = new FileURLCacheIndex(directory);
+		assertEquals("0", replayed.get("a", "http://example.com/1"));
+		assertNull(replayed.get("a", "http://example.com/2"));
+		assertEquals("1", replayed.getOrCreate("a", "http://example.com/4", ""));
+
+		FileURLCacheIndex replayedAgain = new FileURLCacheIndex(directory);
+		assertEquals("1", replayedAgain.get("a", "http://example.com/4"));
+	}
+
+	@Test
+	public void testCompactionWritesPropertiesAndRemovesJournal()
+	{
+		FileURLCacheIndex index = new FileURLCacheIndex(directory, 2);
+		index.getOrCreate("a", "http://example.com/1", "");
+		index.getOrCreate("b", "http://example.com/2", "");
+
+		assertFalse(new File(directory, FileURLCacheIndex.JOURNAL_FILENAME).exists());
+		assertTrue(new File(directory, "a" + File.separator + FileURLCacheIndex.URLS_PROPERTIES_FILENAME).isFile());
+		assertTrue(new File(directory, "b" + File.separator + FileURLCacheIndex.URLS_PROPERTIES_FILENAME).isFile());
+
+		FileURLCacheIndex reloaded = new FileURLCacheIndex(directory);
+		assertEquals("0", reloaded.get("a", "http://example.com/1"));
+		assertEquals("0", reloaded.get("b", "http://example.com/2"));
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
+
+/**
+ * Unit tests for the {@link FileURLCache} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FileURLCacheTest
+{
+	private File directory;
+	private FileURLCache classUnderTest;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("FileURLCacheTest", "");
+		directory.delete();
+		directory.mkdirs();
+		classUnderTest = new FileURLCache(directory);
+	}
+
+	@After
+	public void teardown()
+	{
+		classUnderTest.setQuota(0);
+		delete(directory);
+	}
+
+	@Test
+	public void testUnknownURLIsNotComplete() throws Exception
+	{
+		URL url = new URL("http://example.com/unknown.txt");
+		assertFalse(classUnderTest.isComplete(url));
+		assertEquals(0, classUnderTest.getLength(url));
+		assertEquals(1, classUnderTest.getStatistics().getMisses());
+	}
+
+	@Test
+	public void testReadUnknownURLDoesNotCreateMapping() throws Exception
+	{
+		URL url = new URL("http://example.com/unknown.txt");
+		try
+		{
+			classUnderTest.read(url).close();
+			fail("Expected FileNotFoundException");
+		}
+		catch (FileNotFoundException e)
+		{
+		}
+		try
+		{
+			classUnderTest.map(url).close();
+			fail("Expected FileNotFoundException");
+		}
+		catch (FileNotFoundException e)
+		{
+		}
+		assertFalse(new File(directory, FileURLCacheIndex.JOURNAL_FILENAME).exists());
+	}
+
+	@Test
+	public void testWriteComplete() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(url, 100);
+		assertTrue(classUnderTest.isComplete(url));
+		assertEquals(100, classUnderTest.getLength(url));
+		assertEquals(1, classUnderTest.getStatistics().getHits());
+		assertEquals(100, classUnderTest.getStatistics().getSize());
+	}
+
+	@Test
+	public void testSweepEvictsLeastRecentlyUsed() throws Exception
+	{
+		URL url1 = new URL("http://example.com/1.txt");
+		URL url2 = new URL("http://example.com/2.txt");
+		URL url3 = new URL("http://example.com/3.txt");
+		write(url1, 100);
+		write(url2, 100);
+		write(url3, 100);
+
+		//touch the first url so that the second becomes the least recently used
+		assertTrue(classUnderTest.isComplete(url1));
+
+		classUnderTest.setQuota(250);
+		classUnderTest.sweep();
+
+		assertTrue(classUnderTest.isComplete(url1));
+		assertFalse(classUnderTest.isComplete(url2));
+		assertTrue(classUnderTest.isComplete(url3));
+		assertEquals(1, classUnderTest.getStatistics().getEvictedCount());
+		assertEquals(100, classUnderTest.getStatistics().getEvictedBytes());
+		assertEquals(200, classUnderTest.getStatistics().getSize());
+	}
+
+	@Test
+	public void testSweepDoesNotEvictLockedFiles() throws Exception
+	{
+		URL url1 = new URL("http://example.com/1.txt");
+		URL url2 = new URL("http://example.com/2.txt");
+		write(url1, 100);
+		write(url2, 100);
+
+		//url2 is the least recently used, but is locked for reading
+		InputStream is = classUnderTest.read(url2);
+		try
+		{
+			assertTrue(classUnderTest.isComplete(url1));
+			classUnderTest.setQuota(150);
+			classUnderTest.sweep();
+		}
+		finally
+		{
+			is.close();
+		}
+
+		assertFalse(classUnderTest.isComplete(url1));
+		assertTrue(classUnderTest.isComplete(url2));
+	}
+
+	@Test
+	public void testWriteCompleteUnchanged() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		assertTrue(writeComplete(url, bytes(100, 1), 0));
+		assertFalse(writeComplete(url, bytes(100, 1), 0));
+		assertTrue(writeComplete(url, bytes(100, 2), 0));
+		assertFalse(classUnderTest.isPartial(url));
+	}
+
+	@Test
+	public void testWriteCompleteUnchangedAfterResume() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		assertTrue(writeComplete(url, bytes(100, 1), 0));
+
+		//write the first half, then resume from the middle
+		OutputStream os = classUnderTest.writePartial(url, 0);
+		try
+		{
+			os.write(bytes(100, 1), 0, 60);
+		}
+		finally
+		{
+			os.close();
+		}
+		assertFalse(writeComplete(url, bytes(100, 1), 40));
+	}
+
+	@Test
+	public void testVerifyDetectsCorruption() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(url, 100);
+		assertTrue(classUnderTest.verify(url));
+
+		RandomAccessFile raf = new RandomAccessFile(classUnderTest.getFile(url), "rw");
+		try
+		{
+			raf.seek(10);
+			raf.write(42);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		assertFalse(classUnderTest.verify(url));
+		assertFalse(classUnderTest.isComplete(url));
+	}
+
+	@Test
+	public void testMapHoldsReadLock() throws Exception
+	{
+		URL url1 = new URL("http://example.com/1.txt");
+		URL url2 = new URL("http://example.com/2.txt");
+		assertTrue(writeComplete(url1, bytes(100, 1), 0));
+		write(url2, 100);
+
+		IMappedRetrievalData mapped = classUnderTest.map(url1);
+		try
+		{
+			ByteBuffer buffer = mapped.getByteBuffer();
+			assertTrue(buffer.isReadOnly());
+			byte[] content = new byte[buffer.remaining()];
+			buffer.get(content);
+			assertArrayEquals(bytes(100, 1), content);
+
+			//url1 is the least recently used, but is locked by the mapping
+			assertTrue(classUnderTest.isComplete(url2));
+			classUnderTest.setQuota(150);
+			classUnderTest.sweep();
+		}
+		finally
+		{
+			mapped.close();
+		}
+
+		assertTrue(classUnderTest.isComplete(url1));
+		assertFalse(classUnderTest.isComplete(url2));
+	}
+
+	private void write(URL url, int length) throws IOException
+	{
+		assertTrue(writeComplete(url, new byte[length], 0));
+	}
+
+	private boolean writeComplete(URL url, byte[] content, int offset) throws IOException
+	{
+		OutputStream os = classUnderTest.writePartial(url, offset);
+		try
+		{
+			os.write(content, offset, content.length - offset);
+		}
+		finally
+		{
+			os.close();
+		}
+		return classUnderTest.writeComplete(url, 0, null);
+	}
+
+	private static byte[] bytes(int length, int seed)
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = (byte) (i * seed);
+		}
+		return bytes;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link MemoryURLCache} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class MemoryURLCacheTest
+{
+	private File directory;
+	private FileURLCache diskCache;
+	private MemoryURLCache classUnderTest;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("MemoryURLCacheTest", "");
+		directory.delete();
+		directory.mkdirs();
+		diskCache = new FileURLCache(directory);
+		classUnderTest = new MemoryURLCache(diskCache, 50, 1000);
+	}
+
+	@After
+	public void teardown()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testWrittenResourceIsServedFromMemory() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(classUnderTest, url, bytes(40, 1));
+		assertTrue(diskCache.getFile(url).delete());
+
+		assertTrue(classUnderTest.isComplete(url));
+		assertEquals(40, classUnderTest.getLength(url));
+		assertArrayEquals(bytes(40, 1), read(url));
+		assertEquals(1, classUnderTest.getStatistics().getMemoryHits());
+		assertEquals(40, classUnderTest.getStatistics().getMemorySize());
+	}
+
+	@Test
+	public void testReadResourceIsServedFromMemory() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(diskCache, url, bytes(40, 1));
+		assertArrayEquals(bytes(40, 1), read(url));
+		assertTrue(diskCache.getFile(url).delete());
+
+		assertTrue(classUnderTest.isComplete(url));
+		assertArrayEquals(bytes(40, 1), read(url));
+	}
+
+	@Test
+	public void testLargeResourceIsNotKeptInMemory() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(classUnderTest, url, bytes(100, 1));
+		assertArrayEquals(bytes(100, 1), read(url));
+		assertTrue(diskCache.getFile(url).delete());
+
+		assertFalse(classUnderTest.isComplete(url));
+		assertEquals(0, classUnderTest.getStatistics().getMemorySize());
+	}
+
+	@Test
+	public void testRewriteReplacesMemoryEntry() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(classUnderTest, url, bytes(40, 1));
+		write(classUnderTest, url, bytes(30, 2));
+
+		assertEquals(30, classUnderTest.getLength(url));
+		assertArrayEquals(bytes(30, 2), read(url));
+	}
+
+	@Test
+	public void testEvictedResourceIsRemovedFromMemory() throws Exception
+	{
+		URL url1 = new URL("http://example.com/1.txt");
+		URL url2 = new URL("http://example.com/2.txt");
+		write(classUnderTest, url1, bytes(40, 1));
+		write(classUnderTest, url2, bytes(40, 2));
+
+		try
+		{
+			diskCache.setQuota(50);
+			diskCache.sweep();
+		}
+		finally
+		{
+			diskCache.setQuota(0);
+		}
+
+		assertFalse(classUnderTest.isComplete(url1));
+		assertTrue(classUnderTest.isComplete(url2));
+		assertEquals(40, classUnderTest.getStatistics().getMemorySize());
+	}
+
+	@Test
+	public void testInvalidResourceIsRemovedFromMemory() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		write(classUnderTest, url, bytes(40, 1));
+
+		//corrupt the file on disk, so that it fails verification
+		RandomAccessFile raf = new RandomAccessFile(diskCache.getFile(url), "rw");
+		try
+		{
+			raf.write(bytes(40, 3));
+		}
+		finally
+		{
+			raf.close();
+		}
+		assertFalse(diskCache.verify(url));
+
+		assertFalse(classUnderTest.isComplete(url));
+		assertEquals(0, classUnderTest.getStatistics().getMemorySize());
+	}
+
+	@Test
+	public void testSingleByteWritesAreServedFromMemory() throws Exception
+	{
+		URL url = new URL("http://example.com/1.txt");
+		byte[] content = bytes(40, 1);
+		OutputStream os = classUnderTest.writePartial(url, 0);
+		try
+		{
+			for (byte b : content)
+			{
+				os.write(b);
+			}
+		}
+		finally
+		{
+			os.close();
+		}
+		assertTrue(classUnderTest.writeComplete(url, 0, null));
+		assertTrue(diskCache.getFile(url).delete());
+
+		assertArrayEquals(content, read(url));
+	}
+
+	@Test
+	public void testDisabledMemoryCache() throws Exception
+	{
+		classUnderTest.setLimits(50, 0);
+		URL url = new URL("http://example.com/1.txt");
+		write(classUnderTest, url, bytes(40, 1));
+		assertTrue(diskCache.getFile(url).delete());
+
+		assertFalse(classUnderTest.isComplete(url));
+	}
+
+	private static void write(IURLCache cache, URL url, byte[] content) throws IOException
+	{
+		OutputStream os = cache.writePartial(url, 0);
+		try
+		{
+			os.write(content);
+		}
+		finally
+		{
+			os.close();
+		}
+		assertTrue(cache.writeComplete(url, 0, null));
+	}
+
+	private byte[] read(URL url) throws IOException
+	{
+		InputStream is = classUnderTest.read(url);
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			int b;
+			while ((b = is.read()) >= 0)
+			{
+				baos.write(b);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static byte[] bytes(int length, int seed)
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = (byte) (i * seed + 1);
+		}
+		return bytes;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -18,6 +18,7 @@ package au.gov.ga.earthsci.core.retrieve.retriever;
 import static org.junit.Assert.*;
 import gov.nasa.worldwind.util.WWIO;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationHandler;
@@ -26,6 +27,13 @@ import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -182,6 +190,105 @@ public class HTTPRetrieverTest
 		classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null);
 	}
 
+	@Test
+	public void testRetrieveHttpURLWithGzipEncoding() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		final String expectedResult = "compressed success!";
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+		gzip.write(expectedResult.getBytes("UTF-8"));
+		gzip.close();
+
+		setServerResponse("/gzip", 200, compressed.toByteArray(), false, "gzip", null);
+
+		URL url = createHttpURL("/gzip");
+
+		IRetrievalResult result = classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null).result;
+
+		assertNotNull(result);
+		String string = WWIO.readStreamToString(result.getData().getInputStream(), "UTF-8");
+		assertEquals(expectedResult, string);
+	}
+
+	@Test
+	public void testRetrieveHttpURLWithDeflateEncoding() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		final String expectedResult = "zlib success!";
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		DeflaterOutputStream deflate = new DeflaterOutputStream(compressed);
+		deflate.write(expectedResult.getBytes("UTF-8"));
+		deflate.close();
+
+		setServerResponse("/deflate", 200, compressed.toByteArray(), false, "deflate", null);
+
+		URL url = createHttpURL("/deflate");
+
+		IRetrievalResult result = classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null).result;
+
+		assertNotNull(result);
+		String string = WWIO.readStreamToString(result.getData().getInputStream(), "UTF-8");
+		assertEquals(expectedResult, string);
+	}
+
+	@Test
+	public void testRetrieveHttpURLWithRawDeflateEncoding() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		final String expectedResult = "raw deflate success!";
+
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, deflater);
+		deflate.write(expectedResult.getBytes("UTF-8"));
+		deflate.close();
+		deflater.end();
+
+		setServerResponse("/rawdeflate", 200, compressed.toByteArray(), false, "deflate", null);
+
+		URL url = createHttpURL("/rawdeflate");
+
+		IRetrievalResult result = classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null).result;
+
+		assertNotNull(result);
+		String string = WWIO.readStreamToString(result.getData().getInputStream(), "UTF-8");
+		assertEquals(expectedResult, string);
+	}
+
+	@Test
+	public void testRetrieveHttpURLReusesConnection() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<Integer>());
+		setServerResponse("/reuse", 200, "reused".getBytes(), false, null, clientPorts);
+		setServerResponse("/reuse403", 403, "forbidden".getBytes(), true, null, clientPorts);
+
+		URL url = createHttpURL("/reuse");
+		URL url403 = createHttpURL("/reuse403");
+
+		classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null);
+		try
+		{
+			classUnderTest.retrieve(url403, monitor, createRetrievalProperties(), null);
+			fail("Expected an IOException");
+		}
+		catch (IOException e)
+		{
+		}
+		classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null);
+
+		assertEquals(3, clientPorts.size());
+		assertEquals(clientPorts.get(0), clientPorts.get(1));
+		assertEquals(clientPorts.get(0), clientPorts.get(2));
+	}
+
 	private static IRetrievalProperties createRetrievalProperties()
 	{
 		RetrievalProperties retrievalProperties = new RetrievalProperties();
@@ -287,6 +394,12 @@ public class HTTPRetrieverTest
 
 	private static void setServerResponse(final String path, final int responseCode, final String response,
 			final boolean unknownContentLength)
+	{
+		setServerResponse(path, responseCode, response.getBytes(), unknownContentLength, null, null);
+	}
+
+	private static void setServerResponse(final String path, final int responseCode, final byte[] response,
+			final boolean unknownContentLength, final String contentEncoding, final List<Integer> clientPorts)
 	{
 		if (!httpServerIsAvailable())
 		{
@@ -314,10 +427,26 @@ public class HTTPRetrieverTest
 
 										Object httpExchange = args[0];
 
+										if (clientPorts != null)
+										{
+											InetSocketAddress remoteAddress =
+													(InetSocketAddress) exchangeClass.getMethod("getRemoteAddress")
+															.invoke(httpExchange);
+											clientPorts.add(remoteAddress.getPort());
+										}
+
+										if (contentEncoding != null)
+										{
+											@SuppressWarnings("unchecked")
+											Map<String, List<String>> headers =
+													(Map<String, List<String>>) exchangeClass.getMethod(
+															"getResponseHeaders").invoke(httpExchange);
+											headers.put("Content-Encoding", Collections.singletonList(contentEncoding));
+										}
+
 										// Send headers
 										long responseLength =
-												unknownContentLength ? 0 : response == null ? -1
-														: response.getBytes().length;
+												unknownContentLength ? 0 : response == null ? -1 : response.length;
 										exchangeClass.getMethod("sendResponseHeaders", int.class, long.class).invoke(
 												httpExchange, responseCode, responseLength);
 
@@ -325,7 +454,7 @@ public class HTTPRetrieverTest
 										OutputStream responseBody =
 												(OutputStream) exchangeClass.getMethod("getResponseBody").invoke(
 														httpExchange);
-										responseBody.write(response.getBytes());
+										responseBody.write(response);
 
 										exchangeClass.getMethod("close").invoke(httpExchange);
 									}
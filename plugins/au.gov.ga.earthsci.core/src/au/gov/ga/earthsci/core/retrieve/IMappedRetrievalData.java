@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of a retrieved resource's data, usually backed by a memory
+ * mapped file. Any resources (such as locks on cached files) are held until
+ * this object is closed.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface IMappedRetrievalData extends Closeable
+{
+	/**
+	 * Return the read-only buffer containing the resource's data. The buffer
+	 * must not be used after this object is closed.
+	 * 
+	 * @return Buffer containing the resource
+	 */
+	ByteBuffer getByteBuffer();
+
+	/**
+	 * Release this mapping, and any resources associated with it.
+	 */
+	@Override
+	void close() throws IOException;
+}
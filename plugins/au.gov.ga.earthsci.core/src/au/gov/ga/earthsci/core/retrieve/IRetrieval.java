@@ -83,9 +83,28 @@ public interface IRetrieval extends IPropertyChangeBean
 	 */
 	void removeListener(IRetrievalListener listener);
 
+	/**
+	 * @return The priority of this retrieval; retrievals with a higher priority
+	 *         are run first when retrievals are queued
+	 */
+	int getPriority();
+
+	/**
+	 * Change the priority of this retrieval. If the retrieval is queued, it is
+	 * re-ordered within the queue.
+	 * 
+	 * @param priority
+	 *            New priority
+	 */
+	void setPriority(int priority);
+
 	/**
 	 * Start this retrieval, or resume from a paused state. No effect if this
 	 * retrieval is already running.
+	 * <p/>
+	 * The number of concurrent retrievals is limited, so the retrieval may be
+	 * queued (with a status of {@link RetrievalStatus#QUEUED}) before it
+	 * begins.
 	 */
 	void start();
 
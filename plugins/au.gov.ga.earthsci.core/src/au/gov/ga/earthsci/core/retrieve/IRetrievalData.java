@@ -62,6 +62,23 @@ public interface IRetrievalData
 	 */
 	ByteBuffer getByteBuffer() throws IOException;
 
+	/**
+	 * Return a read-only view of the retrieved resource. For resources backed
+	 * by a file (such as cached resources), the view is a memory mapping of
+	 * the file, so large resources can be read without copying them onto the
+	 * heap. Other implementations may return a view of an in-memory copy.
+	 * <p/>
+	 * The caller <b>must</b> close the returned object once it has finished
+	 * with the buffer. Implementations may hold locks on the underlying file
+	 * until then (for example, preventing the cached resource from being
+	 * updated or evicted).
+	 * 
+	 * @return A mapped view of the retrieved resource
+	 * @throws IOException
+	 *             If an IO error occurs during mapping
+	 */
+	IMappedRetrievalData map() throws IOException;
+
 	/**
 	 * Create a File object pointing at the retrieved resource.
 	 * <p/>
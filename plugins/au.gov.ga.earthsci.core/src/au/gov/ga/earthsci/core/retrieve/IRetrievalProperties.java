@@ -22,6 +22,15 @@ package au.gov.ga.earthsci.core.retrieve;
  */
 public interface IRetrievalProperties
 {
+	/** Priority for retrievals that are immediately visible to the user */
+	public final static int PRIORITY_VISIBLE = 100;
+
+	/** Default retrieval priority */
+	public final static int PRIORITY_NORMAL = 0;
+
+	/** Priority for retrievals running in the background */
+	public final static int PRIORITY_BACKGROUND = -100;
+
 	/**
 	 * Whether the retriever should check a cache for a result. If this is true,
 	 * and a result is retrieved from a remote source, this also tells the
@@ -66,4 +75,15 @@ public interface IRetrievalProperties
 	 * @return Should the retriever save the result to a file?
 	 */
 	boolean isFileRequired();
+
+	/**
+	 * The priority of the retrieval. When the number of concurrent retrievals
+	 * is limited, queued retrievals with higher priorities are run first.
+	 * 
+	 * @return Retrieval priority
+	 * @see #PRIORITY_VISIBLE
+	 * @see #PRIORITY_NORMAL
+	 * @see #PRIORITY_BACKGROUND
+	 */
+	int getPriority();
 }
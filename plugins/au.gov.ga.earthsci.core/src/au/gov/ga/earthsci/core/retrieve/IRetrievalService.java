@@ -17,6 +17,8 @@ package au.gov.ga.earthsci.core.retrieve;
 
 import java.net.URL;
 
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
+
 /**
  * A service for retrieving resources.
  * 
@@ -141,4 +143,29 @@ public interface IRetrievalService
 	 *            Caller that was being listened for
 	 */
 	void removeListener(IRetrievalServiceListener listener, Object caller);
+
+	/**
+	 * Remove the given caller from all of its retrievals. Retrievals that are
+	 * still queued and have no remaining callers are canceled.
+	 * <p/>
+	 * This should be called when a caller no longer requires the resources it
+	 * requested (for example, a layer that has been removed).
+	 * 
+	 * @param caller
+	 *            Caller to remove
+	 */
+	void removeCaller(Object caller);
+
+	/**
+	 * @return A snapshot of the state of the retrieval queue
+	 */
+	RetrievalSchedulerStatistics getSchedulerStatistics();
+
+	/**
+	 * Get the usage statistics (hits, misses, evictions, size) of the caches
+	 * used by this service's retrievers, aggregated across all retrievers.
+	 * 
+	 * @return Aggregated cache statistics
+	 */
+	URLCacheStatistics getCacheStatistics();
 }
@@ -17,6 +17,8 @@ package au.gov.ga.earthsci.core.retrieve;
 
 import java.net.URL;
 
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
+
 /**
  * An object that can retrieve a resource from a supported URL.
  * 
@@ -66,4 +68,10 @@ public interface IRetriever
 	 */
 	RetrieverResult retrieve(URL url, IRetrieverMonitor monitor, IRetrievalProperties retrievalProperties,
 			IRetrievalData cachedData) throws Exception;
+
+	/**
+	 * @return Usage statistics for this retriever's cache, or null if this
+	 *         retriever doesn't cache resources
+	 */
+	URLCacheStatistics getCacheStatistics();
 }
@@ -42,4 +42,10 @@ public interface IRetrieverFactory
 	 *            {@link IRetriever} to register
 	 */
 	void registerRetriever(IRetriever retriever);
+
+	/**
+	 * @return All retrievers registered on this factory, including the default
+	 *         retriever
+	 */
+	IRetriever[] getRetrievers();
 }
@@ -36,6 +36,8 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	private final URL url;
 	private final IRetrievalProperties retrievalProperties;
 	private final IRetriever retriever;
+	private final RetrievalScheduler scheduler;
+	private int priority;
 
 	private RetrievalStatus status = RetrievalStatus.NOT_STARTED;
 	private long position = 0;
@@ -45,6 +47,7 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 
 	private final Object jobSemaphore = new Object();
 	private RetrievalJob job;
+	private boolean queued = false;
 	private boolean canceled = false;
 	private boolean paused = false;
 	private final Object pausedSemaphore = new Object();
@@ -52,12 +55,15 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	private IRetrievalData cachedData;
 	private IRetrievalResult result;
 
-	public Retrieval(Object caller, URL url, IRetrievalProperties retrievalProperties, IRetriever retriever)
+	public Retrieval(Object caller, URL url, IRetrievalProperties retrievalProperties, IRetriever retriever,
+			RetrievalScheduler scheduler)
 	{
 		addCaller(caller);
 		this.url = url;
 		this.retrievalProperties = retrievalProperties;
 		this.retriever = retriever;
+		this.scheduler = scheduler;
+		this.priority = retrievalProperties.getPriority();
 	}
 
 	void addCaller(Object caller)
@@ -69,6 +75,23 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 		}
 	}
 
+	/**
+	 * Remove a caller from this retrieval.
+	 * 
+	 * @param caller
+	 *            Caller to remove
+	 * @return Number of callers remaining
+	 */
+	int removeCaller(Object caller)
+	{
+		synchronized (callers)
+		{
+			callers.remove(caller);
+			listeners.callersChanged(this);
+			return callers.size();
+		}
+	}
+
 	RetrieverResult retrieve(IRetrieverMonitor monitor) throws Exception
 	{
 		if (retrievalProperties.isUseCache())
@@ -167,44 +190,110 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 					@Override
 					public void done(IJobChangeEvent event)
 					{
-						RetrieverResult rr = job.getRetrievalResult();
-
-						//ensure the retriever's paused/canceled state matches the result:
-						boolean wasPaused = rr == null ? false : rr.status == RetrieverResultStatus.PAUSED;
-						boolean wasCanceled = rr == null ? true : rr.status == RetrieverResultStatus.CANCELED;
-						setPaused(wasPaused);
-						setCanceled(wasCanceled);
-
-						synchronized (jobSemaphore)
-						{
-							job.removeJobChangeListener(this);
-							job = null;
-						}
-
-						synchronized (listenersMutex)
-						{
-							result = rr == null ? null : rr.result;
-							if (wasPaused)
-							{
-								listeners.paused(Retrieval.this);
-							}
-							else
-							{
-								listeners.complete(Retrieval.this);
-							}
-						}
+						event.getJob().removeJobChangeListener(this);
+						scheduler.finished(Retrieval.this);
+						jobDone(((RetrievalJob) event.getJob()).getRetrievalResult());
 					}
 				});
+				queued = true;
+			}
+			else
+			{
+				return;
+			}
+		}
+		updateStatus(RetrievalStatus.QUEUED);
+		scheduler.schedule(this);
+
+		//a cancel() before the scheduler knew about this retrieval couldn't
+		//remove it from the queue, so check again now that it is scheduled
+		boolean canceledBeforeScheduled;
+		synchronized (jobSemaphore)
+		{
+			canceledBeforeScheduled = canceled && queued && scheduler.remove(this);
+		}
+		if (canceledBeforeScheduled)
+		{
+			jobDone(null);
+		}
+	}
+
+	/**
+	 * Called by the {@link RetrievalScheduler} when this retrieval is allowed
+	 * to run.
+	 * 
+	 * @return True if the retrieval job was started
+	 */
+	boolean dispatch()
+	{
+		synchronized (jobSemaphore)
+		{
+			if (!queued || job == null)
+			{
+				return false;
+			}
+			queued = false;
+			jobSemaphore.notifyAll();
+			if (!canceled)
+			{
 				try
 				{
 					job.schedule();
+					return true;
 				}
 				catch (IllegalStateException e)
 				{
 					//job manager shutdown, ignore
+					job = null;
+					return false;
 				}
 			}
 		}
+		//canceled before the job was scheduled, so complete the retrieval as canceled
+		jobDone(null);
+		return false;
+	}
+
+	private void jobDone(RetrieverResult rr)
+	{
+		//ensure the retriever's paused/canceled state matches the result:
+		boolean wasPaused = rr == null ? false : rr.status == RetrieverResultStatus.PAUSED;
+		boolean wasCanceled = rr == null ? true : rr.status == RetrieverResultStatus.CANCELED;
+		setPaused(wasPaused);
+		setCanceled(wasCanceled);
+
+		synchronized (jobSemaphore)
+		{
+			job = null;
+			queued = false;
+			jobSemaphore.notifyAll();
+		}
+
+		synchronized (listenersMutex)
+		{
+			result = rr == null ? null : rr.result;
+			if (wasPaused)
+			{
+				listeners.paused(Retrieval.this);
+			}
+			else
+			{
+				listeners.complete(Retrieval.this);
+			}
+		}
+	}
+
+	@Override
+	public int getPriority()
+	{
+		return priority;
+	}
+
+	@Override
+	public void setPriority(int priority)
+	{
+		this.priority = priority;
+		scheduler.reprioritise(this, priority);
 	}
 
 	@Override
@@ -243,13 +332,20 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	{
 		synchronized (jobSemaphore)
 		{
-			//can only cancel a currently running job
-			if (job != null)
+			//can only cancel a currently queued or running job
+			if (job == null)
+			{
+				return;
+			}
+			setCanceled(true);
+			if (!queued || !scheduler.remove(this))
 			{
-				setCanceled(true);
 				job.cancel();
+				return;
 			}
 		}
+		//job was never scheduled, so complete the retrieval as canceled
+		jobDone(null);
 	}
 
 	@Override
@@ -308,6 +404,11 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 		RetrievalJob job;
 		synchronized (jobSemaphore)
 		{
+			//queued jobs haven't yet been scheduled, so can't be joined
+			while (queued)
+			{
+				jobSemaphore.wait();
+			}
 			job = this.job;
 		}
 		if (job != null)
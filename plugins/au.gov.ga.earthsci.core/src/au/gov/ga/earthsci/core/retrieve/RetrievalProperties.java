@@ -27,6 +27,7 @@ public class RetrievalProperties implements IRetrievalProperties
 	private int connectTimeout = 30000; //30 seconds
 	private int readTimeout = 30000; //30 seconds
 	private boolean fileRequired = false;
+	private int priority = PRIORITY_NORMAL;
 
 	@Override
 	public boolean isUseCache()
@@ -82,4 +83,15 @@ public class RetrievalProperties implements IRetrievalProperties
 	{
 		this.fileRequired = fileRequired;
 	}
+
+	@Override
+	public int getPriority()
+	{
+		return priority;
+	}
+
+	public void setPriority(int priority)
+	{
+		this.priority = priority;
+	}
 }
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Schedules {@link Retrieval}s for execution, limiting the number of
+ * retrievals that run concurrently, both globally and per host.
+ * <p/>
+ * Retrievals that can't be run immediately are queued, and are run in order of
+ * their priority (highest first), and then in the order they were scheduled.
+ * Queued retrievals can be re-prioritised or removed from the queue.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalScheduler
+{
+	public final static int DEFAULT_MAX_CONCURRENT = 16;
+	public final static int DEFAULT_MAX_CONCURRENT_PER_HOST = 6;
+
+	private final static long THROUGHPUT_WINDOW_MILLIS = 60000;
+
+	private final TreeSet<QueuedRetrieval> queue = new TreeSet<QueuedRetrieval>();
+	private final Map<Retrieval, QueuedRetrieval> queued = new HashMap<Retrieval, QueuedRetrieval>();
+	private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+	private final Map<Retrieval, String> running = new HashMap<Retrieval, String>();
+	private final LinkedList<Long> completionTimes = new LinkedList<Long>();
+	private long sequence = 0;
+	private long totalWaitMillis = 0;
+	private long dispatchedCount = 0;
+
+	private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+	private int maxConcurrentPerHost = DEFAULT_MAX_CONCURRENT_PER_HOST;
+
+	/**
+	 * Schedule the given retrieval. The retrieval's
+	 * {@link Retrieval#dispatch()} method will be called when the retrieval is
+	 * allowed to run.
+	 * 
+	 * @param retrieval
+	 *            Retrieval to schedule
+	 */
+	public void schedule(Retrieval retrieval)
+	{
+		synchronized (this)
+		{
+			if (queued.containsKey(retrieval) || running.containsKey(retrieval))
+			{
+				return;
+			}
+			QueuedRetrieval q = new QueuedRetrieval(retrieval, retrieval.getPriority(), sequence++);
+			queue.add(q);
+			queued.put(retrieval, q);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Notify this scheduler that a retrieval previously dispatched has
+	 * finished, freeing its slot for another queued retrieval.
+	 * 
+	 * @param retrieval
+	 *            Retrieval that finished
+	 */
+	public void finished(Retrieval retrieval)
+	{
+		synchronized (this)
+		{
+			String host = running.remove(retrieval);
+			if (host == null)
+			{
+				return;
+			}
+			decrementHost(host);
+			long now = System.currentTimeMillis();
+			completionTimes.add(now);
+			pruneCompletionTimes(now);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Remove the given retrieval from the queue, if it hasn't yet been
+	 * dispatched.
+	 * 
+	 * @param retrieval
+	 *            Retrieval to remove
+	 * @return True if the retrieval was queued and has been removed
+	 */
+	public synchronized boolean remove(Retrieval retrieval)
+	{
+		QueuedRetrieval q = queued.remove(retrieval);
+		if (q == null)
+		{
+			return false;
+		}
+		queue.remove(q);
+		return true;
+	}
+
+	/**
+	 * Change the priority of the given retrieval, if it is queued.
+	 * 
+	 * @param retrieval
+	 *            Retrieval to re-prioritise
+	 * @param priority
+	 *            New priority
+	 */
+	public void reprioritise(Retrieval retrieval, int priority)
+	{
+		synchronized (this)
+		{
+			QueuedRetrieval q = queued.get(retrieval);
+			if (q == null || q.priority == priority)
+			{
+				return;
+			}
+			queue.remove(q);
+			QueuedRetrieval replacement = new QueuedRetrieval(retrieval, priority, q.sequence, q.queuedTime);
+			queue.add(replacement);
+			queued.put(retrieval, replacement);
+		}
+		dispatch();
+	}
+
+	/**
+	 * @return Is the given retrieval waiting in the queue?
+	 */
+	public synchronized boolean isQueued(Retrieval retrieval)
+	{
+		return queued.containsKey(retrieval);
+	}
+
+	public synchronized int getMaxConcurrent()
+	{
+		return maxConcurrent;
+	}
+
+	public void setMaxConcurrent(int maxConcurrent)
+	{
+		synchronized (this)
+		{
+			this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : DEFAULT_MAX_CONCURRENT;
+		}
+		dispatch();
+	}
+
+	public synchronized int getMaxConcurrentPerHost()
+	{
+		return maxConcurrentPerHost;
+	}
+
+	public void setMaxConcurrentPerHost(int maxConcurrentPerHost)
+	{
+		synchronized (this)
+		{
+			this.maxConcurrentPerHost =
+					maxConcurrentPerHost > 0 ? maxConcurrentPerHost : DEFAULT_MAX_CONCURRENT_PER_HOST;
+		}
+		dispatch();
+	}
+
+	/**
+	 * @return A snapshot of the current state of this scheduler
+	 */
+	public synchronized RetrievalSchedulerStatistics getStatistics()
+	{
+		long now = System.currentTimeMillis();
+		pruneCompletionTimes(now);
+		long oldestWait = queue.isEmpty() ? 0 : now - oldestQueuedTime();
+		long averageWait = dispatchedCount == 0 ? 0 : totalWaitMillis / dispatchedCount;
+		float throughput = completionTimes.size() * 60000f / THROUGHPUT_WINDOW_MILLIS;
+		return new RetrievalSchedulerStatistics(queue.size(), running.size(), averageWait, oldestWait, throughput);
+	}
+
+	private long oldestQueuedTime()
+	{
+		long oldest = Long.MAX_VALUE;
+		for (QueuedRetrieval q : queue)
+		{
+			oldest = Math.min(oldest, q.queuedTime);
+		}
+		return oldest;
+	}
+
+	private void dispatch()
+	{
+		LinkedList<Retrieval> toDispatch = new LinkedList<Retrieval>();
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			Iterator<QueuedRetrieval> iterator = queue.iterator();
+			while (running.size() < maxConcurrent && iterator.hasNext())
+			{
+				QueuedRetrieval q = iterator.next();
+				String host = getHost(q.retrieval);
+				if (!host.isEmpty() && getRunningCount(host) >= maxConcurrentPerHost)
+				{
+					//host is busy, leave queued and try lower priority retrievals for other hosts
+					continue;
+				}
+				iterator.remove();
+				queued.remove(q.retrieval);
+				running.put(q.retrieval, host);
+				runningPerHost.put(host, getRunningCount(host) + 1);
+				totalWaitMillis += now - q.queuedTime;
+				dispatchedCount++;
+				toDispatch.add(q.retrieval);
+			}
+		}
+
+		//dispatch outside of the lock, as retrievals may call back into the scheduler
+		for (Retrieval retrieval : toDispatch)
+		{
+			if (!retrieval.dispatch())
+			{
+				finished(retrieval);
+			}
+		}
+	}
+
+	private int getRunningCount(String host)
+	{
+		Integer count = runningPerHost.get(host);
+		return count == null ? 0 : count;
+	}
+
+	private void decrementHost(String host)
+	{
+		int count = getRunningCount(host) - 1;
+		if (count <= 0)
+		{
+			runningPerHost.remove(host);
+		}
+		else
+		{
+			runningPerHost.put(host, count);
+		}
+	}
+
+	private void pruneCompletionTimes(long now)
+	{
+		while (!completionTimes.isEmpty() && completionTimes.getFirst() < now - THROUGHPUT_WINDOW_MILLIS)
+		{
+			completionTimes.removeFirst();
+		}
+	}
+
+	private static String getHost(Retrieval retrieval)
+	{
+		String host = retrieval.getURL().getHost();
+		return host == null ? "" : host.toLowerCase(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Queue entry, ordered by priority (descending) then sequence (ascending).
+	 */
+	private static class QueuedRetrieval implements Comparable<QueuedRetrieval>
+	{
+		private final Retrieval retrieval;
+		private final int priority;
+		private final long sequence;
+		private final long queuedTime;
+
+		public QueuedRetrieval(Retrieval retrieval, int priority, long sequence)
+		{
+			this(retrieval, priority, sequence, System.currentTimeMillis());
+		}
+
+		public QueuedRetrieval(Retrieval retrieval, int priority, long sequence, long queuedTime)
+		{
+			this.retrieval = retrieval;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.queuedTime = queuedTime;
+		}
+
+		@Override
+		public int compareTo(QueuedRetrieval o)
+		{
+			if (priority != o.priority)
+			{
+				return priority > o.priority ? -1 : 1;
+			}
+			return sequence < o.sequence ? -1 : sequence == o.sequence ? 0 : 1;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+/**
+ * Snapshot of the state of a {@link RetrievalScheduler}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalSchedulerStatistics
+{
+	private final int queued;
+	private final int running;
+	private final long averageWaitMillis;
+	private final long oldestWaitMillis;
+	private final float completedPerMinute;
+
+	public RetrievalSchedulerStatistics(int queued, int running, long averageWaitMillis, long oldestWaitMillis,
+			float completedPerMinute)
+	{
+		this.queued = queued;
+		this.running = running;
+		this.averageWaitMillis = averageWaitMillis;
+		this.oldestWaitMillis = oldestWaitMillis;
+		this.completedPerMinute = completedPerMinute;
+	}
+
+	/**
+	 * @return Number of retrievals waiting to be run
+	 */
+	public int getQueued()
+	{
+		return queued;
+	}
+
+	/**
+	 * @return Number of retrievals currently running
+	 */
+	public int getRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * @return Average time retrievals have waited in the queue before running
+	 */
+	public long getAverageWaitMillis()
+	{
+		return averageWaitMillis;
+	}
+
+	/**
+	 * @return Time the longest waiting queued retrieval has been waiting
+	 */
+	public long getOldestWaitMillis()
+	{
+		return oldestWaitMillis;
+	}
+
+	/**
+	 * @return Number of retrievals completed in the last minute
+	 */
+	public float getCompletedPerMinute()
+	{
+		return completedPerMinute;
+	}
+}
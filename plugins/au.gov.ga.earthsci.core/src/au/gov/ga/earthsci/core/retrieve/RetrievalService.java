@@ -27,6 +27,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.extensions.Preference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,9 +37,15 @@ import au.gov.ga.earthsci.common.collection.HashSetAndArrayHashMap;
 import au.gov.ga.earthsci.common.collection.ListMap;
 import au.gov.ga.earthsci.common.collection.SetAndArray;
 import au.gov.ga.earthsci.common.collection.SetAndArrayMap;
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
 
 /**
  * Basic implementation of {@link IRetrievalService}.
+ * <p/>
+ * Started retrievals are run by a {@link RetrievalScheduler}, which limits the
+ * number of concurrent retrievals (globally and per host) as configured in the
+ * {@link RetrievalServicePreferences}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -51,6 +58,7 @@ public class RetrievalService implements IRetrievalService
 	@Inject
 	private IRetrieverFactory retrieverFactory;
 
+	private final RetrievalScheduler scheduler = new RetrievalScheduler();
 	private final Map<URL, Retrieval> urlToRetrieval = new HashMap<URL, Retrieval>();
 	private final SetAndArrayMap<Object, IRetrieval> callerToRetrievals =
 			new HashSetAndArrayHashMap<Object, IRetrieval>();
@@ -60,6 +68,15 @@ public class RetrievalService implements IRetrievalService
 	private final ListMap<Object, IRetrievalServiceListener> callerListeners =
 			new ArrayListHashMap<Object, IRetrievalServiceListener>();
 
+	@Inject
+	public void preferencesChanged(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = RetrievalServicePreferences.MAX_CONCURRENT) int maxConcurrent,
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = RetrievalServicePreferences.MAX_CONCURRENT_PER_HOST) int maxConcurrentPerHost)
+	{
+		scheduler.setMaxConcurrent(maxConcurrent);
+		scheduler.setMaxConcurrentPerHost(maxConcurrentPerHost);
+	}
+
 	@PreDestroy
 	public void cancelAll()
 	{
@@ -108,7 +125,7 @@ public class RetrievalService implements IRetrievalService
 				}
 
 				//create a retrieval object
-				retrieval = new Retrieval(caller, url, retrievalProperties, retriever);
+				retrieval = new Retrieval(caller, url, retrievalProperties, retriever, scheduler);
 				if (!ignoreDuplicates)
 				{
 					urlToRetrieval.put(url, retrieval);
@@ -151,6 +168,42 @@ public class RetrievalService implements IRetrievalService
 		}
 	}
 
+	@Override
+	public void removeCaller(Object caller)
+	{
+		List<Retrieval> toCancel = new ArrayList<Retrieval>();
+		synchronized (urlToRetrieval)
+		{
+			SetAndArray<IRetrieval> retrievals = callerToRetrievals.get(caller);
+			if (retrievals == null)
+			{
+				return;
+			}
+			for (IRetrieval retrieval : retrievals.getArray(IRetrieval.class))
+			{
+				Retrieval r = (Retrieval) retrieval;
+				callerToRetrievals.removeSingle(caller, r);
+				fireRetrievalRemoved(caller, r);
+				if (r.removeCaller(caller) == 0 && scheduler.isQueued(r))
+				{
+					toCancel.add(r);
+				}
+			}
+		}
+
+		//cancel outside the lock, as cancelation removes the retrieval from this service
+		for (Retrieval retrieval : toCancel)
+		{
+			retrieval.cancel();
+		}
+	}
+
+	@Override
+	public RetrievalSchedulerStatistics getSchedulerStatistics()
+	{
+		return scheduler.getStatistics();
+	}
+
 	@Override
 	public IRetrieval getRetrieval(URL url)
 	{
@@ -237,6 +290,21 @@ public class RetrievalService implements IRetrievalService
 		}
 	}
 
+	@Override
+	public URLCacheStatistics getCacheStatistics()
+	{
+		URLCacheStatistics statistics = new URLCacheStatistics();
+		for (IRetriever retriever : retrieverFactory.getRetrievers())
+		{
+			URLCacheStatistics retrieverStatistics = retriever.getCacheStatistics();
+			if (retrieverStatistics != null)
+			{
+				statistics.add(retrieverStatistics);
+			}
+		}
+		return statistics;
+	}
+
 	private void fireRetrievalAdded(IRetrieval retrieval)
 	{
 		synchronized (listeners)
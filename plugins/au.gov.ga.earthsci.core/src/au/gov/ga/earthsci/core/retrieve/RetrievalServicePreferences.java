@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+
+/**
+ * Initializes the default preferences for the {@link RetrievalService}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalServicePreferences extends AbstractPreferenceInitializer
+{
+	public static final String MAX_CONCURRENT = "retrievalServiceMaxConcurrent"; //$NON-NLS-1$
+	public static final String MAX_CONCURRENT_PER_HOST = "retrievalServiceMaxConcurrentPerHost"; //$NON-NLS-1$
+
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IPreferenceStore store = new ScopedPreferenceStore(DefaultScope.INSTANCE, PreferenceConstants.QUALIFIER_ID);
+		store.setDefault(MAX_CONCURRENT, RetrievalScheduler.DEFAULT_MAX_CONCURRENT);
+		store.setDefault(MAX_CONCURRENT_PER_HOST, RetrievalScheduler.DEFAULT_MAX_CONCURRENT_PER_HOST);
+	}
+}
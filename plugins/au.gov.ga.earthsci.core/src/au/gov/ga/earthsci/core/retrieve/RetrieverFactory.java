@@ -147,6 +147,22 @@ public class RetrieverFactory implements IRetrieverFactory
 		}
 	}
 
+	@Override
+	public IRetriever[] getRetrievers()
+	{
+		retrieversLock.readLock().lock();
+		try
+		{
+			Set<IRetriever> all = new LinkedHashSet<IRetriever>(retrievers);
+			all.add(getDefaultRetriever());
+			return all.toArray(new IRetriever[all.size()]);
+		}
+		finally
+		{
+			retrieversLock.readLock().unlock();
+		}
+	}
+
 	public IRetriever getDefaultRetriever()
 	{
 		return defaultRetriever;
@@ -17,8 +17,11 @@ package au.gov.ga.earthsci.core.retrieve.cache;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
@@ -26,23 +29,52 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.util.Properties;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import au.gov.ga.earthsci.common.util.HashReadWriteLocker;
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
+import au.gov.ga.earthsci.core.retrieve.result.MappedRetrievalData;
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 
 /**
  * {@link IURLCache} implementation that uses a directory in a file system for
  * caching data.
+ * <p/>
+ * The cache can optionally be limited to a quota (see
+ * {@link #setQuota(long)}). Completed resources are tracked in least recently
+ * used order, and a background sweeper evicts the least recently used
+ * resources when the cache grows beyond the quota. Resources that are
+ * currently locked for reading or writing are never evicted.
+ * <p/>
+ * An MD5 digest of each resource is calculated while it is being written, and
+ * stored beside the resource. This is used to detect unchanged resources in
+ * {@link #writeComplete(URL, long, String)} without re-reading either file,
+ * and to verify the integrity of resources when they are read back.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -52,9 +84,24 @@ public class FileURLCache implements IURLCache
 
 	private final File directory;
 	private final HashReadWriteLocker locker = new HashReadWriteLocker();
+	private final FileURLCacheIndex index;
 	private final static String PARTIAL_SUFFIX = ".partial"; //$NON-NLS-1$
 	private final static String CONTENT_TYPE_SUFFIX = ".contenttype"; //$NON-NLS-1$
-	private final static String URLS_PROPERTIES_FILENAME = "urls.properties"; //$NON-NLS-1$
+	private final static String DIGEST_SUFFIX = ".md5"; //$NON-NLS-1$
+	private final static String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+	private final static long SWEEP_INTERVAL_SECONDS = 60;
+	private final static double SWEEP_TARGET_RATIO = 0.9;
+
+	private final URLCacheStatistics statistics = new URLCacheStatistics();
+	private final Map<File, Long> usage = new LinkedHashMap<File, Long>(16, 0.75f, true);
+	private long usageBytes = 0;
+	private boolean usageScanned = false;
+	private volatile long quota = 0;
+	private ScheduledExecutorService sweeper;
+	private final Map<File, byte[]> partialDigests = new ConcurrentHashMap<File, byte[]>();
+	private final AtomicBoolean sweepPending = new AtomicBoolean(false);
+	private final Object sweepLock = new Object();
+	private final List<IURLCacheListener> listeners = new ArrayList<IURLCacheListener>();
 
 	public FileURLCache(File directory)
 	{
@@ -63,24 +110,25 @@ public class FileURLCache implements IURLCache
 			throw new NullPointerException("Directory cannot be null"); //$NON-NLS-1$
 		}
 		this.directory = directory;
+		this.index = new FileURLCacheIndex(directory);
 	}
 
 	@Override
 	public boolean isPartial(URL url)
 	{
-		return isFileLocked(getPartialFile(url));
+		return isFileLocked(existingFileForURL(url, PARTIAL_SUFFIX));
 	}
 
 	@Override
 	public long getPartialLength(URL url)
 	{
-		return lengthLocked(getPartialFile(url));
+		return lengthLocked(existingFileForURL(url, PARTIAL_SUFFIX));
 	}
 
 	@Override
 	public long getPartialLastModified(URL url)
 	{
-		return lastModifiedLocked(getPartialFile(url));
+		return lastModifiedLocked(existingFileForURL(url, PARTIAL_SUFFIX));
 	}
 
 	@Override
@@ -98,11 +146,27 @@ public class FileURLCache implements IURLCache
 			FileChannel channel = raf.getChannel();
 			offset = Math.max(0l, offset);
 			channel.truncate(offset);
+
+			//digest the bytes as they are written, so that writeComplete doesn't need to re-read the file
+			final MessageDigest digest = createDigest();
+			OutputStream os = Channels.newOutputStream(channel);
+			if (digest != null)
+			{
+				updateDigest(digest, channel, offset);
+				os = new DigestOutputStream(os, digest);
+			}
 			channel.position(offset);
-			return new FilterOutputStream(Channels.newOutputStream(channel))
+
+			return new FilterOutputStream(os)
 			{
 				private boolean unlocked = false;
 
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					out.write(b, off, len);
+				}
+
 				@Override
 				public void close() throws IOException
 				{
@@ -115,6 +179,10 @@ public class FileURLCache implements IURLCache
 						if (!unlocked)
 						{
 							unlocked = true;
+							if (digest != null)
+							{
+								partialDigests.put(partialFile, digest.digest());
+							}
 							locker.unlockWrite(partialFile);
 						}
 					}
@@ -141,10 +209,17 @@ public class FileURLCache implements IURLCache
 		locker.lockWrite(partialFile);
 		try
 		{
+			byte[] partialDigest = partialDigests.remove(partialFile);
+			if (partialDigest == null)
+			{
+				partialDigest = fileMD5(partialFile);
+			}
+
 			locker.lockRead(completeFile);
 			try
 			{
-				if (fileEquals(partialFile, completeFile))
+				byte[] completeDigest = completeFile.isFile() ? getDigest(completeFile) : null;
+				if (partialDigest != null && completeDigest != null && byteArrayEquals(partialDigest, completeDigest))
 				{
 					partialFile.delete();
 					return false;
@@ -164,6 +239,8 @@ public class FileURLCache implements IURLCache
 					completeFile.setLastModified(lastModified);
 				}
 				setContentType(url, contentType, completeFile);
+				writeDigest(completeFile, partialDigest);
+				recordUsage(completeFile, completeFile.length());
 			}
 			finally
 			{
@@ -174,6 +251,7 @@ public class FileURLCache implements IURLCache
 		{
 			locker.unlockWrite(partialFile);
 		}
+		fireResourceRemoved(url);
 		return true;
 	}
 
@@ -188,6 +266,42 @@ public class FileURLCache implements IURLCache
 		return byteArrayEquals(md51, md52);
 	}
 
+	/**
+	 * Check the integrity of the cached resource for the given URL, by
+	 * comparing its contents against the digest stored when the resource was
+	 * written. Resources that fail verification are removed from the cache.
+	 * 
+	 * @param url
+	 *            URL to verify
+	 * @return False if the cached resource doesn't match its stored digest,
+	 *         true otherwise (including if no digest was stored)
+	 */
+	public boolean verify(URL url)
+	{
+		File completeFile = existingFileForURL(url, ""); //$NON-NLS-1$
+		if (completeFile == null)
+		{
+			return true;
+		}
+		boolean valid;
+		locker.lockRead(completeFile);
+		try
+		{
+			byte[] stored = readDigest(completeFile);
+			valid = stored == null || !completeFile.isFile() || byteArrayEquals(stored, fileMD5(completeFile));
+		}
+		finally
+		{
+			locker.unlockRead(completeFile);
+		}
+		if (!valid)
+		{
+			logger.warn("Cached resource failed integrity check, removing: " + url); //$NON-NLS-1$
+			invalidate(completeFile);
+		}
+		return valid;
+	}
+
 	public static boolean byteArrayEquals(byte[] b1, byte[] b2)
 	{
 		if (b1 == b2)
@@ -208,6 +322,125 @@ public class FileURLCache implements IURLCache
 		return true;
 	}
 
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Update the digest with the first <code>length</code> bytes of the
+	 * channel, used when resuming a partial write.
+	 */
+	private static void updateDigest(MessageDigest digest, FileChannel channel, long length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = 0;
+		channel.position(0);
+		while (position < length)
+		{
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), length - position));
+			int read = channel.read(buffer);
+			if (read < 0)
+			{
+				break;
+			}
+			digest.update(buffer.array(), 0, read);
+			position += read;
+		}
+	}
+
+	/**
+	 * Get the digest of the given complete file, from the stored digest file if
+	 * it exists (otherwise by reading the file, for resources cached before
+	 * digests were stored). Caller must hold a lock on the complete file.
+	 */
+	private byte[] getDigest(File completeFile)
+	{
+		byte[] digest = readDigest(completeFile);
+		return digest != null ? digest : fileMD5(completeFile);
+	}
+
+	private static File getDigestFile(File completeFile)
+	{
+		return new File(completeFile.getPath() + DIGEST_SUFFIX);
+	}
+
+	private static byte[] readDigest(File completeFile)
+	{
+		File digestFile = getDigestFile(completeFile);
+		if (!digestFile.isFile())
+		{
+			return null;
+		}
+		DataInputStream dis = null;
+		try
+		{
+			dis = new DataInputStream(new FileInputStream(digestFile));
+			byte[] digest = new byte[(int) digestFile.length()];
+			dis.readFully(digest);
+			return digest;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		finally
+		{
+			if (dis != null)
+			{
+				try
+				{
+					dis.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
+	private void writeDigest(File completeFile, byte[] digest)
+	{
+		File digestFile = getDigestFile(completeFile);
+		if (digest == null)
+		{
+			digestFile.delete();
+			return;
+		}
+		OutputStream os = null;
+		try
+		{
+			os = new FileOutputStream(digestFile);
+			os.write(digest);
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error writing digest for: " + completeFile, e); //$NON-NLS-1$
+			digestFile.delete();
+		}
+		finally
+		{
+			if (os != null)
+			{
+				try
+				{
+					os.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
 	public static byte[] fileMD5(File file)
 	{
 		try
@@ -240,25 +473,40 @@ public class FileURLCache implements IURLCache
 	@Override
 	public boolean isComplete(URL url)
 	{
-		return isFileLocked(getCompleteFile(url));
+		File completeFile = existingFileForURL(url, ""); //$NON-NLS-1$
+		boolean complete = isFileLocked(completeFile);
+		if (complete)
+		{
+			statistics.hit();
+			touchUsage(completeFile);
+		}
+		else
+		{
+			statistics.miss();
+		}
+		return complete;
 	}
 
 	@Override
 	public long getLength(URL url)
 	{
-		return lengthLocked(getCompleteFile(url));
+		return lengthLocked(existingFileForURL(url, "")); //$NON-NLS-1$
 	}
 
 	@Override
 	public long getLastModified(URL url)
 	{
-		return lastModifiedLocked(getCompleteFile(url));
+		return lastModifiedLocked(existingFileForURL(url, "")); //$NON-NLS-1$
 	}
 
 	@Override
 	public String getContentType(URL url)
 	{
-		File contentTypeFile = getContentTypeFile(url);
+		File contentTypeFile = existingFileForURL(url, CONTENT_TYPE_SUFFIX);
+		if (contentTypeFile == null)
+		{
+			return null;
+		}
 		try
 		{
 			locker.lockRead(contentTypeFile);
@@ -316,6 +564,10 @@ public class FileURLCache implements IURLCache
 
 	protected boolean isFileLocked(File file)
 	{
+		if (file == null)
+		{
+			return false;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -329,6 +581,10 @@ public class FileURLCache implements IURLCache
 
 	protected long lengthLocked(File file)
 	{
+		if (file == null)
+		{
+			return 0;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -342,6 +598,10 @@ public class FileURLCache implements IURLCache
 
 	protected long lastModifiedLocked(File file)
 	{
+		if (file == null)
+		{
+			return 0;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -418,13 +678,60 @@ public class FileURLCache implements IURLCache
 	@Override
 	public InputStream read(URL url) throws IOException
 	{
-		final File completeFile = getCompleteFile(url);
+		final File completeFile = existingFileForURL(url, ""); //$NON-NLS-1$
+		if (completeFile == null)
+		{
+			throw new FileNotFoundException(url.toString());
+		}
 		locker.lockRead(completeFile);
 		try
 		{
-			return new FilterInputStream(new FileInputStream(completeFile))
+			touchUsage(completeFile);
+			final byte[] storedDigest = readDigest(completeFile);
+			final MessageDigest digest = storedDigest != null ? createDigest() : null;
+			InputStream is = new FileInputStream(completeFile);
+			if (digest != null)
+			{
+				is = new DigestInputStream(is, digest);
+			}
+			return new FilterInputStream(is)
 			{
 				private boolean unlocked = false;
+				private boolean eof = false;
+
+				@Override
+				public int read() throws IOException
+				{
+					int b = super.read();
+					eof |= b < 0;
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException
+				{
+					int read = super.read(b, off, len);
+					eof |= read < 0;
+					return read;
+				}
+
+				@Override
+				public long skip(long n) throws IOException
+				{
+					if (digest == null)
+					{
+						return super.skip(n);
+					}
+					//read skipped bytes so that they are included in the digest
+					byte[] buffer = new byte[(int) Math.max(0, Math.min(n, 8192))];
+					return Math.max(0, read(buffer, 0, buffer.length));
+				}
+
+				@Override
+				public boolean markSupported()
+				{
+					return false;
+				}
 
 				@Override
 				public void close() throws IOException
@@ -439,6 +746,12 @@ public class FileURLCache implements IURLCache
 						{
 							unlocked = true;
 							locker.unlockRead(completeFile);
+							//verify the digest if the entire resource was read
+							if (digest != null && eof && !byteArrayEquals(storedDigest, digest.digest()))
+							{
+								logger.warn("Cached resource failed integrity check, removing: " + completeFile); //$NON-NLS-1$
+								invalidate(completeFile);
+							}
 						}
 					}
 				}
@@ -451,130 +764,480 @@ public class FileURLCache implements IURLCache
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The resource is read locked until the mapping is closed. Unlike
+	 * {@link #read(URL)}, the resource's digest is not verified.
+	 */
 	@Override
-	public File getFile(URL url)
+	public IMappedRetrievalData map(URL url) throws IOException
 	{
-		return getCompleteFile(url);
+		final File completeFile = existingFileForURL(url, ""); //$NON-NLS-1$
+		if (completeFile == null)
+		{
+			throw new FileNotFoundException(url.toString());
+		}
+		locker.lockRead(completeFile);
+		try
+		{
+			if (!completeFile.isFile())
+			{
+				throw new FileNotFoundException(completeFile.getAbsolutePath());
+			}
+			touchUsage(completeFile);
+			return MappedRetrievalData.map(completeFile, new Closeable()
+			{
+				@Override
+				public void close()
+				{
+					locker.unlockRead(completeFile);
+				}
+			});
+		}
+		catch (IOException e)
+		{
+			locker.unlockRead(completeFile);
+			throw e;
+		}
 	}
 
-	private File getCompleteFile(URL url)
+	@Override
+	public URLCacheStatistics getStatistics()
 	{
-		return fileForURL(url, ""); //$NON-NLS-1$
+		return statistics;
 	}
 
-	private File getPartialFile(URL url)
+	/**
+	 * @return Maximum size in bytes of the completed resources in this cache; 0
+	 *         means unlimited
+	 */
+	public long getQuota()
 	{
-		return fileForURL(url, PARTIAL_SUFFIX);
+		return quota;
 	}
 
-	private File getContentTypeFile(URL url)
+	/**
+	 * Set the maximum size in bytes of the completed resources in this cache.
+	 * When the cache exceeds this size, the least recently used resources are
+	 * evicted by a background sweeper. A quota of 0 means unlimited.
+	 * 
+	 * @param quota
+	 *            Maximum cache size in bytes
+	 */
+	public synchronized void setQuota(long quota)
 	{
-		return fileForURL(url, CONTENT_TYPE_SUFFIX);
+		this.quota = Math.max(0, quota);
+		statistics.setQuota(this.quota);
+		if (this.quota > 0 && sweeper == null)
+		{
+			sweeper = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("URL cache sweeper")); //$NON-NLS-1$
+			sweeper.scheduleWithFixedDelay(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					sweep();
+				}
+			}, 0, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+		else if (this.quota == 0 && sweeper != null)
+		{
+			sweeper.shutdown();
+			sweeper = null;
+		}
 	}
 
-	private File fileForURL(URL url, String suffix)
+	/**
+	 * Evict least recently used resources until the cache is below the quota.
+	 * Normally called by the background sweeper.
+	 */
+	public void sweep()
 	{
-		String hashDirectory = !Util.isBlank(url.getHost()) ? url.getHost() + File.separator : ""; //$NON-NLS-1$
-		hashDirectory += getHashDirectory(url);
+		sweepPending.set(false);
+		long quota = this.quota;
+		if (quota <= 0)
+		{
+			return;
+		}
 
-		String extension = au.gov.ga.earthsci.common.util.Util.getExtension(url.getPath());
-		if (extension == null || extension.length() > 30)
+		synchronized (sweepLock)
 		{
-			//probably not an extension
-			extension = ""; //$NON-NLS-1$
+			scanUsage();
+
+			long target = (long) (quota * SWEEP_TARGET_RATIO);
+			List<Entry<File, Long>> candidates;
+			synchronized (usage)
+			{
+				if (usageBytes <= quota)
+				{
+					return;
+				}
+				candidates = new ArrayList<Entry<File, Long>>(usage.entrySet());
+			}
+
+			for (Entry<File, Long> candidate : candidates)
+			{
+				synchronized (usage)
+				{
+					if (usageBytes <= target)
+					{
+						break;
+					}
+				}
+				evict(candidate.getKey());
+			}
 		}
+	}
 
-		File propertiesFile = new File(directory, hashDirectory + File.separator + URLS_PROPERTIES_FILENAME);
-		locker.lockWrite(propertiesFile);
+	private void evict(File completeFile)
+	{
+		long length = invalidate(completeFile);
+		if (length >= 0)
+		{
+			statistics.evicted(length);
+		}
+	}
+
+	/**
+	 * Remove the given complete file (and its associated files) from the
+	 * cache, unless it is currently locked for reading or writing. Listeners
+	 * are notified if the file was removed.
+	 * 
+	 * @return Length of the removed file, or -1 if nothing was removed
+	 */
+	private long invalidate(File completeFile)
+	{
+		long length = delete(completeFile);
+		if (length >= 0)
+		{
+			fireResourceRemoved(completeFile);
+		}
+		return length;
+	}
+
+	private long delete(File completeFile)
+	{
+		//don't wait for files that are currently being read or written
+		if (!locker.tryLockWrite(completeFile))
+		{
+			return -1;
+		}
 		try
 		{
-			Properties properties = new Properties();
-			if (propertiesFile.exists())
+			if (!completeFile.exists())
+			{
+				removeUsage(completeFile);
+				return -1;
+			}
+			long length = completeFile.length();
+			if (!completeFile.delete())
+			{
+				return -1;
+			}
+			getDigestFile(completeFile).delete();
+			File contentTypeFile = new File(completeFile.getPath() + CONTENT_TYPE_SUFFIX);
+			if (locker.tryLockWrite(contentTypeFile))
 			{
 				try
 				{
-					loadProperties(properties, propertiesFile);
+					contentTypeFile.delete();
 				}
-				catch (IOException e)
+				finally
 				{
-					logger.error("Error reading url properties file", e); //$NON-NLS-1$
+					locker.unlockWrite(contentTypeFile);
 				}
 			}
-			String filename = properties.getProperty(url.toString());
-			if (filename == null)
+			removeUsage(completeFile);
+			return length;
+		}
+		finally
+		{
+			locker.unlockWrite(completeFile);
+		}
+	}
+
+	@Override
+	public void addListener(IURLCacheListener listener)
+	{
+		synchronized (listeners)
+		{
+			listeners.add(listener);
+		}
+	}
+
+	@Override
+	public void removeListener(IURLCacheListener listener)
+	{
+		synchronized (listeners)
+		{
+			listeners.remove(listener);
+		}
+	}
+
+	private void fireResourceRemoved(URL url)
+	{
+		IURLCacheListener[] array;
+		synchronized (listeners)
+		{
+			array = listeners.toArray(new IURLCacheListener[listeners.size()]);
+		}
+		for (IURLCacheListener listener : array)
+		{
+			listener.resourceRemoved(url);
+		}
+	}
+
+	private void fireResourceRemoved(File completeFile)
+	{
+		synchronized (listeners)
+		{
+			if (listeners.isEmpty())
 			{
-				filename = properties.size() + extension;
+				return;
 			}
-			properties.setProperty(url.toString(), filename);
-			propertiesFile.getParentFile().mkdirs();
+		}
+		//evicted files are only known by name, so find their urls in the index
+		String parent = completeFile.getParentFile().getPath();
+		String root = directory.getPath();
+		if (!parent.startsWith(root) || parent.length() <= root.length())
+		{
+			return;
+		}
+		String bucket = parent.substring(root.length() + 1);
+		for (String url : index.getURLs(bucket, completeFile.getName()))
+		{
 			try
 			{
-				saveProperties(properties, propertiesFile);
+				fireResourceRemoved(new URL(url));
 			}
-			catch (IOException e)
+			catch (MalformedURLException e)
 			{
-				logger.error("Error writing url properties file", e); //$NON-NLS-1$
+				//urls in the index were created from URL objects, so shouldn't happen
 			}
-			return new File(directory, hashDirectory + File.separator + filename + suffix);
 		}
-		finally
+	}
+
+	private void recordUsage(File completeFile, long length)
+	{
+		boolean overQuota;
+		synchronized (usage)
 		{
-			locker.unlockWrite(propertiesFile);
+			Long previous = usage.put(completeFile, length);
+			usageBytes += length - (previous != null ? previous : 0);
+			statistics.setSize(usageBytes);
+			overQuota = quota > 0 && usageBytes > quota;
+		}
+		if (overQuota)
+		{
+			requestSweep();
 		}
 	}
 
-	private static String getHashDirectory(URL url)
+	private void touchUsage(File completeFile)
 	{
-		String hashCode = String.valueOf(url.toString().hashCode());
-		StringBuilder directory = new StringBuilder();
-		if (hashCode.charAt(0) == '-')
+		synchronized (usage)
 		{
-			directory.append('-');
-			hashCode = hashCode.substring(1);
+			//access-ordered map, so a get moves the entry to the most recently used end
+			usage.get(completeFile);
 		}
-		while (hashCode.length() < 10)
+	}
+
+	private void removeUsage(File completeFile)
+	{
+		synchronized (usage)
 		{
-			hashCode = "0" + hashCode; //$NON-NLS-1$
+			Long previous = usage.remove(completeFile);
+			if (previous != null)
+			{
+				usageBytes -= previous;
+				statistics.setSize(usageBytes);
+			}
 		}
-		directory.append(hashCode.substring(0, 3));
-		directory.append(File.separator);
-		directory.append(hashCode.substring(3, 6));
-		directory.append(File.separator);
-		directory.append(hashCode.substring(6));
-		return directory.toString();
 	}
 
-	private static void loadProperties(Properties properties, File file) throws IOException
+	private synchronized void requestSweep()
 	{
-		FileInputStream fis = null;
-		try
+		if (sweeper != null && sweepPending.compareAndSet(false, true))
 		{
-			fis = new FileInputStream(file);
-			properties.load(fis);
+			sweeper.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					sweep();
+				}
+			});
 		}
-		finally
+	}
+
+	/**
+	 * Scan the cache directory for completed resources written in previous
+	 * sessions, so that they can be considered for eviction. As access times
+	 * aren't persisted, the file modification time is used as the initial
+	 * least recently used order.
+	 */
+	private void scanUsage()
+	{
+		synchronized (usage)
 		{
-			if (fis != null)
+			if (usageScanned)
 			{
-				fis.close();
+				return;
 			}
 		}
+
+		List<File> files = new ArrayList<File>();
+		scanDirectory(directory, files);
+		final Map<File, Long> lastModified = new LinkedHashMap<File, Long>();
+		for (File file : files)
+		{
+			lastModified.put(file, file.lastModified());
+		}
+		Collections.sort(files, new Comparator<File>()
+		{
+			@Override
+			public int compare(File o1, File o2)
+			{
+				long l1 = lastModified.get(o1), l2 = lastModified.get(o2);
+				return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+			}
+		});
+
+		synchronized (usage)
+		{
+			//files tracked since startup are more recently used than scanned files, so re-add them afterwards
+			Map<File, Long> tracked = new LinkedHashMap<File, Long>(usage);
+			usage.clear();
+			usageBytes = 0;
+			for (File file : files)
+			{
+				if (!tracked.containsKey(file))
+				{
+					long length = file.length();
+					usage.put(file, length);
+					usageBytes += length;
+				}
+			}
+			for (Entry<File, Long> entry : tracked.entrySet())
+			{
+				usage.put(entry.getKey(), entry.getValue());
+				usageBytes += entry.getValue();
+			}
+			statistics.setSize(usageBytes);
+			usageScanned = true;
+		}
 	}
 
-	private static void saveProperties(Properties properties, File file) throws IOException
+	private static void scanDirectory(File directory, List<File> files)
 	{
-		FileOutputStream fos = null;
-		try
+		File[] children = directory.listFiles();
+		if (children == null)
 		{
-			fos = new FileOutputStream(file);
-			properties.store(fos, null);
+			return;
 		}
-		finally
+		for (File child : children)
 		{
-			if (fos != null)
+			if (child.isDirectory())
+			{
+				scanDirectory(child, files);
+			}
+			else if (isCompleteFile(child))
 			{
-				fos.close();
+				files.add(child);
 			}
 		}
 	}
+
+	private static boolean isCompleteFile(File file)
+	{
+		String name = file.getName();
+		return !(name.endsWith(PARTIAL_SUFFIX) || name.endsWith(CONTENT_TYPE_SUFFIX) || name.endsWith(DIGEST_SUFFIX)
+				|| name.endsWith(TEMP_SUFFIX)
+				|| name.equals(FileURLCacheIndex.URLS_PROPERTIES_FILENAME) || name
+					.equals(FileURLCacheIndex.JOURNAL_FILENAME));
+	}
+
+	@Override
+	public File getFile(URL url)
+	{
+		return getCompleteFile(url);
+	}
+
+	private File getCompleteFile(URL url)
+	{
+		return fileForURL(url, ""); //$NON-NLS-1$
+	}
+
+	private File getPartialFile(URL url)
+	{
+		return fileForURL(url, PARTIAL_SUFFIX);
+	}
+
+	private File getContentTypeFile(URL url)
+	{
+		return fileForURL(url, CONTENT_TYPE_SUFFIX);
+	}
+
+	private File fileForURL(URL url, String suffix)
+	{
+		String hashDirectory = getBucket(url);
+		String filename = index.getOrCreate(hashDirectory, url.toString(), getExtension(url));
+		return new File(directory, hashDirectory + File.separator + filename + suffix);
+	}
+
+	/**
+	 * Find the file for the given URL, without creating a new url mapping if
+	 * one doesn't already exist.
+	 * 
+	 * @return File for the given URL, or null if the URL has never been cached
+	 */
+	private File existingFileForURL(URL url, String suffix)
+	{
+		String hashDirectory = getBucket(url);
+		String filename = index.get(hashDirectory, url.toString());
+		if (filename == null)
+		{
+			return null;
+		}
+		return new File(directory, hashDirectory + File.separator + filename + suffix);
+	}
+
+	private static String getBucket(URL url)
+	{
+		String hashDirectory = !Util.isBlank(url.getHost()) ? url.getHost() + File.separator : ""; //$NON-NLS-1$
+		return hashDirectory + getHashDirectory(url);
+	}
+
+	private static String getExtension(URL url)
+	{
+		String extension = au.gov.ga.earthsci.common.util.Util.getExtension(url.getPath());
+		if (extension == null || extension.length() > 30)
+		{
+			//probably not an extension
+			extension = ""; //$NON-NLS-1$
+		}
+		return extension;
+	}
+
+	private static String getHashDirectory(URL url)
+	{
+		String hashCode = String.valueOf(url.toString().hashCode());
+		StringBuilder directory = new StringBuilder();
+		if (hashCode.charAt(0) == '-')
+		{
+			directory.append('-');
+			hashCode = hashCode.substring(1);
+		}
+		while (hashCode.length() < 10)
+		{
+			hashCode = "0" + hashCode; //$NON-NLS-1$
+		}
+		directory.append(hashCode.substring(0, 3));
+		directory.append(File.separator);
+		directory.append(hashCode.substring(3, 6));
+		directory.append(File.separator);
+		directory.append(hashCode.substring(6));
+		return directory.toString();
+	}
 }
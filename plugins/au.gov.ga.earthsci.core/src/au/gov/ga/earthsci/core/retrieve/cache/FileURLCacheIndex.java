@@ -0,0 +1,514 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the URL to filename mappings stored by the
+ * {@link FileURLCache}.
+ * <p/>
+ * Mappings are grouped into buckets (the hash directories of the cache), each
+ * of which is persisted as a <code>urls.properties</code> file. Buckets are
+ * loaded lazily the first time they are accessed, after which lookups are
+ * resolved from memory without touching the disk.
+ * <p/>
+ * New mappings are appended to a journal file in the cache root, which is
+ * replayed when the index is first used, so that mappings survive a crash.
+ * Once the journal contains more than a threshold number of records, it is
+ * compacted by rewriting the <code>urls.properties</code> files of the
+ * modified buckets and truncating the journal.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FileURLCacheIndex
+{
+	private final static Logger logger = LoggerFactory.getLogger(FileURLCacheIndex.class);
+
+	public final static String URLS_PROPERTIES_FILENAME = "urls.properties"; //$NON-NLS-1$
+	public final static String JOURNAL_FILENAME = "urls.journal"; //$NON-NLS-1$
+	public final static int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+	private final File directory;
+	private final File journalFile;
+	private final int compactionThreshold;
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+	private final Object journalLock = new Object();
+	private Map<String, Map<String, String>> journalEntries;
+	private final Set<String> dirtyBuckets = new HashSet<String>();
+	private DataOutputStream journalStream;
+	private int journalRecordCount = 0;
+
+	public FileURLCacheIndex(File directory)
+	{
+		this(directory, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	public FileURLCacheIndex(File directory, int compactionThreshold)
+	{
+		if (directory == null)
+		{
+			throw new NullPointerException("Directory cannot be null"); //$NON-NLS-1$
+		}
+		this.directory = directory;
+		this.journalFile = new File(directory, JOURNAL_FILENAME);
+		this.compactionThreshold = Math.max(1, compactionThreshold);
+	}
+
+	/**
+	 * Get the filename mapped to the given url within the given bucket.
+	 * 
+	 * @param bucket
+	 *            Bucket (hash directory relative to the cache directory)
+	 * @param url
+	 *            URL to find the filename for
+	 * @return Filename mapped to the url, or null if the url has not been
+	 *         mapped
+	 */
+	public String get(String bucket, String url)
+	{
+		return getBucket(bucket).get(url);
+	}
+
+	/**
+	 * Get the urls mapped to the given filename within the given bucket (the
+	 * reverse of {@link #get(String, String)}).
+	 * 
+	 * @param bucket
+	 *            Bucket (hash directory relative to the cache directory)
+	 * @param filename
+	 *            Filename to find the urls for
+	 * @return Urls mapped to the filename; empty if there are none
+	 */
+	public List<String> getURLs(String bucket, String filename)
+	{
+		return getBucket(bucket).getURLs(filename);
+	}
+
+	/**
+	 * Get the filename mapped to the given url within the given bucket,
+	 * creating and journaling a new mapping if one doesn't already exist.
+	 * 
+	 * @param bucket
+	 *            Bucket (hash directory relative to the cache directory)
+	 * @param url
+	 *            URL to find the filename for
+	 * @param extension
+	 *            Extension to append to newly created filenames
+	 * @return Filename mapped to the url
+	 */
+	public String getOrCreate(String bucket, String url, String extension)
+	{
+		Bucket b = getBucket(bucket);
+		synchronized (b)
+		{
+			String filename = b.get(url);
+			if (filename == null)
+			{
+				filename = b.size() + extension;
+				b.put(url, filename);
+				append(bucket, url, filename);
+			}
+			return filename;
+		}
+	}
+
+	/**
+	 * Write all journaled mappings to their bucket's properties file, and
+	 * truncate the journal.
+	 */
+	public void compact()
+	{
+		synchronized (journalLock)
+		{
+			ensureJournalLoaded();
+			closeJournalStream();
+
+			boolean success = true;
+			for (String bucketName : dirtyBuckets)
+			{
+				Bucket bucket = getBucket(bucketName);
+				try
+				{
+					bucket.save();
+				}
+				catch (IOException e)
+				{
+					success = false;
+					logger.error("Error writing url properties file for bucket: " + bucketName, e); //$NON-NLS-1$
+				}
+			}
+
+			//only discard the journal if every bucket was persisted, otherwise it is still required for recovery
+			if (success)
+			{
+				dirtyBuckets.clear();
+				journalEntries.clear();
+				journalRecordCount = 0;
+				if (journalFile.exists() && !journalFile.delete())
+				{
+					logger.warn("Could not delete url journal: " + journalFile); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compact the journal and release the journal file handle.
+	 */
+	public void close()
+	{
+		compact();
+	}
+
+	private Bucket getBucket(String bucketName)
+	{
+		Bucket bucket = buckets.get(bucketName);
+		if (bucket != null)
+		{
+			return bucket;
+		}
+
+		synchronized (journalLock)
+		{
+			bucket = buckets.get(bucketName);
+			if (bucket == null)
+			{
+				ensureJournalLoaded();
+				bucket = new Bucket(new File(directory, bucketName + File.separator + URLS_PROPERTIES_FILENAME));
+				bucket.load();
+				Map<String, String> journaled = journalEntries.get(bucketName);
+				if (journaled != null)
+				{
+					bucket.putAll(journaled);
+				}
+				buckets.put(bucketName, bucket);
+			}
+			return bucket;
+		}
+	}
+
+	private void append(String bucket, String url, String filename)
+	{
+		synchronized (journalLock)
+		{
+			ensureJournalLoaded();
+			try
+			{
+				if (journalStream == null)
+				{
+					directory.mkdirs();
+					journalStream =
+							new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+				}
+				journalStream.writeUTF(bucket);
+				journalStream.writeUTF(url);
+				journalStream.writeUTF(filename);
+				journalStream.flush();
+			}
+			catch (IOException e)
+			{
+				logger.error("Error writing url journal", e); //$NON-NLS-1$
+				closeJournalStream();
+			}
+
+			addJournalEntry(bucket, url, filename);
+			dirtyBuckets.add(bucket);
+			if (++journalRecordCount >= compactionThreshold)
+			{
+				compact();
+			}
+		}
+	}
+
+	private void ensureJournalLoaded()
+	{
+		//must be called while holding the journalLock
+		if (journalEntries != null)
+		{
+			return;
+		}
+		journalEntries = new HashMap<String, Map<String, String>>();
+		if (!journalFile.isFile())
+		{
+			return;
+		}
+
+		long validLength = 0;
+		DataInputStream dis = null;
+		try
+		{
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+			while (true)
+			{
+				String bucket, url, filename;
+				try
+				{
+					bucket = dis.readUTF();
+					url = dis.readUTF();
+					filename = dis.readUTF();
+				}
+				catch (EOFException e)
+				{
+					break;
+				}
+				validLength += utfLength(bucket) + utfLength(url) + utfLength(filename);
+				addJournalEntry(bucket, url, filename);
+				dirtyBuckets.add(bucket);
+				journalRecordCount++;
+			}
+		}
+		catch (IOException e)
+		{
+			logger.error("Error reading url journal", e); //$NON-NLS-1$
+		}
+		finally
+		{
+			if (dis != null)
+			{
+				try
+				{
+					dis.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+
+		//discard any partially written trailing record (eg after a crash mid-write)
+		if (validLength < journalFile.length())
+		{
+			truncateJournal(validLength);
+		}
+	}
+
+	private void truncateJournal(long length)
+	{
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(journalFile, "rw"); //$NON-NLS-1$
+			raf.setLength(length);
+		}
+		catch (IOException e)
+		{
+			logger.error("Error truncating url journal", e); //$NON-NLS-1$
+		}
+		finally
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
+	private void addJournalEntry(String bucket, String url, String filename)
+	{
+		Map<String, String> entries = journalEntries.get(bucket);
+		if (entries == null)
+		{
+			entries = new HashMap<String, String>();
+			journalEntries.put(bucket, entries);
+		}
+		entries.put(url, filename);
+	}
+
+	private void closeJournalStream()
+	{
+		if (journalStream != null)
+		{
+			try
+			{
+				journalStream.close();
+			}
+			catch (IOException e)
+			{
+				logger.error("Error closing url journal", e); //$NON-NLS-1$
+			}
+			journalStream = null;
+		}
+	}
+
+	private static int utfLength(String s)
+	{
+		//length of the string as written by DataOutput.writeUTF, including the 2-byte length prefix
+		int length = 2;
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F)
+			{
+				length++;
+			}
+			else if (c > 0x07FF)
+			{
+				length += 3;
+			}
+			else
+			{
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Mappings for a single hash directory, backed by a properties file.
+	 */
+	private static class Bucket
+	{
+		private final File propertiesFile;
+		private final Map<String, String> urlToFilename = new ConcurrentHashMap<String, String>();
+
+		public Bucket(File propertiesFile)
+		{
+			this.propertiesFile = propertiesFile;
+		}
+
+		public String get(String url)
+		{
+			return urlToFilename.get(url);
+		}
+
+		public List<String> getURLs(String filename)
+		{
+			List<String> urls = new ArrayList<String>();
+			for (Map.Entry<String, String> entry : urlToFilename.entrySet())
+			{
+				if (entry.getValue().equals(filename))
+				{
+					urls.add(entry.getKey());
+				}
+			}
+			return urls;
+		}
+
+		public void put(String url, String filename)
+		{
+			urlToFilename.put(url, filename);
+		}
+
+		public void putAll(Map<String, String> map)
+		{
+			urlToFilename.putAll(map);
+		}
+
+		public int size()
+		{
+			return urlToFilename.size();
+		}
+
+		public void load()
+		{
+			if (!propertiesFile.isFile())
+			{
+				return;
+			}
+			Properties properties = new Properties();
+			FileInputStream fis = null;
+			try
+			{
+				fis = new FileInputStream(propertiesFile);
+				properties.load(fis);
+			}
+			catch (IOException e)
+			{
+				logger.error("Error reading url properties file", e); //$NON-NLS-1$
+			}
+			finally
+			{
+				if (fis != null)
+				{
+					try
+					{
+						fis.close();
+					}
+					catch (IOException e)
+					{
+					}
+				}
+			}
+			for (String url : properties.stringPropertyNames())
+			{
+				urlToFilename.put(url, properties.getProperty(url));
+			}
+		}
+
+		public void save() throws IOException
+		{
+			Properties properties = new Properties();
+			List<String> urls = new ArrayList<String>(urlToFilename.keySet());
+			for (String url : urls)
+			{
+				properties.setProperty(url, urlToFilename.get(url));
+			}
+
+			//write to a temporary file first so a crash doesn't leave a truncated properties file
+			propertiesFile.getParentFile().mkdirs();
+			File temp = new File(propertiesFile.getParentFile(), propertiesFile.getName() + ".tmp"); //$NON-NLS-1$
+			FileOutputStream fos = null;
+			try
+			{
+				fos = new FileOutputStream(temp);
+				properties.store(fos, null);
+			}
+			finally
+			{
+				if (fos != null)
+				{
+					fos.close();
+				}
+			}
+			if (!temp.renameTo(propertiesFile))
+			{
+				propertiesFile.delete();
+				if (!temp.renameTo(propertiesFile))
+				{
+					throw new IOException("Could not replace " + propertiesFile); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+}
@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
+
 /**
  * Cache used by the retrieval system.
  * 
@@ -156,6 +158,21 @@ public interface IURLCache
 	 */
 	InputStream read(URL url) throws IOException;
 
+	/**
+	 * Map the completely retrieved resource into memory, read-only. The
+	 * resource cannot be modified or removed from the cache until the returned
+	 * mapping is closed.
+	 * <p/>
+	 * The caller <b>must</b> close the mapping when it has finished using it.
+	 * 
+	 * @param url
+	 *            URL to map the resource for
+	 * @return Mapping of the resource
+	 * @throws IOException
+	 *             If the resource doesn't exist or couldn't be mapped
+	 */
+	IMappedRetrievalData map(URL url) throws IOException;
+
 	/**
 	 * Create a File object that points to the completed retrieved resource.
 	 * <p/>
@@ -168,4 +185,27 @@ public interface IURLCache
 	 * @return File containing the retrieved resource
 	 */
 	File getFile(URL url);
+
+	/**
+	 * @return Usage statistics for this cache
+	 */
+	URLCacheStatistics getStatistics();
+
+	/**
+	 * Add a listener that is notified when resources are removed from this
+	 * cache.
+	 * 
+	 * @param listener
+	 *            Listener to add
+	 */
+	void addListener(IURLCacheListener listener);
+
+	/**
+	 * Remove a listener previously added with
+	 * {@link #addListener(IURLCacheListener)}.
+	 * 
+	 * @param listener
+	 *            Listener to remove
+	 */
+	void removeListener(IURLCacheListener listener);
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright 2012 Geoscience Australia
+ * Copyright 2016 Geoscience Australia
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,28 +13,24 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  ******************************************************************************/
-package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import java.net.URL;
 
 /**
- * Helper class that stores a vertex index and it's distance from the eye, used
- * for sorting triangles.
+ * Interface for listening for resources being removed from an
+ * {@link IURLCache}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class IndexAndDistance implements Comparable<IndexAndDistance>
+public interface IURLCacheListener
 {
-	public final double distance;
-	public final int index;
-
-	public IndexAndDistance(double distance, int index)
-	{
-		this.distance = distance;
-		this.index = index;
-	}
-
-	@Override
-	public int compareTo(IndexAndDistance o)
-	{
-		return -Double.compare(distance, o.distance);
-	}
+	/**
+	 * Fired when the completed resource for a URL is removed from the cache
+	 * (evicted or invalidated), or is replaced by newly retrieved data.
+	 * 
+	 * @param url
+	 *            URL whose resource was removed
+	 */
+	void resourceRemoved(URL url);
 }
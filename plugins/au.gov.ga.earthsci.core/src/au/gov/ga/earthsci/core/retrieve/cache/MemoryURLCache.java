@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.cache.MemoryCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
+import au.gov.ga.earthsci.core.retrieve.result.MappedRetrievalData;
+
+/**
+ * {@link IURLCache} implementation that keeps small resources in memory in
+ * front of another (disk-based) {@link IURLCache}.
+ * <p/>
+ * Resources no larger than the maximum entry size are held in a size-bounded
+ * {@link MemoryCache}, weighted by their length. Resources are added when they
+ * are written to the cache, or when first read from the delegate cache, so
+ * repeated reads of small resources are served without any disk IO. All write
+ * operations are passed through to the delegate cache, and entries are
+ * removed from memory when the delegate removes or replaces their resource.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class MemoryURLCache implements IURLCache
+{
+	private final static int MAX_PENDING_CAPTURES = 32;
+
+	private final IURLCache delegate;
+	private final MemoryCache memory;
+	//resources written but not yet completed; bounded, as a failed retrieval closes its stream without completing
+	private final Map<String, ByteArrayOutputStream> captures = Collections
+			.synchronizedMap(new LinkedHashMap<String, ByteArrayOutputStream>()
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, ByteArrayOutputStream> eldest)
+				{
+					return size() > MAX_PENDING_CAPTURES;
+				}
+			});
+	private volatile long maxEntrySize;
+
+	/**
+	 * Create a new in-memory cache.
+	 * 
+	 * @param delegate
+	 *            Cache to pass writes and memory cache misses to
+	 * @param maxEntrySize
+	 *            Largest resource in bytes to keep in memory
+	 * @param capacity
+	 *            Maximum number of bytes to keep in memory; 0 disables the
+	 *            memory cache
+	 */
+	public MemoryURLCache(IURLCache delegate, long maxEntrySize, long capacity)
+	{
+		this.delegate = delegate;
+		this.memory = new BasicMemoryCache(0, 0);
+		this.memory.setName("URL memory cache"); //$NON-NLS-1$
+		setLimits(maxEntrySize, capacity);
+		delegate.addListener(new IURLCacheListener()
+		{
+			@Override
+			public void resourceRemoved(URL url)
+			{
+				remove(url.toString());
+			}
+		});
+	}
+
+	/**
+	 * @return The cache that writes and memory cache misses are passed to
+	 */
+	public IURLCache getDelegate()
+	{
+		return delegate;
+	}
+
+	/**
+	 * Set the size limits of this memory cache. Entries that no longer fit are
+	 * removed.
+	 * 
+	 * @param maxEntrySize
+	 *            Largest resource in bytes to keep in memory
+	 * @param capacity
+	 *            Maximum number of bytes to keep in memory; 0 disables the
+	 *            memory cache
+	 */
+	public synchronized void setLimits(long maxEntrySize, long capacity)
+	{
+		capacity = Math.max(0, capacity);
+		this.maxEntrySize = capacity == 0 ? 0 : Math.max(0, Math.min(maxEntrySize, capacity));
+		if (capacity < memory.getCapacity())
+		{
+			//BasicMemoryCache only trims when adding, so start again if shrinking
+			memory.clear();
+		}
+		memory.setCapacity(capacity);
+		memory.setLowWater((long) (0.85 * capacity));
+		delegate.getStatistics().setMemorySize(memory.getUsedCapacity());
+	}
+
+	@Override
+	public boolean isPartial(URL url)
+	{
+		return delegate.isPartial(url);
+	}
+
+	@Override
+	public long getPartialLength(URL url)
+	{
+		return delegate.getPartialLength(url);
+	}
+
+	@Override
+	public long getPartialLastModified(URL url)
+	{
+		return delegate.getPartialLastModified(url);
+	}
+
+	@Override
+	public OutputStream writePartial(URL url, long offset) throws IOException
+	{
+		final String key = url.toString();
+		captures.remove(key);
+		OutputStream os = delegate.writePartial(url, offset);
+		if (offset != 0 || maxEntrySize <= 0)
+		{
+			return os;
+		}
+
+		//capture small resources as they are written, so they can be added to memory on completion
+		final ByteArrayOutputStream capture = new ByteArrayOutputStream();
+		return new FilterOutputStream(os)
+		{
+			private boolean capturing = true;
+
+			@Override
+			public void write(int b) throws IOException
+			{
+				try
+				{
+					out.write(b);
+				}
+				catch (IOException e)
+				{
+					capturing = false;
+					throw e;
+				}
+				if (canCapture(1))
+				{
+					capture.write(b);
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				try
+				{
+					out.write(b, off, len);
+				}
+				catch (IOException e)
+				{
+					capturing = false;
+					throw e;
+				}
+				if (canCapture(len))
+				{
+					capture.write(b, off, len);
+				}
+			}
+
+			private boolean canCapture(int len)
+			{
+				capturing = capturing && capture.size() + len <= maxEntrySize;
+				return capturing;
+			}
+
+			@Override
+			public void close() throws IOException
+			{
+				//a failed write or close aborts the capture
+				boolean closed = false;
+				try
+				{
+					super.close();
+					closed = true;
+				}
+				finally
+				{
+					if (closed && capturing)
+					{
+						captures.put(key, capture);
+					}
+					else
+					{
+						captures.remove(key);
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public boolean writeComplete(URL url, long lastModified, String contentType)
+	{
+		String key = url.toString();
+		ByteArrayOutputStream capture = captures.remove(key);
+		//if updated, the delegate notifies the listener, which removes the old memory entry
+		boolean updated = delegate.writeComplete(url, lastModified, contentType);
+		if (capture != null && memory.getObject(key) == null && capture.size() == delegate.getLength(url))
+		{
+			add(key, capture.toByteArray(), url);
+		}
+		return updated;
+	}
+
+	@Override
+	public boolean isComplete(URL url)
+	{
+		if (getEntry(url) != null)
+		{
+			delegate.getStatistics().hit();
+			delegate.getStatistics().memoryHit();
+			return true;
+		}
+		return delegate.isComplete(url);
+	}
+
+	@Override
+	public long getLength(URL url)
+	{
+		Entry entry = getEntry(url);
+		return entry != null ? entry.data.length : delegate.getLength(url);
+	}
+
+	@Override
+	public long getLastModified(URL url)
+	{
+		Entry entry = getEntry(url);
+		return entry != null ? entry.lastModified : delegate.getLastModified(url);
+	}
+
+	@Override
+	public String getContentType(URL url)
+	{
+		Entry entry = getEntry(url);
+		return entry != null ? entry.contentType : delegate.getContentType(url);
+	}
+
+	@Override
+	public InputStream read(URL url) throws IOException
+	{
+		Entry entry = getEntry(url);
+		if (entry != null)
+		{
+			return new ByteArrayInputStream(entry.data);
+		}
+
+		InputStream is = delegate.read(url);
+		long length = delegate.getLength(url);
+		if (length <= 0 || length > maxEntrySize)
+		{
+			return is;
+		}
+
+		//small enough to keep in memory, so read the entire resource now
+		ByteArrayOutputStream baos = new ByteArrayOutputStream((int) length);
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+		byte[] data = baos.toByteArray();
+		//the delegate may have invalidated the resource when closing the stream (if it was corrupt)
+		if (data.length == delegate.getLength(url))
+		{
+			add(url.toString(), data, url);
+		}
+		return new ByteArrayInputStream(data);
+	}
+
+	@Override
+	public IMappedRetrievalData map(URL url) throws IOException
+	{
+		Entry entry = getEntry(url);
+		if (entry != null)
+		{
+			return new MappedRetrievalData(ByteBuffer.wrap(entry.data), null);
+		}
+		return delegate.map(url);
+	}
+
+	@Override
+	public File getFile(URL url)
+	{
+		File file = delegate.getFile(url);
+		if (file != null && !file.isFile())
+		{
+			//the delegate no longer has the resource, so don't keep serving it from memory
+			remove(url.toString());
+		}
+		return file;
+	}
+
+	@Override
+	public void addListener(IURLCacheListener listener)
+	{
+		delegate.addListener(listener);
+	}
+
+	@Override
+	public void removeListener(IURLCacheListener listener)
+	{
+		delegate.removeListener(listener);
+	}
+
+	@Override
+	public URLCacheStatistics getStatistics()
+	{
+		return delegate.getStatistics();
+	}
+
+	private Entry getEntry(URL url)
+	{
+		if (maxEntrySize <= 0)
+		{
+			return null;
+		}
+		return (Entry) memory.getObject(url.toString());
+	}
+
+	private void add(String key, byte[] data, URL url)
+	{
+		if (data.length > 0 && data.length <= maxEntrySize)
+		{
+			Entry entry = new Entry(data, delegate.getLastModified(url), delegate.getContentType(url));
+			memory.add(key, entry, data.length);
+			delegate.getStatistics().setMemorySize(memory.getUsedCapacity());
+		}
+	}
+
+	private void remove(String key)
+	{
+		memory.remove(key);
+		delegate.getStatistics().setMemorySize(memory.getUsedCapacity());
+	}
+
+	/**
+	 * Resource held in memory.
+	 */
+	private static class Entry
+	{
+		private final byte[] data;
+		private final long lastModified;
+		private final String contentType;
+
+		public Entry(byte[] data, long lastModified, String contentType)
+		{
+			this.data = data;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+		}
+	}
+}
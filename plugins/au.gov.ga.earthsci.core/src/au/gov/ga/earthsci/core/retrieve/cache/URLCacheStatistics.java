@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage counters for an {@link IURLCache}. All counters are thread safe.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLCacheStatistics
+{
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	private final AtomicLong evictedBytes = new AtomicLong();
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicLong quota = new AtomicLong();
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong memorySize = new AtomicLong();
+
+	/**
+	 * @return Number of cache lookups that found a complete resource
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of cache lookups that didn't find a complete resource
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of resources evicted from the cache
+	 */
+	public long getEvictedCount()
+	{
+		return evictedCount.get();
+	}
+
+	/**
+	 * @return Total size in bytes of the resources evicted from the cache
+	 */
+	public long getEvictedBytes()
+	{
+		return evictedBytes.get();
+	}
+
+	/**
+	 * @return Current size in bytes of the resources in the cache, or 0 if
+	 *         unknown
+	 */
+	public long getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return Maximum size in bytes of the cache; 0 means unlimited
+	 */
+	public long getQuota()
+	{
+		return quota.get();
+	}
+
+	/**
+	 * @return Number of cache hits that were served from memory, without disk
+	 *         IO
+	 */
+	public long getMemoryHits()
+	{
+		return memoryHits.get();
+	}
+
+	/**
+	 * @return Current size in bytes of the resources held in memory
+	 */
+	public long getMemorySize()
+	{
+		return memorySize.get();
+	}
+
+	public void hit()
+	{
+		hits.incrementAndGet();
+	}
+
+	public void miss()
+	{
+		misses.incrementAndGet();
+	}
+
+	public void memoryHit()
+	{
+		memoryHits.incrementAndGet();
+	}
+
+	public void evicted(long bytes)
+	{
+		evictedCount.incrementAndGet();
+		evictedBytes.addAndGet(bytes);
+	}
+
+	public void setSize(long size)
+	{
+		this.size.set(size);
+	}
+
+	public void setQuota(long quota)
+	{
+		this.quota.set(quota);
+	}
+
+	public void setMemorySize(long memorySize)
+	{
+		this.memorySize.set(memorySize);
+	}
+
+	/**
+	 * Add the counters from the given statistics to this object. Useful for
+	 * aggregating the statistics of multiple caches.
+	 * 
+	 * @param statistics
+	 *            Statistics to add
+	 */
+	public void add(URLCacheStatistics statistics)
+	{
+		hits.addAndGet(statistics.getHits());
+		misses.addAndGet(statistics.getMisses());
+		evictedCount.addAndGet(statistics.getEvictedCount());
+		evictedBytes.addAndGet(statistics.getEvictedBytes());
+		size.addAndGet(statistics.getSize());
+		quota.addAndGet(statistics.getQuota());
+		memoryHits.addAndGet(statistics.getMemoryHits());
+		memorySize.addAndGet(statistics.getMemorySize());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", evicted=" + getEvictedCount() + " (" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ getEvictedBytes() + " bytes), size=" + getSize() + ", quota=" + getQuota() + ", memoryHits=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ getMemoryHits() + ", memorySize=" + getMemorySize(); //$NON-NLS-1$
+	}
+}
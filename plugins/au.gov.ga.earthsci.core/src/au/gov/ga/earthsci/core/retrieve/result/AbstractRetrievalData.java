@@ -16,6 +16,7 @@
 package au.gov.ga.earthsci.core.retrieve.result;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -25,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import au.gov.ga.earthsci.common.util.Util;
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
 /**
@@ -59,6 +61,23 @@ public abstract class AbstractRetrievalData implements IRetrievalData
 		return contentType;
 	}
 
+	@Override
+	public IMappedRetrievalData map() throws IOException
+	{
+		//map file URLs directly, otherwise fall back to the in-memory buffer
+		if ("file".equalsIgnoreCase(url.getProtocol())) //$NON-NLS-1$
+		{
+			try
+			{
+				return MappedRetrievalData.map(new File(url.toURI()), null);
+			}
+			catch (URISyntaxException e)
+			{
+			}
+		}
+		return new MappedRetrievalData(getByteBuffer(), null);
+	}
+
 	@Override
 	public File getFile()
 	{
@@ -20,6 +20,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
 /**
@@ -63,4 +64,10 @@ public class ByteBufferRetrievalData extends AbstractRetrievalData
 			return buffer.slice();
 		}
 	}
+
+	@Override
+	public IMappedRetrievalData map()
+	{
+		return new MappedRetrievalData(getByteBuffer(), null);
+	}
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
 /**
@@ -66,6 +67,12 @@ public class FileRetrievalData implements IRetrievalData
 		return WWIO.readFileToBuffer(file);
 	}
 
+	@Override
+	public IMappedRetrievalData map() throws IOException
+	{
+		return MappedRetrievalData.map(file, null);
+	}
+
 	@Override
 	public File getFile()
 	{
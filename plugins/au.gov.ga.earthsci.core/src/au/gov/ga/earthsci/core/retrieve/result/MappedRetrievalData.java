@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.result;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
+
+/**
+ * Basic {@link IMappedRetrievalData} implementation.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class MappedRetrievalData implements IMappedRetrievalData
+{
+	private final ByteBuffer buffer;
+	private final Closeable release;
+	private boolean closed = false;
+
+	/**
+	 * Create a new mapping for the given buffer.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the data (made read-only)
+	 * @param release
+	 *            Called once when this mapping is closed; can be null
+	 */
+	public MappedRetrievalData(ByteBuffer buffer, Closeable release)
+	{
+		this.buffer = buffer.asReadOnlyBuffer();
+		this.release = release;
+	}
+
+	/**
+	 * Memory map the given file read-only.
+	 * 
+	 * @param file
+	 *            File to map
+	 * @param release
+	 *            Called once when the returned mapping is closed; can be null
+	 * @return Mapping of the file
+	 * @throws IOException
+	 *             If the file could not be mapped
+	 */
+	public static MappedRetrievalData map(File file, Closeable release) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("File is too large to map: " + file); //$NON-NLS-1$
+			}
+			//the mapping remains valid after the channel is closed
+			return new MappedRetrievalData(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), release);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer()
+	{
+		return buffer.duplicate();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+		}
+		if (release != null)
+		{
+			release.close();
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
+import au.gov.ga.earthsci.core.retrieve.IMappedRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.cache.IURLCache;
 
@@ -75,6 +76,12 @@ public class URLCacheRetrievalData implements IRetrievalData
 		}
 	}
 
+	@Override
+	public IMappedRetrievalData map() throws IOException
+	{
+		return cache.map(url);
+	}
+
 	@Override
 	public File getFile()
 	{
@@ -25,6 +25,7 @@ import au.gov.ga.earthsci.core.retrieve.IRetrieverMonitor;
 import au.gov.ga.earthsci.core.retrieve.RetrievalStatus;
 import au.gov.ga.earthsci.core.retrieve.RetrieverResult;
 import au.gov.ga.earthsci.core.retrieve.RetrieverResultStatus;
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
 import au.gov.ga.earthsci.core.retrieve.result.LocalURLRetrievalResult;
 
 /**
@@ -53,6 +54,12 @@ public class DefaultRetriever implements IRetriever
 		return null;
 	}
 
+	@Override
+	public URLCacheStatistics getCacheStatistics()
+	{
+		return null;
+	}
+
 	@Override
 	public boolean supports(URL url)
 	{
@@ -23,9 +23,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +46,8 @@ import au.gov.ga.earthsci.core.retrieve.RetrieverResult;
 import au.gov.ga.earthsci.core.retrieve.RetrieverResultStatus;
 import au.gov.ga.earthsci.core.retrieve.cache.FileURLCache;
 import au.gov.ga.earthsci.core.retrieve.cache.IURLCache;
+import au.gov.ga.earthsci.core.retrieve.cache.MemoryURLCache;
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
 import au.gov.ga.earthsci.core.retrieve.result.BasicRetrievalResult;
 import au.gov.ga.earthsci.core.retrieve.result.ByteBufferRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.result.FileRetrievalData;
@@ -49,14 +55,23 @@ import au.gov.ga.earthsci.core.retrieve.result.URLCacheRetrievalData;
 
 /**
  * {@link IRetriever} implementation used for retrieving HTTP URLs.
+ * <p/>
+ * Connections are opened using an {@link IHttpTransport}, which by default
+ * reuses persistent connections between requests to the same host. Responses
+ * are requested with gzip/deflate content encoding, except when resuming a
+ * partial download, as byte ranges apply to the encoded content.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class HttpRetriever implements IRetriever
 {
 	private final static Logger logger = LoggerFactory.getLogger(HttpRetriever.class);
-	private final static IURLCache urlCache;
+	private final static FileURLCache diskCache;
+	private final static MemoryURLCache urlCache;
+	private final static long DEFAULT_MEMORY_CACHE_MAX_ENTRY_SIZE = 256 * 1024;
+	private final static long DEFAULT_MEMORY_CACHE_CAPACITY = 32 * 1024 * 1024;
 	private final static int REDOWNLOAD_BYTES = 1024;
+	private final static String ACCEPT_ENCODING = "gzip, deflate"; //$NON-NLS-1$
 
 	static
 	{
@@ -71,7 +86,61 @@ public class HttpRetriever implements IRetriever
 			cacheDir = null;
 			logger.warn("Could not initialize http cache directory: " + e.getLocalizedMessage()); //$NON-NLS-1$
 		}
-		urlCache = cacheDir == null ? null : new FileURLCache(cacheDir);
+		diskCache = cacheDir == null ? null : new FileURLCache(cacheDir);
+		urlCache =
+				diskCache == null ? null : new MemoryURLCache(diskCache, DEFAULT_MEMORY_CACHE_MAX_ENTRY_SIZE,
+						DEFAULT_MEMORY_CACHE_CAPACITY);
+	}
+
+	private final IHttpTransport transport;
+
+	public HttpRetriever()
+	{
+		this(new KeepAliveHttpTransport());
+	}
+
+	public HttpRetriever(IHttpTransport transport)
+	{
+		this.transport = transport;
+	}
+
+	/**
+	 * Set the maximum size of the HTTP cache. When the cache grows beyond this
+	 * size, the least recently used resources are evicted.
+	 * 
+	 * @param quota
+	 *            Maximum cache size in bytes; 0 means unlimited
+	 */
+	public static void setCacheQuota(long quota)
+	{
+		if (diskCache != null)
+		{
+			diskCache.setQuota(quota);
+		}
+	}
+
+	/**
+	 * Set the limits of the in-memory cache that sits in front of the HTTP disk
+	 * cache.
+	 * 
+	 * @param maxEntrySize
+	 *            Largest resource in bytes to keep in memory
+	 * @param capacity
+	 *            Maximum number of bytes to keep in memory; 0 disables the
+	 *            memory cache
+	 */
+	public static void setMemoryCacheLimits(long maxEntrySize, long capacity)
+	{
+		if (urlCache != null)
+		{
+			urlCache.setLimits(maxEntrySize, capacity);
+		}
+	}
+
+	@Override
+	public URLCacheStatistics getCacheStatistics()
+	{
+		return urlCache == null ? null : urlCache.getStatistics();
 	}
 
 	@Override
@@ -97,9 +166,10 @@ public class HttpRetriever implements IRetriever
 		monitor.updateStatus(RetrievalStatus.STARTED);
 
 		HttpURLConnection connection = null;
+		boolean reusable = false;
 		try
 		{
-			connection = (HttpURLConnection) url.openConnection();
+			connection = transport.open(url);
 			connection.setConnectTimeout(retrievalProperties.getConnectTimeout());
 			connection.setReadTimeout(retrievalProperties.getReadTimeout());
 
@@ -142,6 +212,11 @@ public class HttpRetriever implements IRetriever
 				}
 			}
 
+			if (position == 0)
+			{
+				connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING); //$NON-NLS-1$
+			}
+
 			checkMonitor(monitor);
 
 			byte[] payload = null;
@@ -197,11 +272,14 @@ public class HttpRetriever implements IRetriever
 
 			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED)
 			{
+				reusable = true;
 				return new RetrieverResult(new BasicRetrievalResult(cachedData, true), RetrieverResultStatus.COMPLETE);
 			}
 			else if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL)
 			{
-				// response not ok
+				// response not ok; the transport drains error (4xx/5xx) bodies,
+				// but other responses such as redirects still have an unread body
+				reusable = responseCode >= HttpURLConnection.HTTP_BAD_REQUEST;
 				throw new IOException("Received " + responseCode + " " + connection.getResponseMessage() //$NON-NLS-1$ //$NON-NLS-2$
 						+ " when requesting url: " + url); //$NON-NLS-1$
 			}
@@ -231,7 +309,9 @@ public class HttpRetriever implements IRetriever
 			try
 			{
 				IRetrievalData retrievedData;
-				is = new BufferedInputStream(new MonitorInputStream(connection.getInputStream(), monitor));
+				//monitor the encoded stream, as the content length is that of the encoded content
+				is = new MonitorInputStream(connection.getInputStream(), monitor);
+				is = new BufferedInputStream(decode(is, connection.getContentEncoding()));
 				if (retrievalProperties.isUseCache())
 				{
 					OutputStream os = null;
@@ -247,6 +327,7 @@ public class HttpRetriever implements IRetriever
 							os.close();
 						}
 					}
+					reusable = true;
 					boolean updated = urlCache.writeComplete(url, lastModified, contentType);
 					if (!updated)
 					{
@@ -272,6 +353,7 @@ public class HttpRetriever implements IRetriever
 					retrievedData = new ByteBufferRetrievalData(url, buffer, contentType);
 				}
 				IRetrievalResult result = new BasicRetrievalResult(retrievedData, false);
+				reusable = true;
 				return new RetrieverResult(result, RetrieverResultStatus.COMPLETE);
 			}
 			finally
@@ -289,10 +371,66 @@ public class HttpRetriever implements IRetriever
 		}
 		finally
 		{
-			connection.disconnect();
+			transport.release(connection, reusable);
 		}
 	}
 
+	private static InputStream decode(InputStream is, String contentEncoding) throws IOException
+	{
+		if ("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)) //$NON-NLS-1$ //$NON-NLS-2$
+		{
+			return new GZIPInputStream(is);
+		}
+		if ("deflate".equalsIgnoreCase(contentEncoding)) //$NON-NLS-1$
+		{
+			//some servers send raw deflate data instead of the zlib format, so
+			//check for a zlib header before choosing the inflater
+			PushbackInputStream pis = new PushbackInputStream(is, 2);
+			byte[] header = new byte[2];
+			int read = 0, count;
+			while (read < header.length && (count = pis.read(header, read, header.length - read)) >= 0)
+			{
+				read += count;
+			}
+			pis.unread(header, 0, read);
+			boolean zlib = read == header.length && isZlibHeader(header[0] & 0xff, header[1] & 0xff);
+			final Inflater inflater = new Inflater(!zlib);
+			return new InflaterInputStream(pis, inflater)
+			{
+				@Override
+				public void close() throws IOException
+				{
+					try
+					{
+						super.close();
+					}
+					finally
+					{
+						//inflaters passed to the stream aren't ended by it
+						inflater.end();
+					}
+				}
+			};
+		}
+		return is;
+	}
+
+	/**
+	 * Check if the given bytes are a valid zlib (RFC 1950) header: the
+	 * compression method must be deflate, and the two bytes must be a multiple
+	 * of 31 when read as a big-endian number.
+	 * 
+	 * @param cmf
+	 *            Compression method and flags byte
+	 * @param flg
+	 *            Flags byte
+	 * @return True if the bytes are a zlib header
+	 */
+	private static boolean isZlibHeader(int cmf, int flg)
+	{
+		return (cmf & 0x0f) == 8 && (cmf << 8 | flg) % 31 == 0;
+	}
+
 	private void checkMonitor(IRetrieverMonitor monitor) throws MonitorCancelledOrPausedException
 	{
 		if (monitor.isCanceled() || monitor.isPaused())
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.extensions.Preference;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+
+/**
+ * Contains the preferences for the {@link HttpRetriever}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+@Creatable
+@Singleton
+public class HttpRetrieverPreferences extends AbstractPreferenceInitializer
+{
+	public static final String CACHE_QUOTA_MB = "httpRetrieverCacheQuotaMB"; //$NON-NLS-1$
+	public static final String MEMORY_CACHE_MB = "httpRetrieverMemoryCacheMB"; //$NON-NLS-1$
+	public static final String MEMORY_CACHE_MAX_ENTRY_KB = "httpRetrieverMemoryCacheMaxEntryKB"; //$NON-NLS-1$
+
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IPreferenceStore store = new ScopedPreferenceStore(DefaultScope.INSTANCE, PreferenceConstants.QUALIFIER_ID);
+		store.setDefault(CACHE_QUOTA_MB, 10240);
+		store.setDefault(MEMORY_CACHE_MB, 32);
+		store.setDefault(MEMORY_CACHE_MAX_ENTRY_KB, 256);
+	}
+
+	@Inject
+	public void preferencesChanged(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = CACHE_QUOTA_MB) int cacheQuotaMB,
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = MEMORY_CACHE_MB) int memoryCacheMB,
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = MEMORY_CACHE_MAX_ENTRY_KB) int memoryCacheMaxEntryKB)
+	{
+		HttpRetriever.setCacheQuota(Math.max(0, cacheQuotaMB) * 1024L * 1024L);
+		HttpRetriever.setMemoryCacheLimits(Math.max(0, memoryCacheMaxEntryKB) * 1024L,
+				Math.max(0, memoryCacheMB) * 1024L * 1024L);
+	}
+}
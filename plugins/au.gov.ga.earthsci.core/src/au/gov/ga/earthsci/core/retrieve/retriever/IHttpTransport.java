@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport used by the {@link HttpRetriever} to open connections to HTTP
+ * servers. Implementations are responsible for connection management, such as
+ * pooling persistent connections between requests to the same host.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface IHttpTransport
+{
+	/**
+	 * Open a new (unconnected) connection to the given URL. The caller
+	 * configures and connects the returned connection, and must pass it to
+	 * {@link #release(HttpURLConnection, boolean)} once finished.
+	 * 
+	 * @param url
+	 *            URL to open a connection to
+	 * @return New connection
+	 * @throws IOException
+	 *             If the connection could not be opened
+	 */
+	HttpURLConnection open(URL url) throws IOException;
+
+	/**
+	 * Release a connection previously returned by {@link #open(URL)}.
+	 * 
+	 * @param connection
+	 *            Connection to release
+	 * @param reusable
+	 *            True if the request completed normally and the response body
+	 *            has been consumed, so the underlying connection can be reused
+	 *            for subsequent requests; false if the connection should be
+	 *            closed (for example when the retrieval was cancelled)
+	 */
+	void release(HttpURLConnection connection, boolean reusable);
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * {@link IHttpTransport} implementation that uses the JRE's
+ * {@link HttpURLConnection}, which pools persistent (keep-alive) connections
+ * per host.
+ * <p/>
+ * A connection is only returned to the pool if its response body has been
+ * fully read and closed, and {@link HttpURLConnection#disconnect()} has not
+ * been called. This transport therefore only disconnects connections that
+ * aren't reusable, and drains small error bodies so that error responses don't
+ * cost a connection.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class KeepAliveHttpTransport implements IHttpTransport
+{
+	/**
+	 * Error bodies larger than this are not drained; the connection is closed
+	 * instead.
+	 */
+	private final static int MAX_DRAIN_BYTES = 64 * 1024;
+
+	@Override
+	public HttpURLConnection open(URL url) throws IOException
+	{
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	@Override
+	public void release(HttpURLConnection connection, boolean reusable)
+	{
+		if (!reusable || !drain(connection))
+		{
+			connection.disconnect();
+		}
+	}
+
+	private static boolean drain(HttpURLConnection connection)
+	{
+		InputStream is = connection.getErrorStream();
+		if (is == null)
+		{
+			return true;
+		}
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int total = 0, read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				total += read;
+				if (total > MAX_DRAIN_BYTES)
+				{
+					return false;
+				}
+			}
+			is.close();
+			return true;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+}
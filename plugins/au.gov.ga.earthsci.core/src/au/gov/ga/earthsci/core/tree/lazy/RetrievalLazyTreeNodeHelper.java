@@ -25,6 +25,7 @@ import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalResult;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
 import au.gov.ga.earthsci.core.retrieve.RetrievalAdapter;
+import au.gov.ga.earthsci.core.retrieve.RetrievalProperties;
 import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
 import au.gov.ga.earthsci.core.tree.ILazyTreeNode;
 import au.gov.ga.earthsci.core.tree.ILazyTreeNodeCallback;
@@ -58,7 +59,9 @@ public class RetrievalLazyTreeNodeHelper<E extends ITreeNode<E>>
 		{
 			final URL url = node.getRetrievalURL();
 			IRetrievalService retrievalService = RetrievalServiceFactory.getServiceInstance();
-			IRetrieval retrieval = retrievalService.retrieve(node, url);
+			RetrievalProperties retrievalProperties = new RetrievalProperties();
+			retrievalProperties.setPriority(RetrievalProperties.PRIORITY_BACKGROUND);
+			IRetrieval retrieval = retrievalService.retrieve(node, url, retrievalProperties);
 			retrieval.addListener(new RetrievalAdapter()
 			{
 				@Override
@@ -22,6 +22,8 @@ import org.eclipse.jface.preference.IntegerFieldEditor;
 import au.gov.ga.earthsci.common.ui.preferences.FieldEditorPreferencePage;
 import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
 import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServicePreferences;
+import au.gov.ga.earthsci.core.retrieve.retriever.HttpRetrieverPreferences;
 
 /**
  * Preferences page for editing retrieval preferences.
@@ -43,5 +45,15 @@ public class RetrievePreferencePage extends FieldEditorPreferencePage
 	{
 		addField(new IntegerFieldEditor(WorldWindRetrievalServicePreferences.POOL_SIZE, "&Simultaneous connections",
 				getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.MAX_CONCURRENT, "&Maximum concurrent retrievals",
+				getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.MAX_CONCURRENT_PER_HOST,
+				"Maximum concurrent retrievals per &host", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(HttpRetrieverPreferences.CACHE_QUOTA_MB, "&Cache size limit (MB, 0 = unlimited)",
+				getFieldEditorParent()));
+		addField(new IntegerFieldEditor(HttpRetrieverPreferences.MEMORY_CACHE_MB,
+				"&Memory cache size (MB, 0 = disabled)", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(HttpRetrieverPreferences.MEMORY_CACHE_MAX_ENTRY_KB,
+				"Largest resource to keep in m&emory (KB)", getFieldEditorParent()));
 	}
 }
@@ -84,6 +84,7 @@ public class URLRetrieverWrapper extends JarRetriever
 		retrievalProperties.setConnectTimeout(getConnectTimeout());
 		retrievalProperties.setReadTimeout(getReadTimeout());
 		retrievalProperties.setUseCache(false);
+		retrievalProperties.setPriority(RetrievalProperties.PRIORITY_VISIBLE);
 		IRetrieval retrieval = service.retrieve(caller, getUrl(), retrievalProperties);
 		retrieval.start();
 		IRetrievalResult result = retrieval.waitAndGetResult();
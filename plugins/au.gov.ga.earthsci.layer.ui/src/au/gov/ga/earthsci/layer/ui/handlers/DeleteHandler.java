@@ -34,6 +34,7 @@ public class DeleteHandler
 	public void execute(@Named(IServiceConstants.ACTIVE_SELECTION) ILayerTreeNode layer)
 	{
 		layer.removeFromParent();
+		layer.removeRetrievals();
 	}
 
 	@Execute
@@ -42,6 +43,7 @@ public class DeleteHandler
 		for (ILayerTreeNode layer : layers)
 		{
 			layer.removeFromParent();
+			layer.removeRetrievals();
 		}
 	}
 
@@ -37,6 +37,8 @@ import au.gov.ga.earthsci.common.util.IEnableable;
 import au.gov.ga.earthsci.common.util.IInformationed;
 import au.gov.ga.earthsci.core.model.IModelStatus;
 import au.gov.ga.earthsci.core.model.ModelStatus;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
 import au.gov.ga.earthsci.core.tree.AbstractTreeNode;
 import au.gov.ga.earthsci.core.worldwind.WorldWindCompoundElevationModel;
 import au.gov.ga.earthsci.layer.DrawOrder;
@@ -288,6 +290,35 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	@Override
+	public void removeRetrievals()
+	{
+		IRetrievalService service = RetrievalServiceFactory.getServiceInstance();
+		if (service != null)
+		{
+			for (Object caller : getRetrievalCallers())
+			{
+				if (caller != null)
+				{
+					service.removeCaller(caller);
+				}
+			}
+		}
+		for (ILayerTreeNode child : getChildren())
+		{
+			child.removeRetrievals();
+		}
+	}
+
+	/**
+	 * @return Objects that may have requested retrievals on behalf of this
+	 *         node; elements may be null
+	 */
+	protected Object[] getRetrievalCallers()
+	{
+		return new Object[] { this };
+	}
+
 	@Override
 	public LayerList getLayers()
 	{
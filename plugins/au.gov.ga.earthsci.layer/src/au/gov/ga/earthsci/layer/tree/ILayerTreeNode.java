@@ -181,4 +181,10 @@ public interface ILayerTreeNode extends ITreeNode<ILayerTreeNode>, IPropertyChan
 	 * @param catalogUri
 	 */
 	void setCatalogURI(URI catalogURI);
+
+	/**
+	 * Cancel any queued retrievals requested by this node or the nodes below
+	 * it. Should be called when this node is deleted from the layer tree.
+	 */
+	void removeRetrievals();
 }
@@ -37,6 +37,10 @@ import au.gov.ga.earthsci.common.util.ILoader;
 import au.gov.ga.earthsci.common.util.Util;
 import au.gov.ga.earthsci.core.model.IModelStatus;
 import au.gov.ga.earthsci.core.model.IStatused;
+import au.gov.ga.earthsci.core.retrieve.IRetrieval;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalProperties;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
 import au.gov.ga.earthsci.layer.DrawOrder;
 import au.gov.ga.earthsci.layer.IPersistentLayer;
 import au.gov.ga.earthsci.layer.LayerPersistentAdapter;
@@ -105,6 +109,12 @@ public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
 						updateElevationModels();
 					}
 				}
+				else if (evt.getPropertyName().equals("enabled")) //$NON-NLS-1$
+				{
+					//queued retrievals for a hidden layer shouldn't hold up visible layers
+					reprioritiseRetrievals(isEnabled() ? IRetrievalProperties.PRIORITY_VISIBLE
+							: IRetrievalProperties.PRIORITY_BACKGROUND);
+				}
 			}
 		});
 		delegator.setPropertiesChangedTrackingEnabled(false);
@@ -143,6 +153,39 @@ public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
 		drawOrderCached = null;
 	}
 
+	@Override
+	protected Object[] getRetrievalCallers()
+	{
+		//retrievals are requested by the wrapped World Wind layer/elevation model
+		return new Object[] { this, getLayer(), getGrandLayer(), getElevationModel() };
+	}
+
+	/**
+	 * Change the priority of any queued retrievals requested by this node's
+	 * layer.
+	 * 
+	 * @param priority
+	 *            New priority
+	 */
+	protected void reprioritiseRetrievals(int priority)
+	{
+		IRetrievalService service = RetrievalServiceFactory.getServiceInstance();
+		if (service == null)
+		{
+			return;
+		}
+		for (Object caller : getRetrievalCallers())
+		{
+			if (caller != null)
+			{
+				for (IRetrieval retrieval : service.getRetrievals(caller))
+				{
+					retrieval.setPriority(priority);
+				}
+			}
+		}
+	}
+
 	@Persistent(name = "definition")
 	@Adapter(LayerPersistentAdapter.class)
 	private IPersistentLayer getPersistentLayer()
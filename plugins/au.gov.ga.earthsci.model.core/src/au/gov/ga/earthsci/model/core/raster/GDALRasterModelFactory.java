@@ -34,6 +34,7 @@ import au.gov.ga.earthsci.common.buffer.BufferType;
 import au.gov.ga.earthsci.common.buffer.BufferUtil;
 import au.gov.ga.earthsci.common.color.ColorMap;
 import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.common.color.ColorMapLookupTable;
 import au.gov.ga.earthsci.common.color.ColorType;
 import au.gov.ga.earthsci.common.spatial.SpatialReferences;
 import au.gov.ga.earthsci.common.util.Validate;
@@ -213,32 +214,27 @@ public class GDALRasterModelFactory
 		ByteBuffer coloursBuffer = allocateVertexColourBuffer(numVertices);
 		ByteBuffer verticesBuffer = vertices.getSource();
 
-		float[] rgba = new float[4];
+		ColorMapLookupTable lookupTable = map.getLookupTable();
+		int nodataColor = map.getNodataColour() == null ? DEFAULT_NODATA_COLOR.getRGB() : lookupTable.getNodataColor();
 		for (int i = 0; i < numVertices; i++)
 		{
 			BufferUtil.skipValues(2, verticesBuffer, vertices.getBufferType());
 			float elevation = BufferUtil.getValue(verticesBuffer, vertices.getBufferType()).floatValue();
 
-			Color color;
-
+			int argb;
 			if (vertices.getNoDataValue() != null && isNoData((Float) vertices.getNoDataValue(), elevation))
 			{
-				color = map.getNodataColour();
-				if (color == null)
-				{
-					color = DEFAULT_NODATA_COLOR;
-				}
+				argb = nodataColor;
 			}
 			else
 			{
-				color = map.getColor(elevation, stats.getMinElevation(), stats.getMaxElevation());
+				argb = lookupTable.getColor(elevation, stats.getMinElevation(), stats.getMaxElevation());
 			}
 
-			color.getRGBComponents(rgba);
-			coloursBuffer.putFloat(rgba[0]);
-			coloursBuffer.putFloat(rgba[1]);
-			coloursBuffer.putFloat(rgba[2]);
-			coloursBuffer.putFloat(rgba[3]);
+			coloursBuffer.putFloat(((argb >> 16) & 0xff) / 255f);
+			coloursBuffer.putFloat(((argb >> 8) & 0xff) / 255f);
+			coloursBuffer.putFloat((argb & 0xff) / 255f);
+			coloursBuffer.putFloat(((argb >>> 24) & 0xff) / 255f);
 		}
 
 		IModelData vertexColours = ModelDataBuilder.createFromBuffer(coloursBuffer)
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.downloader;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link StreamingFileWriter} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class StreamingFileWriterTest
+{
+	private File directory;
+	private File destination;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("StreamingFileWriterTest", "");
+		directory.delete();
+		directory.mkdirs();
+		destination = new File(directory, "destination.dat");
+	}
+
+	@After
+	public void teardown()
+	{
+		File[] children = directory.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				child.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testWrite() throws IOException
+	{
+		byte[] content = bytes(200000);
+		File file = StreamingFileWriter.write(new ByteArrayInputStream(content), destination);
+		assertEquals(destination, file);
+		assertArrayEquals(content, read(file));
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	@Test
+	public void testWriteReplacesExisting() throws IOException
+	{
+		StreamingFileWriter.write(new ByteArrayInputStream(bytes(100)), destination);
+		byte[] content = bytes(50);
+		File file = StreamingFileWriter.write(new ByteArrayInputStream(content), destination);
+		assertEquals(destination, file);
+		assertArrayEquals(content, read(file));
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	@Test
+	public void testWriteFirstZipEntry() throws IOException
+	{
+		byte[] content = bytes(1000);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ZipOutputStream zos = new ZipOutputStream(baos);
+		zos.putNextEntry(new ZipEntry("first"));
+		zos.write(content);
+		zos.putNextEntry(new ZipEntry("second"));
+		zos.write(bytes(10));
+		zos.close();
+
+		File file = StreamingFileWriter.writeFirstZipEntry(new ByteArrayInputStream(baos.toByteArray()), destination);
+		assertEquals(destination, file);
+		assertArrayEquals(content, read(file));
+	}
+
+	@Test
+	public void testFailedWriteLeavesNoFiles() throws IOException
+	{
+		InputStream failing = new InputStream()
+		{
+			private int count = 0;
+
+			@Override
+			public int read() throws IOException
+			{
+				if (count++ > 100)
+				{
+					throw new IOException("Connection reset");
+				}
+				return 0;
+			}
+		};
+		try
+		{
+			StreamingFileWriter.write(failing, destination);
+			fail("Expected IOException");
+		}
+		catch (IOException e)
+		{
+		}
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	private static byte[] read(File file) throws IOException
+	{
+		byte[] content = new byte[(int) file.length()];
+		FileInputStream fis = new FileInputStream(file);
+		try
+		{
+			int offset = 0;
+			while (offset < content.length)
+			{
+				offset += fis.read(content, offset, content.length - offset);
+			}
+		}
+		finally
+		{
+			fis.close();
+		}
+		return content;
+	}
+
+	private static byte[] bytes(int length)
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = (byte) (i * 31);
+		}
+		return bytes;
+	}
+}
@@ -1,6 +1,8 @@
 package au.gov.ga.earthsci.worldwind.common.layers.curtain;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Sector;
@@ -85,6 +87,36 @@ public class PathTest
 		assertLatLonsEqual(expected, result);
 	}
 	
+	@Test
+	public void testGetPercentLatLonAtVertex()
+	{
+		Path path = createPath(0d, -90d, 0d, 90d, 180d, 90d);
+		
+		assertSame(path.locations[1], path.getPercentLatLon(0.5));
+	}
+	
+	@Test
+	public void testSegmentPercentsIncludeVerticesAndSubsegments()
+	{
+		Path path = createPath(0d, -90d, 0d, 0d, 0d, 90d);
+		
+		double[] expected = new double[] { 0.25, 0.375, 0.5, 0.625, 0.75 };
+		double[] result = path.segmentPercents(new Segment(0.25, 0.75, 0d, 1d), 4);
+		
+		assertArrayEquals(expected, result, 0.0001);
+	}
+	
+	@Test
+	public void testSegmentPercentsRemovesDuplicates()
+	{
+		Path path = createPath(0d, -90d, 0d, 0d, 0d, 90d);
+		
+		double[] expected = new double[] { 0d, 0.5, 1d };
+		double[] result = path.segmentPercents(Segment.FULL, 2);
+		
+		assertArrayEquals(expected, result, 0.0001);
+	}
+	
 	/**
 	 * Creates a path from lat-lon locations specified by the provided angles in degrees in [lat,lon,lat,lon,...] format
 	 */
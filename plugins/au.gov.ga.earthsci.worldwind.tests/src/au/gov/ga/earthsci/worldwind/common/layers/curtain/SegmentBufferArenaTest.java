@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.curtain;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.curtain.SegmentBufferArena.Allocation;
+
+/**
+ * Unit tests for the {@link SegmentBufferArena} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class SegmentBufferArenaTest
+{
+	private FakeBackend backend;
+	private SegmentBufferArena classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		backend = new FakeBackend();
+		classUnderTest = new SegmentBufferArena(100);
+	}
+
+	@Test
+	public void testAllocationsShareBlock()
+	{
+		Allocation a1 = classUnderTest.allocate(30, 20);
+		Allocation a2 = classUnderTest.allocate(30, 20);
+
+		int buffer1 = classUnderTest.sync(backend, a1, floats(30, 1), floats(20, 2));
+		int buffer2 = classUnderTest.sync(backend, a2, floats(30, 3), floats(20, 4));
+
+		assertEquals(buffer1, buffer2);
+		assertEquals(1, backend.created);
+		assertEquals(1, classUnderTest.getBlockCount());
+		assertEquals(0, a1.getRegionOffsetInBytes(0));
+		assertEquals(120, a1.getRegionOffsetInBytes(1));
+		assertEquals(200, a2.getRegionOffsetInBytes(0));
+		assertEquals(3f, backend.data.get(buffer1)[50], 0f);
+		assertEquals(4f, backend.data.get(buffer1)[99], 0f);
+	}
+
+	@Test
+	public void testOnlyDirtyRegionsAreUploaded()
+	{
+		Allocation allocation = classUnderTest.allocate(30, 20);
+		FloatBuffer vertices = floats(30, 1);
+		FloatBuffer texCoords = floats(20, 2);
+		classUnderTest.sync(backend, allocation, vertices, texCoords);
+		assertEquals(2, backend.uploads.size());
+
+		//nothing changed
+		classUnderTest.sync(backend, allocation, vertices, texCoords);
+		assertEquals(2, backend.uploads.size());
+
+		allocation.markDirty(0);
+		assertTrue(allocation.isDirty(0));
+		assertFalse(allocation.isDirty(1));
+		classUnderTest.sync(backend, allocation, vertices, texCoords);
+		assertEquals(3, backend.uploads.size());
+		assertEquals(Integer.valueOf(30), backend.uploads.get(2));
+		assertFalse(allocation.isDirty(0));
+	}
+
+	@Test
+	public void testLostBufferIsRecreatedAndReuploaded()
+	{
+		Allocation allocation = classUnderTest.allocate(30, 20);
+		classUnderTest.sync(backend, allocation, floats(30, 1), floats(20, 2));
+		backend.data.clear();
+		backend.keys.clear();
+
+		int buffer = classUnderTest.sync(backend, allocation, floats(30, 5), floats(20, 6));
+		assertEquals(2, backend.created);
+		assertEquals(4, backend.uploads.size());
+		assertEquals(5f, backend.data.get(buffer)[0], 0f);
+	}
+
+	@Test
+	public void testFreedRangeIsReused()
+	{
+		Allocation a1 = classUnderTest.allocate(40);
+		Allocation a2 = classUnderTest.allocate(40);
+		classUnderTest.free(a1);
+		Allocation a3 = classUnderTest.allocate(30);
+		assertEquals(0, a3.getRegionOffsetInBytes(0));
+		assertEquals(1, classUnderTest.getBlockCount());
+		assertEquals(70, classUnderTest.getAllocatedSize());
+
+		//freeing twice is ignored
+		classUnderTest.free(a1);
+		assertEquals(70, classUnderTest.getAllocatedSize());
+
+		//a freed allocation no longer has a buffer
+		assertEquals(0, classUnderTest.sync(backend, a1, floats(40, 1)));
+		classUnderTest.free(a2);
+		classUnderTest.free(a3);
+		assertEquals(0, classUnderTest.getAllocatedSize());
+	}
+
+	@Test
+	public void testFreeRangesAreCoalesced()
+	{
+		Allocation a1 = classUnderTest.allocate(30);
+		Allocation a2 = classUnderTest.allocate(30);
+		Allocation a3 = classUnderTest.allocate(30);
+		classUnderTest.free(a1);
+		classUnderTest.free(a3);
+		classUnderTest.free(a2);
+
+		//the whole block should be available again
+		Allocation a4 = classUnderTest.allocate(100);
+		assertEquals(0, a4.getRegionOffsetInBytes(0));
+		assertEquals(1, classUnderTest.getBlockCount());
+	}
+
+	@Test
+	public void testEmptyBlocksAreDeleted()
+	{
+		Allocation a1 = classUnderTest.allocate(80);
+		Allocation a2 = classUnderTest.allocate(80);
+		Allocation large = classUnderTest.allocate(150);
+		assertEquals(3, classUnderTest.getBlockCount());
+		classUnderTest.sync(backend, a1, floats(80, 1));
+		classUnderTest.sync(backend, a2, floats(80, 1));
+		classUnderTest.sync(backend, large, floats(150, 1));
+		assertEquals(3, backend.keys.size());
+
+		classUnderTest.free(a2);
+		classUnderTest.free(large);
+		assertEquals(1, classUnderTest.getBlockCount());
+		classUnderTest.sync(backend, a1, floats(80, 1));
+		assertEquals(1, backend.keys.size());
+
+		//the last block is kept, even when empty
+		classUnderTest.free(a1);
+		assertEquals(1, classUnderTest.getBlockCount());
+	}
+
+	private static FloatBuffer floats(int count, float value)
+	{
+		FloatBuffer buffer = FloatBuffer.allocate(count);
+		for (int i = 0; i < count; i++)
+		{
+			buffer.put(value);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Backend that stores buffer contents in arrays instead of a GL context.
+	 */
+	private static class FakeBackend implements SegmentBufferArena.Backend
+	{
+		private final Map<Object, Integer> keys = new HashMap<Object, Integer>();
+		private final Map<Integer, float[]> data = new HashMap<Integer, float[]>();
+		private final List<Integer> uploads = new ArrayList<Integer>();
+		private int created = 0;
+
+		@Override
+		public int getBuffer(Object key)
+		{
+			Integer buffer = keys.get(key);
+			return buffer == null ? 0 : buffer;
+		}
+
+		@Override
+		public int createBuffer(Object key, int sizeInBytes)
+		{
+			int buffer = ++created;
+			keys.put(key, buffer);
+			data.put(buffer, new float[sizeInBytes / 4]);
+			return buffer;
+		}
+
+		@Override
+		public void bufferSubData(int buffer, int offsetInBytes, FloatBuffer floats)
+		{
+			uploads.add(floats.remaining());
+			floats.get(data.get(buffer), offsetInBytes / 4, floats.remaining());
+		}
+
+		@Override
+		public void deleteBuffer(Object key)
+		{
+			Integer buffer = keys.remove(key);
+			if (buffer != null)
+			{
+				data.remove(buffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.reader;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link MaskHelper} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class MaskHelperTest
+{
+	@Test
+	public void testApplyMaskWritesIntoImageAlpha()
+	{
+		BufferedImage image = image(BufferedImage.TYPE_INT_ARGB, 0xff102030);
+		BufferedImage mask = mask(BufferedImage.TYPE_INT_ARGB);
+
+		BufferedImage result = MaskHelper.applyMask(image, mask);
+		assertSame(image, result);
+		assertMasked(result, 0x102030);
+	}
+
+	@Test
+	public void testApplyMaskMultipliesTransparentImageAlpha()
+	{
+		BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage expected = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 4; y++)
+		{
+			for (int x = 0; x < 4; x++)
+			{
+				//first row is missing data (fully transparent), the rest partly transparent
+				int argb = y == 0 ? 0 : ((y * 60 + x * 10) << 24) | 0x102030;
+				image.setRGB(x, y, argb);
+				expected.setRGB(x, y, argb);
+			}
+		}
+		expected = MaskHelper.compose(expected, mask(BufferedImage.TYPE_INT_ARGB));
+
+		BufferedImage result = MaskHelper.applyMask(image, mask(BufferedImage.TYPE_INT_ARGB));
+		for (int y = 0; y < 4; y++)
+		{
+			for (int x = 0; x < 4; x++)
+			{
+				int alpha = result.getRGB(x, y) >>> 24;
+				assertEquals(expected.getRGB(x, y) >>> 24, alpha, 1);
+				if (y == 0)
+				{
+					assertEquals(0, alpha);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testApplyMaskToOpaqueImageWritesIntoMask()
+	{
+		BufferedImage image = image(BufferedImage.TYPE_3BYTE_BGR, 0xff405060);
+		BufferedImage mask = mask(BufferedImage.TYPE_4BYTE_ABGR);
+
+		BufferedImage result = MaskHelper.applyMask(image, mask);
+		assertSame(mask, result);
+		assertMasked(result, 0x405060);
+	}
+
+	@Test
+	public void testApplyIndexedMask()
+	{
+		byte[] values = new byte[] { 0, (byte) 0xff };
+		IndexColorModel colorModel = new IndexColorModel(1, 2, values, values, values, 0);
+		BufferedImage mask = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+		mask.setRGB(1, 2, 0xffffffff);
+		BufferedImage image = image(BufferedImage.TYPE_INT_ARGB, 0xff708090);
+
+		BufferedImage result = MaskHelper.applyMask(image, mask);
+		assertEquals(0xff708090, result.getRGB(1, 2));
+		assertEquals(0x00708090, result.getRGB(0, 0));
+	}
+
+	@Test
+	public void testApplyOpaqueMaskReturnsImage()
+	{
+		BufferedImage image = image(BufferedImage.TYPE_3BYTE_BGR, 0xff405060);
+		BufferedImage mask = image(BufferedImage.TYPE_3BYTE_BGR, 0xff000000);
+		assertSame(image, MaskHelper.applyMask(image, mask));
+	}
+
+	@Test
+	public void testReadMaskFromMaskZip() throws IOException
+	{
+		File directory = File.createTempFile("MaskHelperTest", "");
+		directory.delete();
+		directory.mkdirs();
+		File maskZip = new File(directory, "mask.zip");
+		try
+		{
+			ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(maskZip));
+			try
+			{
+				zos.putNextEntry(new ZipEntry("3/12/12_34.png"));
+				ImageIO.write(mask(BufferedImage.TYPE_INT_ARGB), "png", zos);
+				zos.closeEntry();
+			}
+			finally
+			{
+				zos.close();
+			}
+
+			URL tileUrl = new URL("jar:" + new File(directory, "tiles.zip").toURI().toURL() + "!/3/12/12_34.jpg");
+			URL maskUrl = MaskHelper.getMaskURL(tileUrl, 3, null);
+			BufferedImage mask = MaskHelper.readMask(maskUrl);
+			assertNotNull(mask);
+			assertEquals(170, mask.getRGB(2, 0) >>> 24);
+
+			URL missingUrl = new URL("jar:" + new File(directory, "tiles.zip").toURI().toURL() + "!/3/12/12_35.jpg");
+			assertNull(MaskHelper.readMask(MaskHelper.getMaskURL(missingUrl, 3, null)));
+		}
+		finally
+		{
+			maskZip.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testReadZipEntriesSkipsUnreadableEntry() throws IOException
+	{
+		File zip = File.createTempFile("MaskHelperTest", ".zip");
+		try
+		{
+			ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+			try
+			{
+				zos.putNextEntry(new ZipEntry("0/0/0_0.png"));
+				zos.write(new byte[] { 1, 2, 3 });
+				zos.closeEntry();
+				zos.putNextEntry(new ZipEntry("0/0/0_1.png"));
+				zos.write(new byte[] { 4, 5, 6 });
+				zos.closeEntry();
+			}
+			finally
+			{
+				zos.close();
+			}
+
+			//corrupt the first entry's local header signature; the central directory is still valid
+			RandomAccessFile raf = new RandomAccessFile(zip, "rw");
+			try
+			{
+				raf.write(0);
+			}
+			finally
+			{
+				raf.close();
+			}
+
+			final List<String> read = new ArrayList<String>();
+			MaskHelper.readZipEntries(zip.toURI().toURL(), new MaskHelper.MaskInsideZipDelegate()
+			{
+				@Override
+				public void readEntry(String name, InputStream is) throws IOException
+				{
+					read.add(name);
+				}
+			});
+			assertEquals(1, read.size());
+			assertEquals("0/0/0_1.png", read.get(0));
+		}
+		finally
+		{
+			zip.delete();
+		}
+	}
+
+	private static BufferedImage image(int type, int argb)
+	{
+		BufferedImage image = new BufferedImage(4, 4, type);
+		for (int y = 0; y < 4; y++)
+		{
+			for (int x = 0; x < 4; x++)
+			{
+				image.setRGB(x, y, argb);
+			}
+		}
+		return image;
+	}
+
+	private static BufferedImage mask(int type)
+	{
+		BufferedImage mask = new BufferedImage(4, 4, type);
+		for (int y = 0; y < 4; y++)
+		{
+			for (int x = 0; x < 4; x++)
+			{
+				mask.setRGB(x, y, (x * 85) << 24);
+			}
+		}
+		return mask;
+	}
+
+	private static void assertMasked(BufferedImage image, int rgb)
+	{
+		for (int y = 0; y < 4; y++)
+		{
+			for (int x = 0; x < 4; x++)
+			{
+				assertEquals(((x * 85) << 24) | rgb, image.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+
+/**
+ * Unit tests for the {@link PixelTransformerPipeline} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PixelTransformerPipelineTest
+{
+	private final IPixelTransformerDelegate colorToAlpha = new ColorToAlphaTransformerDelegate(new Color(10, 20, 30));
+	private final IPixelTransformerDelegate colorLimit = new ColorLimitTransformerDelegate(new Color(200, 220, 240));
+	private final IPixelTransformerDelegate transparentColor = new TransparentColorTransformerDelegate(new Color(
+			100, 100, 100), 0.2);
+
+	@Test
+	public void testNullImage()
+	{
+		assertNull(PixelTransformerPipeline.transform(null, colorToAlpha));
+	}
+
+	@Test
+	public void testSingleTransformerMatchesPerPixelTransform()
+	{
+		BufferedImage image = createImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+
+		//transform the image using setRGB, which premultiplies using the image's color model
+		BufferedImage expected = new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB_PRE);
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				expected.setRGB(x, y, colorToAlpha.transformPixel(image.getRGB(x, y)));
+			}
+		}
+
+		BufferedImage actual = PixelTransformerPipeline.transform(image, colorToAlpha);
+		assertEquals(BufferedImage.TYPE_INT_ARGB_PRE, actual.getType());
+		assertArrayEquals(getData(expected), getData(actual));
+	}
+
+	@Test
+	public void testChainIsAppliedInOrder()
+	{
+		BufferedImage image = createImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage actual = PixelTransformerPipeline.transform(image, colorLimit, colorToAlpha, transparentColor);
+		assertEquals(BufferedImage.TYPE_INT_ARGB, actual.getType());
+		assertTransformed(image, actual, colorLimit, colorToAlpha, transparentColor);
+	}
+
+	@Test
+	public void testNonIntegerSourceImage()
+	{
+		BufferedImage image = createImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+		BufferedImage actual = PixelTransformerPipeline.transform(image, transparentColor);
+		assertTransformed(image, actual, transparentColor);
+	}
+
+	@Test
+	public void testOpaqueSourceImage()
+	{
+		BufferedImage image = createImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		BufferedImage actual = PixelTransformerPipeline.transform(image, colorLimit, transparentColor);
+		assertTransformed(image, actual, colorLimit, transparentColor);
+	}
+
+	@Test
+	public void testLargeImage()
+	{
+		BufferedImage image = createImage(1100, 1000, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage actual = PixelTransformerPipeline.transform(image, colorToAlpha, transparentColor);
+		assertTransformed(image, actual, colorToAlpha, transparentColor);
+	}
+
+	private static void assertTransformed(BufferedImage image, BufferedImage actual,
+			IPixelTransformerDelegate... transformers)
+	{
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				int argb = image.getRGB(x, y);
+				for (IPixelTransformerDelegate transformer : transformers)
+				{
+					argb = transformer.transformPixel(argb);
+				}
+				assertEquals(argb, actual.getRGB(x, y));
+			}
+		}
+	}
+
+	private static BufferedImage createImage(int width, int height, int type)
+	{
+		Random random = new Random(width * height);
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	private static int[] getData(BufferedImage image)
+	{
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
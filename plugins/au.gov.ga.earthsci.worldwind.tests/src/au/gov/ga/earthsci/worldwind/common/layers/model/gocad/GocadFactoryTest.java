@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Color;
 import java.io.IOException;
@@ -42,6 +43,23 @@ public class GocadFactoryTest
 		assertEquals(2, shapes.get(0).getPositions().size());
 	}
 
+	@Test
+	public void testHeaderMatchesRegex()
+	{
+		String[] lines =
+				new String[] { "GOCAD TSurf 1", "gocad tsurf 1", "GOCAD HomogeneousGroup 1",
+						"GOCAD homogeneousgroup 1", "GOCAD HomogeneousGroup" };
+		for (GocadFactory.GocadType type : GocadFactory.GocadType.values())
+		{
+			for (String line : lines)
+			{
+				assertEquals(type + ": " + line, line.matches(type.headerRegex), type.matchesHeader(line));
+			}
+		}
+		assertTrue(GocadFactory.GocadType.Group.matchesHeader("GOCAD HomogeneousGroup 1"));
+		assertFalse(GocadFactory.GocadType.Group.matchesHeader("GOCAD homogeneousgroup 1"));
+	}
+
 	@Test
 	public void testVSet() throws IOException
 	{
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.PositionList;
+
+/**
+ * Unit tests for the {@link GocadGeometryBuilder} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadGeometryBuilderTest
+{
+	private GocadGeometryBuilder classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		classUnderTest = new GocadGeometryBuilder(null);
+	}
+
+	@Test
+	public void testResolveIndicesMapsIdsToVertexOrder()
+	{
+		classUnderTest.addVertex(10, 149, -35, 1);
+		classUnderTest.addVertex(5, 150, -36, 2);
+		classUnderTest.addVertex(7, 151, -37, 3);
+		classUnderTest.addIndex(7);
+		classUnderTest.addIndex(10);
+		classUnderTest.addIndex(5);
+
+		assertArrayEquals(new int[] { 2, 0, 1 }, classUnderTest.resolveIndices());
+	}
+
+	@Test
+	public void testResolveIndicesAllowsForwardReferences()
+	{
+		classUnderTest.addIndex(2);
+		classUnderTest.addIndex(1);
+		classUnderTest.addVertex(1, 149, -35, 1);
+		classUnderTest.addVertex(2, 150, -36, 2);
+
+		assertArrayEquals(new int[] { 1, 0 }, classUnderTest.resolveIndices());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testResolveIndicesRejectsUnknownId()
+	{
+		classUnderTest.addVertex(1, 149, -35, 1);
+		classUnderTest.addIndex(1);
+		classUnderTest.addIndex(3);
+		classUnderTest.resolveIndices();
+	}
+
+	@Test
+	public void testAtomCopiesPositionAndResolvesToNewVertex()
+	{
+		classUnderTest.addVertex(1, 149, -35, 100);
+		classUnderTest.addVertex(2, 150, -36, 200);
+		assertEquals(2, classUnderTest.addAtom(3, 1));
+		classUnderTest.addIndex(3);
+		classUnderTest.addIndex(1);
+		classUnderTest.addIndex(2);
+
+		assertArrayEquals(new int[] { 2, 0, 1 }, classUnderTest.resolveIndices());
+
+		PositionList positions = classUnderTest.getPositions();
+		assertEquals(3, positions.size());
+		assertEquals(-35, positions.getLatitude(2), 0);
+		assertEquals(149, positions.getLongitude(2), 0);
+		assertEquals(100, positions.getElevation(2), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAtomOfUnknownIdIsRejected()
+	{
+		classUnderTest.addVertex(1, 149, -35, 100);
+		classUnderTest.addAtom(2, 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateVertexIdIsRejected()
+	{
+		classUnderTest.addVertex(1, 149, -35, 100);
+		classUnderTest.addVertex(1, 150, -36, 200);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GocadLineTokenizer} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadLineTokenizerTest
+{
+	private GocadLineTokenizer classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		classUnderTest = new GocadLineTokenizer();
+	}
+
+	@Test
+	public void testVertexLine()
+	{
+		classUnderTest.reset("PVRTX 12 523456.125 -7012345.5 -1.5e3 4, 5.5 CNXYZ");
+		assertFalse(classUnderTest.isKeyword("VRTX"));
+		assertTrue(classUnderTest.isKeyword("PVRTX"));
+		assertEquals(12, classUnderTest.nextInt());
+		assertEquals(523456.125, classUnderTest.nextDouble(), 0);
+		assertEquals(-7012345.5, classUnderTest.nextDouble(), 0);
+		assertEquals(-1500, classUnderTest.nextDouble(), 0);
+		assertEquals(5.5, classUnderTest.getValue(1, Double.NaN), 0);
+		assertFalse(classUnderTest.hasNext());
+	}
+
+	@Test
+	public void testKeywordMustBeWholeToken()
+	{
+		classUnderTest.reset("TRGLX 1 2 3");
+		assertFalse(classUnderTest.isKeyword("TRGL"));
+		classUnderTest.reset("  TRGL\t1 2 3");
+		assertTrue(classUnderTest.isKeyword("TRGL"));
+		assertEquals(1, classUnderTest.nextInt());
+	}
+
+	@Test
+	public void testPrefixAndRest()
+	{
+		classUnderTest.reset("name: My Surface ");
+		assertTrue(classUnderTest.isPrefix("name:"));
+		assertEquals("My Surface", classUnderTest.rest());
+		assertFalse(classUnderTest.hasNext());
+	}
+
+	@Test
+	public void testCommentOrEmpty()
+	{
+		assertTrue(classUnderTest.reset("  # comment").isCommentOrEmpty());
+		assertTrue(classUnderTest.reset("   ").isCommentOrEmpty());
+		assertFalse(classUnderTest.reset("VRTX 1 2 3 4").isCommentOrEmpty());
+	}
+
+	@Test
+	public void testInvalidNumbers()
+	{
+		String[] invalid = { "-", ".", "1e", "1.2.3", "abc", "1x" };
+		for (String s : invalid)
+		{
+			try
+			{
+				classUnderTest.reset(s).nextDouble();
+				fail("Expected NumberFormatException for " + s);
+			}
+			catch (NumberFormatException e)
+			{
+			}
+		}
+		try
+		{
+			classUnderTest.reset("VRTX").nextInt();
+			fail("Expected NumberFormatException");
+		}
+		catch (NumberFormatException e)
+		{
+		}
+		assertArrayEquals(new double[] { 1, 3 }, classUnderTest.reset("1 x 3 -").getValues(), 0);
+	}
+
+	@Test
+	public void testParseDoubleMatchesJdk()
+	{
+		Random random = new Random(42);
+		String[] fixed =
+				{ "0", "-0", "-0.0", "1.", ".5", "1e22", "1e23", "1E-5", "123456789012345678", "0.1", "0.3",
+						"9007199254740993", "4.9e-324", "1.7976931348623157e308", "NaN", "-Infinity", "+2.5" };
+		for (String s : fixed)
+		{
+			assertParsesLikeJdk(s);
+		}
+		for (int i = 0; i < 100000; i++)
+		{
+			double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 8);
+			assertParsesLikeJdk(Double.toString(d));
+			assertParsesLikeJdk(String.format(Locale.US, "%." + random.nextInt(12) + "f", d));
+			assertParsesLikeJdk(Float.toString((float) d));
+		}
+	}
+
+	@Test
+	public void testParseInt()
+	{
+		assertEquals(Integer.MAX_VALUE, classUnderTest.reset("2147483647").nextInt());
+		assertEquals(Integer.MIN_VALUE, classUnderTest.reset("-2147483648").nextInt());
+		assertEquals(7, classUnderTest.reset("+7").nextInt());
+		try
+		{
+			classUnderTest.reset("2147483648").nextInt();
+			fail("Expected NumberFormatException");
+		}
+		catch (NumberFormatException e)
+		{
+		}
+	}
+
+	@Test
+	public void testStaticMatchers()
+	{
+		assertTrue(GocadLineTokenizer.containsIgnoreCase("GOCAD TSurf 1", "tsurf"));
+		assertFalse(GocadLineTokenizer.containsIgnoreCase("GOCAD PLine 1", "tsurf"));
+		assertTrue(GocadLineTokenizer.isKeywordLine("END  ", "END"));
+		assertFalse(GocadLineTokenizer.isKeywordLine("END_ORIGINAL", "END"));
+		assertFalse(GocadLineTokenizer.isKeywordLine(" END", "END"));
+	}
+
+	private void assertParsesLikeJdk(String s)
+	{
+		double expected = Double.parseDouble(s);
+		double actual = classUnderTest.reset(s).nextDouble();
+		assertEquals(s, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FileLockSharer} and {@link StripedFileLock}
+ * classes
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FileLockSharerTest
+{
+	@Test
+	public void testSameNameReturnsSameLock()
+	{
+		StripedFileLock lock1 = FileLockSharer.getLock("testSameNameReturnsSameLock");
+		StripedFileLock lock2 = FileLockSharer.getLock("testSameNameReturnsSameLock");
+		StripedFileLock lock3 = FileLockSharer.getLock("testSameNameReturnsSameLock2");
+		assertSame(lock1, lock2);
+		assertNotSame(lock1, lock3);
+	}
+
+	@Test
+	public void testUnusedLockIsReleased() throws InterruptedException
+	{
+		WeakReference<StripedFileLock> reference =
+				new WeakReference<StripedFileLock>(FileLockSharer.getLock("testUnusedLockIsReleased"));
+		for (int i = 0; i < 50 && reference.get() != null; i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+
+		//a new lock should be created for the same name
+		assertNotNull(FileLockSharer.getLock("testUnusedLockIsReleased"));
+	}
+
+	@Test
+	public void testConcurrentGetLockReturnsSingleLock() throws InterruptedException
+	{
+		final int threadCount = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final Set<StripedFileLock> result = Collections.synchronizedSet(new HashSet<StripedFileLock>());
+		final StripedFileLock[] holder = new StripedFileLock[threadCount];
+		for (int i = 0; i < threadCount; i++)
+		{
+			final int index = i;
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						holder[index] = FileLockSharer.getLock("testConcurrentGetLockReturnsSingleLock");
+						result.add(holder[index]);
+					}
+					catch (InterruptedException e)
+					{
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+		assertEquals(1, result.size());
+	}
+
+	@Test
+	public void testTilePathAndURLPathShareStripe()
+	{
+		StripedFileLock lock = new StripedFileLock();
+		assertSame(lock.getTileLock("Earth/Imagery/3/12/12_34.jpg"),
+				lock.getTileLock("/C:/cache/Earth/Imagery/3/12/12_34.jpg"));
+		assertSame(lock.getTileLock("Earth\\Imagery\\3\\12\\12_34.jpg"),
+				lock.getTileLock("Earth/Imagery/3/12/12_34.jpg"));
+	}
+
+	@Test
+	public void testTilesAreSpreadAcrossStripes()
+	{
+		StripedFileLock lock = new StripedFileLock();
+		Set<Object> stripes = new HashSet<Object>();
+		for (int row = 0; row < 16; row++)
+		{
+			for (int col = 0; col < 16; col++)
+			{
+				stripes.add(lock.getTileLock("Earth/Imagery/5/" + row + "/" + row + "_" + col + ".jpg"));
+			}
+		}
+		assertTrue(stripes.size() > StripedFileLock.DEFAULT_STRIPE_COUNT / 2);
+	}
+}
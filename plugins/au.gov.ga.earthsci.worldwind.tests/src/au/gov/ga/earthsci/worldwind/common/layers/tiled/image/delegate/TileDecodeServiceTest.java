@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TileDecodeService} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TileDecodeServiceTest
+{
+	private TileDecodeService classUnderTest;
+	private CountDownLatch blocker;
+	private final List<Integer> completed = Collections.synchronizedList(new ArrayList<Integer>());
+
+	@Before
+	public void setup() throws Exception
+	{
+		classUnderTest = new TileDecodeService("TileDecodeServiceTest", 1, 3);
+
+		//occupy the single thread until the test releases it
+		blocker = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		assertTrue(classUnderTest.addTask(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				started.countDown();
+				try
+				{
+					blocker.await();
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+	}
+
+	@After
+	public void teardown()
+	{
+		blocker.countDown();
+	}
+
+	@Test
+	public void testRejectsWhenFull()
+	{
+		assertTrue(classUnderTest.addTask(new Task(1)));
+		assertTrue(classUnderTest.addTask(new Task(2)));
+		assertTrue(classUnderTest.addTask(new Task(3)));
+		assertTrue(classUnderTest.isFull());
+		assertFalse(classUnderTest.addTask(new Task(4)));
+	}
+
+	@Test
+	public void testRejectsDuplicates()
+	{
+		assertTrue(classUnderTest.addTask(new Task(1)));
+		assertFalse(classUnderTest.addTask(new Task(1)));
+		assertEquals(2, classUnderTest.getTaskCount());
+	}
+
+	@Test
+	public void testRunsInPriorityOrder() throws Exception
+	{
+		classUnderTest.addTask(new Task(3));
+		classUnderTest.addTask(new Task(1));
+		classUnderTest.addTask(new Task(2));
+		blocker.countDown();
+
+		long end = System.currentTimeMillis() + 5000;
+		while (classUnderTest.getTaskCount() > 0 && System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(0, classUnderTest.getTaskCount());
+		assertEquals(3, completed.size());
+		assertEquals(Integer.valueOf(1), completed.get(0));
+		assertEquals(Integer.valueOf(2), completed.get(1));
+		assertEquals(Integer.valueOf(3), completed.get(2));
+
+		//a completed task can be added again
+		assertTrue(classUnderTest.addTask(new Task(1)));
+	}
+
+	private class Task implements Runnable, Comparable<Task>
+	{
+		private final int priority;
+
+		public Task(int priority)
+		{
+			this.priority = priority;
+		}
+
+		@Override
+		public void run()
+		{
+			completed.add(priority);
+		}
+
+		@Override
+		public int compareTo(Task o)
+		{
+			return priority < o.priority ? -1 : priority == o.priority ? 0 : 1;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof Task && ((Task) obj).priority == priority;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return priority;
+		}
+	}
+}
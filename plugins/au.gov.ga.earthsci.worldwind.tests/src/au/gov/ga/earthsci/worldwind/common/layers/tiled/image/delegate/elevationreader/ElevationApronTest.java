@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ElevationApron} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ElevationApronTest
+{
+	@Test
+	public void testNeighbourURL() throws Exception
+	{
+		URL url = new URL("file:/cache/elevations/3/12/12_7.bil");
+		assertEquals(new URL("file:/cache/elevations/3/12/12_8.bil"), ElevationApron.getNeighbourURL(url, 12, 7, 12, 8));
+		assertEquals(new URL("file:/cache/elevations/3/11/11_7.bil"), ElevationApron.getNeighbourURL(url, 12, 7, 11, 7));
+	}
+
+	@Test
+	public void testNeighbourURLPreservesPadding() throws Exception
+	{
+		URL url = new URL("http://example.com/tiles/5/0012/0012_0099.zip");
+		assertEquals(new URL("http://example.com/tiles/5/0012/0012_0100.zip"),
+				ElevationApron.getNeighbourURL(url, 12, 99, 12, 100));
+		assertEquals(new URL("http://example.com/tiles/5/0011/0011_0099.zip"),
+				ElevationApron.getNeighbourURL(url, 12, 99, 11, 99));
+	}
+
+	@Test
+	public void testNeighbourURLMismatch() throws Exception
+	{
+		assertNull(ElevationApron.getNeighbourURL(new URL("file:/cache/3/12/12_7.bil"), 12, 6, 12, 7));
+		assertNull(ElevationApron.getNeighbourURL(new URL("file:/cache/3/11/12_7.bil"), 12, 7, 12, 8));
+		assertNull(ElevationApron.getNeighbourURL(new URL("http://example.com/wms?row=12&col=7"), 12, 7, 12, 8));
+	}
+
+	@Test
+	public void testCreateGridWithNeighbours()
+	{
+		float[] elevations = { 1, 2, 3, 4 };
+		float[] grid = ElevationApron.createGrid(elevations, 2, 2, new float[] { 5, 6 }, new float[] { 7, 8 });
+		assertArrayEquals(new float[] { 1, 2, 5, 3, 4, 6, 7, 8, Float.NaN }, grid, 0f);
+	}
+
+	@Test
+	public void testCreateGridExtrapolatesMissingNeighbours()
+	{
+		float[] elevations = { 1, 2, 3, 4 };
+		float[] grid = ElevationApron.createGrid(elevations, 2, 2, null, null);
+		assertArrayEquals(new float[] { 1, 2, 3, 3, 4, 5, 5, 6, Float.NaN }, grid, 0f);
+	}
+
+	@Test
+	public void testEdgesCache()
+	{
+		ElevationApron apron = new ElevationApron(1);
+		float[] elevations = { 1, 2, 3, 4 };
+		apron.putEdges("a", elevations, 2, 2);
+		assertArrayEquals(new float[] { 1, 3 }, apron.getEdges("a").firstColumn, 0f);
+		assertArrayEquals(new float[] { 1, 2 }, apron.getEdges("a").firstRow, 0f);
+
+		apron.putEdges("b", elevations, 2, 2);
+		assertNull(apron.getEdges("a"));
+		assertNotNull(apron.getEdges("b"));
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link Hillshader} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class HillshaderTest
+{
+	//normals point towards negative z (see ShadedElevationImageReaderDelegate), so the sun is below
+	private final Hillshader hillshader = new Hillshader(0.5, -0.5, -0.7071);
+
+	@Test
+	public void testFlatGridIsLitBySunElevation()
+	{
+		float[] grid = new float[5 * 5];
+		int[] out = new int[4 * 4];
+		hillshader.shade(grid, 4, 4, 0.1, 0.1, 1, null, out);
+		int c = (int) (255.0 * 0.7071);
+		for (int pixel : out)
+		{
+			assertEquals(0xff000000 | c << 16 | c << 8 | c, pixel);
+		}
+	}
+
+	@Test
+	public void testMissingElevationsAreTransparent()
+	{
+		float[] grid = new float[3 * 3];
+		grid[0] = Float.NaN;
+		grid[2] = Float.NaN;
+		int[] out = new int[2 * 2];
+		hillshader.shade(grid, 2, 2, 0.1, 0.1, 1, null, out);
+		assertEquals(0, out[0]);
+		assertEquals(0, out[1]); //east neighbour missing
+		assertTrue(out[2] != 0);
+	}
+
+	@Test
+	public void testColorsAreShadedInPlace()
+	{
+		float[] grid = new float[3 * 3];
+		int[] colors = { 0x80ff8040, 0xffffffff, 0xff000000, 0 };
+		hillshader.shade(grid, 2, 2, 0.1, 0.1, 1, colors, colors);
+		assertEquals(0x80000000 | (int) (255 * 0.7071) << 16 | (int) (128 * 0.7071) << 8 | (int) (64 * 0.7071),
+				colors[0]);
+		assertEquals(0xff000000, colors[2]);
+		assertEquals(0, colors[3]);
+	}
+
+	@Test
+	public void testTilesWithApronMatchLargerGrid()
+	{
+		//shade a 16x8 area as one grid, and as two 8x8 tiles with aprons from the neighbouring tile
+		int width = 16, height = 8;
+		float[] large = new float[(width + 1) * (height + 1)];
+		Random random = new Random(0);
+		for (int i = 0; i < large.length; i++)
+		{
+			large[i] = random.nextFloat() * 1000f;
+		}
+		int[] expected = new int[width * height];
+		hillshader.shade(large, width, height, 0.01, 0.01, 0.0001, null, expected);
+
+		int tileWidth = width / 2;
+		float[] west = new float[tileWidth * height];
+		float[] east = new float[tileWidth * height];
+		float[] southWest = new float[tileWidth];
+		float[] southEast = new float[tileWidth];
+		for (int y = 0; y < height; y++)
+		{
+			System.arraycopy(large, y * (width + 1), west, y * tileWidth, tileWidth);
+			System.arraycopy(large, y * (width + 1) + tileWidth, east, y * tileWidth, tileWidth);
+		}
+		System.arraycopy(large, height * (width + 1), southWest, 0, tileWidth);
+		System.arraycopy(large, height * (width + 1) + tileWidth, southEast, 0, tileWidth);
+
+		float[] eastOfEast = new float[height];
+		for (int y = 0; y < height; y++)
+		{
+			eastOfEast[y] = large[y * (width + 1) + width];
+		}
+
+		ElevationApron.Edges eastEdges = new ElevationApron.Edges(east, tileWidth, height);
+		float[] westGrid =
+				ElevationApron.createGrid(west, tileWidth, height, eastEdges.firstColumn, southWest);
+		float[] eastGrid = ElevationApron.createGrid(east, tileWidth, height, eastOfEast, southEast);
+
+		int[] westOut = new int[tileWidth * height];
+		int[] eastOut = new int[tileWidth * height];
+		hillshader.shade(westGrid, tileWidth, height, 0.01, 0.01, 0.0001, null, westOut);
+		hillshader.shade(eastGrid, tileWidth, height, 0.01, 0.01, 0.0001, null, eastOut);
+
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < tileWidth; x++)
+			{
+				assertEquals(expected[y * width + x], westOut[y * tileWidth + x]);
+				assertEquals(expected[y * width + x + tileWidth], eastOut[y * tileWidth + x]);
+			}
+		}
+	}
+}
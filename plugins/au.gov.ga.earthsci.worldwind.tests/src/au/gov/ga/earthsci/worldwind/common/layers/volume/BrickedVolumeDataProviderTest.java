@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import static org.junit.Assert.*;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.test.util.TestUtils;
+
+/**
+ * Unit tests for the {@link BrickedVolumeDataProvider} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class BrickedVolumeDataProviderTest
+{
+	private static final URL BINARY_FILE = TestUtils.resolveFileURL(BrickedVolumeDataProviderTest.class.getClassLoader().getResource("au/gov/ga/earthsci/worldwind/common/layers/model/gocad/sgrid/test_sgrid_binary.sg"));
+
+	//smaller than the 6x6x6 test volume, so that edge bricks are exercised
+	private static final int BRICK_SIZE = 4;
+
+	private Mockery mockContext;
+	private VolumeLayer parentLayer;
+	private SGridVolumeDataProvider sgrid;
+	private BrickedVolumeDataProvider classUnderTest;
+	private File file;
+
+	@Before
+	public void setup() throws IOException
+	{
+		mockContext = new Mockery();
+		sgrid = new SGridVolumeDataProvider();
+		classUnderTest = new BrickedVolumeDataProvider();
+		parentLayer = mockContext.mock(VolumeLayer.class);
+
+		mockContext.checking(new Expectations(){{
+			allowing(parentLayer).getCoordinateTransformation();will(returnValue(null));
+			allowing(parentLayer).getPaintedVariableName();will(returnValue(null));
+			allowing(parentLayer).dataAvailable(with(any(VolumeDataProvider.class)));
+		}});
+
+		assertTrue(sgrid.doLoadData(BINARY_FILE, parentLayer));
+		file = File.createTempFile("BrickedVolumeDataProviderTest", ".bvol");
+	}
+
+	@After
+	public void teardown()
+	{
+		classUnderTest.close();
+		file.delete();
+	}
+
+	@Test
+	public void testSaveThenLoadMatchesProvider() throws Exception
+	{
+		BrickedVolumeDataProvider.saveVolumeDataProviderToBrickedFile(sgrid, file, BRICK_SIZE);
+
+		assertTrue(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+		assertMatchesSGrid();
+	}
+
+	@Test
+	public void testStreamedSGridMatchesProvider() throws Exception
+	{
+		BrickedVolumeDataProvider.saveSGridToBrickedFile(BINARY_FILE, parentLayer, file, BRICK_SIZE);
+
+		assertTrue(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+		assertMatchesSGrid();
+	}
+
+	@Test
+	public void testLoadTruncatedFileFails() throws Exception
+	{
+		BrickedVolumeDataProvider.saveVolumeDataProviderToBrickedFile(sgrid, file, BRICK_SIZE);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(raf.length() - 4);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		assertFalse(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+	}
+
+	@Test
+	public void testSliceMatchesProvider() throws Exception
+	{
+		BrickedVolumeDataProvider.saveVolumeDataProviderToBrickedFile(sgrid, file, BRICK_SIZE);
+		assertTrue(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+
+		int[] sizes = { sgrid.getXSize(), sgrid.getYSize(), sgrid.getZSize() };
+		for (int axis = 0; axis < 3; axis++)
+		{
+			int length = sgrid.getXSize() * sgrid.getYSize() * sgrid.getZSize() / sizes[axis];
+			for (int position = 0; position < sizes[axis]; position++)
+			{
+				float[] expected = new float[length];
+				float[] actual = new float[length];
+				sgrid.getSlice(axis, position, expected);
+				classUnderTest.getSlice(axis, position, actual);
+				assertArrayEquals(expected, actual, 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSaveToArrayFileMatchesProvider() throws Exception
+	{
+		BrickedVolumeDataProvider.saveVolumeDataProviderToBrickedFile(sgrid, file, BRICK_SIZE);
+		assertTrue(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+
+		File arrayFile = File.createTempFile("BrickedVolumeDataProviderTest", ".dat");
+		try
+		{
+			ArrayVolumeDataProvider.saveVolumeDataProviderToArrayFile(classUnderTest, arrayFile);
+			ArrayVolumeDataProvider array = new ArrayVolumeDataProvider();
+			assertTrue(array.doLoadData(arrayFile.toURI().toURL(), parentLayer));
+
+			for (int z = 0; z < sgrid.getZSize(); z++)
+			{
+				for (int y = 0; y < sgrid.getYSize(); y++)
+				{
+					for (int x = 0; x < sgrid.getXSize(); x++)
+					{
+						assertEquals(sgrid.getValue(x, y, z), array.getValue(x, y, z), 0);
+					}
+				}
+			}
+		}
+		finally
+		{
+			arrayFile.delete();
+		}
+	}
+
+	@Test
+	public void testValuesAfterCloseAreNoData() throws Exception
+	{
+		BrickedVolumeDataProvider.saveVolumeDataProviderToBrickedFile(sgrid, file, BRICK_SIZE);
+		assertTrue(classUnderTest.doLoadData(file.toURI().toURL(), parentLayer));
+
+		classUnderTest.close();
+		assertNull(classUnderTest.getBrickedVolume());
+		assertEquals(classUnderTest.getNoDataValue(), classUnderTest.getValue(0, 0, 0), 0);
+	}
+
+	private void assertMatchesSGrid()
+	{
+		assertEquals(sgrid.getXSize(), classUnderTest.getXSize());
+		assertEquals(sgrid.getYSize(), classUnderTest.getYSize());
+		assertEquals(sgrid.getZSize(), classUnderTest.getZSize());
+		assertEquals(sgrid.isCellCentred(), classUnderTest.isCellCentred());
+		assertEquals(sgrid.getMinValue(), classUnderTest.getMinValue(), 0);
+		assertEquals(sgrid.getMaxValue(), classUnderTest.getMaxValue(), 0);
+		assertEquals(sgrid.getNoDataValue(), classUnderTest.getNoDataValue(), 0);
+		assertEquals(sgrid.getTop(), classUnderTest.getTop(), 0);
+		assertEquals(sgrid.getDepth(), classUnderTest.getDepth(), 0);
+
+		for (int y = 0; y < sgrid.getYSize(); y++)
+		{
+			for (int x = 0; x < sgrid.getXSize(); x++)
+			{
+				Position expected = sgrid.getPosition(x, y);
+				Position actual = classUnderTest.getPosition(x, y);
+				assertEquals(expected.latitude.degrees, actual.latitude.degrees, 0);
+				assertEquals(expected.longitude.degrees, actual.longitude.degrees, 0);
+				assertEquals(expected.elevation, actual.elevation, 0);
+			}
+		}
+
+		for (int z = 0; z < sgrid.getZSize(); z++)
+		{
+			for (int y = 0; y < sgrid.getYSize(); y++)
+			{
+				for (int x = 0; x < sgrid.getXSize(); x++)
+				{
+					assertEquals(sgrid.getValue(x, y, z), classUnderTest.getValue(x, y, z), 0);
+				}
+			}
+		}
+	}
+}
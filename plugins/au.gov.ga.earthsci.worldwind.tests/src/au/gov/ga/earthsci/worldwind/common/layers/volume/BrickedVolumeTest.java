@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BrickedVolume} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class BrickedVolumeTest
+{
+	private static final int X_SIZE = 23;
+	private static final int Y_SIZE = 17;
+	private static final int Z_SIZE = 11;
+	private static final int BRICK_SIZE = 8;
+	private static final long DATA_OFFSET = 100;
+
+	private static final BrickedVolume.ValueSource SOURCE = new BrickedVolume.ValueSource()
+	{
+		@Override
+		public float getValue(int x, int y, int z)
+		{
+			return expected(x, y, z);
+		}
+	};
+
+	private File file;
+	private RandomAccessFile raf;
+
+	@Before
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("BrickedVolumeTest", ".bvol");
+		raf = new RandomAccessFile(file, "rw");
+		raf.getChannel().position(DATA_OFFSET);
+		BrickedVolume.write(raf.getChannel(), X_SIZE, Y_SIZE, Z_SIZE, BRICK_SIZE, SOURCE);
+	}
+
+	@After
+	public void teardown() throws IOException
+	{
+		raf.close();
+		file.delete();
+	}
+
+	@Test
+	public void testWrittenLengthMatchesBrickOffsets() throws IOException
+	{
+		BrickedVolume volume = createVolume(Long.MAX_VALUE);
+		assertEquals(X_SIZE * Y_SIZE * Z_SIZE * 4L, volume.getDataLength());
+		assertEquals(DATA_OFFSET + volume.getDataLength(), raf.length());
+	}
+
+	@Test
+	public void testGetValue()
+	{
+		BrickedVolume volume = createVolume(Long.MAX_VALUE);
+		for (int z = 0; z < Z_SIZE; z++)
+		{
+			for (int y = 0; y < Y_SIZE; y++)
+			{
+				for (int x = 0; x < X_SIZE; x++)
+				{
+					assertEquals(expected(x, y, z), volume.getValue(x, y, z), 0);
+				}
+			}
+		}
+		//3 x 3 x 2 bricks
+		assertEquals(18, volume.getCachedBrickCount());
+	}
+
+	@Test
+	public void testGetValueWithSmallCache()
+	{
+		//smaller than a brick, so only the most recently used brick is kept
+		BrickedVolume volume = createVolume(1);
+		for (int x = X_SIZE - 1; x >= 0; x--)
+		{
+			for (int z = 0; z < Z_SIZE; z++)
+			{
+				for (int y = Y_SIZE - 1; y >= 0; y--)
+				{
+					assertEquals(expected(x, y, z), volume.getValue(x, y, z), 0);
+					assertEquals(1, volume.getCachedBrickCount());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCacheEvictsLeastRecentlyUsed()
+	{
+		//room for two full bricks
+		BrickedVolume volume = createVolume(2 * BRICK_SIZE * BRICK_SIZE * BRICK_SIZE * 4L);
+		volume.getValue(0, 0, 0);
+		volume.getValue(BRICK_SIZE, 0, 0);
+		volume.getValue(0, 0, 0);
+		volume.getValue(0, BRICK_SIZE, 0);
+		assertEquals(2, volume.getCachedBrickCount());
+		volume.clearCache();
+		assertEquals(0, volume.getCachedBrickCount());
+		assertEquals(expected(1, 2, 3), volume.getValue(1, 2, 3), 0);
+	}
+
+	@Test
+	public void testGetSlice()
+	{
+		BrickedVolume volume = createVolume(Long.MAX_VALUE);
+
+		float[] values = new float[Y_SIZE * Z_SIZE];
+		for (int x = 0; x < X_SIZE; x++)
+		{
+			volume.getSlice(0, x, values);
+			for (int z = 0; z < Z_SIZE; z++)
+			{
+				for (int y = 0; y < Y_SIZE; y++)
+				{
+					assertEquals(expected(x, y, z), values[y + z * Y_SIZE], 0);
+				}
+			}
+		}
+
+		values = new float[X_SIZE * Z_SIZE];
+		for (int y = 0; y < Y_SIZE; y++)
+		{
+			volume.getSlice(1, y, values);
+			for (int z = 0; z < Z_SIZE; z++)
+			{
+				for (int x = 0; x < X_SIZE; x++)
+				{
+					assertEquals(expected(x, y, z), values[x + z * X_SIZE], 0);
+				}
+			}
+		}
+
+		values = new float[X_SIZE * Y_SIZE];
+		for (int z = 0; z < Z_SIZE; z++)
+		{
+			volume.getSlice(2, z, values);
+			for (int y = 0; y < Y_SIZE; y++)
+			{
+				for (int x = 0; x < X_SIZE; x++)
+				{
+					assertEquals(expected(x, y, z), values[x + y * X_SIZE], 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWriteSlicesInReverseOrder() throws IOException
+	{
+		raf.setLength(0);
+		BrickedVolume volume = createVolume(Long.MAX_VALUE);
+		float[] values = new float[X_SIZE * Y_SIZE];
+		for (int z = Z_SIZE - 1; z >= 0; z--)
+		{
+			for (int y = 0; y < Y_SIZE; y++)
+			{
+				for (int x = 0; x < X_SIZE; x++)
+				{
+					values[x + y * X_SIZE] = expected(x, y, z);
+				}
+			}
+			volume.writeSlice(z, values);
+		}
+		assertEquals(DATA_OFFSET + volume.getDataLength(), raf.length());
+
+		for (int z = 0; z < Z_SIZE; z++)
+		{
+			for (int y = 0; y < Y_SIZE; y++)
+			{
+				for (int x = 0; x < X_SIZE; x++)
+				{
+					assertEquals(expected(x, y, z), volume.getValue(x, y, z), 0);
+				}
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetValueOutsideVolume()
+	{
+		createVolume(Long.MAX_VALUE).getValue(X_SIZE, 0, 0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTruncatedFile() throws IOException
+	{
+		raf.setLength(DATA_OFFSET + 100);
+		createVolume(Long.MAX_VALUE).getValue(X_SIZE - 1, Y_SIZE - 1, Z_SIZE - 1);
+	}
+
+	private BrickedVolume createVolume(long cacheSize)
+	{
+		return new BrickedVolume(raf.getChannel(), DATA_OFFSET, X_SIZE, Y_SIZE, Z_SIZE, BRICK_SIZE, cacheSize);
+	}
+
+	private static float expected(int x, int y, int z)
+	{
+		return x + y * 100 + z * 10000;
+	}
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VolumePyramid} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class VolumePyramidTest
+{
+	private static final float NO_DATA = -99999f;
+
+	private static final BrickedVolume.ValueSource SOURCE = new BrickedVolume.ValueSource()
+	{
+		@Override
+		public float getValue(int x, int y, int z)
+		{
+			//a corner of the volume has no data
+			if (x < 3 && y < 3 && z < 3)
+			{
+				return NO_DATA;
+			}
+			return x + y * 7 + z * 3;
+		}
+	};
+
+	@Test
+	public void testLevelCount()
+	{
+		assertEquals(1 + 5, new VolumePyramid(SOURCE, 20, 3, 1, NO_DATA, Long.MAX_VALUE).getLevelCount());
+		assertEquals(1 + 5, new VolumePyramid(SOURCE, 32, 3, 1, NO_DATA, Long.MAX_VALUE).getLevelCount());
+		assertEquals(1 + 6, new VolumePyramid(SOURCE, 33, 3, 1, NO_DATA, Long.MAX_VALUE).getLevelCount());
+	}
+
+	@Test
+	public void testMemoryBudgetLimitsStoredLevels()
+	{
+		VolumePyramid unlimited = new VolumePyramid(SOURCE, 64, 64, 64, NO_DATA, Long.MAX_VALUE);
+		assertEquals(1, unlimited.getFirstLevel());
+
+		//level 6 (1 cell), 5 (8 cells) and 4 (64 cells) fit, level 3 (512 cells) doesn't
+		VolumePyramid limited = new VolumePyramid(SOURCE, 64, 64, 64, NO_DATA, 73 * 16);
+		assertEquals(4, limited.getFirstLevel());
+
+		VolumePyramid none = new VolumePyramid(SOURCE, 64, 64, 64, NO_DATA, 0);
+		assertEquals(none.getLevelCount(), none.getFirstLevel());
+		none.build();
+		assertFalse(none.isLevelAvailable(none.getLevelCount() - 1));
+	}
+
+	@Test
+	public void testLevelForSize()
+	{
+		assertEquals(0, VolumePyramid.getLevelForSize(256, 256));
+		assertEquals(1, VolumePyramid.getLevelForSize(257, 256));
+		assertEquals(1, VolumePyramid.getLevelForSize(512, 256));
+		assertEquals(3, VolumePyramid.getLevelForSize(2000, 256));
+	}
+
+	@Test
+	public void testStoredLevelServesInteractiveLevelOfLargeVolume()
+	{
+		//a slice through a 2000^3 volume is dragged at level 3, but only levels 4 and coarser fit in the default budget
+		VolumePyramid pyramid =
+				new VolumePyramid(SOURCE, 2000, 2000, 2000, NO_DATA, VolumePyramid.DEFAULT_MEMORY_SIZE);
+		int interactive = VolumePyramid.getLevelForSize(2000, 256);
+		int stored = pyramid.getStoredLevel(interactive);
+		assertEquals(4, pyramid.getFirstLevel());
+		assertEquals(4, stored);
+		assertEquals(pyramid.getLevelCount() - 1, pyramid.getStoredLevel(pyramid.getLevelCount() + 5));
+	}
+
+	@Test
+	public void testStoredLevelIsAvailableAfterBuild()
+	{
+		//same shape as the large volume case, scaled down: level 2 fits, level 1 doesn't
+		VolumePyramid pyramid = new VolumePyramid(SOURCE, 64, 64, 64, NO_DATA, 5000 * 16);
+		int interactive = VolumePyramid.getLevelForSize(64, 32);
+		assertEquals(1, interactive);
+		assertFalse(pyramid.isLevelAvailable(interactive));
+		pyramid.build();
+		assertFalse(pyramid.isLevelAvailable(interactive));
+		assertTrue(pyramid.isLevelAvailable(pyramid.getStoredLevel(interactive)));
+	}
+
+	@Test
+	public void testLevelsMatchBruteForce()
+	{
+		int xSize = 13, ySize = 9, zSize = 6;
+		VolumePyramid pyramid = new VolumePyramid(SOURCE, xSize, ySize, zSize, NO_DATA, Long.MAX_VALUE);
+		assertFalse(pyramid.isLevelAvailable(1));
+		pyramid.build();
+		assertTrue(pyramid.isComplete());
+		assertEquals(1, pyramid.getProgress(), 0);
+		assertFalse(pyramid.isLevelAvailable(0));
+
+		for (int level = 1; level < pyramid.getLevelCount(); level++)
+		{
+			assertTrue(pyramid.isLevelAvailable(level));
+			int size = 1 << level;
+			for (int z = 0; z < zSize; z++)
+			{
+				for (int y = 0; y < ySize; y++)
+				{
+					for (int x = 0; x < xSize; x++)
+					{
+						float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+						double sum = 0;
+						int count = 0;
+						int xs = x / size * size, ys = y / size * size, zs = z / size * size;
+						for (int vz = zs; vz < Math.min(zSize, zs + size); vz++)
+						{
+							for (int vy = ys; vy < Math.min(ySize, ys + size); vy++)
+							{
+								for (int vx = xs; vx < Math.min(xSize, xs + size); vx++)
+								{
+									float value = SOURCE.getValue(vx, vy, vz);
+									if (value != NO_DATA)
+									{
+										min = Math.min(min, value);
+										max = Math.max(max, value);
+										sum += value;
+										count++;
+									}
+								}
+							}
+						}
+						if (count == 0)
+						{
+							assertEquals(NO_DATA, pyramid.getMean(level, x, y, z), 0);
+							assertEquals(NO_DATA, pyramid.getMinimum(level, x, y, z), 0);
+							assertEquals(NO_DATA, pyramid.getMaximum(level, x, y, z), 0);
+						}
+						else
+						{
+							assertEquals(sum / count, pyramid.getMean(level, x, y, z), 1e-4);
+							assertEquals(min, pyramid.getMinimum(level, x, y, z), 0);
+							assertEquals(max, pyramid.getMaximum(level, x, y, z), 0);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLevelsAreAvailableAsTheyAreBuilt()
+	{
+		final int size = 16;
+		final VolumePyramid[] pyramid = new VolumePyramid[1];
+		BrickedVolume.ValueSource source = new BrickedVolume.ValueSource()
+		{
+			@Override
+			public float getValue(int x, int y, int z)
+			{
+				//cancel once the last value is read, so that only the finest stored level is built
+				if (x == size - 1 && y == size - 1 && z == size - 1)
+				{
+					pyramid[0].cancel();
+				}
+				return SOURCE.getValue(x, y, z);
+			}
+		};
+		pyramid[0] = new VolumePyramid(source, size, size, size, NO_DATA, Long.MAX_VALUE);
+		pyramid[0].build();
+
+		int first = pyramid[0].getFirstLevel();
+		assertFalse(pyramid[0].isComplete());
+		assertTrue(pyramid[0].isLevelAvailable(first));
+		assertFalse(pyramid[0].isLevelAvailable(first + 1));
+		assertEquals(SOURCE.getValue(size - 1, size - 1, size - 1),
+				pyramid[0].getMaximum(first, size - 1, size - 1, size - 1), 0);
+	}
+
+	@Test
+	public void testCancelledBuildIsIncomplete()
+	{
+		VolumePyramid pyramid = new VolumePyramid(SOURCE, 16, 16, 16, NO_DATA, Long.MAX_VALUE);
+		pyramid.cancel();
+		pyramid.build();
+		assertFalse(pyramid.isComplete());
+		assertFalse(pyramid.isLevelAvailable(1));
+	}
+}
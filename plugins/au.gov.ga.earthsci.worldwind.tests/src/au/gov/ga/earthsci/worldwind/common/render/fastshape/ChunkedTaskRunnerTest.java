@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ChunkTask;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ProgressListener;
+
+/**
+ * Unit tests for the {@link ChunkedTaskRunner} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ChunkedTaskRunnerTest
+{
+	private final ChunkedTaskRunner classUnderTest = new ChunkedTaskRunner("ChunkedTaskRunnerTest", 4);
+
+	@Test
+	public void testChunkCount()
+	{
+		assertEquals(0, ChunkedTaskRunner.getChunkCount(0, 10));
+		assertEquals(1, ChunkedTaskRunner.getChunkCount(10, 10));
+		assertEquals(2, ChunkedTaskRunner.getChunkCount(11, 10));
+	}
+
+	@Test
+	public void testEveryElementVisitedOnce()
+	{
+		final int[] visits = new int[1003];
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		classUnderTest.run(visits.length, 10, new ChunkTask()
+		{
+			@Override
+			public void run(int chunk, int start, int end)
+			{
+				assertEquals(chunk * 10, start);
+				threads.add(Thread.currentThread());
+				for (int i = start; i < end; i++)
+				{
+					visits[i]++;
+				}
+			}
+		}, null);
+
+		for (int i = 0; i < visits.length; i++)
+		{
+			assertEquals(1, visits[i]);
+		}
+		assertTrue(threads.size() <= classUnderTest.getThreadCount());
+	}
+
+	@Test
+	public void testProgressReportsEveryChunk()
+	{
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger maxCompleted = new AtomicInteger();
+		classUnderTest.run(95, 10, new ChunkTask()
+		{
+			@Override
+			public void run(int chunk, int start, int end)
+			{
+			}
+		}, new ProgressListener()
+		{
+			@Override
+			public void progressChanged(int completedChunks, int chunkCount)
+			{
+				assertEquals(10, chunkCount);
+				calls.incrementAndGet();
+				synchronized (maxCompleted)
+				{
+					maxCompleted.set(Math.max(maxCompleted.get(), completedChunks));
+				}
+			}
+		});
+		assertEquals(10, calls.get());
+		assertEquals(10, maxCompleted.get());
+	}
+
+	@Test
+	public void testExceptionRethrownInCaller()
+	{
+		try
+		{
+			classUnderTest.run(100, 1, new ChunkTask()
+			{
+				@Override
+				public void run(int chunk, int start, int end)
+				{
+					if (chunk == 50)
+					{
+						throw new IllegalStateException("chunk " + chunk);
+					}
+				}
+			}, null);
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals("chunk 50", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link DepthSorter} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class DepthSorterTest
+{
+	private DepthSorter classUnderTest;
+	private Random random;
+
+	@Before
+	public void setup()
+	{
+		classUnderTest = new DepthSorter();
+		random = new Random(42);
+	}
+
+	@Test
+	public void testSortPoints()
+	{
+		float[] vertices = randomVertices(1000);
+		int[] sorted = new int[1000];
+		int nearest = classUnderTest.sortPoints(vertices, null, 10, 20, 30, sorted);
+
+		assertSortedFurthestFirst(vertices, null, 1, sorted, 10, 20, 30);
+		assertEquals(sorted[sorted.length - 1], nearest);
+	}
+
+	@Test
+	public void testSortIndexedTriangles()
+	{
+		float[] vertices = randomVertices(500);
+		int[] indices = new int[900];
+		for (int i = 0; i < indices.length; i++)
+		{
+			indices[i] = random.nextInt(500);
+		}
+		int[] sorted = new int[indices.length];
+		int nearest = classUnderTest.sortTriangles(vertices, indices, -5, 0, 5, sorted);
+
+		assertSortedFurthestFirst(vertices, indices, 3, sorted, -5, 0, 5);
+		assertEquals(sorted[sorted.length - 3], nearest);
+	}
+
+	@Test
+	public void testSmallEyeMovementIsIncremental()
+	{
+		float[] vertices = randomVertices(10000);
+		int[] sorted = new int[10000];
+		classUnderTest.sortPoints(vertices, null, 500, 500, 500, sorted);
+		assertFalse(classUnderTest.isLastSortIncremental());
+
+		classUnderTest.sortPoints(vertices, null, 500.1, 500, 500, sorted);
+		assertTrue(classUnderTest.isLastSortIncremental());
+		assertSortedFurthestFirst(vertices, null, 1, sorted, 500.1, 500, 500);
+	}
+
+	@Test
+	public void testLargeEyeMovementFallsBackToRadixSort()
+	{
+		float[] vertices = randomVertices(10000);
+		int[] sorted = new int[10000];
+		classUnderTest.sortPoints(vertices, null, 500, 500, 500, sorted);
+		classUnderTest.sortPoints(vertices, null, -500, -500, -500, sorted);
+
+		assertFalse(classUnderTest.isLastSortIncremental());
+		assertSortedFurthestFirst(vertices, null, 1, sorted, -500, -500, -500);
+	}
+
+	@Test
+	public void testEmptyReturnsMinusOne()
+	{
+		assertEquals(-1, classUnderTest.sortPoints(new float[0], null, 0, 0, 0, new int[0]));
+	}
+
+	private float[] randomVertices(int count)
+	{
+		float[] vertices = new float[count * 3];
+		for (int i = 0; i < vertices.length; i++)
+		{
+			vertices[i] = random.nextFloat() * 100f;
+		}
+		return vertices;
+	}
+
+	private static void assertSortedFurthestFirst(float[] vertices, int[] indices, int primitiveSize, int[] sorted,
+			double eyeX, double eyeY, double eyeZ)
+	{
+		//check that the sorted indices are a permutation of the input primitives
+		int elementCount = indices != null ? indices.length : vertices.length / 3;
+		int[] expectedCounts = new int[vertices.length / 3];
+		for (int i = 0; i < elementCount; i++)
+		{
+			expectedCounts[indices != null ? indices[i] : i]++;
+		}
+		for (int index : sorted)
+		{
+			expectedCounts[index]--;
+		}
+		for (int count : expectedCounts)
+		{
+			assertEquals(0, count);
+		}
+
+		float previous = Float.MAX_VALUE;
+		for (int i = 0; i < sorted.length; i += primitiveSize)
+		{
+			double distance = 0;
+			for (int j = 0; j < primitiveSize; j++)
+			{
+				int v = sorted[i + j] * 3;
+				double dx = vertices[v] - eyeX;
+				double dy = vertices[v + 1] - eyeY;
+				double dz = vertices[v + 2] - eyeZ;
+				distance += dx * dx + dy * dy + dz * dz;
+			}
+			assertTrue((float) distance <= previous);
+			previous = (float) distance;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.volume.TopBottomFastShape;
+
+/**
+ * Unit tests for the {@link FastShape} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class FastShapeTest
+{
+	@Test
+	public void testPrimitiveElevationForFastShape()
+	{
+		assertTrue(FastShape.canCalculatePrimitiveElevation(FastShape.class));
+	}
+
+	@Test
+	public void testNoPrimitiveElevationWhenOffsetOverridden()
+	{
+		assertFalse(FastShape.canCalculatePrimitiveElevation(TopBottomFastShape.class));
+		assertFalse(FastShape.canCalculatePrimitiveElevation(OffsetShape.class));
+		assertFalse(FastShape.canCalculatePrimitiveElevation(OffsetSubShape.class));
+	}
+
+	@Test
+	public void testNoPrimitiveElevationWhenElevationOverridden()
+	{
+		assertFalse(FastShape.canCalculatePrimitiveElevation(ElevationShape.class));
+	}
+
+	private static class OffsetShape extends FastShape
+	{
+		public OffsetShape(List<Position> positions, int mode)
+		{
+			super(positions, mode);
+		}
+
+		@Override
+		protected double calculateElevationOffset(LatLon position)
+		{
+			return super.calculateElevationOffset(position) + 1;
+		}
+	}
+
+	private static class OffsetSubShape extends OffsetShape
+	{
+		public OffsetSubShape(List<Position> positions, int mode)
+		{
+			super(positions, mode);
+		}
+	}
+
+	private static class ElevationShape extends FastShape
+	{
+		public ElevationShape(List<Position> positions, int mode)
+		{
+			super(positions, mode);
+		}
+
+		@Override
+		protected double calculateElevation(Globe globe, double verticalExaggeration, LatLon position)
+		{
+			return 0;
+		}
+	}
+}
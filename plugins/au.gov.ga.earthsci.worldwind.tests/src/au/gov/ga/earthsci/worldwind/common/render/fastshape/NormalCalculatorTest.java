@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link NormalCalculator} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class NormalCalculatorTest
+{
+	private static final ChunkedTaskRunner runner = new ChunkedTaskRunner("NormalCalculatorTest", 4);
+
+	private NormalCalculator classUnderTest;
+	private Random random;
+
+	@Before
+	public void setup()
+	{
+		classUnderTest = new NormalCalculator(7);
+		random = new Random(42);
+	}
+
+	@Test
+	public void testSingleTriangle()
+	{
+		float[] vertices = new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 };
+		float[] normals = new float[9];
+		classUnderTest.calculateNormals(vertices, null, false, false, normals, runner, null);
+		assertArrayEquals(new float[] { 0, 0, 1, 0, 0, 1, 0, 0, 1 }, normals, 0);
+
+		classUnderTest.calculateNormals(vertices, null, false, true, normals, runner, null);
+		assertArrayEquals(new float[] { 0, 0, -1, 0, 0, -1, 0, 0, -1 }, normals, 0);
+	}
+
+	@Test
+	public void testDegenerateTrianglesIgnored()
+	{
+		float[] vertices = new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 2, 0, 0 };
+		int[] indices = new int[] { 0, 1, 2, 0, 1, 3 };
+		float[] normals = new float[12];
+		classUnderTest.calculateNormals(vertices, indices, false, false, normals, runner, null);
+		assertArrayEquals(new float[] { 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 0 }, normals, 0);
+	}
+
+	@Test
+	public void testIndexedTrianglesMatchReference()
+	{
+		float[] vertices = randomVertices(1000);
+		int[] indices = randomIndices(3000, 1000);
+		assertMatchesReference(vertices, indices, false, false);
+		assertMatchesReference(vertices, indices, false, true);
+	}
+
+	@Test
+	public void testTriangleStripMatchesReference()
+	{
+		float[] vertices = randomVertices(1000);
+		assertMatchesReference(vertices, null, true, false);
+		assertMatchesReference(vertices, randomIndices(2500, 1000), true, false);
+	}
+
+	@Test
+	public void testInvalidateAfterIndicesModifiedInPlace()
+	{
+		float[] vertices = randomVertices(100);
+		int[] indices = randomIndices(300, 100);
+		float[] normals = new float[vertices.length];
+		classUnderTest.calculateNormals(vertices, indices, false, false, normals, runner, null);
+
+		for (int i = 0; i < indices.length; i++)
+		{
+			indices[i] = random.nextInt(100);
+		}
+		classUnderTest.invalidate();
+		classUnderTest.calculateNormals(vertices, indices, false, false, normals, runner, null);
+		assertArrayEquals(referenceNormals(vertices, indices, false, false), normals, 0);
+	}
+
+	private void assertMatchesReference(float[] vertices, int[] indices, boolean triangleStrip, boolean reverseNormals)
+	{
+		float[] expected = referenceNormals(vertices, indices, triangleStrip, reverseNormals);
+
+		float[] parallel = new float[vertices.length];
+		classUnderTest.calculateNormals(vertices, indices, triangleStrip, reverseNormals, parallel, runner, null);
+		assertArrayEquals(expected, parallel, 0);
+
+		float[] serial = new float[vertices.length];
+		classUnderTest.calculateNormals(vertices, indices, triangleStrip, reverseNormals, serial, null, null);
+		assertArrayEquals(expected, serial, 0);
+	}
+
+	/**
+	 * Straightforward scatter implementation, as previously used by
+	 * {@link FastShape}.
+	 */
+	private static float[] referenceNormals(float[] vertices, int[] indices, boolean triangleStrip,
+			boolean reverseNormals)
+	{
+		int size = vertices.length / 3;
+		int[] count = new int[size];
+		double[] norms = new double[vertices.length];
+
+		boolean hasIndices = indices != null;
+		int loopLimit = hasIndices ? indices.length : size;
+		int loopIncrement = 3;
+		if (triangleStrip)
+		{
+			loopLimit -= 2;
+			loopIncrement = 1;
+		}
+
+		for (int i = 0; i < loopLimit; i += loopIncrement)
+		{
+			int[] index = new int[3];
+			for (int k = 0; k < 3; k++)
+			{
+				index[k] = hasIndices ? indices[i + k] : i + k;
+			}
+			double[] e1 = new double[3];
+			double[] e2 = new double[3];
+			for (int k = 0; k < 3; k++)
+			{
+				e1[k] = (double) vertices[index[1] * 3 + k] - vertices[index[0] * 3 + k];
+				e2[k] =
+						triangleStrip && i % 2 == 0 ? (double) vertices[index[0] * 3 + k] - vertices[index[2] * 3 + k]
+								: (double) vertices[index[2] * 3 + k] - vertices[index[0] * 3 + k];
+			}
+			double[] a = reverseNormals ? e2 : e1;
+			double[] b = reverseNormals ? e1 : e2;
+			double nx = a[1] * b[2] - a[2] * b[1];
+			double ny = a[2] * b[0] - a[0] * b[2];
+			double nz = a[0] * b[1] - a[1] * b[0];
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length > 0)
+			{
+				for (int k = 0; k < 3; k++)
+				{
+					norms[index[k] * 3 + 0] += nx / length;
+					norms[index[k] * 3 + 1] += ny / length;
+					norms[index[k] * 3 + 2] += nz / length;
+					count[index[k]]++;
+				}
+			}
+		}
+
+		float[] normals = new float[vertices.length];
+		for (int i = 0; i < normals.length; i++)
+		{
+			int c = count[i / 3] > 0 ? count[i / 3] : 1;
+			normals[i] = (float) norms[i] / c;
+		}
+		return normals;
+	}
+
+	private float[] randomVertices(int count)
+	{
+		float[] vertices = new float[count * 3];
+		for (int i = 0; i < vertices.length; i++)
+		{
+			vertices[i] = random.nextFloat() * 100 - 50;
+		}
+		return vertices;
+	}
+
+	private int[] randomIndices(int count, int vertexCount)
+	{
+		int[] indices = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			indices[i] = random.nextInt(vertexCount);
+		}
+		return indices;
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.geom.Position;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+
+/**
+ * Unit tests for the {@link PositionList} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PositionListTest
+{
+	@Test
+	public void testEmptyListHasNoBounds()
+	{
+		assertNull(new PositionList().getBounds());
+	}
+
+	@Test
+	public void testSinglePositionBounds()
+	{
+		PositionList list = new PositionList();
+		list.add(-35, 149, 600);
+
+		Bounds bounds = list.getBounds();
+		assertEquals(Position.fromDegrees(-35, 149, 600), bounds.minimum);
+		assertEquals(Position.fromDegrees(-35, 149, 600), bounds.maximum);
+	}
+
+	@Test
+	public void testBoundsAreComponentwise()
+	{
+		PositionList list = new PositionList();
+		list.add(-35, 149, 600);
+		list.add(-10, 120, -2000);
+		list.add(-40, 130, 100);
+
+		Bounds bounds = list.getBounds();
+		assertEquals(-40, bounds.minimum.latitude.degrees, 0);
+		assertEquals(120, bounds.minimum.longitude.degrees, 0);
+		assertEquals(-2000, bounds.minimum.elevation, 0);
+		assertEquals(-10, bounds.maximum.latitude.degrees, 0);
+		assertEquals(149, bounds.maximum.longitude.degrees, 0);
+		assertEquals(600, bounds.maximum.elevation, 0);
+	}
+
+	@Test
+	public void testBoundsIgnoreClearedPositions()
+	{
+		PositionList list = new PositionList();
+		list.add(80, 170, 10000);
+		list.clear();
+		list.add(-35, 149, 600);
+		list.add(-36, 148, 500);
+
+		Bounds bounds = list.getBounds();
+		assertEquals(-35, bounds.maximum.latitude.degrees, 0);
+		assertEquals(149, bounds.maximum.longitude.degrees, 0);
+		assertEquals(600, bounds.maximum.elevation, 0);
+	}
+
+	@Test
+	public void testGetMatchesPrimitiveAccessors()
+	{
+		PositionList list = new PositionList(1);
+		list.add(Position.fromDegrees(-35, 149, 600));
+		list.add(-36, 148, 500);
+
+		assertEquals(2, list.size());
+		assertEquals(Position.fromDegrees(-36, 148, 500), list.get(1));
+		assertEquals(-35, list.getLatitude(0), 0);
+		assertEquals(149, list.getLongitude(0), 0);
+		assertEquals(600, list.getElevation(0), 0);
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import static org.junit.Assert.*;
+
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.retrieve.ExtendedRetrievalService.RetrievalListener;
+
+/**
+ * Unit tests for the {@link ExtendedRetrievalService} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ExtendedRetrievalServiceTest
+{
+	private static final long TIMEOUT = 5000;
+
+	private Mockery mockContext;
+	private ExtendedRetrievalService classUnderTest;
+	private List<String> retrieved;
+	private CountDownLatch blockerStarted;
+	private CountDownLatch blockerRelease;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		classUnderTest = new ExtendedRetrievalService();
+		//a single thread, so that queued retrievers run one at a time in priority order
+		classUnderTest.setRetrieverPoolSize(1);
+		retrieved = Collections.synchronizedList(new ArrayList<String>());
+		blockerStarted = new CountDownLatch(1);
+		blockerRelease = new CountDownLatch(1);
+	}
+
+	@After
+	public void teardown()
+	{
+		blockerRelease.countDown();
+		classUnderTest.shutdown(true);
+	}
+
+	@Test
+	public void testReprioritizedRetrieverRunsFirst() throws Exception
+	{
+		CountDownLatch finished = new CountDownLatch(3);
+		Retriever blocker = createBlockingRetriever("blocker");
+		Retriever a = createRetriever("a", finished);
+		Retriever b = createRetriever("b", finished);
+		Retriever c = createRetriever("c", finished);
+
+		classUnderTest.runRetriever(blocker, 1);
+		assertTrue(blockerStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		classUnderTest.runRetriever(a, 1);
+		classUnderTest.runRetriever(b, 2);
+		classUnderTest.runRetriever(c, 3);
+		assertTrue(classUnderTest.reprioritize(c, 0.5));
+
+		blockerRelease.countDown();
+		assertTrue(finished.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(Arrays.asList("blocker", "c", "a", "b"), retrieved);
+	}
+
+	@Test
+	public void testReprioritizeRunningRetrieverHasNoEffect() throws Exception
+	{
+		Retriever blocker = createBlockingRetriever("blocker");
+
+		classUnderTest.runRetriever(blocker, 1);
+		assertTrue(blockerStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		assertFalse(classUnderTest.reprioritize(blocker, 0.5));
+	}
+
+	@Test
+	public void testReprioritizeUnknownRetrieverHasNoEffect()
+	{
+		Retriever a = createRetriever("a", new CountDownLatch(1));
+
+		assertFalse(classUnderTest.reprioritize(a, 0.5));
+	}
+
+	@Test
+	public void testThrowingListenerDoesNotLeaveRetrieverIndexed() throws Exception
+	{
+		CountDownLatch finished = new CountDownLatch(1);
+		Retriever a = createRetriever("a", finished);
+		classUnderTest.addRetrievalListener(new RetrievalListener()
+		{
+			@Override
+			public void beforeRetrieve(Retriever retriever)
+			{
+			}
+
+			@Override
+			public void afterRetrieve(Retriever retriever)
+			{
+				throw new IllegalStateException();
+			}
+		});
+
+		classUnderTest.runRetriever(a, 1);
+		assertTrue(finished.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (classUnderTest.contains(a) && System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+		}
+		assertFalse(classUnderTest.contains(a));
+		assertEquals(0, classUnderTest.getNumRetrieversPending());
+	}
+
+	private Retriever createBlockingRetriever(final String name)
+	{
+		return createRetriever(name, new Action()
+		{
+			@Override
+			public Object invoke(Invocation invocation) throws Throwable
+			{
+				blockerStarted.countDown();
+				blockerRelease.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				retrieved.add(name);
+				return null;
+			}
+
+			@Override
+			public void describeTo(Description description)
+			{
+				description.appendText("block until released");
+			}
+		});
+	}
+
+	private Retriever createRetriever(final String name, final CountDownLatch finished)
+	{
+		return createRetriever(name, new Action()
+		{
+			@Override
+			public Object invoke(Invocation invocation) throws Throwable
+			{
+				retrieved.add(name);
+				finished.countDown();
+				return null;
+			}
+
+			@Override
+			public void describeTo(Description description)
+			{
+				description.appendText("record retrieval");
+			}
+		});
+	}
+
+	private Retriever createRetriever(final String name, final Action call)
+	{
+		final Retriever retriever = mockContext.mock(Retriever.class, name);
+		try
+		{
+			mockContext.checking(new Expectations()
+			{
+				{
+					allowing(retriever).getName();
+					will(returnValue(name));
+					allowing(retriever).call();
+					will(call);
+					ignoring(retriever);
+				}
+			});
+		}
+		catch (Exception e)
+		{
+			//call() declares Exception, but is never invoked while recording expectations
+			throw new IllegalStateException(e);
+		}
+		return retriever;
+	}
+}
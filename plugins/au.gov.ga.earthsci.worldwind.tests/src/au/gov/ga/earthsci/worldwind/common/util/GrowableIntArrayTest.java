@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GrowableIntArray} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GrowableIntArrayTest
+{
+	@Test
+	public void testAddGrowsArray()
+	{
+		GrowableIntArray array = new GrowableIntArray(0);
+		for (int i = 0; i < 1000; i++)
+		{
+			array.add(i * 2);
+		}
+		assertEquals(1000, array.size());
+		for (int i = 0; i < 1000; i++)
+		{
+			assertEquals(i * 2, array.get(i));
+		}
+	}
+
+	@Test
+	public void testToArrayIsExactSize()
+	{
+		GrowableIntArray array = new GrowableIntArray(10);
+		array.add(1);
+		array.add(2);
+		array.add(3);
+		assertArrayEquals(new int[] { 1, 2, 3 }, array.toArray());
+
+		//already trimmed, so the backing array is returned
+		assertSame(array.array(), array.toArray());
+	}
+
+	@Test
+	public void testSet()
+	{
+		GrowableIntArray array = new GrowableIntArray();
+		array.add(1);
+		array.set(0, 5);
+		assertEquals(5, array.get(0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutsideSize()
+	{
+		GrowableIntArray array = new GrowableIntArray(10);
+		array.add(1);
+		array.get(1);
+	}
+
+	@Test
+	public void testClear()
+	{
+		GrowableIntArray array = new GrowableIntArray();
+		array.add(1);
+		array.clear();
+		assertTrue(array.isEmpty());
+		array.add(2);
+		assertEquals(2, array.get(0));
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link IntIntHashMap} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class IntIntHashMapTest
+{
+	@Test
+	public void testEmpty()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0));
+		assertEquals(-1, map.get(0, -1));
+	}
+
+	@Test
+	public void testPutAndReplace()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+		assertTrue(map.put(5, 50));
+		assertFalse(map.put(5, 55));
+		assertEquals(1, map.size());
+		assertEquals(55, map.get(5, -1));
+	}
+
+	@Test
+	public void testFreeKey()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+		assertFalse(map.containsKey(Integer.MIN_VALUE));
+		assertTrue(map.put(Integer.MIN_VALUE, 7));
+		assertTrue(map.containsKey(Integer.MIN_VALUE));
+		assertEquals(7, map.get(Integer.MIN_VALUE, -1));
+		assertEquals(1, map.size());
+
+		map.clear();
+		assertFalse(map.containsKey(Integer.MIN_VALUE));
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testMatchesHashMap()
+	{
+		Random random = new Random(1);
+		IntIntHashMap map = new IntIntHashMap(0);
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 100000; i++)
+		{
+			//mix of sequential and random keys, with some repeats
+			int key = i % 3 == 0 ? random.nextInt() : random.nextInt(50000);
+			int value = random.nextInt();
+			assertEquals(!expected.containsKey(key), map.put(key, value));
+			expected.put(key, value);
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+		{
+			assertEquals(entry.getValue().intValue(), map.get(entry.getKey(), 0));
+		}
+		for (int i = 0; i < 1000; i++)
+		{
+			int key = random.nextInt();
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+		}
+	}
+}
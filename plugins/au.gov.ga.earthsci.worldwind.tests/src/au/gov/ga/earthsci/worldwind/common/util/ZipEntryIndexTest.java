@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ZipEntryIndex} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ZipEntryIndexTest
+{
+	private File file;
+
+	@Before
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("ZipEntryIndexTest", ".zip");
+	}
+
+	@After
+	public void teardown()
+	{
+		file.delete();
+	}
+
+	@Test
+	public void testMissingFileReturnsNull() throws IOException
+	{
+		file.delete();
+		assertNull(ZipEntryIndex.get(file));
+	}
+
+	@Test
+	public void testReadStoredAndDeflatedEntries() throws IOException
+	{
+		byte[] stored = bytes(1000, 3);
+		byte[] deflated = bytes(5000, 7);
+		writeZip(stored, deflated);
+
+		ZipEntryIndex index = ZipEntryIndex.get(file);
+		assertEquals(Arrays.asList("0/0/0_0.jpg", "0/0/0_1.jpg"), new ArrayList<String>(index.getNames()));
+		assertArrayEquals(stored, read(index.getInputStream("0/0/0_0.jpg")));
+		assertArrayEquals(deflated, read(index.getInputStream("/0/0/0_1.jpg")));
+		assertNull(index.getInputStream("0/0/0_2.jpg"));
+		assertTrue(index.contains("0\\0\\0_0.jpg"));
+		assertFalse(index.contains("0/0"));
+	}
+
+	@Test
+	public void testIndexIsCached() throws IOException
+	{
+		writeZip(bytes(10, 1), bytes(10, 2));
+		assertSame(ZipEntryIndex.get(file), ZipEntryIndex.get(file));
+	}
+
+	@Test
+	public void testModifiedFileIsReindexed() throws IOException
+	{
+		writeZip(bytes(10, 1), bytes(10, 2));
+		ZipEntryIndex index = ZipEntryIndex.get(file);
+
+		byte[] replacement = bytes(100, 5);
+		writeZip(replacement, bytes(100, 6));
+		file.setLastModified(file.lastModified() + 2000);
+
+		ZipEntryIndex updated = ZipEntryIndex.get(file);
+		assertNotSame(index, updated);
+		assertArrayEquals(replacement, read(updated.getInputStream("0/0/0_0.jpg")));
+	}
+
+	private void writeZip(byte[] stored, byte[] deflated) throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			zos.putNextEntry(new ZipEntry("0/"));
+			zos.closeEntry();
+
+			ZipEntry entry = new ZipEntry("0/0/0_0.jpg");
+			CRC32 crc = new CRC32();
+			crc.update(stored);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(stored.length);
+			entry.setCompressedSize(stored.length);
+			entry.setCrc(crc.getValue());
+			zos.putNextEntry(entry);
+			zos.write(stored);
+			zos.closeEntry();
+
+			zos.putNextEntry(new ZipEntry("0/0/0_1.jpg"));
+			zos.write(deflated);
+			zos.closeEntry();
+
+			zos.setComment("test comment");
+		}
+		finally
+		{
+			zos.close();
+		}
+	}
+
+	private static byte[] read(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try
+		{
+			byte[] buffer = new byte[256];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+		return baos.toByteArray();
+	}
+
+	private static byte[] bytes(int length, int seed)
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = (byte) (i * seed);
+		}
+		return bytes;
+	}
+}
@@ -19,8 +19,17 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -163,6 +172,161 @@ public class FloatReaderTest
 		assertTrue(Float.isNaN(value[0]));
 	}
 	
+	@Test
+	public void testSkipIsExactWhenStreamSkipsShort() throws Exception
+	{
+		//a stream that skips at most one byte at a time, as InputStream.skip is allowed to
+		InputStream shortSkipping = new FilterInputStream(is)
+		{
+			@Override
+			public long skip(long n) throws IOException
+			{
+				return super.skip(Math.min(n, 1));
+			}
+		};
+		FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForStream(shortSkipping)
+														.withOffset(4)
+														.withGroupSize(3)
+														.withGroupSeparation(8)
+														.withGroupValueGap(4)
+														.build();
+		float[] values = new float[3];
+		classUnderTest.readNextValues(values);
+		classUnderTest.readNextValues(values);
+		assertArrayEquals(new float[] { 2.4f, 3.0f, 3.6f }, values, 0.001f);
+	}
+	
+	@Test
+	public void testReadValuesMatchesReadNextValues() throws Exception
+	{
+		Random random = new Random(1);
+		byte[] bytes = new byte[100000];
+		random.nextBytes(bytes);
+		
+		for (int i = 0; i < 50; i++)
+		{
+			int offset = random.nextInt(10);
+			int groupSize = 1 + random.nextInt(5);
+			int groupSeparation = random.nextBoolean() ? 0 : random.nextInt(10);
+			int groupValueGap = random.nextBoolean() ? 0 : random.nextInt(10);
+			FloatFormat format = random.nextBoolean() ? FloatFormat.IEEE : FloatFormat.IBM;
+			ByteOrder order = random.nextBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+			
+			float[] expected = readReference(bytes, offset, groupSize, groupSeparation, groupValueGap, format, order);
+			
+			//bulk read from each type of source
+			for (int source = 0; source < 3; source++)
+			{
+				FloatReader.Builder builder;
+				if (source == 0)
+				{
+					builder = FloatReader.Builder.newFloatReaderForStream(new ByteArrayInputStream(bytes));
+				}
+				else if (source == 1)
+				{
+					builder = FloatReader.Builder.newFloatReaderForStream(new FileInputStream(createTempFile(bytes)));
+				}
+				else
+				{
+					builder = FloatReader.Builder.newFloatReaderForBuffer(ByteBuffer.wrap(bytes));
+				}
+				FloatReader classUnderTest = builder.withOffset(offset)
+													.withGroupSize(groupSize)
+													.withGroupSeparation(groupSeparation)
+													.withGroupValueGap(groupValueGap)
+													.withFormat(format)
+													.withByteOrder(order)
+													.build();
+				
+				FloatBuffer actual = FloatBuffer.allocate(expected.length + 10);
+				assertEquals(expected.length, classUnderTest.readValues(actual));
+				assertArrayEquals(expected, toArray(actual), 0f);
+			}
+		}
+	}
+	
+	@Test
+	public void testIBMMatchesFormula() throws Exception
+	{
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++)
+		{
+			int bits = i < 256 ? (i << 24) | (i & 1) : random.nextInt();
+			int b3 = (bits >>> 24), b2 = (bits >>> 16) & 0xff, b1 = (bits >>> 8) & 0xff, b0 = bits & 0xff;
+			
+			byte S = (byte) ((b3 & 0x80) >> 7);
+			int E = (b3 & 0x7f);
+			long F = (b2 << 16) + (b1 << 8) + b0;
+			float expected = S == 0 && E == 0 && F == 0 ? 0 : (float) ((S == 0 ? 1.0 : -1.0) * (F / 16777216.0) * Math.pow(16.0, E - 64.0));
+			
+			assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(FloatFormat.IBM.intBitsToFloat(bits)));
+		}
+	}
+	
+	/**
+	 * Reference implementation of the read pattern, reading and skipping one value at a time
+	 */
+	private static float[] readReference(byte[] bytes, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder order)
+	{
+		FloatBuffer result = FloatBuffer.allocate(bytes.length / 4);
+		int position = offset;
+		int groupIndex = 0;
+		while (position + 4 <= bytes.length)
+		{
+			int b0, b1, b2, b3;
+			if (order == ByteOrder.LITTLE_ENDIAN)
+			{
+				b3 = bytes[position] & 0xff;
+				b2 = bytes[position + 1] & 0xff;
+				b1 = bytes[position + 2] & 0xff;
+				b0 = bytes[position + 3] & 0xff;
+			}
+			else
+			{
+				b0 = bytes[position] & 0xff;
+				b1 = bytes[position + 1] & 0xff;
+				b2 = bytes[position + 2] & 0xff;
+				b3 = bytes[position + 3] & 0xff;
+			}
+			result.put(format.bytesToFloat(b0, b1, b2, b3));
+			position += 4;
+			if (++groupIndex == groupSize)
+			{
+				groupIndex = 0;
+				position += groupSeparation;
+			}
+			else
+			{
+				position += groupValueGap;
+			}
+		}
+		return toArray(result);
+	}
+	
+	private static float[] toArray(FloatBuffer buffer)
+	{
+		buffer.flip();
+		float[] array = new float[buffer.remaining()];
+		buffer.get(array);
+		return array;
+	}
+	
+	private static File createTempFile(byte[] bytes) throws IOException
+	{
+		File file = File.createTempFile("FloatReaderTest", ".bin");
+		file.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			fos.write(bytes);
+		}
+		finally
+		{
+			fos.close();
+		}
+		return file;
+	}
+	
 	private void assertPatternCorrect(FloatReader classUnderTest, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder order)
 	{
 		assertEquals(offset, classUnderTest.getOffset());
@@ -20,6 +20,8 @@ import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
+import au.gov.ga.earthsci.worldwind.common.util.io.ByteBufferInputStream;
+
 /**
  * An implementation of RetrievalResult which stores the downloaded data in a
  * ByteBuffer.
@@ -61,20 +63,27 @@ public class ByteBufferRetrievalResult implements RetrievalResult
 	@Override
 	public InputStream getAsInputStream()
 	{
+		ByteBuffer buffer = getAsBuffer();
 		if (buffer == null)
 			return null;
-		return new ByteArrayInputStream(getArray());
+		if (buffer.hasArray())
+			return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset(), buffer.limit());
+		//stream directly from direct or mapped buffers, rather than copying them into an array
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.rewind();
+		return new ByteBufferInputStream(duplicate);
 	}
 
 	@Override
 	public String getAsString()
 	{
+		ByteBuffer buffer = getAsBuffer();
 		if (buffer == null)
 			return null;
-		return new String(getArray());
+		return new String(getArray(buffer));
 	}
 
-	private byte[] getArray()
+	private static byte[] getArray(ByteBuffer buffer)
 	{
 		byte[] array;
 		if (buffer.hasArray())
@@ -82,8 +91,9 @@ public class ByteBufferRetrievalResult implements RetrievalResult
 		else
 		{
 			array = new byte[buffer.limit()];
-			buffer.rewind();
-			buffer.get(array);
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.rewind();
+			duplicate.get(array);
 		}
 		return array;
 	}
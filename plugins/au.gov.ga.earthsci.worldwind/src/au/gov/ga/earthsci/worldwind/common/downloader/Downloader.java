@@ -17,6 +17,7 @@ package au.gov.ga.earthsci.worldwind.common.downloader;
 
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.retrieve.Retriever;
@@ -29,10 +30,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
@@ -42,18 +43,46 @@ import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
  * and https protocols. Caches downloads (if requested) using the standard data
  * store provided by WorldWind.getDataFileStore(). Supports testing if the data
  * on the server has been modified since last downloaded.
+ * <p/>
+ * Downloads that are to be cached are streamed directly to the cache file, and
+ * the handlers are passed a {@link FileRetrievalResult} backed by that file,
+ * so the downloaded data is never held in memory as a whole.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class Downloader
 {
 	private static final String DIRECTORY = "GA/Download Cache"; //TODO should this be in configuration?
-	private static final Object cacheLock = new Object();
-	private static final Object duplicateLock = new Object();
+	private static final int CACHE_LOCK_STRIPES = 32;
+	private static final Object[] cacheLocks = new Object[CACHE_LOCK_STRIPES];
 
 	//use the standard World Wind BasicRetrievalService for handling downloading
-	private static final RetrievalService service = new DownloaderRetrievalService();
-	private static final ActiveRetrieverCache retrieverCache = new ActiveRetrieverCache();
+	private static final DownloaderRetrievalService service = new DownloaderRetrievalService();
+
+	//downloads currently queued or running in the service, keyed by url and options, for detecting duplicates
+	private static final ConcurrentMap<String, ActiveDownload> activeDownloads =
+			new ConcurrentHashMap<String, ActiveDownload>();
+	//the same downloads, keyed by their retriever, for removing them when the retriever finishes
+	//(identity map, as URLRetrievers of the same url are equal)
+	private static final Map<Retriever, ActiveDownload> activeRetrievers =
+			new IdentityHashMap<Retriever, ActiveDownload>();
+
+	static
+	{
+		for (int i = 0; i < cacheLocks.length; i++)
+		{
+			cacheLocks[i] = new Object();
+		}
+
+		service.addCompletionListener(new DownloaderRetrievalService.CompletionListener()
+		{
+			@Override
+			public void retrievalFinished(Retriever retriever)
+			{
+				downloadFinished(retriever);
+			}
+		});
+	}
 
 	/**
 	 * Performs a download synchronously, returning the result immediately. If
@@ -90,22 +119,7 @@ public class Downloader
 		}
 
 		ImmediateRetrievalHandler immediateHandler = new ImmediateRetrievalHandler();
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
-		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
-
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, null, immediateHandler, unzip, cache);
 
 		//get the result immediately
 		RetrievalResult result = immediateHandler.get();
@@ -151,23 +165,8 @@ public class Downloader
 			lastModified = cachedResult.lastModified();
 
 		ImmediateRetrievalHandler immediateHandler = new ImmediateRetrievalHandler();
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, immediateHandler);
 		//download if lastModified is null or server's modification date is greater than lastModified
-		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
-
-		//check if the request is a duplicate
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(immediateHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, lastModified, immediateHandler, unzip, true);
 
 		//get the result immediately
 		RetrievalResult modifiedResult = immediateHandler.get();
@@ -235,21 +234,7 @@ public class Downloader
 			}
 		};
 
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
-		URLRetriever retriever = createRetriever(url, null, postProcessor, unzip);
-
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor activeHandler = retrieverCache.getActiveRetriever(retriever);
-			if (activeHandler != null)
-			{
-				activeHandler.addHandler(cacherHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, null, cacherHandler, unzip, cache);
 	}
 
 	/**
@@ -360,26 +345,12 @@ public class Downloader
 			}
 		};
 
-		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, cacherHandler);
-		URLRetriever retriever = createRetriever(url, lastModified, postProcessor, unzip);
-
-		synchronized (duplicateLock)
-		{
-			HandlerPostProcessor currentHandler = retrieverCache.getActiveRetriever(retriever);
-			if (currentHandler != null)
-			{
-				currentHandler.addHandler(cacherHandler);
-			}
-			else
-			{
-				runRetriever(retriever, postProcessor);
-			}
-		}
+		runRetriever(url, lastModified, cacherHandler, unzip, true);
 	}
 
 	private static FileRetrievalResult getFromCache(URL url)
 	{
-		synchronized (cacheLock)
+		synchronized (getCacheLock(url))
 		{
 			URL fileUrl = getCacheURL(url);
 			if (fileUrl != null)
@@ -399,7 +370,13 @@ public class Downloader
 
 	private static void saveToCache(URL url, RetrievalResult result)
 	{
-		synchronized (cacheLock)
+		if (result instanceof FileRetrievalResult)
+		{
+			//result was streamed directly to the cache file, or was read from the cache
+			return;
+		}
+
+		synchronized (getCacheLock(url))
 		{
 			try
 			{
@@ -424,14 +401,27 @@ public class Downloader
 	 */
 	public static void removeCache(URL url)
 	{
-		URL fileUrl = getCacheURL(url);
-		File file = URLUtil.urlToFile(fileUrl);
-		if (file != null && file.isFile())
+		synchronized (getCacheLock(url))
 		{
-			file.delete();
+			URL fileUrl = getCacheURL(url);
+			File file = URLUtil.urlToFile(fileUrl);
+			if (file != null && file.isFile())
+			{
+				file.delete();
+			}
 		}
 	}
 
+	/**
+	 * Cache reads and writes are locked per url, striped over a fixed number of
+	 * locks, so that caching of different urls don't block each other.
+	 */
+	private static Object getCacheLock(URL url)
+	{
+		int hash = url.toExternalForm().hashCode();
+		return cacheLocks[(hash & Integer.MAX_VALUE) % cacheLocks.length];
+	}
+
 	private static URL getCacheURL(URL url)
 	{
 		String filename = filenameForURL(url);
@@ -456,9 +446,9 @@ public class Downloader
 	}
 
 	private static URLRetriever createRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor,
-			boolean unzip)
+			boolean unzip, File destination)
 	{
-		URLRetriever retriever = doCreateRetriever(url, ifModifiedSince, postProcessor, unzip);
+		URLRetriever retriever = doCreateRetriever(url, ifModifiedSince, postProcessor, unzip, destination);
 		int connectTimeout = Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_CONNECT_TIMEOUT, 30000);
 		int readTimeout = Configuration.getIntegerValue(AVKeyMore.DOWNLOADER_READ_TIMEOUT, 30000);
 		retriever.setConnectTimeout(connectTimeout);
@@ -467,17 +457,100 @@ public class Downloader
 	}
 
 	private static URLRetriever doCreateRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor,
-			boolean unzip)
+			boolean unzip, File destination)
 	{
 		if ("http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol()))
-			return new ExtendedHTTPRetriever(url, ifModifiedSince, postProcessor, unzip);
-		return new ExtendedFileRetriever(url, ifModifiedSince, postProcessor, unzip);
+			return new ExtendedHTTPRetriever(url, ifModifiedSince, postProcessor, unzip, destination);
+		return new ExtendedFileRetriever(url, ifModifiedSince, postProcessor, unzip, destination);
 	}
 
-	private static void runRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
+	/**
+	 * Download the given url, notifying the handler with the result. If a
+	 * download of the same url with the same options (ifModifiedSince, unzip
+	 * and cache) is already queued or running, the handler is added to that
+	 * download instead of starting a new one.
+	 * <p/>
+	 * If cache is true, the download is streamed directly into the cache file.
+	 */
+	private static void runRetriever(URL url, Long ifModifiedSince, RetrievalHandler handler, boolean unzip,
+			boolean cache)
 	{
-		retrieverCache.addRetriever(retriever, postProcessor);
-		service.runRetriever(retriever);
+		String key = downloadKey(url, ifModifiedSince, unzip, cache);
+		HandlerPostProcessor postProcessor = new HandlerPostProcessor(url, handler);
+		File destination = cache ? newCacheFile(url) : null;
+		URLRetriever retriever = createRetriever(url, ifModifiedSince, postProcessor, unzip, destination);
+		ActiveDownload download = new ActiveDownload(key, retriever, postProcessor);
+
+		ActiveDownload activeDownload = activeDownloads.putIfAbsent(key, download);
+		if (activeDownload != null)
+		{
+			//request is a duplicate
+			activeDownload.postProcessor.addHandler(handler);
+			return;
+		}
+		synchronized (activeRetrievers)
+		{
+			activeRetrievers.put(retriever, download);
+		}
+
+		RetrievalFuture future;
+		try
+		{
+			future = service.runRetriever(retriever);
+		}
+		catch (RuntimeException e)
+		{
+			removeActiveDownload(download);
+			postProcessor.fail(e);
+			return;
+		}
+		if (future == null)
+		{
+			removeActiveDownload(download);
+			postProcessor.fail(new Exception("Download rejected: " + url));
+		}
+	}
+
+	/**
+	 * Key used for detecting duplicate downloads. Only requests for the same
+	 * url with the same options share a download, as the options change the
+	 * result passed to the handlers.
+	 */
+	private static String downloadKey(URL url, Long ifModifiedSince, boolean unzip, boolean cache)
+	{
+		return url.toExternalForm() + "|" + ifModifiedSince + "|" + unzip + "|" + cache;
+	}
+
+	private static void removeActiveDownload(ActiveDownload download)
+	{
+		activeDownloads.remove(download.key, download);
+		synchronized (activeRetrievers)
+		{
+			activeRetrievers.remove(download.retriever);
+		}
+	}
+
+	/**
+	 * Called by the service when a retriever has finished. Removes the
+	 * retriever's download from the active downloads, and notifies any handlers
+	 * if the retriever finished without a result (for example, if it was
+	 * cancelled).
+	 */
+	private static void downloadFinished(Retriever retriever)
+	{
+		ActiveDownload download;
+		synchronized (activeRetrievers)
+		{
+			download = activeRetrievers.get(retriever);
+		}
+		if (download == null)
+			return;
+
+		removeActiveDownload(download);
+		if (!download.postProcessor.hasResult())
+		{
+			download.postProcessor.fail(new Exception("Download did not complete: " + download.retriever.getUrl()));
+		}
 	}
 
 	private static boolean isJarProtocol(URL url)
@@ -586,87 +659,22 @@ public class Downloader
 	}
 
 	/**
-	 * Class which acts as a cache for Retrievers, storing Retrievers that are
-	 * currently downloading in the {@link RetrievalService} in a map. This
-	 * allows the download methods above to check for duplicate Retrievers (ie
-	 * Retrievers that are requesting a download from the same URL) and if a
-	 * duplicate is found the method can add their {@link RetrievalHandler} to
-	 * the current {@link HandlerPostProcessor} instead of running a new
-	 * Retriever.
-	 * 
-	 * The {@link RetrievalService} is checked every 5 seconds in a daemon
-	 * thread and if the Retriever is no longer running it is removed from the
-	 * map.
-	 * 
-	 * @author Michael de Hoog
+	 * A download that is queued or running in the {@link RetrievalService}.
+	 * Other requests for the same url and options add their
+	 * {@link RetrievalHandler} to the download's {@link HandlerPostProcessor}
+	 * instead of running a new Retriever.
 	 */
-	private static class ActiveRetrieverCache
+	private static class ActiveDownload
 	{
-		private Object lock = new Object();
-		private final Map<Retriever, HandlerPostProcessor> activeRetrievers =
-				new HashMap<Retriever, HandlerPostProcessor>();
-
-		public ActiveRetrieverCache()
-		{
-			//daemon thread to remove activeRetrievers when they are no longer active
-			//in the retrieval service
-			Thread thread = new Thread(new Runnable()
-			{
-				@Override
-				public void run()
-				{
-					while (true)
-					{
-						try
-						{
-							Thread.sleep(5000);
-							removeNonActiveRetrievers();
-						}
-						catch (Exception e)
-						{
-						}
-					}
-				}
-			});
-			thread.setName("Retriever cache cleaner");
-			thread.setDaemon(true);
-			thread.start();
-		}
+		private final String key;
+		private final URLRetriever retriever;
+		private final HandlerPostProcessor postProcessor;
 
-		private void removeNonActiveRetrievers()
+		public ActiveDownload(String key, URLRetriever retriever, HandlerPostProcessor postProcessor)
 		{
-			synchronized (lock)
-			{
-				if (service.getNumRetrieversPending() <= 0)
-					activeRetrievers.clear();
-				else
-				{
-					List<Retriever> toRemove = new ArrayList<Retriever>();
-					for (Retriever r : activeRetrievers.keySet())
-						if (!service.contains(r))
-							toRemove.add(r);
-					for (Retriever r : toRemove)
-						activeRetrievers.remove(r);
-				}
-			}
-		}
-
-		public HandlerPostProcessor getActiveRetriever(Retriever retriever)
-		{
-			synchronized (lock)
-			{
-				if (activeRetrievers.containsKey(retriever))
-					return activeRetrievers.get(retriever);
-				return null;
-			}
-		}
-
-		public void addRetriever(Retriever retriever, HandlerPostProcessor postProcessor)
-		{
-			synchronized (lock)
-			{
-				activeRetrievers.put(retriever, postProcessor);
-			}
+			this.key = key;
+			this.retriever = retriever;
+			this.postProcessor = postProcessor;
 		}
 	}
 }
@@ -25,6 +25,7 @@ import gov.nasa.worldwind.util.Logging;
 
 import java.net.SocketTimeoutException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -51,9 +52,20 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 
 	private RetrievalExecutor executor; // thread pool for running retrievers
 	private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+	private final CopyOnWriteArrayList<CompletionListener> completionListeners =
+			new CopyOnWriteArrayList<CompletionListener>();
 	
 	protected SSLExceptionListener sslExceptionListener;
 
+	/**
+	 * Listener notified when a retriever run by this service has finished,
+	 * whether it completed successfully, failed, or was cancelled.
+	 */
+	public interface CompletionListener
+	{
+		void retrievalFinished(Retriever retriever);
+	}
+
 	/**
 	 * Encapsulates a single threaded retrieval as a
 	 * {@link java.util.concurrent.FutureTask}.
@@ -282,6 +294,10 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 			finally
 			{
 				Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
+				for (CompletionListener listener : completionListeners)
+				{
+					listener.retrievalFinished(task.getRetriever());
+				}
 			}
 		}
 	}
@@ -297,6 +313,16 @@ public class DownloaderRetrievalService extends WWObjectImpl implements Retrieva
 		this.activeTasks = new ConcurrentLinkedQueue<RetrievalTask>();
 	}
 
+	public void addCompletionListener(CompletionListener listener)
+	{
+		completionListeners.add(listener);
+	}
+
+	public void removeCompletionListener(CompletionListener listener)
+	{
+		completionListeners.remove(listener);
+	}
+
 	@Override
 	public void shutdown(boolean immediately)
 	{
@@ -37,6 +37,8 @@ public class ExtendedFileRetriever extends FileRetriever implements ExtendedRetr
 	private Exception error;
 	private boolean notModified = false;
 	private boolean unzip;
+	private File destination;
+	private File file;
 
 	public ExtendedFileRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor)
 	{
@@ -44,10 +46,22 @@ public class ExtendedFileRetriever extends FileRetriever implements ExtendedRetr
 	}
 
 	public ExtendedFileRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip)
+	{
+		this(url, ifModifiedSince, postProcessor, unzip, null);
+	}
+
+	/**
+	 * @param destination
+	 *            File to stream the downloaded data to; if null, the data is
+	 *            read into memory
+	 */
+	public ExtendedFileRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip,
+			File destination)
 	{
 		super(url, postProcessor);
 		this.ifModifiedSince = ifModifiedSince;
 		this.unzip = unzip;
+		this.destination = destination;
 	}
 
 	@Override
@@ -91,13 +105,36 @@ public class ExtendedFileRetriever extends FileRetriever implements ExtendedRetr
 		return notModified;
 	}
 
+	@Override
+	public File getFile()
+	{
+		return file;
+	}
+
 	@Override
 	protected ByteBuffer readZipStream(InputStream inputStream, URL url) throws IOException
 	{
 		if (unzip)
 		{
+			if (destination != null)
+			{
+				file = StreamingFileWriter.writeFirstZipEntry(inputStream, destination);
+				return null;
+			}
 			return super.readZipStream(inputStream, url);
 		}
 		return readNonSpecificStream(inputStream, getConnection());
 	}
+
+	@Override
+	protected ByteBuffer readNonSpecificStream(InputStream inputStream, URLConnection connection)
+			throws IOException
+	{
+		if (destination != null)
+		{
+			file = StreamingFileWriter.write(inputStream, destination);
+			return null;
+		}
+		return super.readNonSpecificStream(inputStream, connection);
+	}
 }
@@ -18,6 +18,7 @@ package au.gov.ga.earthsci.worldwind.common.downloader;
 import gov.nasa.worldwind.retrieve.HTTPRetriever;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -43,6 +44,8 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 	private Long ifModifiedSince;
 	private Exception error;
 	private boolean unzip;
+	private File destination;
+	private File file;
 
 	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor)
 	{
@@ -50,10 +53,22 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 	}
 
 	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip)
+	{
+		this(url, ifModifiedSince, postProcessor, unzip, null);
+	}
+
+	/**
+	 * @param destination
+	 *            File to stream the downloaded data to; if null, the data is
+	 *            read into memory
+	 */
+	public ExtendedHTTPRetriever(URL url, Long ifModifiedSince, RetrievalPostProcessor postProcessor, boolean unzip,
+			File destination)
 	{
 		super(url, postProcessor);
 		this.ifModifiedSince = ifModifiedSince;
 		this.unzip = unzip;
+		this.destination = destination;
 	}
 
 	@Override
@@ -123,13 +138,36 @@ public class ExtendedHTTPRetriever extends HTTPRetriever implements ExtendedRetr
 		return error;
 	}
 
+	@Override
+	public File getFile()
+	{
+		return file;
+	}
+
 	@Override
 	protected ByteBuffer readZipStream(InputStream inputStream, URL url) throws IOException
 	{
 		if (unzip)
 		{
+			if (destination != null)
+			{
+				file = StreamingFileWriter.writeFirstZipEntry(inputStream, destination);
+				return null;
+			}
 			return super.readZipStream(inputStream, url);
 		}
 		return readNonSpecificStream(inputStream, getConnection());
 	}
+
+	@Override
+	protected ByteBuffer readNonSpecificStream(InputStream inputStream, URLConnection connection)
+			throws IOException
+	{
+		if (destination != null)
+		{
+			file = StreamingFileWriter.write(inputStream, destination);
+			return null;
+		}
+		return super.readNonSpecificStream(inputStream, connection);
+	}
 }
@@ -17,6 +17,8 @@ package au.gov.ga.earthsci.worldwind.common.downloader;
 
 import gov.nasa.worldwind.retrieve.Retriever;
 
+import java.io.File;
+
 /**
  * Extension of the World Wind {@link Retriever} interface which provides
  * additional getter methods required for the {@link Downloader}.
@@ -41,4 +43,14 @@ public interface ExtendedRetriever extends Retriever
 	 * @return True if the server returned a NOT MODIFIED status
 	 */
 	public boolean isNotModified();
+
+	/**
+	 * Gets the file that the downloaded data was streamed to, if this
+	 * retriever was given a destination file. Returns null if the data was
+	 * read into memory (see {@link #getBuffer()}), or if no data was
+	 * downloaded.
+	 * 
+	 * @return The file containing the downloaded data
+	 */
+	public File getFile();
 }
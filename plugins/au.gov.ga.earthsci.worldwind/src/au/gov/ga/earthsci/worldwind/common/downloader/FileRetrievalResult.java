@@ -15,43 +15,71 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.downloader;
 
+import gov.nasa.worldwind.util.WWIO;
+
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
 /**
- * Extension of the {@link ByteBufferRetrievalResult} which fills the ByteBuffer
- * from a File. Used for returning results from the local cache.
+ * Extension of the {@link ByteBufferRetrievalResult} which provides the data
+ * from a File. Used for returning results from the local cache, and for
+ * downloads that were streamed directly to a file.
+ * <p/>
+ * The file is read the first time the data is requested. It is read onto the
+ * heap rather than memory-mapped, as a mapping can't be released explicitly,
+ * and on Windows would prevent the file from being deleted or replaced.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class FileRetrievalResult extends ByteBufferRetrievalResult
 {
 	private final File file;
+	private final boolean hasData;
+	private ByteBuffer buffer;
 
 	public FileRetrievalResult(URL sourceURL, File file, boolean fromCache)
 	{
-		super(sourceURL, readFile(file), fromCache, false, null, null);
+		this(sourceURL, file, fromCache, null, null);
+	}
+
+	public FileRetrievalResult(URL sourceURL, File file, boolean fromCache, Exception error, String contentType)
+	{
+		super(sourceURL, null, fromCache, false, error, contentType);
 		this.file = file;
+		this.hasData = file.isFile() && file.canRead();
 	}
 
-	private static ByteBuffer readFile(File file)
+	@Override
+	public synchronized ByteBuffer getAsBuffer()
 	{
-		if (!file.exists() || file.isDirectory() || !file.canRead())
-			return null;
-		ByteBuffer buffer = ByteBuffer.allocate((int) file.length());
-		try
+		if (buffer == null && hasData)
 		{
-			FileInputStream fis = new FileInputStream(file);
-			fis.read(buffer.array());
-			fis.close();
-			return buffer;
-		}
-		catch (Exception e)
-		{
-			return null;
+			try
+			{
+				buffer = WWIO.readFileToBuffer(file);
+			}
+			catch (IOException e)
+			{
+				return null;
+			}
 		}
+		return buffer;
+	}
+
+	@Override
+	public boolean hasData()
+	{
+		return hasData;
+	}
+
+	/**
+	 * @return File containing the data
+	 */
+	public File getFile()
+	{
+		return file;
 	}
 
 	/**
@@ -18,6 +18,7 @@ package au.gov.ga.earthsci.worldwind.common.downloader;
 import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.Retriever;
 
+import java.io.File;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -75,21 +76,63 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 	{
 		Exception error = null;
 		boolean notModified = false;
+		File file = null;
 		if (retriever instanceof ExtendedRetriever)
 		{
 			ExtendedRetriever er = (ExtendedRetriever) retriever;
 			error = er.getError();
 			notModified = er.isNotModified();
+			file = er.getFile();
+		}
+
+		if (file != null)
+		{
+			//data was streamed directly to a file, so provide a file backed result
+			complete(new FileRetrievalResult(sourceURL, file, false, error, retriever.getContentType()));
+			return null;
 		}
 
 		ByteBuffer buffer = retriever.getBuffer();
+		complete(new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error,
+				retriever.getContentType()));
+		return buffer;
+	}
+
+	/**
+	 * @return Has this been run (ie does it have a result)?
+	 */
+	public boolean hasResult()
+	{
+		synchronized (lock)
+		{
+			return result != null;
+		}
+	}
+
+	/**
+	 * Notify the handlers with an error result, if this has not already been
+	 * run. Used when the retrieval finished without running this post
+	 * processor (for example, if it was cancelled).
+	 * 
+	 * @param error
+	 *            Error to pass to the handlers
+	 */
+	public void fail(Exception error)
+	{
+		complete(new ByteBufferRetrievalResult(sourceURL, null, false, false, error, null));
+	}
+
+	private void complete(RetrievalResult result)
+	{
 		int size;
 		synchronized (lock)
 		{
 			//synchronized with the addHandler method to ensure thread safety
-			result =
-					new ByteBufferRetrievalResult(sourceURL, buffer, false, notModified, error,
-							retriever.getContentType());
+			if (this.result != null)
+			{
+				return;
+			}
+			this.result = result;
 			size = handlers.size();
 		}
 		//iterate through handlers, ending at size (which was calculated in the synchronzied
@@ -97,6 +140,5 @@ public class HandlerPostProcessor implements RetrievalPostProcessor
 		//will instead be notified immediately by addHandler())
 		for (int i = 0; i < size; i++)
 			handlers.get(i).handle(result);
-		return buffer;
 	}
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.downloader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Helper class used by the {@link ExtendedRetriever}s for streaming downloaded
+ * data directly to a file, rather than reading it into memory.
+ * <p/>
+ * Data is written to a temporary file in the destination's directory, which is
+ * renamed to the destination once complete, so that a partially written file
+ * is never visible at the destination.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class StreamingFileWriter
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Write the contents of the given stream to the destination file.
+	 * 
+	 * @param inputStream
+	 *            Stream to read from
+	 * @param destination
+	 *            File to write to
+	 * @return The file that the data was written to (normally the
+	 *         destination), or null if the calling thread was interrupted
+	 * @throws IOException
+	 *             If reading the stream or writing the file fails
+	 */
+	public static File write(InputStream inputStream, File destination) throws IOException
+	{
+		File temp = File.createTempFile("download", ".tmp", destination.getParentFile());
+		boolean complete = false;
+		try
+		{
+			OutputStream os = new FileOutputStream(temp);
+			try
+			{
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = inputStream.read(buffer)) >= 0)
+				{
+					if (Thread.currentThread().isInterrupted())
+					{
+						return null;
+					}
+					os.write(buffer, 0, read);
+				}
+			}
+			finally
+			{
+				os.close();
+			}
+			complete = true;
+		}
+		finally
+		{
+			if (!complete)
+			{
+				temp.delete();
+			}
+		}
+		return commit(temp, destination);
+	}
+
+	/**
+	 * Write the contents of the first entry of the given zip stream to the
+	 * destination file.
+	 * 
+	 * @param inputStream
+	 *            Zip stream to read from
+	 * @param destination
+	 *            File to write to
+	 * @return The file that the data was written to (normally the
+	 *         destination), or null if the zip stream contained no entries or
+	 *         the calling thread was interrupted
+	 * @throws IOException
+	 *             If reading the stream or writing the file fails
+	 */
+	public static File writeFirstZipEntry(InputStream inputStream, File destination) throws IOException
+	{
+		ZipInputStream zis = new ZipInputStream(inputStream);
+		ZipEntry entry = zis.getNextEntry();
+		if (entry == null)
+		{
+			return null;
+		}
+		return write(zis, destination);
+	}
+
+	private static File commit(File temp, File destination)
+	{
+		//note: the following is only available in Java 6
+		temp.setReadable(true, false);
+		temp.setWritable(true, false);
+
+		if (temp.renameTo(destination))
+		{
+			return destination;
+		}
+
+		//on some platforms the rename fails if the destination already exists
+		destination.delete();
+		if (temp.renameTo(destination))
+		{
+			return destination;
+		}
+
+		//destination is in use, so leave the cache as is and return the data in the temporary file
+		temp.deleteOnExit();
+		return temp;
+	}
+}
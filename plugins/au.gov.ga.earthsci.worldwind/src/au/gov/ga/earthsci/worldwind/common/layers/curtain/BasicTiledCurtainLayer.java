@@ -42,6 +42,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.StripedFileLock;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
 import com.jogamp.opengl.util.texture.TextureData;
@@ -55,7 +56,7 @@ import javax.media.opengl.GLProfile;
  */
 public class BasicTiledCurtainLayer extends TiledCurtainLayer
 {
-	private final Object fileLock;
+	private final StripedFileLock fileLock;
 
 	public BasicTiledCurtainLayer(CurtainLevelSet levelSet)
 	{
@@ -263,7 +264,7 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 	{
 		TextureData textureData;
 
-		synchronized (this.fileLock)
+		synchronized (this.fileLock.getTileLock(tile.getPath()))
 		{
 			textureData = readTexture(textureURL, this.getTextureFormat(), this.isUseMipMaps());
 		}
@@ -525,7 +526,7 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 		@Override
 		protected Object getFileLock()
 		{
-			return this.layer.fileLock;
+			return this.layer.fileLock.getTileLock(this.tile.getPath());
 		}
 
 		@Override
@@ -15,11 +15,11 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.curtain;
 
-import static au.gov.ga.earthsci.worldwind.common.util.Util.isEmpty;
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.cache.Cacheable;
 import gov.nasa.worldwind.cache.MemoryCache;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Box;
@@ -34,29 +34,39 @@ import gov.nasa.worldwind.util.TileKey;
 import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.jogamp.common.nio.Buffers;
 
 /**
  * Defines a path consisting of lat/lon coordinates. Contains functionality for
  * generating vertex geometry for segments within the path.
+ * <p/>
+ * Paths are immutable, and are safe to use from multiple threads. The
+ * locations sampled for each segment column, the terrain elevations at those
+ * locations, and the generated geometry are cached separately, so that a
+ * change in vertical exaggeration or terrain only regenerates the geometry of
+ * the segments it affects.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class Path
 {
-	protected final NavigableMap<Double, LatLon> positions = new TreeMap<Double, LatLon>();
-	protected Angle length;
+	/**
+	 * Position of each location along the path, as a percentage of the path's
+	 * length (ascending, from 0 to 1)
+	 */
+	protected final double[] percents;
+	protected final LatLon[] locations;
+	protected final Angle length;
+	protected final Sector boundingSector;
 
 	protected static final String CACHE_NAME = "CurtainPath";
 	protected static final String CACHE_ID = Path.class.getName();
 
-	protected long updateFrequency = 2000; // milliseconds
-	protected long exaggerationChangeTime = -1;
-	protected double lastVerticalExaggeration = -Double.MAX_VALUE;
+	private static final AtomicLong elevationVersions = new AtomicLong();
+
+	protected volatile long updateFrequency = 2000; // milliseconds
 
 	public Path(List<LatLon> positions)
 	{
@@ -65,43 +75,51 @@ public class Path
 			long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE, 10000000L);
 			MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
 			cache.setName(CACHE_NAME);
+			cache.addCacheListener(new MemoryCache.CacheListener()
+			{
+				@Override
+				public void entryRemoved(Object key, Object clientObject)
+				{
+					//return evicted geometry's range of the shared vertex buffer
+					if (clientObject instanceof CachedGeometry)
+					{
+						((CachedGeometry) clientObject).geometry.dispose();
+					}
+				}
+
+				@Override
+				public void removalException(Throwable exception, Object key, Object clientObject)
+				{
+				}
+			});
 			WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
 		}
 
-		setPositions(positions);
-	}
+		this.locations = positions.toArray(new LatLon[positions.size()]);
+		this.percents = new double[locations.length];
 
-	/*
-	 * Private; should only be called by constructor, as vertices are cached.
-	 */
-	private synchronized void setPositions(List<LatLon> positions)
-	{
-		this.positions.clear();
-		double[] distances = new double[positions.size()]; //last array value is unused, but required for simple second loop
-
-		//calculate total distance
+		//calculate cumulative distance
 		double total = 0d; //in radians
-		for (int i = 0; i < positions.size() - 1; i++)
+		for (int i = 1; i < locations.length; i++)
 		{
-			Angle distance = LatLon.greatCircleDistance(positions.get(i), positions.get(i + 1));
-			distances[i] = distance.radians;
-			total += distance.radians;
+			total += LatLon.greatCircleDistance(locations[i - 1], locations[i]).radians;
+			percents[i] = total;
 		}
 		this.length = Angle.fromRadians(total);
 
 		//calculate percent positions
-		double sum = 0d;
-		for (int i = 0; i < positions.size(); i++)
+		for (int i = 0; i < percents.length; i++)
 		{
-			this.positions.put(sum / total, positions.get(i));
-			sum += distances[i];
+			percents[i] /= total;
 		}
+
+		this.boundingSector = computeBoundingSector(locations);
 	}
 
 	/**
 	 * @return The length of the path, expressed as an angle.
 	 */
-	public synchronized Angle getLength()
+	public Angle getLength()
 	{
 		return length;
 	}
@@ -131,29 +149,31 @@ public class Path
 	 * @return The {@link LatLon} location that lies <code>percent</code>% of
 	 *         the way along the path
 	 */
-	public synchronized LatLon getPercentLatLon(double percent)
+	public LatLon getPercentLatLon(double percent)
 	{
 		if (percent <= 0)
 		{
-			return positions.firstEntry().getValue();
+			return locations[0];
 		}
 		if (percent >= 1)
 		{
-			return positions.lastEntry().getValue();
+			return locations[locations.length - 1];
 		}
-		if (positions.containsKey(percent))
+
+		int index = Arrays.binarySearch(percents, percent);
+		if (index >= 0)
 		{
-			return positions.get(percent);
+			return locations[index];
 		}
 
-		Entry<Double, LatLon> lower = positions.lowerEntry(percent);
-		Entry<Double, LatLon> higher = positions.higherEntry(percent);
-		double p = (percent - lower.getKey()) / (higher.getKey() - lower.getKey());
+		int higher = -index - 1;
+		int lower = higher - 1;
+		double p = (percent - percents[lower]) / (percents[higher] - percents[lower]);
 		//TODO add different interpolation methods
-		return LatLon.interpolateGreatCircle(p, lower.getValue(), higher.getValue());
+		return LatLon.interpolateGreatCircle(p, locations[lower], locations[higher]);
 	}
 
-	public synchronized Vec4 getSegmentCenterPoint(DrawContext dc, Segment segment, double top, double bottom,
+	public Vec4 getSegmentCenterPoint(DrawContext dc, Segment segment, double top, double bottom,
 			boolean followTerrain)
 	{
 		top *= dc.getVerticalExaggeration();
@@ -170,51 +190,73 @@ public class Path
 		return dc.getGlobe().computePointFromPosition(ll, e);
 	}
 
-	public synchronized SegmentGeometry getGeometry(DrawContext dc, CurtainTile tile, double top, double bottom,
+	public SegmentGeometry getGeometry(DrawContext dc, CurtainTile tile, double top, double bottom,
 			int subsegments, boolean followTerrain)
 	{
-		if (lastVerticalExaggeration != dc.getVerticalExaggeration())
-		{
-			exaggerationChangeTime = System.currentTimeMillis();
-			lastVerticalExaggeration = dc.getVerticalExaggeration();
-		}
+		Segment segment = tile.getSegment();
+		SegmentSamples samples = getSegmentSamples(segment, subsegments);
+		SampledElevations elevations = followTerrain ? getElevations(dc, samples) : null;
+		GeometryState state = new GeometryState(dc, top, bottom, subsegments, elevations);
 
 		MemoryCache cache = WorldWind.getMemoryCache(CACHE_ID);
 		TileKey tileKey = tile.getTileKey();
-		SegmentGeometry geometry = (SegmentGeometry) cache.getObject(tileKey);
-		if (geometry != null && geometry.getTime() >= System.currentTimeMillis() - this.getUpdateFrequency()
-				&& geometry.getTime() >= exaggerationChangeTime)
+		CachedGeometry cached = (CachedGeometry) cache.getObject(tileKey);
+		if (cached != null && cached.state.equals(state))
 		{
-			return geometry;
+			return cached.geometry;
 		}
 
-		Segment segment = tile.getSegment();
-		NavigableMap<Double, LatLon> betweenMap = segmentMap(segment, subsegments);
-		int numVertices = betweenMap.size() * 2;
-
-		Globe globe = dc.getGlobe();
-
-		FloatBuffer verts, texCoords;
-		if (geometry != null)
+		int numVertices = samples.locations.length * 2;
+		SegmentGeometry geometry = cached != null ? cached.geometry : null;
+		if (geometry != null && geometry.getVertices().capacity() != numVertices * 3)
 		{
-			verts = geometry.getVertices();
-			texCoords = geometry.getTexCoords();
+			geometry = null;
 		}
-		else if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
+
+		if (geometry == null)
 		{
-			verts = FloatBuffer.allocate(numVertices * 3);
-			texCoords = FloatBuffer.allocate(numVertices * 2);
+			FloatBuffer verts, texCoords;
+			if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
+			{
+				verts = FloatBuffer.allocate(numVertices * 3);
+				texCoords = FloatBuffer.allocate(numVertices * 2);
+			}
+			else
+			{
+				verts = Buffers.newDirectFloatBuffer(numVertices * 3);
+				texCoords = Buffers.newDirectFloatBuffer(numVertices * 2);
+			}
+			Vec4 refCenter = getSegmentCenterPoint(dc, segment, top, bottom, followTerrain);
+			fillVertices(dc, segment, samples, elevations, top, bottom, refCenter, verts);
+			fillTexCoords(segment, samples, texCoords);
+			geometry = new SegmentGeometry(dc, verts, texCoords, refCenter);
+			//replacing an existing entry disposes the previous geometry
+			cache.add(tileKey, new CachedGeometry(geometry, state), geometry.getSizeInBytes());
 		}
 		else
 		{
-			verts = Buffers.newDirectFloatBuffer(numVertices * 3);
-			texCoords = Buffers.newDirectFloatBuffer(numVertices * 2);
+			//regenerate the vertices in place; this segment's exaggeration or terrain has changed, but
+			//the texture coordinates, which only depend on the samples, have not
+			synchronized (geometry)
+			{
+				Vec4 refCenter = getSegmentCenterPoint(dc, segment, top, bottom, followTerrain);
+				fillVertices(dc, segment, samples, elevations, top, bottom, refCenter, geometry.getVertices());
+				geometry.update(dc, refCenter);
+			}
+			cached.state = state;
 		}
-		Vec4 refCenter = getSegmentCenterPoint(dc, segment, top, bottom, followTerrain);
+		return geometry;
+	}
+
+	protected void fillVertices(DrawContext dc, Segment segment, SegmentSamples samples,
+			SampledElevations elevations, double top, double bottom, Vec4 refCenter, FloatBuffer verts)
+	{
+		Globe globe = dc.getGlobe();
+		double exaggeration = dc.getVerticalExaggeration();
 
 		//calculate exaggerated segment top/bottom elevations
-		top *= dc.getVerticalExaggeration();
-		bottom *= dc.getVerticalExaggeration();
+		top *= exaggeration;
+		bottom *= exaggeration;
 		double height = top - bottom;
 		double t = top - segment.getTop() * height;
 		double b = top - segment.getBottom() * height;
@@ -225,51 +267,44 @@ public class Path
 			t = b + 1;
 		}
 
-		double percentDistance = segment.getHorizontalDelta();
-		for (Entry<Double, LatLon> entry : betweenMap.entrySet())
+		verts.clear();
+		for (int i = 0; i < samples.locations.length; i++)
 		{
-			LatLon ll = entry.getValue();
-
-			double e = 0;
-			if (followTerrain)
-			{
-				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
-			}
+			LatLon ll = samples.locations[i];
+			double e = elevations != null ? elevations.values[i] * exaggeration : 0;
 
 			Vec4 point1 = globe.computePointFromPosition(ll, t + e);
 			Vec4 point2 = globe.computePointFromPosition(ll, b + e);
-			double percent = (entry.getKey() - segment.getStart()) / percentDistance;
 
 			verts.put((float) (point1.x - refCenter.x)).put((float) (point1.y - refCenter.y))
 					.put((float) (point1.z - refCenter.z));
 			verts.put((float) (point2.x - refCenter.x)).put((float) (point2.y - refCenter.y))
 					.put((float) (point2.z - refCenter.z));
-			texCoords.put((float) percent).put(1f);
-			texCoords.put((float) percent).put(0f);
 		}
+		verts.rewind();
+	}
 
-		if (geometry == null)
-		{
-			geometry = new SegmentGeometry(dc, verts, texCoords, refCenter);
-			cache.add(tileKey, geometry, geometry.getSizeInBytes());
-		}
-		else
+	protected void fillTexCoords(Segment segment, SegmentSamples samples, FloatBuffer texCoords)
+	{
+		texCoords.clear();
+		double percentDistance = segment.getHorizontalDelta();
+		for (int i = 0; i < samples.percents.length; i++)
 		{
-			geometry.update(dc, refCenter);
+			double percent = (samples.percents[i] - segment.getStart()) / percentDistance;
+			texCoords.put((float) percent).put(1f);
+			texCoords.put((float) percent).put(0f);
 		}
-		return geometry;
+		texCoords.rewind();
 	}
 
-	public synchronized Vec4[] getPointsInSegment(DrawContext dc, Segment segment, double top, double bottom,
+	public Vec4[] getPointsInSegment(DrawContext dc, Segment segment, double top, double bottom,
 			int subsegments, boolean followTerrain)
 	{
-		//TODO ?? cache value returned from this method, and if called twice with same input parameters, return cached value ??
-		//TODO create a new function to return some object with a vertex buffer and texture buffer instead of just a Vec4[] array
-
-		NavigableMap<Double, LatLon> betweenMap = segmentMap(segment, subsegments);
+		SegmentSamples samples = getSegmentSamples(segment, subsegments);
+		SampledElevations elevations = followTerrain ? getElevations(dc, samples) : null;
 
 		Globe globe = dc.getGlobe();
-		Vec4[] points = new Vec4[betweenMap.size() * 2];
+		Vec4[] points = new Vec4[samples.locations.length * 2];
 
 		//calculate exaggerated segment top/bottom elevations
 		top *= dc.getVerticalExaggeration();
@@ -279,14 +314,15 @@ public class Path
 		double b = top - segment.getBottom() * height;
 
 		//add top points, and add bottom points (add them backwards, so it's a loop)
-		int j = 0, k = betweenMap.size() * 2;
-		for (LatLon ll : betweenMap.values())
+		int j = 0, k = points.length;
+		for (int i = 0; i < samples.locations.length; i++)
 		{
+			LatLon ll = samples.locations[i];
 			double e = 0;
-			if (followTerrain)
+			if (elevations != null)
 			{
 				// Note: The elevation model has already applied vertical exaggeration in the case of the VerticalExaggerationElevationModel...
-				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
+				e = elevations.values[i] * dc.getVerticalExaggeration();
 			}
 
 			points[j++] = globe.computePointFromPosition(ll, t + e);
@@ -296,53 +332,129 @@ public class Path
 		return points;
 	}
 
-	protected NavigableMap<Double, LatLon> segmentMap(Segment segment, int subsegments)
+	/**
+	 * Get the (cached) locations sampled along the given segment: the
+	 * segment's start and end, the path locations between them, and the
+	 * subsegment divisions. Segments in the same column share their samples.
+	 */
+	protected SegmentSamples getSegmentSamples(Segment segment, int subsegments)
 	{
-		LatLon start = getPercentLatLon(segment.getStart());
-		LatLon end = getPercentLatLon(segment.getEnd());
+		MemoryCache cache = WorldWind.getMemoryCache(CACHE_ID);
+		SamplesKey key = new SamplesKey(this, segment.getStart(), segment.getEnd(), subsegments);
+		SegmentSamples samples = (SegmentSamples) cache.getObject(key);
+		if (samples == null)
+		{
+			//concurrent callers may both create the samples, which is harmless as they are identical
+			double[] segmentPercents = segmentPercents(segment, subsegments);
+			LatLon[] segmentLocations = new LatLon[segmentPercents.length];
+			for (int i = 0; i < segmentPercents.length; i++)
+			{
+				segmentLocations[i] = getPercentLatLon(segmentPercents[i]);
+			}
+			samples = new SegmentSamples(segmentPercents, segmentLocations);
+			cache.add(key, samples);
+		}
+		return samples;
+	}
 
-		NavigableMap<Double, LatLon> betweenMap = new TreeMap<Double, LatLon>();
-		//get a sublist of all the points between start and end (non-inclusive)
-		betweenMap.putAll(positions.subMap(segment.getStart(), false, segment.getEnd(), false));
-		//add the start and end points
-		betweenMap.put(segment.getStart(), start);
-		betweenMap.put(segment.getEnd(), end);
+	/**
+	 * Calculate the sorted percentages along the path at which the given
+	 * segment is sampled: the segment's start and end, the path locations
+	 * between them (non-inclusive), and the subsegment divisions.
+	 */
+	protected double[] segmentPercents(Segment segment, int subsegments)
+	{
+		double start = segment.getStart();
+		double end = segment.getEnd();
+
+		//find the range of path locations between start and end (non-inclusive)
+		int first = Arrays.binarySearch(percents, start);
+		first = first >= 0 ? first + 1 : -first - 1;
+		int last = Arrays.binarySearch(percents, end);
+		last = last >= 0 ? last : -last - 1;
+		int between = Math.max(0, last - first);
+
+		int subsegmentCount = Math.max(0, subsegments - 1);
+		double[] result = new double[between + 2 + subsegmentCount];
+		int count = 0;
+		result[count++] = start;
+		System.arraycopy(percents, first, result, count, between);
+		count += between;
+		result[count++] = end;
 
 		//insert any subsegment points
-		for (int i = 0; i < subsegments - 1; i++)
+		for (int i = 0; i < subsegmentCount; i++)
 		{
 			double subsegment = (i + 1) / (double) subsegments;
-			double percent = segment.getStart() + subsegment * segment.getHorizontalDelta();
-			LatLon pos = getPercentLatLon(percent);
-			betweenMap.put(percent, pos);
+			result[count++] = start + subsegment * segment.getHorizontalDelta();
+		}
+
+		//sort and remove duplicates
+		Arrays.sort(result);
+		int unique = 0;
+		for (int i = 0; i < result.length; i++)
+		{
+			if (unique == 0 || result[i] != result[unique - 1])
+			{
+				result[unique++] = result[i];
+			}
+		}
+		return unique == result.length ? result : Arrays.copyOf(result, unique);
+	}
+
+	/**
+	 * Get the terrain elevations at the given samples' locations. Elevations
+	 * are resampled at most once every {@link #getUpdateFrequency()}
+	 * milliseconds; the returned version only changes if the elevations have
+	 * changed.
+	 */
+	protected SampledElevations getElevations(DrawContext dc, SegmentSamples samples)
+	{
+		Globe globe = dc.getGlobe();
+		long now = System.currentTimeMillis();
+		SampledElevations current = samples.elevations;
+		if (current != null && current.globe == globe && current.time >= now - getUpdateFrequency())
+		{
+			return current;
+		}
+
+		double[] values = new double[samples.locations.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			LatLon ll = samples.locations[i];
+			values[i] = globe.getElevation(ll.latitude, ll.longitude);
 		}
 
-		return betweenMap;
+		boolean unchanged = current != null && current.globe == globe && Arrays.equals(values, current.values);
+		long version = unchanged ? current.version : elevationVersions.incrementAndGet();
+		SampledElevations elevations = new SampledElevations(globe, values, now, version);
+		samples.elevations = elevations;
+		return elevations;
 	}
 
-	public synchronized Extent getSegmentExtent(DrawContext dc, Segment segment, double top, double bottom,
+	public Extent getSegmentExtent(DrawContext dc, Segment segment, double top, double bottom,
 			int subsegments, boolean followTerrain)
 	{
 		Vec4[] points = getPointsInSegment(dc, segment, top, bottom, subsegments, followTerrain);
 		return Box.computeBoundingBox(Arrays.asList(points));
 	}
 
-	public synchronized Angle getSegmentLength(Segment segment)
+	public Angle getSegmentLength(Segment segment)
 	{
 		return Angle.fromRadians(getSegmentLengthInRadians(segment));
 	}
 
-	public synchronized double getSegmentLengthInRadians(Segment segment)
+	public double getSegmentLengthInRadians(Segment segment)
 	{
 		return segment.getHorizontalDelta() * length.radians;
 	}
 
-	public synchronized Angle getPercentLength(double percent)
+	public Angle getPercentLength(double percent)
 	{
 		return Angle.fromRadians(getPercentLengthInRadians(percent));
 	}
 
-	public synchronized double getPercentLengthInRadians(double percent)
+	public double getPercentLengthInRadians(double percent)
 	{
 		return length.radians * percent;
 	}
@@ -350,9 +462,14 @@ public class Path
 	/**
 	 * @return The sector that bounds the path
 	 */
-	public synchronized Sector getBoundingSector()
+	public Sector getBoundingSector()
 	{
-		if (isEmpty(positions))
+		return boundingSector;
+	}
+
+	protected static Sector computeBoundingSector(LatLon[] locations)
+	{
+		if (locations.length == 0)
 		{
 			return null;
 		}
@@ -362,7 +479,7 @@ public class Path
 		Angle maxLat = Angle.fromDegrees(-360);
 		Angle maxLon = Angle.fromDegrees(-360);
 
-		for (LatLon pathPosition : positions.values())
+		for (LatLon pathPosition : locations)
 		{
 			if (pathPosition.getLatitude().compareTo(minLat) < 0)
 			{
@@ -384,4 +501,143 @@ public class Path
 
 		return new Sector(minLat, maxLat, minLon, maxLon);
 	}
+
+	/**
+	 * Locations sampled along a segment column of the path.
+	 */
+	protected static class SegmentSamples implements Cacheable
+	{
+		protected final double[] percents;
+		protected final LatLon[] locations;
+		protected volatile SampledElevations elevations;
+
+		public SegmentSamples(double[] percents, LatLon[] locations)
+		{
+			this.percents = percents;
+			this.locations = locations;
+		}
+
+		@Override
+		public long getSizeInBytes()
+		{
+			//percent, location (2 angles), and elevation for each sample
+			return percents.length * (Double.SIZE / 8) * 6;
+		}
+	}
+
+	/**
+	 * Immutable set of terrain elevations sampled at a {@link SegmentSamples}'
+	 * locations.
+	 */
+	protected static class SampledElevations
+	{
+		protected final Globe globe;
+		protected final double[] values;
+		protected final long time;
+		protected final long version;
+
+		public SampledElevations(Globe globe, double[] values, long time, long version)
+		{
+			this.globe = globe;
+			this.values = values;
+			this.time = time;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Cache key for a {@link SegmentSamples}.
+	 */
+	protected static class SamplesKey
+	{
+		private final Path path;
+		private final double start;
+		private final double end;
+		private final int subsegments;
+
+		public SamplesKey(Path path, double start, double end, int subsegments)
+		{
+			this.path = path;
+			this.start = start;
+			this.end = end;
+			this.subsegments = subsegments;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long bits = Double.doubleToLongBits(start) * 31 + Double.doubleToLongBits(end);
+			return System.identityHashCode(path) ^ (int) (bits ^ (bits >>> 32)) ^ (subsegments * 17);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof SamplesKey))
+			{
+				return false;
+			}
+			SamplesKey other = (SamplesKey) obj;
+			return path == other.path && start == other.start && end == other.end
+					&& subsegments == other.subsegments;
+		}
+	}
+
+	/**
+	 * The parameters a {@link SegmentGeometry} was generated with; the
+	 * geometry is regenerated when these change.
+	 */
+	protected static class GeometryState
+	{
+		private final Globe globe;
+		private final double top;
+		private final double bottom;
+		private final int subsegments;
+		private final double exaggeration;
+		private final long elevationVersion;
+
+		public GeometryState(DrawContext dc, double top, double bottom, int subsegments, SampledElevations elevations)
+		{
+			this.globe = dc.getGlobe();
+			this.top = top;
+			this.bottom = bottom;
+			this.subsegments = subsegments;
+			this.exaggeration = dc.getVerticalExaggeration();
+			this.elevationVersion = elevations != null ? elevations.version : -1;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long bits = Double.doubleToLongBits(exaggeration) + elevationVersion;
+			return (int) (bits ^ (bits >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof GeometryState))
+			{
+				return false;
+			}
+			GeometryState other = (GeometryState) obj;
+			return globe == other.globe && top == other.top && bottom == other.bottom
+					&& subsegments == other.subsegments && exaggeration == other.exaggeration && elevationVersion == other.elevationVersion;
+		}
+	}
+
+	/**
+	 * {@link SegmentGeometry} cache entry.
+	 */
+	protected static class CachedGeometry
+	{
+		protected final SegmentGeometry geometry;
+		protected volatile GeometryState state;
+
+		public CachedGeometry(SegmentGeometry geometry, GeometryState state)
+		{
+			this.geometry = geometry;
+			this.state = state;
+		}
+	}
 }
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.curtain;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of large vertex buffers, from which {@link SegmentGeometry} sub-allocate
+ * ranges for their vertices and texture coordinates. This avoids creating a
+ * pair of GL buffers for every curtain tile.
+ * <p/>
+ * Each {@link Allocation} is split into regions (eg vertices and texture
+ * coordinates) which are tracked as dirty separately, so that only the regions
+ * that change are uploaded. The GL calls are made through a {@link Backend},
+ * which allows the allocation and upload bookkeeping to be tested without a GL
+ * context.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class SegmentBufferArena
+{
+	public final static int DEFAULT_BLOCK_SIZE = 256 * 1024; //floats (1MB)
+	private final static int FLOAT_SIZE = Float.SIZE / 8;
+
+	private final static SegmentBufferArena instance = new SegmentBufferArena();
+
+	/**
+	 * @return The arena shared by all {@link SegmentGeometry}
+	 */
+	public static SegmentBufferArena getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Interface to the GL buffers backing the arena's blocks.
+	 */
+	public static interface Backend
+	{
+		/**
+		 * @return Id of the buffer previously created for the given key, or 0
+		 *         if the buffer doesn't exist (it was never created, or has
+		 *         been released, eg due to context loss)
+		 */
+		int getBuffer(Object key);
+
+		/**
+		 * Create a buffer for the given key.
+		 * 
+		 * @return Id of the created buffer
+		 */
+		int createBuffer(Object key, int sizeInBytes);
+
+		/**
+		 * Upload data to part of a buffer.
+		 */
+		void bufferSubData(int buffer, int offsetInBytes, FloatBuffer data);
+
+		/**
+		 * Delete the buffer for the given key, if it exists.
+		 */
+		void deleteBuffer(Object key);
+	}
+
+	private final int blockSize;
+	private final List<Block> blocks = new ArrayList<Block>();
+	private final List<Block> pendingDeletes = new ArrayList<Block>();
+
+	public SegmentBufferArena()
+	{
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	public SegmentBufferArena(int blockSize)
+	{
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Allocate a range of the arena, split into regions of the given lengths.
+	 * All regions are initially dirty.
+	 * 
+	 * @param regionLengths
+	 *            Length of each region, in floats
+	 * @return New allocation
+	 */
+	public synchronized Allocation allocate(int... regionLengths)
+	{
+		int length = 0;
+		for (int regionLength : regionLengths)
+		{
+			length += regionLength;
+		}
+
+		for (Block block : blocks)
+		{
+			int offset = block.allocate(length);
+			if (offset >= 0)
+			{
+				return new Allocation(block, offset, regionLengths);
+			}
+		}
+
+		//allocations larger than the block size get their own block
+		Block block = new Block(Math.max(blockSize, length));
+		blocks.add(block);
+		return new Allocation(block, block.allocate(length), regionLengths);
+	}
+
+	/**
+	 * Return the given allocation's range to the arena. Blocks that become
+	 * empty are deleted on the next call to
+	 * {@link #sync(Backend, Allocation, FloatBuffer...)}.
+	 */
+	public synchronized void free(Allocation allocation)
+	{
+		if (allocation.freed)
+		{
+			return;
+		}
+		allocation.freed = true;
+
+		Block block = allocation.block;
+		block.free(allocation.offset, allocation.length);
+		//keep one block around, to avoid recreating it if all geometry is freed and then reallocated
+		if (block.isEmpty() && blocks.size() > 1)
+		{
+			blocks.remove(block);
+			pendingDeletes.add(block);
+		}
+	}
+
+	/**
+	 * Ensure the given allocation's buffer exists, and upload any of its dirty
+	 * regions. If the block's buffer had to be (re)created, all regions are
+	 * uploaded.
+	 * 
+	 * @param backend
+	 *            GL backend
+	 * @param allocation
+	 *            Allocation to sync
+	 * @param regions
+	 *            Data for each of the allocation's regions
+	 * @return Id of the buffer containing the allocation, or 0 if the
+	 *         allocation has been freed
+	 */
+	public synchronized int sync(Backend backend, Allocation allocation, FloatBuffer... regions)
+	{
+		for (Block block : pendingDeletes)
+		{
+			backend.deleteBuffer(block);
+		}
+		pendingDeletes.clear();
+
+		if (allocation.freed)
+		{
+			return 0;
+		}
+
+		Block block = allocation.block;
+		int buffer = backend.getBuffer(block);
+		if (buffer == 0)
+		{
+			buffer = backend.createBuffer(block, block.size * FLOAT_SIZE);
+			block.generation++;
+		}
+
+		synchronized (allocation)
+		{
+			boolean all = allocation.generation != block.generation;
+			for (int i = 0; i < allocation.dirty.length; i++)
+			{
+				if (all || allocation.dirty[i])
+				{
+					FloatBuffer data = regions[i].duplicate();
+					data.rewind();
+					data.limit(allocation.regionLengths[i]);
+					backend.bufferSubData(buffer, allocation.getRegionOffsetInBytes(i), data);
+					allocation.dirty[i] = false;
+				}
+			}
+			allocation.generation = block.generation;
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return Number of blocks in the arena
+	 */
+	public synchronized int getBlockCount()
+	{
+		return blocks.size();
+	}
+
+	/**
+	 * @return Number of floats currently allocated from the arena
+	 */
+	public synchronized long getAllocatedSize()
+	{
+		long size = 0;
+		for (Block block : blocks)
+		{
+			size += block.allocated;
+		}
+		return size;
+	}
+
+	/**
+	 * A range of the arena, split into separately dirty-tracked regions.
+	 */
+	public static class Allocation
+	{
+		private final Block block;
+		private final int offset;
+		private final int length;
+		private final int[] regionLengths;
+		private final int[] regionOffsets;
+		private final boolean[] dirty;
+		private int generation = -1;
+		private boolean freed = false;
+
+		private Allocation(Block block, int offset, int[] regionLengths)
+		{
+			this.block = block;
+			this.offset = offset;
+			this.regionLengths = regionLengths.clone();
+			this.regionOffsets = new int[regionLengths.length];
+			this.dirty = new boolean[regionLengths.length];
+			int length = 0;
+			for (int i = 0; i < regionLengths.length; i++)
+			{
+				regionOffsets[i] = offset + length;
+				length += regionLengths[i];
+				dirty[i] = true;
+			}
+			this.length = length;
+		}
+
+		/**
+		 * @return Offset of the given region within the allocation's buffer,
+		 *         in bytes
+		 */
+		public int getRegionOffsetInBytes(int region)
+		{
+			return regionOffsets[region] * FLOAT_SIZE;
+		}
+
+		/**
+		 * Mark the given region as requiring upload on the next sync.
+		 */
+		public synchronized void markDirty(int region)
+		{
+			dirty[region] = true;
+		}
+
+		/**
+		 * @return Is the given region waiting to be uploaded?
+		 */
+		public synchronized boolean isDirty(int region)
+		{
+			return dirty[region];
+		}
+	}
+
+	/**
+	 * A single buffer, with a first-fit free list of float ranges.
+	 */
+	private static class Block
+	{
+		private final int size;
+		private final TreeMap<Integer, Integer> free = new TreeMap<Integer, Integer>();
+		private int allocated = 0;
+		private int generation = 0;
+
+		public Block(int size)
+		{
+			this.size = size;
+			free.put(0, size);
+		}
+
+		public int allocate(int length)
+		{
+			for (Map.Entry<Integer, Integer> range : free.entrySet())
+			{
+				int offset = range.getKey();
+				int rangeLength = range.getValue();
+				if (rangeLength >= length)
+				{
+					free.remove(offset);
+					if (rangeLength > length)
+					{
+						free.put(offset + length, rangeLength - length);
+					}
+					allocated += length;
+					return offset;
+				}
+			}
+			return -1;
+		}
+
+		public void free(int offset, int length)
+		{
+			allocated -= length;
+
+			//coalesce with the following and preceding free ranges
+			Integer nextLength = free.remove(offset + length);
+			if (nextLength != null)
+			{
+				length += nextLength;
+			}
+			Map.Entry<Integer, Integer> previous = free.lowerEntry(offset);
+			if (previous != null && previous.getKey() + previous.getValue() == offset)
+			{
+				offset = previous.getKey();
+				length += previous.getValue();
+			}
+			free.put(offset, length);
+		}
+
+		public boolean isEmpty()
+		{
+			return allocated == 0;
+		}
+	}
+}
@@ -25,34 +25,48 @@ import java.nio.FloatBuffer;
 
 import javax.media.opengl.GL2;
 
+import au.gov.ga.earthsci.worldwind.common.layers.curtain.SegmentBufferArena.Allocation;
+
 /**
  * A {@link Renderable} piece of geometry that draws a segment (or section) of a
  * curtain/path for the {@link TiledCurtainLayer}.
+ * <p/>
+ * When VBOs are in use, the vertices and texture coordinates are stored in a
+ * range sub-allocated from the shared {@link SegmentBufferArena}, and are only
+ * uploaded when they change. {@link #dispose()} must be called to return the
+ * range to the arena once the geometry is no longer used.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class SegmentGeometry implements Renderable
 {
+	private final static int VERTICES = 0;
+	private final static int TEXCOORDS = 1;
+
 	private final int vertexCount;
 	private final FloatBuffer vertices;
 	private final FloatBuffer texCoords;
 	private Vec4 referenceCenter;
 	private long time;
 
-	protected Object vboCacheKey = new Object();
+	private final SegmentBufferArena arena;
+	private Allocation allocation;
+	private boolean disposed = false;
 
 	public SegmentGeometry(DrawContext dc, FloatBuffer vertices, FloatBuffer texCoords, Vec4 referenceCenter)
+	{
+		this(vertices, texCoords, referenceCenter, SegmentBufferArena.getInstance());
+	}
+
+	public SegmentGeometry(FloatBuffer vertices, FloatBuffer texCoords, Vec4 referenceCenter,
+			SegmentBufferArena arena)
 	{
 		this.vertexCount = vertices.limit() / 3;
 		this.vertices = vertices;
 		this.texCoords = texCoords;
 		this.referenceCenter = referenceCenter;
+		this.arena = arena;
 		time = System.currentTimeMillis();
-
-		if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
-		{
-			fillVerticesVBO(dc);
-		}
 	}
 
 	@Override
@@ -63,9 +77,20 @@ public class SegmentGeometry implements Renderable
 
 	public void render(DrawContext dc, int numTextureUnits)
 	{
-		dc.getView().pushReferenceCenter(dc, referenceCenter);
-
 		GL2 gl = dc.getGL().getGL2();
+		boolean useVBO = dc.getGLRuntimeCapabilities().isUseVertexBufferObject();
+		int buffer = 0;
+		if (useVBO)
+		{
+			buffer = syncBuffers(new GpuResourceCacheBackend(dc));
+			if (buffer == 0)
+			{
+				//disposed
+				return;
+			}
+		}
+
+		dc.getView().pushReferenceCenter(dc, referenceCenter);
 		OGLStackHandler ogsh = new OGLStackHandler();
 
 		try
@@ -73,28 +98,21 @@ public class SegmentGeometry implements Renderable
 			ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
 			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
 
-			if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
+			if (useVBO)
 			{
-				//Use VBOs
-				int[] vboIds = (int[]) dc.getGpuResourceCache().get(this.vboCacheKey);
-				if (vboIds == null)
-				{
-					vboIds = fillVerticesVBO(dc);
-				}
-
-				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vboIds[0]);
-				gl.glVertexPointer(3, GL2.GL_FLOAT, 0, 0);
+				//Use a range of the shared VBO
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, buffer);
+				gl.glVertexPointer(3, GL2.GL_FLOAT, 0, allocation.getRegionOffsetInBytes(VERTICES));
 
 				for (int i = 0; i < numTextureUnits; i++)
 				{
 					gl.glClientActiveTexture(GL2.GL_TEXTURE0 + i);
 					gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
-
-					gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vboIds[1]);
-					gl.glTexCoordPointer(2, GL2.GL_FLOAT, 0, 0);
+					gl.glTexCoordPointer(2, GL2.GL_FLOAT, 0, allocation.getRegionOffsetInBytes(TEXCOORDS));
 				}
 
 				gl.glDrawArrays(GL2.GL_TRIANGLE_STRIP, 0, vertexCount);
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
 			}
 			else
 			{
@@ -143,42 +161,124 @@ public class SegmentGeometry implements Renderable
 		return 5 * vertexCount * Float.SIZE / 8;
 	}
 
-	protected void update(DrawContext dc, Vec4 referenceCenter)
+	/**
+	 * Notify this geometry that its vertices have been regenerated in place.
+	 * Only the vertices are uploaded on the next render; texture coordinates
+	 * are assumed unchanged (see {@link #markTexCoordsChanged()}).
+	 */
+	protected synchronized void update(DrawContext dc, Vec4 referenceCenter)
 	{
 		this.time = System.currentTimeMillis();
 		this.referenceCenter = referenceCenter;
+		if (allocation != null)
+		{
+			allocation.markDirty(VERTICES);
+		}
+	}
 
-		if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
+	/**
+	 * Notify this geometry that its texture coordinates have been regenerated
+	 * in place.
+	 */
+	protected synchronized void markTexCoordsChanged()
+	{
+		if (allocation != null)
 		{
-			this.fillVerticesVBO(dc);
+			allocation.markDirty(TEXCOORDS);
 		}
 	}
 
-	protected int[] fillVerticesVBO(DrawContext dc)
+	/**
+	 * Release this geometry's range of the shared buffer. The geometry will
+	 * no longer render when using VBOs.
+	 */
+	public synchronized void dispose()
 	{
-		GL2 gl = dc.getGL().getGL2();
+		disposed = true;
+		if (allocation != null)
+		{
+			arena.free(allocation);
+			allocation = null;
+		}
+	}
 
-		int[] vboIds = (int[]) dc.getGpuResourceCache().get(this.vboCacheKey);
-		if (vboIds == null)
+	/**
+	 * Allocate this geometry's range of the arena if required, and upload any
+	 * changed vertices/texture coordinates.
+	 * 
+	 * @return Id of the buffer containing this geometry, or 0 if disposed
+	 */
+	protected synchronized int syncBuffers(SegmentBufferArena.Backend backend)
+	{
+		if (disposed)
 		{
-			vboIds = new int[2];
-			gl.glGenBuffers(vboIds.length, vboIds, 0);
-			int size = (vertices.limit() + texCoords.limit()) * 4;
-			dc.getGpuResourceCache().put(this.vboCacheKey, vboIds, GpuResourceCache.VBO_BUFFERS, size);
+			return 0;
+		}
+		if (allocation == null)
+		{
+			allocation = arena.allocate(vertices.limit(), texCoords.limit());
 		}
+		return arena.sync(backend, allocation, vertices, texCoords);
+	}
 
-		try
+	/**
+	 * {@link SegmentBufferArena.Backend} implementation that stores the arena's
+	 * buffers in the {@link DrawContext}'s {@link GpuResourceCache}.
+	 */
+	protected static class GpuResourceCacheBackend implements SegmentBufferArena.Backend
+	{
+		private final DrawContext dc;
+
+		public GpuResourceCacheBackend(DrawContext dc)
 		{
-			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vboIds[0]);
-			gl.glBufferData(GL2.GL_ARRAY_BUFFER, vertices.limit() * 4, vertices.rewind(), GL2.GL_STATIC_DRAW);
-			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vboIds[1]);
-			gl.glBufferData(GL2.GL_ARRAY_BUFFER, texCoords.limit() * 4, texCoords.rewind(), GL2.GL_STATIC_DRAW);
+			this.dc = dc;
 		}
-		finally
+
+		@Override
+		public int getBuffer(Object key)
+		{
+			int[] vboIds = (int[]) dc.getGpuResourceCache().get(key);
+			return vboIds == null ? 0 : vboIds[0];
+		}
+
+		@Override
+		public int createBuffer(Object key, int sizeInBytes)
+		{
+			GL2 gl = dc.getGL().getGL2();
+			int[] vboIds = new int[1];
+			gl.glGenBuffers(vboIds.length, vboIds, 0);
+			try
+			{
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, vboIds[0]);
+				gl.glBufferData(GL2.GL_ARRAY_BUFFER, sizeInBytes, null, GL2.GL_DYNAMIC_DRAW);
+			}
+			finally
+			{
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+			}
+			dc.getGpuResourceCache().put(key, vboIds, GpuResourceCache.VBO_BUFFERS, sizeInBytes);
+			return vboIds[0];
+		}
+
+		@Override
+		public void bufferSubData(int buffer, int offsetInBytes, FloatBuffer data)
 		{
-			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+			GL2 gl = dc.getGL().getGL2();
+			try
+			{
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, buffer);
+				gl.glBufferSubData(GL2.GL_ARRAY_BUFFER, offsetInBytes, data.remaining() * Float.SIZE / 8, data);
+			}
+			finally
+			{
+				gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+			}
 		}
 
-		return vboIds;
+		@Override
+		public void deleteBuffer(Object key)
+		{
+			dc.getGpuResourceCache().remove(key);
+		}
 	}
 }
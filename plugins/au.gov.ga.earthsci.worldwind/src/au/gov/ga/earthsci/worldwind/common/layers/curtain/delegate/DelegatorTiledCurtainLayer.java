@@ -49,6 +49,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.StripedFileLock;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 
@@ -69,7 +70,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implements
 		IDelegatorLayer<DelegatorCurtainTextureTile>
 {
-	protected final Object fileLock;
+	protected final StripedFileLock fileLock;
 	protected final URL context;
 	protected final CurtainDelegateKit delegateKit;
 	protected boolean prerendered;
@@ -228,7 +229,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		synchronized (fileLock.getTileLock(tile.getPath()))
 		{
 			textureData = readTexture(tile, textureURL);
 		}
@@ -338,7 +339,8 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * tile's stripe of this class' shared fileLock instead of the superclass'
+	 * fileLock.
 	 * 
 	 * @author Michael de Hoog
 	 */
@@ -355,7 +357,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -36,6 +36,8 @@ import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Element;
 
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.PixelTransformerPipeline;
+
 /**
  * Abstract generic implementation of the {@link IDelegateKit} interface. Stores
  * the delegate objects for each of the delegate types, and forward the delegate
@@ -213,10 +215,26 @@ public abstract class AbstractDelegateKit<TILE extends IDelegatorTile, BOUNDS, L
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
+		//consecutive pixel transformers are fused and applied in a single pass
+		List<IPixelTransformerDelegate> pixelTransformers = new ArrayList<IPixelTransformerDelegate>();
 		for (IImageTransformerDelegate transformer : transformerDelegates)
 		{
+			if (transformer instanceof IPixelTransformerDelegate)
+			{
+				pixelTransformers.add((IPixelTransformerDelegate) transformer);
+				continue;
+			}
+			if (!pixelTransformers.isEmpty())
+			{
+				image = PixelTransformerPipeline.transform(image, pixelTransformers);
+				pixelTransformers.clear();
+			}
 			image = transformer.transformImage(image, tile);
 		}
+		if (!pixelTransformers.isEmpty())
+		{
+			image = PixelTransformerPipeline.transform(image, pixelTransformers);
+		}
 		return image;
 	}
 
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import java.awt.image.BufferedImage;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.PixelTransformerPipeline;
+
+/**
+ * {@link IImageTransformerDelegate} that transforms each pixel independently
+ * of the others. Consecutive pixel transformers are fused by the
+ * {@link PixelTransformerPipeline}, which applies them all in a single pass
+ * over the image, without creating an intermediate image per transformer.
+ * <p/>
+ * Implementations must be thread safe, as pixels of a large image may be
+ * transformed concurrently.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface IPixelTransformerDelegate extends IImageTransformerDelegate
+{
+	/**
+	 * Transform a single pixel.
+	 * 
+	 * @param argb
+	 *            Non-premultiplied ARGB pixel to transform
+	 * @return Transformed non-premultiplied ARGB pixel
+	 */
+	int transformPixel(int argb);
+
+	/**
+	 * @return {@link BufferedImage} type of the images created by this
+	 *         transformer; must be an integer ARGB type
+	 */
+	int getImageType();
+}
@@ -18,14 +18,20 @@ package au.gov.ga.earthsci.worldwind.common.layers.delegate.reader;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
+import javax.imageio.ImageIO;
+
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
+import au.gov.ga.earthsci.worldwind.common.util.ZipEntryIndex;
 
 /**
  * Helper class used for retrieving a mask png file relative to an image tile.
@@ -41,21 +47,21 @@ public class MaskHelper
 	public static interface MaskInsideZipDelegate
 	{
 		/**
-		 * Read the given {@link ZipEntry} from the given {@link ZipInputStream}
-		 * . This function should check if the entry matches a mask entry, and
-		 * if so, reads the mask to a local image. It should also read any other
-		 * entries within the zip file that are not mask images, so that the zip
-		 * entry doesn't have to be read twice.
+		 * Read the zip entry with the given name from the given
+		 * {@link InputStream}. This function should check if the entry matches
+		 * a mask entry, and if so, reads the mask to a local image. It should
+		 * also read any other entries within the zip file that are not mask
+		 * images, so that the zip entry doesn't have to be read twice.
 		 * 
-		 * @param entry
-		 *            {@link ZipEntry} to read. <code>zis</code> is positioned
-		 *            at the beginning of this entry.
-		 * @param zis
-		 *            {@link ZipInputStream} containing the zip entry.
+		 * @param name
+		 *            Name of the zip entry to read
+		 * @param is
+		 *            {@link InputStream} containing the zip entry's data. The
+		 *            stream should not be closed by this function.
 		 * @throws IOException
 		 *             If reading the entry fails.
 		 */
-		void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException;
+		void readEntry(String name, InputStream is) throws IOException;
 	}
 
 	/**
@@ -86,19 +92,7 @@ public class MaskHelper
 		{
 			try
 			{
-				ZipInputStream zis = new ZipInputStream(url.openStream());
-				ZipEntry entry;
-				while ((entry = zis.getNextEntry()) != null)
-				{
-					try
-					{
-						delegate.readEntry(entry, zis);
-					}
-					catch (IOException e)
-					{
-						//ignore (read next ZipEntry)
-					}
-				}
+				readZipEntries(url, delegate);
 			}
 			catch (IOException e)
 			{
@@ -142,6 +136,136 @@ public class MaskHelper
 		}
 	}
 
+	/**
+	 * Pass each entry in the given zip file to the delegate. Local zip files
+	 * are read using their (cached) central directory index; other zip files
+	 * are streamed.
+	 */
+	protected static void readZipEntries(URL url, MaskInsideZipDelegate delegate) throws IOException
+	{
+		File file = URLUtil.urlToFile(url);
+		ZipEntryIndex index = null;
+		if (file != null)
+		{
+			try
+			{
+				index = ZipEntryIndex.get(file);
+			}
+			catch (ZipException e)
+			{
+				//unsupported zip file (eg ZIP64), fall back to streaming
+			}
+		}
+
+		if (index != null)
+		{
+			for (String name : index.getNames())
+			{
+				try
+				{
+					InputStream is = index.getInputStream(name);
+					try
+					{
+						delegate.readEntry(name, is);
+					}
+					finally
+					{
+						is.close();
+					}
+				}
+				catch (IOException e)
+				{
+					//ignore (read next entry)
+				}
+			}
+			return;
+		}
+
+		ZipInputStream zis = new ZipInputStream(url.openStream());
+		try
+		{
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null)
+			{
+				try
+				{
+					delegate.readEntry(entry.getName(), zis);
+				}
+				catch (IOException e)
+				{
+					//ignore (read next ZipEntry)
+				}
+			}
+		}
+		finally
+		{
+			zis.close();
+		}
+	}
+
+	/**
+	 * Read the mask image from the given URL, as returned by
+	 * {@link #getMaskURL(URL, int, MaskInsideZipDelegate)}. Masks inside a
+	 * local mask.zip are read using the zip's (cached) central directory index,
+	 * rather than searching the zip for each tile.
+	 * 
+	 * @param maskUrl
+	 *            URL of the mask image
+	 * @return Mask image, or null if the mask doesn't exist or couldn't be read
+	 */
+	public static BufferedImage readMask(URL maskUrl)
+	{
+		if (maskUrl == null)
+			return null;
+
+		try
+		{
+			String urlString = maskUrl.toString();
+			int indexOfBang = urlString.lastIndexOf('!');
+			if (indexOfBang >= 0
+					&& (maskUrl.getProtocol().equalsIgnoreCase("jar") || maskUrl.getProtocol().equalsIgnoreCase("zip")))
+			{
+				String zipUrl = urlString.substring(maskUrl.getProtocol().length() + 1, indexOfBang);
+				File zipFile = URLUtil.urlToFile(new URL(zipUrl));
+				if (zipFile != null)
+				{
+					try
+					{
+						ZipEntryIndex index = ZipEntryIndex.get(zipFile);
+						InputStream is = index == null ? null : index.getInputStream(urlString.substring(indexOfBang + 1));
+						if (is == null)
+							return null;
+						try
+						{
+							return ImageIO.read(is);
+						}
+						finally
+						{
+							is.close();
+						}
+					}
+					catch (ZipException e)
+					{
+						//unsupported zip file (eg ZIP64), fall back to reading the URL
+					}
+				}
+			}
+			else
+			{
+				File maskFile = URLUtil.urlToFile(maskUrl);
+				if (maskFile != null)
+				{
+					return maskFile.isFile() ? ImageIO.read(maskFile) : null;
+				}
+			}
+			return ImageIO.read(maskUrl);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
 	/**
 	 * Create a File pointing to a 'mask' directory relative to the imageFile
 	 * passed. The function moves up {@code upDirectoryCount} parent
@@ -176,8 +300,110 @@ public class MaskHelper
 		return new File(parent, filename + ".png");
 	}
 
+	/**
+	 * Add the alpha channel of mask to image, and return the masked image.
+	 * <p/>
+	 * The image's alpha is multiplied by the mask's alpha directly in the
+	 * image's raster. If the image has no alpha channel (such as a decoded
+	 * JPEG), the image's colours are instead written into the mask's raster.
+	 * Either way no new images are allocated; images of differing sizes, or
+	 * with premultiplied alpha, fall back to {@link #compose}.
+	 * 
+	 * @param image
+	 * @param mask
+	 * @return image masked by mask; may be either of the given images
+	 */
+	public static BufferedImage applyMask(BufferedImage image, BufferedImage mask)
+	{
+		if (!mask.getColorModel().hasAlpha())
+			return image;
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if (mask.getWidth() != width || mask.getHeight() != height)
+			return compose(image, mask);
+
+		int[] alpha = new int[width];
+		WritableRaster imageAlpha = image.getAlphaRaster();
+		if (imageAlpha != null)
+		{
+			if (image.isAlphaPremultiplied())
+				return compose(image, mask);
+
+			//multiply the image's alpha by the mask's, as the SrcIn composite does
+			int bits = imageAlpha.getSampleModel().getSampleSize(0);
+			int max = (1 << bits) - 1;
+			int[] existing = new int[width];
+			for (int y = 0; y < height; y++)
+			{
+				getAlphaRow(mask, y, alpha, bits);
+				imageAlpha.getSamples(0, y, width, 1, 0, existing);
+				for (int x = 0; x < width; x++)
+				{
+					alpha[x] = (existing[x] * alpha[x] + max / 2) / max;
+				}
+				imageAlpha.setSamples(0, y, width, 1, 0, alpha);
+			}
+			return image;
+		}
+
+		if (mask.isAlphaPremultiplied())
+			return compose(image, mask);
+
+		int[] rgb = new int[width];
+		for (int y = 0; y < height; y++)
+		{
+			getAlphaRow(mask, y, alpha, 8);
+			image.getRGB(0, y, width, 1, rgb, 0, width);
+			for (int x = 0; x < width; x++)
+			{
+				rgb[x] = (alpha[x] << 24) | (rgb[x] & 0xffffff);
+			}
+			mask.setRGB(0, y, width, 1, rgb, 0, width);
+		}
+		return mask;
+	}
+
+	/**
+	 * Read a row of alpha values from the given image, scaled to the given
+	 * number of bits.
+	 */
+	private static void getAlphaRow(BufferedImage image, int y, int[] alpha, int bits)
+	{
+		int width = alpha.length;
+		int sourceBits;
+		WritableRaster raster = image.getAlphaRaster();
+		if (raster != null)
+		{
+			raster.getSamples(0, y, width, 1, 0, alpha);
+			sourceBits = raster.getSampleModel().getSampleSize(0);
+		}
+		else
+		{
+			//eg indexed images with a transparent palette entry
+			image.getRGB(0, y, width, 1, alpha, 0, width);
+			for (int x = 0; x < width; x++)
+			{
+				alpha[x] >>>= 24;
+			}
+			sourceBits = 8;
+		}
+
+		if (sourceBits != bits)
+		{
+			long sourceMax = (1L << sourceBits) - 1;
+			long max = (1L << bits) - 1;
+			for (int x = 0; x < width; x++)
+			{
+				alpha[x] = (int) (alpha[x] * max / sourceMax);
+			}
+		}
+	}
+
 	/**
 	 * Add the alpha channel of mask to image, and return the composed image.
+	 * Uses Java2D compositing; {@link #applyMask} should generally be used
+	 * instead.
 	 * 
 	 * @param image
 	 * @param mask
@@ -20,9 +20,8 @@ import gov.nasa.worldwind.globes.Globe;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.imageio.ImageIO;
 
@@ -67,11 +66,11 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 		MaskInsideZipDelegate delegate = new MaskInsideZipDelegate()
 		{
 			@Override
-			public void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException
+			public void readEntry(String name, InputStream is) throws IOException
 			{
 				wasInsideZip[0] = true;
-				BufferedImage bi = ImageIO.read(zis);
-				String lower = entry.getName().toLowerCase();
+				BufferedImage bi = ImageIO.read(is);
+				String lower = name.toLowerCase();
 				int index = lower.contains("mask") || bi.getColorModel().hasAlpha() ? 1 : 0;
 				images[index] = bi;
 			}
@@ -86,11 +85,11 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 			try
 			{
 				image = ImageIO.read(url);
-				mask = ImageIO.read(maskUrl);
 			}
 			catch (Exception e)
 			{
 			}
+			mask = MaskHelper.readMask(maskUrl);
 		}
 		
 		//if either image and mask don't exist, at least return one of them
@@ -98,8 +97,8 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 			return mask;
 		if (mask == null)
 			return image;
-		//compose the image and mask together
-		return MaskHelper.compose(image, mask);
+		//write the mask into the image's alpha channel
+		return MaskHelper.applyMask(image, mask);
 	}
 
 	@Override
@@ -26,7 +26,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
-import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
  * A delegate that limits each colour channel of the target image to be less than a 
@@ -41,7 +41,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDele
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class ColorLimitTransformerDelegate implements IImageTransformerDelegate
+public class ColorLimitTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "ColorLimitTransformer";
 
@@ -92,22 +92,19 @@ public class ColorLimitTransformerDelegate implements IImageTransformerDelegate
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		if (image == null)
-			return null;
-
-		BufferedImage dst = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		return PixelTransformerPipeline.transform(image, this);
+	}
 
-		for (int y = 0; y < image.getHeight(); y++)
-		{
-			for (int x = 0; x < image.getWidth(); x++)
-			{
-				int rgb = image.getRGB(x, y);
-				rgb = limitColor(rgb, color);
-				dst.setRGB(x, y, rgb);
-			}
-		}
+	@Override
+	public int transformPixel(int argb)
+	{
+		return limitColor(argb, color);
+	}
 
-		return dst;
+	@Override
+	public int getImageType()
+	{
+		return BufferedImage.TYPE_INT_ARGB_PRE;
 	}
 
 	protected static int limitColor(int argb, Color color)
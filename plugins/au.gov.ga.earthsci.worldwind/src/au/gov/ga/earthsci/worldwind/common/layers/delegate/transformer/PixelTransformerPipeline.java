@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Applies a sequence of {@link IPixelTransformerDelegate}s to an image in a
+ * single pass. The pixels are read into the integer array backing the
+ * destination image (directly from the source's backing array if the source is
+ * an integer RGB image), transformed in place, and premultiplied if the
+ * destination type requires it. Only the destination image is allocated,
+ * regardless of the number of transformers.
+ * <p/>
+ * Large images are split into bands of rows which are transformed
+ * concurrently.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PixelTransformerPipeline
+{
+	private final static int PARALLEL_THRESHOLD = 1024 * 1024;
+	private final static int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private final static ExecutorService executor = THREAD_COUNT > 1 ? Executors.newFixedThreadPool(THREAD_COUNT,
+			new DaemonThreadFactory("Pixel transformer")) : null;
+
+	/**
+	 * Transform the given image using the given transformers, in order.
+	 * 
+	 * @param image
+	 *            Image to transform
+	 * @param transformers
+	 *            Transformers to apply
+	 * @return Transformed image, of the type of the last transformer
+	 */
+	public static BufferedImage transform(BufferedImage image, IPixelTransformerDelegate... transformers)
+	{
+		return transform(image, Arrays.asList(transformers));
+	}
+
+	/**
+	 * Transform the given image using the given transformers, in order.
+	 * 
+	 * @param image
+	 *            Image to transform
+	 * @param transformers
+	 *            Transformers to apply
+	 * @return Transformed image, of the type of the last transformer
+	 */
+	public static BufferedImage transform(BufferedImage image, List<IPixelTransformerDelegate> transformers)
+	{
+		if (image == null || transformers.isEmpty())
+			return image;
+
+		final IPixelTransformerDelegate[] array =
+				transformers.toArray(new IPixelTransformerDelegate[transformers.size()]);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int type = array[array.length - 1].getImageType();
+		final boolean premultiply = type == BufferedImage.TYPE_INT_ARGB_PRE;
+
+		BufferedImage dst = new BufferedImage(width, height, type);
+		final int[] dstPixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+		final int[] srcPixels = getPixels(image, dstPixels);
+		final int alphaMask = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xff000000 : 0;
+
+		int length = width * height;
+		if (executor == null || length < PARALLEL_THRESHOLD)
+		{
+			transform(array, srcPixels, dstPixels, alphaMask, premultiply, 0, length);
+			return dst;
+		}
+
+		//split into bands of whole rows, transforming the last band in the calling thread
+		int rowsPerBand = (height + THREAD_COUNT - 1) / THREAD_COUNT;
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int y = 0; y < height; y += rowsPerBand)
+		{
+			final int start = y * width;
+			final int end = Math.min(height, y + rowsPerBand) * width;
+			if (end == length)
+			{
+				transform(array, srcPixels, dstPixels, alphaMask, premultiply, start, end);
+				break;
+			}
+			futures.add(executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					transform(array, srcPixels, dstPixels, alphaMask, premultiply, start, end);
+				}
+			}));
+		}
+		waitFor(futures);
+		return dst;
+	}
+
+	/**
+	 * Get the non-premultiplied pixels of the given image. If the image is
+	 * backed by an integer array in a compatible format, that array is returned
+	 * directly; otherwise the pixels are read into the given array.
+	 */
+	private static int[] getPixels(BufferedImage image, int[] into)
+	{
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+		{
+			Raster raster = image.getRaster();
+			if (raster.getParent() == null && raster.getSampleModelTranslateX() == 0
+					&& raster.getSampleModelTranslateY() == 0
+					&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+					&& ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image
+							.getWidth())
+			{
+				DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+				if (buffer.getNumBanks() == 1 && buffer.getOffset() == 0)
+				{
+					return buffer.getData();
+				}
+			}
+		}
+		image.getRGB(0, 0, image.getWidth(), image.getHeight(), into, 0, image.getWidth());
+		return into;
+	}
+
+	private static void transform(IPixelTransformerDelegate[] transformers, int[] src, int[] dst, int alphaMask,
+			boolean premultiply, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			int argb = src[i] | alphaMask;
+			for (IPixelTransformerDelegate transformer : transformers)
+			{
+				argb = transformer.transformPixel(argb);
+			}
+			dst[i] = premultiply ? premultiply(argb) : argb;
+		}
+	}
+
+	/**
+	 * Premultiply the color components of a pixel by its alpha, rounding in
+	 * the same way as the premultiplied {@link java.awt.image.ColorModel}s.
+	 */
+	private static int premultiply(int argb)
+	{
+		int a = (argb >>> 24);
+		if (a == 0xff)
+			return argb;
+		if (a == 0)
+			return 0;
+		float factor = a / 255f;
+		int r = (int) (((argb >> 16) & 0xff) * factor + 0.5f);
+		int g = (int) (((argb >> 8) & 0xff) * factor + 0.5f);
+		int b = (int) ((argb & 0xff) * factor + 0.5f);
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	private static void waitFor(List<Future<?>> futures)
+	{
+		boolean interrupted = false;
+		for (Future<?> future : futures)
+		{
+			while (true)
+			{
+				try
+				{
+					future.get();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					//the bands share the destination image, so they must all complete
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -69,6 +69,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.StripedFileLock;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
@@ -92,7 +93,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
 		IDelegatorLayer<DelegatorMercatorTextureTile>
 {
-	protected final Object fileLock;
+	protected final StripedFileLock fileLock;
 	protected final URL context;
 	protected final MercatorImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
@@ -341,7 +342,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		synchronized (fileLock.getTileLock(tile.getPath()))
 		{
 			textureData = readTexture(tile, textureURL);
 		}
@@ -453,24 +454,27 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * tile's stripe of this class' shared fileLock instead of the superclass'
+	 * fileLock.
 	 * 
 	 * @author Michael de Hoog
 	 */
 	protected static class DownloadPostProcessor extends BasicTiledImageLayer.DownloadPostProcessor
 	{
+		private final TextureTile tile;
 		private final DelegatorMercatorTiledImageLayer layer;
 
 		public DownloadPostProcessor(TextureTile tile, DelegatorMercatorTiledImageLayer layer)
 		{
 			super(tile, layer);
+			this.tile = tile;
 			this.layer = layer;
 		}
 
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
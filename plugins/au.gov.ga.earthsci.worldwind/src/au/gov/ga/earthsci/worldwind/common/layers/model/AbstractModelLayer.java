@@ -26,6 +26,7 @@ import java.util.List;
 
 import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.Loader;
 
 /**
  * Abstract implementation of the {@link ModelLayer}. Contains the common
@@ -59,6 +60,16 @@ public abstract class AbstractModelLayer extends AbstractLayer implements ModelL
 	protected final HierarchicalListenerList hierarchicalListenerList = new HierarchicalListenerList();
 	protected final ModelLayerTreeNode treeNode = new ModelLayerTreeNode(this);
 
+	protected final LoadingListenerList loadingListeners = new LoadingListenerList();
+	protected final LoadingListener shapeLoadingListener = new LoadingListener()
+	{
+		@Override
+		public void loadingStateChanged(Loader loader, boolean isLoading)
+		{
+			loadingListeners.notifyListeners(AbstractModelLayer.this, AbstractModelLayer.this.isLoading());
+		}
+	};
+
 	protected abstract void requestData();
 
 	@Override
@@ -120,6 +131,24 @@ public abstract class AbstractModelLayer extends AbstractLayer implements ModelL
 		return false;
 	}
 
+	/**
+	 * @return Are any of this layer's shapes recalculating their vertices?
+	 */
+	protected boolean isRecalculatingShapes()
+	{
+		synchronized (shapes)
+		{
+			for (FastShape shape : shapes)
+			{
+				if (shape.isLoading())
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public Double getMinimumDistance()
 	{
 		return minimumDistance;
@@ -190,6 +219,7 @@ public abstract class AbstractModelLayer extends AbstractLayer implements ModelL
 		{
 			shapes.add(shape);
 		}
+		shape.addLoadingListener(shapeLoadingListener);
 		bounds = null;
 		treeNode.addChild(shape);
 		hierarchicalListenerList.notifyListeners(this, treeNode);
@@ -202,6 +232,7 @@ public abstract class AbstractModelLayer extends AbstractLayer implements ModelL
 		{
 			shapes.remove(shape);
 		}
+		shape.removeLoadingListener(shapeLoadingListener);
 		bounds = null;
 		treeNode.removeChild(shape);
 		hierarchicalListenerList.notifyListeners(this, treeNode);
@@ -93,19 +93,21 @@ public class BasicModelLayer extends AbstractModelLayer implements ModelLayer
 	@Override
 	public boolean isLoading()
 	{
-		return provider.isLoading();
+		return provider.isLoading() || isRecalculatingShapes();
 	}
 
 	@Override
 	public void addLoadingListener(LoadingListener listener)
 	{
 		provider.addLoadingListener(listener);
+		loadingListeners.add(listener);
 	}
 
 	@Override
 	public void removeLoadingListener(LoadingListener listener)
 	{
 		provider.removeLoadingListener(listener);
+		loadingListeners.remove(listener);
 	}
 
 	@Override
@@ -54,17 +54,19 @@ public class LocalModelLayer extends AbstractModelLayer implements ModelLayer
 	@Override
 	public boolean isLoading()
 	{
-		return false;
+		return isRecalculatingShapes();
 	}
 
 	@Override
 	public void addLoadingListener(LoadingListener listener)
 	{
+		loadingListeners.add(listener);
 	}
 
 	@Override
 	public void removeLoadingListener(LoadingListener listener)
 	{
+		loadingListeners.remove(listener);
 	}
 
 	@Override
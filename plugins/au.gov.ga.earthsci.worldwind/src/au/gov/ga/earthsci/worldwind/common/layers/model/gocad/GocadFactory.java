@@ -37,8 +37,6 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
  */
 public class GocadFactory
 {
-	private static final String COMMENT_REGEX = "\\s*#.*";
-
 	public static boolean isGocadFileSuffix(String suffix)
 	{
 		return suffix.equalsIgnoreCase("ts") || suffix.equalsIgnoreCase("gp") || suffix.equalsIgnoreCase("vo")
@@ -50,13 +48,20 @@ public class GocadFactory
 	 */
 	public enum GocadType
 	{
-		PLine(GocadPLineReader.HEADER_REGEX, GocadPLineReader.END_REGEX, GocadPLineReader.class),
-		Voxet(GocadVoxetReader.HEADER_REGEX, GocadVoxetReader.END_REGEX, GocadVoxetReader.class),
-		TSurf(GocadTSurfReader.HEADER_REGEX, GocadTSurfReader.END_REGEX, GocadTSurfReader.class),
-		SGrid(GocadSGridReader.HEADER_REGEX, GocadSGridReader.END_REGEX, GocadSGridReader.class),
-		GSurf(GocadGSurfReader.HEADER_REGEX, GocadGSurfReader.END_REGEX, GocadGSurfReader.class),
-		Group(GocadGroupReader.HEADER_REGEX, GocadGroupReader.END_REGEX, GocadGroupReader.class),
-		VSet(GocadVSetReader.HEADER_REGEX, GocadVSetReader.END_REGEX, GocadVSetReader.class);
+		PLine(GocadPLineReader.HEADER_REGEX, GocadPLineReader.END_REGEX, GocadPLineReader.HEADER_KEYWORD,
+				GocadPLineReader.END_KEYWORD, GocadPLineReader.class),
+		Voxet(GocadVoxetReader.HEADER_REGEX, GocadVoxetReader.END_REGEX, GocadVoxetReader.HEADER_KEYWORD,
+				GocadVoxetReader.END_KEYWORD, GocadVoxetReader.class),
+		TSurf(GocadTSurfReader.HEADER_REGEX, GocadTSurfReader.END_REGEX, GocadTSurfReader.HEADER_KEYWORD,
+				GocadTSurfReader.END_KEYWORD, GocadTSurfReader.class),
+		SGrid(GocadSGridReader.HEADER_REGEX, GocadSGridReader.END_REGEX, GocadSGridReader.HEADER_KEYWORD,
+				GocadSGridReader.END_KEYWORD, GocadSGridReader.class),
+		GSurf(GocadGSurfReader.HEADER_REGEX, GocadGSurfReader.END_REGEX, GocadGSurfReader.HEADER_KEYWORD,
+				GocadGSurfReader.END_KEYWORD, GocadGSurfReader.class),
+		Group(GocadGroupReader.HEADER_REGEX, GocadGroupReader.END_REGEX, GocadGroupReader.HEADER_KEYWORD,
+				GocadGroupReader.END_KEYWORD, GocadGroupReader.class),
+		VSet(GocadVSetReader.HEADER_REGEX, GocadVSetReader.END_REGEX, GocadVSetReader.HEADER_KEYWORD,
+				GocadVSetReader.END_KEYWORD, GocadVSetReader.class);
 
 		/**
 		 * Regular expression used for matching the first line of the GOCAD object to this type.
@@ -68,18 +73,58 @@ public class GocadFactory
 		 */
 		public final String endRegex;
 		
+		/**
+		 * String contained in the first line of the GOCAD object of this type;
+		 * equivalent to the {@link #headerRegex}.
+		 */
+		public final String headerKeyword;
+
+		/**
+		 * Is the {@link #headerKeyword} matched ignoring case? True if the
+		 * {@link #headerRegex} is case insensitive.
+		 */
+		public final boolean headerIgnoreCase;
+
+		/**
+		 * Keyword that makes up the line at the end of the GOCAD object of
+		 * this type; equivalent to the {@link #endRegex}.
+		 */
+		public final String endKeyword;
+
 		/**
 		 * {@link GocadReader} implementation used for reading this type.
 		 */
 		public final Class<? extends GocadReader<?>> readerClass;
 
-		private GocadType(String headerRegex, String endRegex, Class<? extends GocadReader<?>> readerClass)
+		private GocadType(String headerRegex, String endRegex, String headerKeyword, String endKeyword,
+				Class<? extends GocadReader<?>> readerClass)
 		{
 			this.headerRegex = headerRegex;
 			this.endRegex = endRegex;
+			this.headerKeyword = headerKeyword;
+			this.headerIgnoreCase = headerRegex.startsWith("(?i)");
+			this.endKeyword = endKeyword;
 			this.readerClass = readerClass;
 		}
 
+		/**
+		 * @return Is the given line the first line of a GOCAD object of this
+		 *         type?
+		 */
+		public boolean matchesHeader(String line)
+		{
+			return headerIgnoreCase ? GocadLineTokenizer.containsIgnoreCase(line, headerKeyword) : line
+					.contains(headerKeyword);
+		}
+
+		/**
+		 * @return Is the given line the end of a GOCAD object of this type?
+		 */
+		public boolean matchesEnd(String line)
+		{
+			return GocadLineTokenizer.isKeywordLine(line, endKeyword);
+		}
+
 		/**
 		 * @return An instance of a {@link GocadReader} for reading a file of
 		 *         this type.
@@ -187,7 +232,7 @@ public class GocadFactory
 	{
 		for (GocadType type : GocadType.values())
 		{
-			if (line.matches(type.headerRegex))
+			if (type.matchesHeader(line))
 			{
 				return type;
 			}
@@ -214,6 +259,7 @@ public class GocadFactory
 	{
 		GocadReader<?> gocadReader = type.instanciateReader();
 		gocadReader.begin(parameters);
+		GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 		while (true)
 		{
 			String line = br.readLine();
@@ -221,12 +267,12 @@ public class GocadFactory
 			{
 				throw new IllegalArgumentException("GOCAD file ended unexpectedly");
 			}
-			if (line.matches(COMMENT_REGEX))
+			if (tokenizer.reset(line).isCommentOrEmpty())
 			{
-				//don't pass comment lines to the reader
+				//don't pass comment or empty lines to the reader
 				continue;
 			}
-			if (line.matches(type.endRegex))
+			if (type.matchesEnd(line))
 			{
 				//object has ended, break out of the loop to parse the next object (if any)
 				break;
@@ -28,8 +28,6 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.gdal.osr.CoordinateTransformation;
 
@@ -45,12 +43,9 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
 public class GocadGSurfReader implements GocadReader<FastShape>
 {
 	public final static String HEADER_REGEX = "(?i).*gsurf.*";
+	public final static String HEADER_KEYWORD = "gsurf";
 
-	//axis pattern is different to voxet axis pattern, because AXIS_N only has 2 values instead of 3
-	private final static Pattern axisPattern = Pattern
-			.compile("(?:(ORIGIN)|(?:AXIS_(\\S+)))\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)(?:\\s+([\\d.\\-]+))?.*");
-	private final static Pattern typePattern = Pattern.compile("TYPE\\s+(\\w+)\\s*");
-	private final static Pattern propertyIdPattern = Pattern.compile("PROPERTY\\s+(\\d+)\\s+\"?([^\"]+)\"?.*");
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 
 	private String name;
 	private boolean zPositive = true;
@@ -93,85 +88,82 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher = axisPattern.matcher(line);
-		if (matcher.matches())
-		{
-			parseAxis(matcher);
-			return;
-		}
-
-		matcher = propertyPattern.matcher(line);
-		if (matcher.matches())
-		{
-			parseProperty(matcher);
-			return;
-		}
-
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
-		{
-			name = matcher.group(1);
-			return;
-		}
-
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
-		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
-			return;
-		}
-
-		matcher = solidColorPattern.matcher(line);
-		if (matcher.matches())
-		{
-			color = GocadColor.gocadLineToColor(line);
-			return;
-		}
-
-		matcher = typePattern.matcher(line);
-		if (matcher.matches())
-		{
-			cellCentered = matcher.group(1).equalsIgnoreCase("cells");
-			return;
-		}
-
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
+		GocadLineTokenizer tokenizer = this.tokenizer.reset(line);
+		try
 		{
-			if (parameters.getPaintedVariable() == null)
+			if (tokenizer.isKeyword("ORIGIN"))
 			{
-				paintedVariableName = matcher.group(1);
+				parseAxis("ORIGIN", tokenizer);
 			}
-			return;
-		}
-
-		matcher = propertyIdPattern.matcher(line);
-		if (matcher.matches())
-		{
-			int id = Integer.parseInt(matcher.group(1));
-			String propertyName = matcher.group(2);
-			if (propertyName.equalsIgnoreCase(paintedVariableName))
+			else if (tokenizer.isPrefix("AXIS_"))
+			{
+				parseAxis(tokenizer.nextToken(), tokenizer);
+			}
+			else if (tokenizer.isPrefix("PROP_"))
+			{
+				String type = tokenizer.nextToken();
+				int id = tokenizer.nextInt();
+				String value = tokenizer.nextToken();
+				if (type != null && value != null)
+				{
+					parseProperty(type, id, value);
+				}
+			}
+			else if (tokenizer.isPrefix("name:"))
+			{
+				name = tokenizer.rest();
+			}
+			else if (tokenizer.isKeyword("ZPOSITIVE"))
+			{
+				String zpositive = tokenizer.nextToken();
+				if (zpositive != null)
+				{
+					zPositive = !zpositive.equalsIgnoreCase("depth");
+				}
+			}
+			else if (tokenizer.isPrefix("*solid*color:"))
 			{
-				paintedVariableId = id;
+				color = GocadColor.gocadLineToColor(line);
+			}
+			else if (tokenizer.isKeyword("TYPE"))
+			{
+				cellCentered = "cells".equalsIgnoreCase(tokenizer.nextToken());
+			}
+			else if (tokenizer.isPrefix("*painted*variable:"))
+			{
+				if (parameters.getPaintedVariable() == null)
+				{
+					paintedVariableName = tokenizer.rest();
+				}
+			}
+			else if (tokenizer.isKeyword("PROPERTY"))
+			{
+				int id = tokenizer.nextInt();
+				String propertyName = unquote(tokenizer.rest());
+				if (propertyName.equalsIgnoreCase(paintedVariableName))
+				{
+					paintedVariableId = id;
+				}
 			}
 		}
+		catch (NumberFormatException e)
+		{
+			//ignore malformed lines
+		}
 	}
 
-	private void parseAxis(Matcher matcher)
+	private static String unquote(String s)
 	{
-		String type = matcher.group(1);
-		if (type == null)
-		{
-			type = matcher.group(2);
-		}
-		double d0 = Double.parseDouble(matcher.group(3));
-		double d1 = Double.parseDouble(matcher.group(4));
-		double d2 = 0;
-		String group5 = matcher.group(5);
-		if (group5 != null)
-		{
-			d2 = Double.parseDouble(group5);
-		}
+		int start = s.startsWith("\"") ? 1 : 0;
+		int end = s.indexOf('"', start);
+		return s.substring(start, end < 0 ? s.length() : end).trim();
+	}
+
+	private void parseAxis(String type, GocadLineTokenizer tokenizer)
+	{
+		double d0 = tokenizer.nextDouble();
+		double d1 = tokenizer.nextDouble();
+		double d2 = tokenizer.getValue(0, 0);
 
 		Vec4 v = new Vec4(d0, d1, d2);
 		if (type.equals("O") || type.equals("ORIGIN"))
@@ -204,12 +196,8 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		}
 	}
 
-	private void parseProperty(Matcher matcher)
+	private void parseProperty(String type, int id, String value)
 	{
-		String type = matcher.group(1);
-		int id = Integer.parseInt(matcher.group(2));
-		String value = matcher.group(3);
-
 		//currently only read the first property's parameters:
 		if (type.equals("NO_DATA_VALUE"))
 		{
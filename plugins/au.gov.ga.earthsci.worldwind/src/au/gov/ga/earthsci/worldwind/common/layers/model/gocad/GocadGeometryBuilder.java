@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import java.awt.Color;
+
+import org.gdal.osr.CoordinateTransformation;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.PositionList;
+import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableFloatArray;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableIntArray;
+import au.gov.ga.earthsci.worldwind.common.util.IntIntHashMap;
+
+/**
+ * Accumulates the vertices, painted values and element indices read from a
+ * GOCAD object in primitive arrays, ready to be passed to a {@link FastShape}
+ * without creating an object per vertex.
+ * <p/>
+ * Vertices are referenced by their GOCAD id, which is mapped to the index of
+ * the vertex in the order it was added. Element indices are stored as GOCAD
+ * ids until {@link #resolveIndices()} is called, as GOCAD files can reference
+ * vertices before they are defined.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadGeometryBuilder
+{
+	private final CoordinateTransformation coordinateTransformation;
+	private final double[] transformed = new double[3];
+
+	private final PositionList positions = new PositionList();
+	private final GrowableFloatArray values = new GrowableFloatArray();
+	private final GrowableIntArray indices = new GrowableIntArray();
+	private final IntIntHashMap vertexIdMap = new IntIntHashMap();
+
+	private float min = Float.MAX_VALUE;
+	private float max = -Float.MAX_VALUE;
+	private float noDataValue = -Float.MAX_VALUE;
+
+	/**
+	 * @param coordinateTransformation
+	 *            Transformation to apply to each vertex (can be null)
+	 */
+	public GocadGeometryBuilder(CoordinateTransformation coordinateTransformation)
+	{
+		this.coordinateTransformation = coordinateTransformation;
+	}
+
+	/**
+	 * Add a vertex, and map the given GOCAD id to it.
+	 * 
+	 * @param id
+	 *            GOCAD vertex id
+	 * @param x
+	 *            Vertex x (longitude) coordinate
+	 * @param y
+	 *            Vertex y (latitude) coordinate
+	 * @param z
+	 *            Vertex elevation
+	 * @return Index of the new vertex
+	 * @throws IllegalArgumentException
+	 *             If a vertex with the same id has already been added
+	 */
+	public int addVertex(int id, double x, double y, double z)
+	{
+		if (vertexIdMap.containsKey(id))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id);
+		}
+		int index = addVertex(x, y, z);
+		vertexIdMap.put(id, index);
+		return index;
+	}
+
+	/**
+	 * Add a vertex that isn't referenced by any elements.
+	 * 
+	 * @param x
+	 *            Vertex x (longitude) coordinate
+	 * @param y
+	 *            Vertex y (latitude) coordinate
+	 * @param z
+	 *            Vertex elevation
+	 * @return Index of the new vertex
+	 */
+	public int addVertex(double x, double y, double z)
+	{
+		if (coordinateTransformation != null)
+		{
+			coordinateTransformation.TransformPoint(transformed, x, y, z);
+			x = transformed[0];
+			y = transformed[1];
+			z = transformed[2];
+		}
+		positions.add(y, x, z);
+		return positions.size() - 1;
+	}
+
+	/**
+	 * Add a vertex that shares the position of an existing vertex (a GOCAD
+	 * ATOM).
+	 * 
+	 * @param id
+	 *            GOCAD id of the new vertex
+	 * @param existingId
+	 *            GOCAD id of the vertex whose position is copied
+	 * @return Index of the new vertex
+	 * @throws IllegalArgumentException
+	 *             If the id already exists, or the existing id doesn't
+	 */
+	public int addAtom(int id, int existingId)
+	{
+		if (vertexIdMap.containsKey(id))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id);
+		}
+		int existing = vertexIdMap.get(existingId, -1);
+		if (existing < 0)
+		{
+			throw new IllegalArgumentException("Unknown vertex id: " + existingId);
+		}
+		positions.add(positions.getLatitude(existing), positions.getLongitude(existing),
+				positions.getElevation(existing));
+		int index = positions.size() - 1;
+		vertexIdMap.put(id, index);
+		return index;
+	}
+
+	/**
+	 * @return Elevation of the vertex at the given index (after
+	 *         transformation)
+	 */
+	public double getElevation(int index)
+	{
+		return positions.getElevation(index);
+	}
+
+	/**
+	 * Add the painted value for the next vertex. Values should be added in
+	 * the same order as the vertices.
+	 * 
+	 * @param value
+	 *            Value, or NaN if the vertex has no value
+	 */
+	public void addValue(float value)
+	{
+		if (!Float.isNaN(value) && value != noDataValue)
+		{
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * Add a vertex reference to the element indices.
+	 * 
+	 * @param id
+	 *            GOCAD vertex id
+	 */
+	public void addIndex(int id)
+	{
+		indices.add(id);
+	}
+
+	public void setNoDataValue(float noDataValue)
+	{
+		this.noDataValue = noDataValue;
+	}
+
+	public float getNoDataValue()
+	{
+		return noDataValue;
+	}
+
+	/**
+	 * @return Number of vertices added
+	 */
+	public int getVertexCount()
+	{
+		return positions.size();
+	}
+
+	/**
+	 * @return Positions of the vertices added
+	 */
+	public PositionList getPositions()
+	{
+		positions.trimToSize();
+		return positions;
+	}
+
+	/**
+	 * Convert the GOCAD ids in the element indices to vertex indices. The
+	 * conversion is done in place, so this should only be called once.
+	 * 
+	 * @return Array of vertex indices
+	 * @throws IllegalArgumentException
+	 *             If an element references an unknown vertex id
+	 */
+	public int[] resolveIndices()
+	{
+		int[] array = indices.array();
+		for (int i = 0; i < indices.size(); i++)
+		{
+			int index = vertexIdMap.get(array[i], -1);
+			if (index < 0)
+			{
+				throw new IllegalArgumentException("Unknown vertex id: " + array[i]);
+			}
+			array[i] = index;
+		}
+		return indices.toArray();
+	}
+
+	/**
+	 * Create a RGBA color buffer by mapping each vertex's value through the
+	 * given color map. Vertices without a value are fully transparent.
+	 * 
+	 * @param colorMap
+	 *            Color map
+	 * @return Color buffer with 4 elements per vertex
+	 */
+	public float[] createColorBuffer(ColorMap colorMap)
+	{
+		float[] colorBuffer = new float[values.size() * 4];
+		float[] array = values.array();
+		for (int i = 0, j = 0; i < values.size(); i++, j += 4)
+		{
+			float value = array[i];
+			if (!Float.isNaN(value) && value != noDataValue)
+			{
+				Color color = colorMap.calculateColorNotingIsValuesPercentages(value, min, max);
+				colorBuffer[j + 0] = color.getRed() / 255f;
+				colorBuffer[j + 1] = color.getGreen() / 255f;
+				colorBuffer[j + 2] = color.getBlue() / 255f;
+				colorBuffer[j + 3] = color.getAlpha() / 255f;
+			}
+		}
+		return colorBuffer;
+	}
+}
@@ -28,7 +28,9 @@ public class GocadGroupReader implements GocadReader<GocadReaderParameters>
 {
 
 	public static final String HEADER_REGEX = ".* HomogeneousGroup .*";
+	public static final String HEADER_KEYWORD = " HomogeneousGroup ";
 	public static final String END_REGEX = "BEGIN_MEMBERS";
+	public static final String END_KEYWORD = "BEGIN_MEMBERS";
 	
 	private GocadReaderParameters originalParams;
 	private GocadReaderParameters newParams;
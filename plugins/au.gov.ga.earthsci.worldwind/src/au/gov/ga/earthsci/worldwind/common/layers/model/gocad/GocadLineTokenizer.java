@@ -0,0 +1,457 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import java.util.Arrays;
+
+/**
+ * Tokenizer for lines of the ASCII GOCAD formats. Lines are dispatched on
+ * their leading keyword, and numbers are parsed directly from the line's
+ * characters, so parsing a vertex line doesn't create any objects.
+ * <p/>
+ * Tokens are separated by whitespace or commas. An instance can be reused for
+ * multiple lines by calling {@link #reset(String)}, but is not thread safe.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadLineTokenizer
+{
+	private final static double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Maximum number of significant digits that can be parsed exactly with a
+	 * single floating point multiplication or division; numbers with more
+	 * digits are passed to {@link Double#parseDouble(String)}.
+	 */
+	private final static int MAX_FAST_DIGITS = 15;
+
+	private String line = "";
+	private int length;
+	private int position;
+
+	/**
+	 * Start tokenizing a new line. Leading whitespace is skipped.
+	 * 
+	 * @param line
+	 *            Line to tokenize
+	 * @return this
+	 */
+	public GocadLineTokenizer reset(String line)
+	{
+		this.line = line;
+		this.length = line.length();
+		this.position = 0;
+		skipDelimiters();
+		return this;
+	}
+
+	/**
+	 * @return The line being tokenized
+	 */
+	public String getLine()
+	{
+		return line;
+	}
+
+	/**
+	 * @return Is the line empty or a comment (starting with #)?
+	 */
+	public boolean isCommentOrEmpty()
+	{
+		return position >= length || line.charAt(position) == '#';
+	}
+
+	/**
+	 * @return Are there any more tokens on the line?
+	 */
+	public boolean hasNext()
+	{
+		skipDelimiters();
+		return position < length;
+	}
+
+	/**
+	 * Is the next token equal to the given keyword? If so, the keyword is
+	 * consumed.
+	 * 
+	 * @param keyword
+	 *            Keyword to test (case sensitive)
+	 * @return True if the next token is the keyword
+	 */
+	public boolean isKeyword(String keyword)
+	{
+		int end = position + keyword.length();
+		if (end > length || !line.startsWith(keyword, position) || (end < length && !isDelimiter(line.charAt(end))))
+		{
+			return false;
+		}
+		position = end;
+		skipDelimiters();
+		return true;
+	}
+
+	/**
+	 * Does the remainder of the line start with the given prefix? If so, the
+	 * prefix is consumed.
+	 * 
+	 * @param prefix
+	 *            Prefix to test (case sensitive)
+	 * @return True if the remainder of the line starts with the prefix
+	 */
+	public boolean isPrefix(String prefix)
+	{
+		if (!line.startsWith(prefix, position))
+		{
+			return false;
+		}
+		position += prefix.length();
+		skipDelimiters();
+		return true;
+	}
+
+	/**
+	 * @return The next token, or null if there are no more tokens
+	 */
+	public String nextToken()
+	{
+		if (!hasNext())
+		{
+			return null;
+		}
+		int start = position;
+		position = tokenEnd();
+		return line.substring(start, position);
+	}
+
+	/**
+	 * Skip the next token.
+	 */
+	public void skipToken()
+	{
+		if (hasNext())
+		{
+			position = tokenEnd();
+		}
+	}
+
+	/**
+	 * @return The remainder of the line, trimmed of whitespace
+	 */
+	public String rest()
+	{
+		String rest = line.substring(Math.min(position, length)).trim();
+		position = length;
+		return rest;
+	}
+
+	/**
+	 * Parse the next token as an integer.
+	 * 
+	 * @return Parsed integer
+	 * @throws NumberFormatException
+	 *             If there are no more tokens, or the next token is not an
+	 *             integer
+	 */
+	public int nextInt()
+	{
+		if (!hasNext())
+		{
+			throw new NumberFormatException("Expected integer: " + line);
+		}
+		int start = position;
+		int end = tokenEnd();
+		position = end;
+
+		int i = start;
+		boolean negative = line.charAt(i) == '-';
+		if (negative || line.charAt(i) == '+')
+		{
+			i++;
+		}
+		int digitsStart = i;
+		long value = 0;
+		for (; i < end && i - digitsStart < 10; i++)
+		{
+			char c = line.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				break;
+			}
+			value = value * 10 + (c - '0');
+		}
+		value = negative ? -value : value;
+		if (i != end || i == digitsStart || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			//let the standard parser handle (or reject) anything unusual
+			return Integer.parseInt(line.substring(start, end));
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parse the next token as a double. The result is identical to
+	 * {@link Double#parseDouble(String)}.
+	 * 
+	 * @return Parsed double
+	 * @throws NumberFormatException
+	 *             If there are no more tokens, or the next token is not a
+	 *             number
+	 */
+	public double nextDouble()
+	{
+		if (!hasNext())
+		{
+			throw new NumberFormatException("Expected number: " + line);
+		}
+		int start = position;
+		int end = tokenEnd();
+		position = end;
+		return parseDouble(start, end);
+	}
+
+	/**
+	 * Find the value at the given index in the remaining numeric tokens.
+	 * Tokens that aren't numbers are ignored. All remaining tokens are
+	 * consumed.
+	 * 
+	 * @param index
+	 *            Index of the value to return
+	 * @param defaultValue
+	 *            Value to return if there are not enough numbers on the line
+	 * @return Value at index
+	 */
+	public double getValue(int index, double defaultValue)
+	{
+		double result = defaultValue;
+		int count = 0;
+		while (hasNext())
+		{
+			int start = position;
+			position = tokenEnd();
+			if (count <= index)
+			{
+				try
+				{
+					double value = parseDouble(start, position);
+					if (count++ == index)
+					{
+						result = value;
+					}
+				}
+				catch (NumberFormatException e)
+				{
+					//ignore tokens that aren't numbers
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Parse all the remaining numeric tokens. Tokens that aren't numbers are
+	 * ignored.
+	 * 
+	 * @return Array of parsed values
+	 */
+	public double[] getValues()
+	{
+		double[] values = new double[8];
+		int count = 0;
+		while (hasNext())
+		{
+			int start = position;
+			position = tokenEnd();
+			try
+			{
+				double value = parseDouble(start, position);
+				if (count == values.length)
+				{
+					values = Arrays.copyOf(values, count * 2);
+				}
+				values[count++] = value;
+			}
+			catch (NumberFormatException e)
+			{
+				//ignore tokens that aren't numbers
+			}
+		}
+		return Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * Does the given line contain the given string, ignoring case?
+	 */
+	public static boolean containsIgnoreCase(String line, String s)
+	{
+		for (int i = 0; i <= line.length() - s.length(); i++)
+		{
+			if (line.regionMatches(true, i, s, 0, s.length()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Does the given line consist of only the given keyword, followed by
+	 * optional whitespace?
+	 */
+	public static boolean isKeywordLine(String line, String keyword)
+	{
+		if (!line.startsWith(keyword))
+		{
+			return false;
+		}
+		for (int i = keyword.length(); i < line.length(); i++)
+		{
+			if (!isWhitespace(line.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double parseDouble(int start, int end)
+	{
+		int i = start;
+		boolean negative = line.charAt(i) == '-';
+		if (negative || line.charAt(i) == '+')
+		{
+			i++;
+		}
+
+		long mantissa = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean digits = false;
+		boolean fraction = false;
+		for (; i < end; i++)
+		{
+			char c = line.charAt(i);
+			if (c == '.' && !fraction)
+			{
+				fraction = true;
+				continue;
+			}
+			if (c < '0' || c > '9')
+			{
+				break;
+			}
+			digits = true;
+			if (mantissa != 0 || c != '0')
+			{
+				if (++significantDigits > MAX_FAST_DIGITS)
+				{
+					return parseDoubleSlow(start, end);
+				}
+				mantissa = mantissa * 10 + (c - '0');
+			}
+			if (fraction)
+			{
+				exponent--;
+			}
+		}
+		if (!digits)
+		{
+			return parseDoubleSlow(start, end);
+		}
+
+		if (i < end && (line.charAt(i) == 'e' || line.charAt(i) == 'E'))
+		{
+			i++;
+			boolean negativeExponent = i < end && line.charAt(i) == '-';
+			if (i < end && (negativeExponent || line.charAt(i) == '+'))
+			{
+				i++;
+			}
+			int exponentStart = i;
+			int e = 0;
+			for (; i < end && i - exponentStart < 4; i++)
+			{
+				char c = line.charAt(i);
+				if (c < '0' || c > '9')
+				{
+					break;
+				}
+				e = e * 10 + (c - '0');
+			}
+			if (i == exponentStart)
+			{
+				return parseDoubleSlow(start, end);
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (i != end)
+		{
+			return parseDoubleSlow(start, end);
+		}
+
+		double value;
+		if (mantissa == 0)
+		{
+			value = 0;
+		}
+		else if (exponent < 0 && exponent >= -22)
+		{
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		}
+		else if (exponent >= 0 && exponent <= 22)
+		{
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}
+		else
+		{
+			return parseDoubleSlow(start, end);
+		}
+		return negative ? -value : value;
+	}
+
+	private double parseDoubleSlow(int start, int end)
+	{
+		return Double.parseDouble(line.substring(start, end));
+	}
+
+	private int tokenEnd()
+	{
+		int end = position;
+		while (end < length && !isDelimiter(line.charAt(end)))
+		{
+			end++;
+		}
+		return end;
+	}
+
+	private void skipDelimiters()
+	{
+		while (position < length && isDelimiter(line.charAt(position)))
+		{
+			position++;
+		}
+	}
+
+	private static boolean isDelimiter(char c)
+	{
+		return isWhitespace(c) || c == ',';
+	}
+
+	private static boolean isWhitespace(char c)
+	{
+		return c <= ' ';
+	}
+}
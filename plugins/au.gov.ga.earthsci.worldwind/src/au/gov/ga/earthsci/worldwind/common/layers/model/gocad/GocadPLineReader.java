@@ -15,18 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL2;
 
@@ -40,237 +30,147 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 public class GocadPLineReader implements GocadReader<FastShape>
 {
 	public final static String HEADER_REGEX = "(?i).*pline.*";
+	public final static String HEADER_KEYWORD = "pline";
 
-	private final static Pattern segmentPattern = Pattern.compile("SEG\\s+(\\d+)\\s+(\\d+).*");
-
-
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
-	private List<Integer> segmentIds;
+	private GocadGeometryBuilder builder;
 	private Color color;
-	private Map<Integer, Integer> vertexIdMap;
 	private String name;
 	private boolean zPositive = true;
-	private List<Float> values;
-	private float min, max;
 	private String paintedVariableName;
 	private int paintedVariableId = 0;
-	private float noDataValue = -Float.MAX_VALUE;
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
-		min = Float.MAX_VALUE;
-		max = -Float.MAX_VALUE;
-		segmentIds = new ArrayList<Integer>();
-		vertexIdMap = new HashMap<Integer, Integer>();
+		builder = new GocadGeometryBuilder(parameters.getCoordinateTransformation());
 		paintedVariableName = parameters.getPaintedVariable();
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
+		GocadLineTokenizer tokenizer = this.tokenizer.reset(line);
+		try
 		{
-			int id = Integer.parseInt(matcher.group(1));
-			if (vertexIdMap.containsKey(id))
+			if (tokenizer.isKeyword("VRTX") || tokenizer.isKeyword("PVRTX"))
 			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id);
+				addVertex(tokenizer);
 			}
-
-			double x = Double.parseDouble(matcher.group(2));
-			double y = Double.parseDouble(matcher.group(3));
-			double z = Double.parseDouble(matcher.group(4));
-			z = zPositive ? z : -z;
-			if (parameters.getCoordinateTransformation() != null)
-			{
-				double[] transformed = new double[3];
-				parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
-				x = transformed[0];
-				y = transformed[1];
-				z = transformed[2];
-			}
-			Position position = Position.fromDegrees(y, x, z);
-			vertexIdMap.put(id, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
+			else if (tokenizer.isKeyword("ATOM") || tokenizer.isKeyword("PATOM"))
 			{
-				value = (float) z;
+				addAtom(tokenizer);
 			}
-			else
+			else if (tokenizer.isKeyword("SEG"))
 			{
-				double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(5));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
+				int s1 = tokenizer.nextInt();
+				int s2 = tokenizer.nextInt();
+				builder.addIndex(s1);
+				builder.addIndex(s2);
 			}
-			if (!Float.isNaN(value) && value != noDataValue)
+			else if (tokenizer.isPrefix("*line*color:"))
 			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
-			return;
-		}
-
-		matcher = atomPattern.matcher(line);
-		if (matcher.matches())
-		{
-			int id1 = Integer.parseInt(matcher.group(1));
-			int id2 = Integer.parseInt(matcher.group(2));
-
-			if (vertexIdMap.containsKey(id1))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id1);
-			}
-			if (!vertexIdMap.containsKey(id2))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + id2);
-			}
-
-			Position position = positions.get(vertexIdMap.get(id2));
-			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) position.elevation;
+				color = GocadColor.gocadLineToColor(line);
 			}
 			else
 			{
-				double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(3));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
+				addHeaderLine(tokenizer);
 			}
-			values.add(value);
-
-			return;
-		}
-
-		matcher = segmentPattern.matcher(line);
-		if (matcher.matches())
-		{
-			int s1 = Integer.parseInt(matcher.group(1));
-			int s2 = Integer.parseInt(matcher.group(2));
-			segmentIds.add(s1);
-			segmentIds.add(s2);
-			return;
 		}
-
-		matcher = lineColorPattern.matcher(line);
-		if (matcher.matches())
+		catch (NumberFormatException e)
 		{
-			color = GocadColor.gocadLineToColor(line);
-			return;
+			//ignore malformed lines
 		}
+	}
 
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
+	private void addHeaderLine(GocadLineTokenizer tokenizer)
+	{
+		if (tokenizer.isPrefix("name:"))
 		{
-			name = matcher.group(1);
-			return;
+			name = tokenizer.rest();
 		}
-
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("ZPOSITIVE"))
 		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
+			String zpositive = tokenizer.nextToken();
+			if (zpositive != null)
+			{
+				zPositive = !zpositive.equalsIgnoreCase("depth");
+			}
 		}
-
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isPrefix("*painted*variable:"))
 		{
 			if (parameters.getPaintedVariable() == null)
 			{
-				paintedVariableName = matcher.group(1);
+				paintedVariableName = tokenizer.rest();
 			}
-			return;
 		}
-
-		matcher = propertiesPattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("PROPERTIES"))
 		{
-			String properties = matcher.group(1).trim();
-			String[] split = properties.split("\\s+");
-			for (int i = 0; i < split.length; i++)
+			for (int i = 1; tokenizer.hasNext(); i++)
 			{
-				if (split[i].equalsIgnoreCase(paintedVariableName))
+				if (tokenizer.nextToken().equalsIgnoreCase(paintedVariableName))
 				{
-					paintedVariableId = i + 1;
+					paintedVariableId = i;
 					break;
 				}
 			}
-			return;
 		}
-
-		matcher = nodataValuesPattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("NO_DATA_VALUES"))
 		{
-			double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(1));
-			if (0 < paintedVariableId && paintedVariableId <= values.length)
+			if (paintedVariableId > 0)
 			{
-				noDataValue = (float) values[paintedVariableId - 1];
+				builder.setNoDataValue((float) tokenizer.getValue(paintedVariableId - 1, builder.getNoDataValue()));
 			}
-			return;
 		}
 	}
 
-	@Override
-	public FastShape end(URL context)
+	private void addVertex(GocadLineTokenizer tokenizer)
 	{
-		IntBuffer indicesBuffer = IntBuffer.allocate(segmentIds.size());
-		for (Integer i : segmentIds)
+		int id = tokenizer.nextInt();
+		double x = tokenizer.nextDouble();
+		double y = tokenizer.nextDouble();
+		double z = tokenizer.nextDouble();
+		int index = builder.addVertex(id, x, y, zPositive ? z : -z);
+		addValue(tokenizer, index);
+	}
+
+	private void addAtom(GocadLineTokenizer tokenizer)
+	{
+		int id1 = tokenizer.nextInt();
+		int id2 = tokenizer.nextInt();
+		int index = builder.addAtom(id1, id2);
+		addValue(tokenizer, index);
+	}
+
+	private void addValue(GocadLineTokenizer tokenizer, int index)
+	{
+		float value = (float) builder.getElevation(index);
+		if (paintedVariableId > 0)
 		{
-			if (!vertexIdMap.containsKey(i))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + i);
-			}
-			indicesBuffer.put(vertexIdMap.get(i));
+			value = (float) tokenizer.getValue(paintedVariableId - 1, Float.NaN);
 		}
+		builder.addValue(value);
+	}
+
+	@Override
+	public FastShape end(URL context)
+	{
+		int[] indices = builder.resolveIndices();
 
 		if (name == null)
 		{
 			name = "PLine";
 		}
 
-		FastShape shape = new FastShape(positions, indicesBuffer.array(), GL2.GL_LINES);
+		FastShape shape = new FastShape(builder.getPositions(), indices, GL2.GL_LINES);
 		shape.setName(name);
 		if (parameters.getColorMap() != null)
 		{
-			FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-			for (float value : values)
-			{
-				if (Float.isNaN(value) || value == noDataValue)
-				{
-					colorBuffer.put(0).put(0).put(0).put(0);
-				}
-				else
-				{
-					Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
-					colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-							.put(color.getAlpha() / 255f);
-				}
-			}
+			float[] colorBuffer = builder.createColorBuffer(parameters.getColorMap());
 			shape.setColorBufferElementSize(4);
-			shape.setColorBuffer(colorBuffer.array());
+			shape.setColorBuffer(colorBuffer);
 		}
 		else if (color != null)
 		{
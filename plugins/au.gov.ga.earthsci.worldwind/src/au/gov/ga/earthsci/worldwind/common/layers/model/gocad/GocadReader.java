@@ -28,6 +28,7 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 public interface GocadReader<T>
 {
 	final static String END_REGEX = "END\\s*";
+	final static String END_KEYWORD = "END";
 
 	final static Pattern vertexPattern =
 			Pattern.compile("P?VRTX\\s+(\\d+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)([\\s\\d.\\-e]*)\\s*(?:\\D+)?\\s*");
@@ -48,6 +48,7 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
 public class GocadSGridReader implements GocadReader<FastShape>
 {
 	public final static String HEADER_REGEX = "(?i).*sgrid.*";
+	public final static String HEADER_KEYWORD = "sgrid";
 
 	public final static Pattern headerPattern = Pattern.compile("GOCAD\\s+SGrid\\s+.*");
 	private final static Pattern propAlignmentPattern = Pattern.compile("PROP_ALIGNMENT\\s+(.*?)\\s*");
@@ -15,19 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL2;
 
@@ -42,238 +31,161 @@ import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 public class GocadTSurfReader implements GocadReader<FastShape>
 {
 	public final static String HEADER_REGEX = "(?i).*tsurf.*";
+	public final static String HEADER_KEYWORD = "tsurf";
 
-	private final static Pattern trianglePattern = Pattern.compile("TRGL\\s+(\\d+)\\s+(\\d+)\\s+(\\d+).*");
-
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
-	private List<Float> values;
-	private float min, max;
-	private List<Integer> triangleIds;
+	private GocadGeometryBuilder builder;
 	private Color color;
 	private ColorMap colorMap;
-	private Map<Integer, Integer> vertexIdMap;
 	private String name;
 	private boolean zPositive = true;
 	private String paintedVariableName;
 	private int paintedVariableId = 0;
-	private float noDataValue = -Float.MAX_VALUE;
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
-		min = Float.MAX_VALUE;
-		max = -Float.MAX_VALUE;
-		triangleIds = new ArrayList<Integer>();
-		vertexIdMap = new HashMap<Integer, Integer>();
+		builder = new GocadGeometryBuilder(parameters.getCoordinateTransformation());
 		paintedVariableName = parameters.getPaintedVariable();
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
+		GocadLineTokenizer tokenizer = this.tokenizer.reset(line);
+		try
 		{
-			int id = Integer.parseInt(matcher.group(1));
-			if (vertexIdMap.containsKey(id))
+			if (tokenizer.isKeyword("VRTX") || tokenizer.isKeyword("PVRTX"))
 			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id);
+				addVertex(tokenizer);
 			}
-
-			double x = Double.parseDouble(matcher.group(2));
-			double y = Double.parseDouble(matcher.group(3));
-			double z = Double.parseDouble(matcher.group(4));
-			z = zPositive ? z : -z;
-			if (parameters.getCoordinateTransformation() != null)
+			else if (tokenizer.isKeyword("ATOM") || tokenizer.isKeyword("PATOM"))
 			{
-				double[] transformed = new double[3];
-				parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
-				x = transformed[0];
-				y = transformed[1];
-				z = transformed[2];
+				addAtom(tokenizer);
 			}
-			Position position = Position.fromDegrees(y, x, z);
-			vertexIdMap.put(id, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
+			else if (tokenizer.isKeyword("TRGL"))
 			{
-				value = (float) z;
+				int t1 = tokenizer.nextInt();
+				int t2 = tokenizer.nextInt();
+				int t3 = tokenizer.nextInt();
+				builder.addIndex(t1);
+				builder.addIndex(t2);
+				builder.addIndex(t3);
 			}
-			else
+			else if (tokenizer.isPrefix("*solid*color:"))
 			{
-				double[] values = splitStringToDoubles(matcher.group(5));
-				if (paintedVariableId <= values.length)
+				if (!parameters.isColorInformationAvailable())
 				{
-					value = (float) values[paintedVariableId - 1];
+					color = GocadColor.gocadLineToColor(line);
 				}
 			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
-			return;
-		}
-
-		matcher = atomPattern.matcher(line);
-		if (matcher.matches())
-		{
-			int id1 = Integer.parseInt(matcher.group(1));
-			int id2 = Integer.parseInt(matcher.group(2));
-
-			if (vertexIdMap.containsKey(id1))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id1);
-			}
-			if (!vertexIdMap.containsKey(id2))
+			else if (tokenizer.isPrefix("*colormap**colors:"))
 			{
-				throw new IllegalArgumentException("Unknown vertex id: " + id2);
-			}
-
-			Position position = positions.get(vertexIdMap.get(id2));
-			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) position.elevation;
+				if (!parameters.isColorInformationAvailable())
+				{
+					colorMap = addColorsToColorMap(tokenizer);
+				}
 			}
-			else
+			else if (tokenizer.isPrefix("*colormap*alphas:"))
 			{
-				double[] values = splitStringToDoubles(matcher.group(3));
-				if (paintedVariableId <= values.length)
+				if (!parameters.isColorInformationAvailable())
 				{
-					value = (float) values[paintedVariableId - 1];
+					colorMap = addAlphasToColorMap(tokenizer);
 				}
 			}
-			if (!Float.isNaN(value) && value != noDataValue)
+			else
 			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
+				addHeaderLine(tokenizer);
 			}
-			values.add(value);
-
-			return;
 		}
-
-		matcher = trianglePattern.matcher(line);
-		if (matcher.matches())
+		catch (NumberFormatException e)
 		{
-			int t1 = Integer.parseInt(matcher.group(1));
-			int t2 = Integer.parseInt(matcher.group(2));
-			int t3 = Integer.parseInt(matcher.group(3));
-			triangleIds.add(t1);
-			triangleIds.add(t2);
-			triangleIds.add(t3);
-			return;
-		}
-
-		if (!parameters.isColorInformationAvailable())
-		{
-			matcher = solidColorPattern.matcher(line);
-			if (matcher.matches())
-			{
-				color = GocadColor.gocadLineToColor(line);
-				return;
-			}
-
-			matcher = colormapColorsPattern.matcher(line);
-			if (matcher.matches())
-			{
-				colorMap = addColorsToColorMap(line);
-				return;
-			}
-
-			matcher = colormapAlphaPattern.matcher(line);
-			if (matcher.matches())
-			{
-				colorMap = addAlphasToColorMap(line);
-				return;
-			}
+			//ignore malformed lines
 		}
+	}
 
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
+	private void addHeaderLine(GocadLineTokenizer tokenizer)
+	{
+		if (tokenizer.isPrefix("name:"))
 		{
-			name = matcher.group(1);
-			return;
+			name = tokenizer.rest();
 		}
-
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("ZPOSITIVE"))
 		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
-			return;
+			String zpositive = tokenizer.nextToken();
+			if (zpositive != null)
+			{
+				zPositive = !zpositive.equalsIgnoreCase("depth");
+			}
 		}
-
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isPrefix("*painted*variable:"))
 		{
 			if (parameters.getPaintedVariable() == null)
 			{
-				paintedVariableName = matcher.group(1);
+				paintedVariableName = tokenizer.rest();
 			}
-			return;
 		}
-
-		matcher = propertiesPattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("PROPERTIES"))
 		{
-			String properties = matcher.group(1).trim();
-			String[] split = properties.split("\\s+");
-			for (int i = 0; i < split.length; i++)
+			for (int i = 1; tokenizer.hasNext(); i++)
 			{
-				if (split[i].equalsIgnoreCase(paintedVariableName))
+				if (tokenizer.nextToken().equalsIgnoreCase(paintedVariableName))
 				{
-					paintedVariableId = i + 1;
+					paintedVariableId = i;
 					break;
 				}
 			}
-			return;
 		}
-
-		matcher = nodataValuesPattern.matcher(line);
-		if (matcher.matches())
+		else if (tokenizer.isKeyword("NO_DATA_VALUES"))
 		{
-			double[] values = splitStringToDoubles(matcher.group(1));
-			if (0 < paintedVariableId && paintedVariableId <= values.length)
+			if (paintedVariableId > 0)
 			{
-				noDataValue = (float) values[paintedVariableId - 1];
+				builder.setNoDataValue((float) tokenizer.getValue(paintedVariableId - 1, builder.getNoDataValue()));
 			}
-			return;
 		}
 	}
 
-	@Override
-	public FastShape end(URL context)
+	private void addVertex(GocadLineTokenizer tokenizer)
+	{
+		int id = tokenizer.nextInt();
+		double x = tokenizer.nextDouble();
+		double y = tokenizer.nextDouble();
+		double z = tokenizer.nextDouble();
+		int index = builder.addVertex(id, x, y, zPositive ? z : -z);
+		addValue(tokenizer, index);
+	}
+
+	private void addAtom(GocadLineTokenizer tokenizer)
 	{
-		IntBuffer indicesBuffer = IntBuffer.allocate(triangleIds.size());
-		for (Integer i : triangleIds)
+		int id1 = tokenizer.nextInt();
+		int id2 = tokenizer.nextInt();
+		int index = builder.addAtom(id1, id2);
+		addValue(tokenizer, index);
+	}
+
+	private void addValue(GocadLineTokenizer tokenizer, int index)
+	{
+		float value = (float) builder.getElevation(index);
+		if (paintedVariableId > 0)
 		{
-			if (!vertexIdMap.containsKey(i))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + i);
-			}
-			indicesBuffer.put(vertexIdMap.get(i));
+			value = (float) tokenizer.getValue(paintedVariableId - 1, Float.NaN);
 		}
+		builder.addValue(value);
+	}
+
+	@Override
+	public FastShape end(URL context)
+	{
+		int[] indices = builder.resolveIndices();
 
 		if (name == null)
 		{
 			name = "TSurf";
 		}
 
-		FastShape shape = new FastShape(positions, indicesBuffer.array(), GL2.GL_TRIANGLES);
+		FastShape shape = new FastShape(builder.getPositions(), indices, GL2.GL_TRIANGLES);
 		shape.setName(name);
 		shape.setLighted(true);
 		shape.setTwoSidedLighting(true);
@@ -286,7 +198,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		// (4) Colour from the GOCAD file
 		if (parameters.getColorMap() != null)
 		{
-			float[] colorBuffer = createColorBufferFromColorMap(parameters.getColorMap());
+			float[] colorBuffer = builder.createColorBuffer(parameters.getColorMap());
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -296,7 +208,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		}
 		else if (colorMap != null)
 		{
-			float[] colorBuffer = createColorBufferFromColorMap(colorMap);
+			float[] colorBuffer = builder.createColorBuffer(colorMap);
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -310,27 +222,10 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 
 	public static double[] splitStringToDoubles(String s)
 	{
-		String[] split = s.trim().split("[\\s,]+");
-		double[] array = new double[split.length];
-		int i = 0;
-		for (String sp : split)
-		{
-			try
-			{
-				array[i++] = Double.parseDouble(sp);
-			}
-			catch (NumberFormatException e)
-			{
-			}
-		}
-		if (i == array.length)
-		{
-			return array;
-		}
-		return Arrays.copyOf(array, i);
+		return new GocadLineTokenizer().reset(s).getValues();
 	}
 
-	private ColorMap addAlphasToColorMap(String line)
+	private ColorMap addAlphasToColorMap(GocadLineTokenizer tokenizer)
 	{
 		ColorMap result = this.colorMap;
 		if (result == null)
@@ -340,7 +235,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		}
 
 		// Format is [index alpha index alpha ...]
-		double[] values = splitStringToDoubles(line.replace("*colormap*alphas:", ""));
+		double[] values = tokenizer.getValues();
 
 		double maxIndex = values[values.length - 2];
 		for (int i = 0; i < values.length; i += 2)
@@ -366,7 +261,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		return result;
 	}
 
-	private ColorMap addColorsToColorMap(String line)
+	private ColorMap addColorsToColorMap(GocadLineTokenizer tokenizer)
 	{
 		ColorMap result = this.colorMap;
 		if (result == null)
@@ -376,7 +271,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		}
 
 		// Format is [index r g b index r g b ...]
-		double[] values = splitStringToDoubles(line.replace("*colormap**colors:", ""));
+		double[] values = tokenizer.getValues();
 
 		double maxIndex = values[values.length - 4];
 		for (int i = 0; i < values.length; i += 4)
@@ -401,23 +296,4 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 
 		return result;
 	}
-
-	private float[] createColorBufferFromColorMap(ColorMap colorMap)
-	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-		for (float value : values)
-		{
-			if (Float.isNaN(value) || value == noDataValue)
-			{
-				colorBuffer.put(0).put(0).put(0).put(0);
-			}
-			else
-			{
-				Color color = colorMap.calculateColorNotingIsValuesPercentages(value, min, max);
-				colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-						.put(color.getAlpha() / 255f);
-			}
-		}
-		return colorBuffer.array();
-	}
 }
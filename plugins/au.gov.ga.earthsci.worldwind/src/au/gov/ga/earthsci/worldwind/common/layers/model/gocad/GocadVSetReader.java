@@ -15,17 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL2;
 
@@ -40,107 +31,85 @@ public class GocadVSetReader implements GocadReader<FastShape>
 {
 
 	public final static String HEADER_REGEX = "(?i).*vset.*";
+	public final static String HEADER_KEYWORD = "vset";
 
-	private final static Pattern atomSizePattern = Pattern.compile("\\*atoms\\*size:(.+)");
-	private final static Pattern atomColorPattern = Pattern.compile("\\*atoms\\*color:.+");
-
+	private final GocadLineTokenizer tokenizer = new GocadLineTokenizer();
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
+	private GocadGeometryBuilder builder;
 
 	private boolean zPositive;
 	private String name;
 	private Float size;
 	private Color color;
 
-	private List<Float> values;
-	private float min, max;
 	private String paintedVariableName;
 	private int paintedVariableId = 0;
-	private float noDataValue = -Float.MAX_VALUE;
-	private Map<Integer, Integer> vertexIdMap;
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
-		min = Float.MAX_VALUE;
-		max = -Float.MAX_VALUE;
-		vertexIdMap = new HashMap<Integer, Integer>();
+		builder = new GocadGeometryBuilder(parameters.getCoordinateTransformation());
 		paintedVariableName = parameters.getPaintedVariable();
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		// Vertex / PVertex
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processVertexLine(matcher);
-			return;
-		}
-
-		// ZPOSITIVE directive
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
-		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
-			return;
-		}
-
-		// Atom size
-		matcher = atomSizePattern.matcher(line);
-		if (matcher.matches())
+		GocadLineTokenizer tokenizer = this.tokenizer.reset(line);
+		try
 		{
-			size = Float.parseFloat(matcher.group(1));
-			return;
-		}
-
-		// Atom color
-		matcher = atomColorPattern.matcher(line);
-		if (matcher.matches())
-		{
-			color = GocadColor.gocadLineToColor(line);
-			return;
-		}
-
-		// NODATA value
-		matcher = nodataValuesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processNodataValue(matcher);
-			return;
-		}
-
-		// Properties
-		matcher = propertiesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processPropertiesLine(matcher);
-			return;
-		}
-
-		// Painted variable
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
-		{
-			if (parameters.getPaintedVariable() == null)
+			if (tokenizer.isKeyword("VRTX") || tokenizer.isKeyword("PVRTX"))
+			{
+				// Vertex / PVertex
+				processVertexLine(tokenizer);
+			}
+			else if (tokenizer.isKeyword("ZPOSITIVE"))
+			{
+				// ZPOSITIVE directive
+				String zpositive = tokenizer.nextToken();
+				if (zpositive != null)
+				{
+					zPositive = !zpositive.equalsIgnoreCase("depth");
+				}
+			}
+			else if (tokenizer.isPrefix("*atoms*size:"))
+			{
+				// Atom size
+				size = Float.parseFloat(tokenizer.rest());
+			}
+			else if (tokenizer.isPrefix("*atoms*color:"))
+			{
+				// Atom color
+				color = GocadColor.gocadLineToColor(line);
+			}
+			else if (tokenizer.isKeyword("NO_DATA_VALUES"))
+			{
+				// NODATA value
+				processNodataValue(tokenizer);
+			}
+			else if (tokenizer.isKeyword("PROPERTIES"))
+			{
+				// Properties
+				processPropertiesLine(tokenizer);
+			}
+			else if (tokenizer.isPrefix("*painted*variable:"))
 			{
-				paintedVariableName = matcher.group(1);
+				// Painted variable
+				if (parameters.getPaintedVariable() == null)
+				{
+					paintedVariableName = tokenizer.rest();
+				}
+			}
+			else if (tokenizer.isPrefix("name:"))
+			{
+				// Name
+				name = tokenizer.rest();
 			}
-			return;
 		}
-
-		// Name
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
+		catch (NumberFormatException e)
 		{
-			name = matcher.group(1);
-			return;
+			//ignore malformed lines
 		}
 	}
 
@@ -152,7 +121,7 @@ public class GocadVSetReader implements GocadReader<FastShape>
 			name = "VSet";
 		}
 
-		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
+		FastShape shape = new FastShape(builder.getPositions(), GL2.GL_POINTS);
 		shape.setName(name);
 
 		if (parameters.getPointSize() != null)
@@ -172,7 +141,7 @@ public class GocadVSetReader implements GocadReader<FastShape>
 
 		if (parameters.getColorMap() != null)
 		{
-			float[] colorBuffer = createColorBuffer();
+			float[] colorBuffer = builder.createColorBuffer(parameters.getColorMap());
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -188,97 +157,39 @@ public class GocadVSetReader implements GocadReader<FastShape>
 		return shape;
 	}
 
-	private float[] createColorBuffer()
-	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-		for (float value : values)
-		{
-			if (Float.isNaN(value) || value == noDataValue)
-			{
-				colorBuffer.put(0).put(0).put(0).put(0);
-			}
-			else
-			{
-				Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
-				colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-						.put(color.getAlpha() / 255f);
-			}
-		}
-		return colorBuffer.array();
-	}
-
-	private void processVertexLine(Matcher matcher)
+	private void processVertexLine(GocadLineTokenizer tokenizer)
 	{
-		int id = Integer.parseInt(matcher.group(1));
-
-		Position position =
-				createPositionFromVertex(Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3)),
-						Double.parseDouble(matcher.group(4)));
-		positions.add(position);
-
-		vertexIdMap.put(id, positions.size() - 1);
-
-		float value = Float.NaN;
-		if (paintedVariableId <= 0)
-		{
-			value = (float) position.elevation;
-		}
-		else
-		{
-			double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(5));
-			if (paintedVariableId <= values.length)
-			{
-				value = (float) values[paintedVariableId - 1];
-			}
-		}
-
-		if (!Float.isNaN(value) && value != noDataValue)
-		{
-			min = Math.min(min, value);
-			max = Math.max(max, value);
-		}
-
-		values.add(value);
-	}
+		//vertex ids aren't referenced by any VSet elements, so they aren't mapped
+		tokenizer.nextInt();
+		double x = tokenizer.nextDouble();
+		double y = tokenizer.nextDouble();
+		double z = tokenizer.nextDouble();
 
-	private Position createPositionFromVertex(double x, double y, double z)
-	{
-		if (!zPositive)
-		{
-			z = -z;
-		}
-		double[] xyz = transformVertex(x, y, z);
-		return Position.fromDegrees(xyz[1], xyz[0], xyz[2]);
-	}
+		int index = builder.addVertex(x, y, zPositive ? z : -z);
 
-	private double[] transformVertex(double... xyz)
-	{
-		if (parameters.getCoordinateTransformation() == null)
+		float value = (float) builder.getElevation(index);
+		if (paintedVariableId > 0)
 		{
-			return xyz;
+			value = (float) tokenizer.getValue(paintedVariableId - 1, Float.NaN);
 		}
-		parameters.getCoordinateTransformation().TransformPoint(xyz);
-		return xyz;
+		builder.addValue(value);
 	}
 
-	private void processNodataValue(Matcher matcher)
+	private void processNodataValue(GocadLineTokenizer tokenizer)
 	{
-		double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(1));
-		if (0 < paintedVariableId && paintedVariableId <= values.length)
+		if (paintedVariableId > 0)
 		{
-			noDataValue = (float) values[paintedVariableId - 1];
+			builder.setNoDataValue((float) tokenizer.getValue(paintedVariableId - 1, builder.getNoDataValue()));
 		}
 	}
 
-	private void processPropertiesLine(Matcher matcher)
+	private void processPropertiesLine(GocadLineTokenizer tokenizer)
 	{
-		String properties = matcher.group(1).trim();
-		String[] split = properties.split("\\s+");
-		for (int i = 0; i < split.length; i++)
+		for (int i = 1; tokenizer.hasNext(); i++)
 		{
-			if (split[i].equalsIgnoreCase(paintedVariableName))
+			if (tokenizer.nextToken().equalsIgnoreCase(paintedVariableName))
 			{
-				paintedVariableId = i + 1;
+				paintedVariableId = i;
 				break;
 			}
 		}
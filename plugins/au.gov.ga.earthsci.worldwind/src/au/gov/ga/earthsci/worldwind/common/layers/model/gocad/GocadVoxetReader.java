@@ -19,11 +19,14 @@ import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
 import java.awt.Color;
-import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 
@@ -31,6 +34,7 @@ import javax.media.opengl.GL2;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.util.HSLColor;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader.FloatFormat;
@@ -46,6 +50,7 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 	private static final int U = 0, V = 1, W = 2;
 
 	public final static String HEADER_REGEX = "(?i).*voxet.*";
+	public final static String HEADER_KEYWORD = "voxet";
 
 	private String name;
 	private boolean zPositive = true;
@@ -214,16 +219,19 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 
 		double[] transformed = new double[3];
 		float[] minmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
+		InputStream is = null;
 		try
 		{
+			//the reader buffers internally, and can seek within a file's channel
 			URL fileUrl = new URL(context, file);
-			InputStream is = new BufferedInputStream(fileUrl.openStream());
+			File dataFile = URLUtil.urlToFile(fileUrl);
+			is = dataFile != null ? new FileInputStream(dataFile) : fileUrl.openStream();
 			FloatReader reader = FloatReader.Builder.newFloatReaderForStream(is)
 					.withOffset(offset)
 					.withFormat(FloatFormat.valueOf(etype))
 					.withByteOrder(parameters.getByteOrder())
 					.build();
-			float[] floatValue = new float[1];
+			float[] row = new float[(int) axisN[U]];
 			if (parameters.isBilinearMinification())
 			{
 				//contains the number of values summed
@@ -236,10 +244,10 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 					for (int v = 0; v < axisN[V]; v++)
 					{
 						int vRegion = (v / strides[V]) * samples[U];
+						readRow(reader, row);
 						for (int u = 0; u < axisN[U]; u++)
 						{
-							reader.readNextValues(floatValue);
-							if (!Float.isNaN(floatValue[0]) && floatValue[0] != noDataValue)
+							if (!Float.isNaN(row[u]) && row[u] != noDataValue)
 							{
 								int uRegion = (u / strides[U]);
 								int valueIndex = wRegion + vRegion + uRegion;
@@ -247,11 +255,11 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 								//if this is the first value for this region, set it, otherwise add it
 								if (count[valueIndex] == 0)
 								{
-									values[valueIndex] = floatValue[0];
+									values[valueIndex] = row[u];
 								}
 								else
 								{
-									values[valueIndex] += floatValue[0];
+									values[valueIndex] += row[u];
 								}
 								count[valueIndex]++;
 							}
@@ -299,14 +307,15 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 					for (int v = 0; v < axisN[V]; v += strides[V])
 					{
 						Vec4 vAdd = axisVStride.multiply3(v);
+						//reading the whole row in bulk is faster than skipping the unused values
+						readRow(reader, row);
 						for (int u = 0; u < axisN[U]; u += strides[U])
 						{
-							reader.readNextValues(floatValue);
-							if (!Float.isNaN(floatValue[0]) && floatValue[0] != noDataValue)
+							if (!Float.isNaN(row[u]) && row[u] != noDataValue)
 							{
-								values[valueIndex] = floatValue[0];
-								minmax[0] = Math.min(minmax[0], floatValue[0]);
-								minmax[1] = Math.max(minmax[1], floatValue[0]);
+								values[valueIndex] = row[u];
+								minmax[0] = Math.min(minmax[0], row[u]);
+								minmax[1] = Math.max(minmax[1], row[u]);
 
 								Vec4 uAdd = axisUStride.multiply3(u);
 								Vec4 point = new Vec4(origin.x + uAdd.x + vAdd.x + wAdd.x,
@@ -316,7 +325,6 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 								positions.add(createPositionFromPoint(transformed, point));
 							}
 							valueIndex++;
-							reader.skip(esize * Math.min(strides[U] - 1, axisN[U] - u - 1));
 						}
 						reader.skip(esize * axisN[U] * Math.min(strides[V] - 1, axisN[V] - v - 1));
 					}
@@ -329,6 +337,19 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 			e.printStackTrace();
 			return null;
 		}
+		finally
+		{
+			if (is != null)
+			{
+				try
+				{
+					is.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
 
 		FloatBuffer colorBuffer = createColorBuffer(values, minmax);
 
@@ -347,6 +368,15 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 	}
 
 
+	/**
+	 * Read the next row of values; values past the end of the data are NaN.
+	 */
+	private static void readRow(FloatReader reader, float[] row) throws IOException
+	{
+		int read = reader.readValues(FloatBuffer.wrap(row));
+		Arrays.fill(row, read, row.length, Float.NaN);
+	}
+
 	private void normaliseValues(float[] values, float[] minmax, int[] count)
 	{
 		//divide all the sums by the number of values summed (basically, average)
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.cache.MemoryCache;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
+
+/**
+ * Memory cache of decoded and transformed tile images, so that tiles that are
+ * evicted from the texture cache and requested again (such as when panning
+ * back over a recently viewed area) don't need to be decoded and run through
+ * the reader/transformer delegates again.
+ * <p/>
+ * Entries are either DDS compressed buffers (for layers that compress their
+ * textures anyway) or the transformed images. They are keyed by the tile file
+ * (including its modification date) and the delegate kit that produced them,
+ * as the delegate definitions don't capture all delegate state (eg colour
+ * maps).
+ * <p/>
+ * The cache size can be configured with the
+ * {@link AVKeyMore#DECODED_TILE_CACHE_SIZE} configuration property.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class DecodedTileCache
+{
+	protected static final String CACHE_NAME = "DecodedTiles";
+	protected static final String CACHE_ID = DecodedTileCache.class.getName();
+	protected static final long DEFAULT_CACHE_SIZE = 64000000L;
+	private static final Object lock = new Object();
+
+	private DecodedTileCache()
+	{
+	}
+
+	protected static MemoryCache getCache()
+	{
+		synchronized (lock)
+		{
+			if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
+			{
+				long size = Configuration.getLongValue(AVKeyMore.DECODED_TILE_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+				MemoryCache cache = new BasicMemoryCache((long) (0.85 * size), size);
+				cache.setName(CACHE_NAME);
+				WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
+			}
+			return WorldWind.getMemoryCacheSet().getCache(CACHE_ID);
+		}
+	}
+
+	/**
+	 * Create a cache key for a tile.
+	 * 
+	 * @param chain
+	 *            Object (such as the delegate kit) that produces the decoded
+	 *            image
+	 * @param url
+	 *            Tile file
+	 * @param format
+	 *            Texture format (eg image/dds)
+	 * @param mipmaps
+	 *            Whether the texture is mipmapped
+	 * @return Cache key, or null if the tile file doesn't exist
+	 */
+	public static Object createKey(Object chain, URL url, String format, boolean mipmaps)
+	{
+		long lastModified = 0;
+		File file = URLUtil.urlToFile(url);
+		if (file != null)
+		{
+			if (!file.exists())
+				return null;
+			lastModified = file.lastModified();
+		}
+		return new Key(chain, url.toExternalForm(), lastModified, format, mipmaps);
+	}
+
+	/**
+	 * @return The cached DDS buffer or image for the given key, or null if
+	 *         not cached
+	 */
+	public static Object get(Object key)
+	{
+		if (key == null)
+			return null;
+		return getCache().getObject(key);
+	}
+
+	/**
+	 * Cache a DDS compressed buffer.
+	 */
+	public static void put(Object key, ByteBuffer dds)
+	{
+		if (key != null && dds != null)
+			getCache().add(key, dds, dds.limit());
+	}
+
+	/**
+	 * Cache a decoded image. The image must not be modified after it is
+	 * cached.
+	 */
+	public static void put(Object key, BufferedImage image)
+	{
+		if (key != null && image != null)
+			getCache().add(key, image, (long) image.getWidth() * image.getHeight() * 4);
+	}
+
+	private static class Key
+	{
+		private final Object chain;
+		private final String url;
+		private final long lastModified;
+		private final String format;
+		private final boolean mipmaps;
+
+		public Key(Object chain, String url, long lastModified, String format, boolean mipmaps)
+		{
+			this.chain = chain;
+			this.url = url;
+			this.lastModified = lastModified;
+			this.format = format;
+			this.mipmaps = mipmaps;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (obj == this)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return chain == other.chain && lastModified == other.lastModified && mipmaps == other.mipmaps
+					&& url.equals(other.url) && (format == null ? other.format == null : format.equals(other.format));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(chain);
+			hash = 31 * hash + url.hashCode();
+			hash = 31 * hash + (int) (lastModified ^ (lastModified >>> 32));
+			hash = 31 * hash + (format == null ? 0 : format.hashCode());
+			hash = 31 * hash + (mipmaps ? 1 : 0);
+			return hash;
+		}
+	}
+}
@@ -90,10 +90,11 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
 		IDelegatorLayer<DelegatorTextureTile>
 {
-	protected final Object fileLock;
+	protected final StripedFileLock fileLock;
 	protected final URL context;
 	protected final ImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
+	protected boolean cacheDecodedTiles = false;
 	protected boolean prerendered;
 
 	protected Globe currentGlobe;
@@ -118,6 +119,10 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		if (b != null)
 			this.setExtractZipEntry(b);
 
+		b = (Boolean) params.getValue(AVKeyMore.CACHE_DECODED_TILES);
+		if (b != null)
+			this.setCacheDecodedTiles(b);
+
 		//Share the filelock with other layers with the same cache name. This allows
 		//multiple layers to save and load from the same cache location.
 		fileLock = FileLockSharer.getLock(getLevels().getFirstLevel().getCacheName());
@@ -148,6 +153,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 		XPath xpath = WWXML.makeXPath();
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.EXTRACT_ZIP_ENTRY, "ExtractZipEntry", xpath);
+		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.CACHE_DECODED_TILES, "CacheDecodedTiles", xpath);
 
 		return params;
 	}
@@ -162,6 +168,21 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		this.extractZipEntry = extractZipEntry;
 	}
 
+	/**
+	 * @return Are decoded and transformed tiles kept in the
+	 *         {@link DecodedTileCache}, so that they don't need to be decoded
+	 *         again when reloaded?
+	 */
+	public boolean isCacheDecodedTiles()
+	{
+		return cacheDecodedTiles;
+	}
+
+	public void setCacheDecodedTiles(boolean cacheDecodedTiles)
+	{
+		this.cacheDecodedTiles = cacheDecodedTiles;
+	}
+
 	/**
 	 * Extension of {@link WMSTiledImageLayer} that provides access to the
 	 * wmsGetParamsFromDocument function.
@@ -312,6 +333,23 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		}
 	}
 
+	@Override
+	protected void sendRequests()
+	{
+		//send the requests to the decode service for this layer's tile format, instead of
+		//the WorldWind task service, so that tile decoding doesn't compete with other tasks
+		TileDecodeService service = TileDecodeService.getInstance(getLevels().getFirstLevel().getFormatSuffix());
+		Runnable task = this.getRequestQ().poll();
+		while (task != null)
+		{
+			if (!service.isFull())
+			{
+				service.addTask(task);
+			}
+			task = this.getRequestQ().poll();
+		}
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorTextureTile))
@@ -336,11 +374,15 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 	{
 		//public for delegate access
 
-		TextureData textureData;
+		//decoded tiles don't need the file lock
+		TextureData textureData = readCachedTexture(tile, textureURL);
 
-		synchronized (fileLock)
+		if (textureData == null)
 		{
-			textureData = readTexture(tile, textureURL);
+			synchronized (fileLock.getTileLock(tile.getPath()))
+			{
+				textureData = readTexture(tile, textureURL);
+			}
 		}
 
 		if (textureData == null)
@@ -371,6 +413,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps(), null);
 
 			BufferedImage image = readImage(tile, url);
+			Object cacheKey = getDecodedTileCacheKey(url);
 
 			if ("image/dds".equalsIgnoreCase(getTextureFormat()))
 			{
@@ -389,10 +432,12 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 				}
 
 				//return the dds image as TextureData
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), WWIO.getInputStreamFromByteBuffer(buffer), isUseMipMaps(), null);
+				DecodedTileCache.put(cacheKey, buffer);
+				return newDDSTextureData(buffer);
 			}
 
 			//return the image as TextureData
+			DecodedTileCache.put(cacheKey, image);
 			return AWTTextureIO.newTextureData(GLProfile.get(GLProfile.GL2), image, isUseMipMaps());
 		}
 		catch (Exception e)
@@ -403,6 +448,46 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		return null;
 	}
 
+	/**
+	 * Read the texture for a tile from the {@link DecodedTileCache}, if
+	 * enabled.
+	 * 
+	 * @return Cached texture data, or null if not cached
+	 */
+	protected TextureData readCachedTexture(DelegatorTextureTile tile, URL url)
+	{
+		Object cached = DecodedTileCache.get(getDecodedTileCacheKey(url));
+		if (cached == null)
+			return null;
+
+		try
+		{
+			if (cached instanceof ByteBuffer)
+				return newDDSTextureData((ByteBuffer) cached);
+			return AWTTextureIO.newTextureData(GLProfile.get(GLProfile.GL2), (BufferedImage) cached, isUseMipMaps());
+		}
+		catch (Exception e)
+		{
+			String msg = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", url);
+			Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+		}
+		return null;
+	}
+
+	protected Object getDecodedTileCacheKey(URL url)
+	{
+		if (!isCacheDecodedTiles() || url.toString().toLowerCase().endsWith("dds"))
+			return null;
+		return DecodedTileCache.createKey(delegateKit, url, getTextureFormat(), isUseMipMaps());
+	}
+
+	protected TextureData newDDSTextureData(ByteBuffer buffer) throws IOException
+	{
+		//duplicate, as the buffer may be shared by the decoded tile cache
+		return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2),
+				WWIO.getInputStreamFromByteBuffer(buffer.duplicate()), isUseMipMaps(), null);
+	}
+
 	/**
 	 * Read image from a File URL and return it as a {@link BufferedImage}.
 	 * 
@@ -450,24 +535,27 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * tile's stripe of this class' shared fileLock instead of the superclass'
+	 * fileLock.
 	 * 
 	 * @author Michael de Hoog
 	 */
 	protected static class DownloadPostProcessor extends BasicTiledImageLayer.DownloadPostProcessor
 	{
+		private final TextureTile tile;
 		private final DelegatorTiledImageLayer layer;
 
 		public DownloadPostProcessor(TextureTile tile, DelegatorTiledImageLayer layer)
 		{
 			super(tile, layer);
+			this.tile = tile;
 			this.layer = layer;
 		}
 
 		@Override
 		protected Object getFileLock()
 		{
-			return layer.fileLock;
+			return layer.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
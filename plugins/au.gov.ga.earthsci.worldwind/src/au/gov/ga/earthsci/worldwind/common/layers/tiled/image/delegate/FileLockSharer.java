@@ -15,6 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,27 +25,62 @@ import java.util.Map;
  * synchronized before reading from and writing to the cache). This is useful as
  * some layers may share the same imagery but do different post processing on
  * the textures.
+ * <p/>
+ * Locks are only weakly held, so they are released once no layers use them.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class FileLockSharer
 {
-	private static Map<String, Object> locks = new HashMap<String, Object>();
+	private final static Map<String, LockReference> locks = new HashMap<String, LockReference>();
+	private final static ReferenceQueue<StripedFileLock> queue = new ReferenceQueue<StripedFileLock>();
 
 	/**
-	 * Get an object on which to synchronize for reading/writing to the cache
-	 * location identified by dataCacheName.
+	 * Get the lock for reading/writing to the cache location identified by
+	 * dataCacheName. Layers must keep a strong reference to the returned lock
+	 * for as long as they use it.
 	 * 
 	 * @param dataCacheName
 	 *            Cache location
-	 * @return Object on which to synchronize
+	 * @return Lock for the cache location
 	 */
-	public static Object getLock(String dataCacheName)
+	public static StripedFileLock getLock(String dataCacheName)
 	{
-		if (!locks.containsKey(dataCacheName))
+		synchronized (locks)
 		{
-			locks.put(dataCacheName, new Object());
+			expungeStaleLocks();
+			LockReference reference = locks.get(dataCacheName);
+			StripedFileLock lock = reference == null ? null : reference.get();
+			if (lock == null)
+			{
+				lock = new StripedFileLock();
+				locks.put(dataCacheName, new LockReference(dataCacheName, lock, queue));
+			}
+			return lock;
+		}
+	}
+
+	private static void expungeStaleLocks()
+	{
+		LockReference reference;
+		while ((reference = (LockReference) queue.poll()) != null)
+		{
+			//only remove if the entry hasn't already been replaced by a new lock
+			if (locks.get(reference.dataCacheName) == reference)
+			{
+				locks.remove(reference.dataCacheName);
+			}
+		}
+	}
+
+	private static class LockReference extends WeakReference<StripedFileLock>
+	{
+		private final String dataCacheName;
+
+		public LockReference(String dataCacheName, StripedFileLock lock, ReferenceQueue<StripedFileLock> queue)
+		{
+			super(lock, queue);
+			this.dataCacheName = dataCacheName;
 		}
-		return locks.get(dataCacheName);
 	}
 }
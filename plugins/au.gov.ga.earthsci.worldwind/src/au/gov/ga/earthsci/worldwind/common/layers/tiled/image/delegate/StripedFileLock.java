@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
+
+/**
+ * Lock for a data cache location, shared by the layers that read from and
+ * write to that location (see {@link FileLockSharer}).
+ * <p/>
+ * Synchronize on this object for operations that affect the whole location
+ * (such as writing the configuration file). Tile reads and writes should
+ * instead synchronize on the object returned by {@link #getTileLock(String)},
+ * which is one of a fixed set of stripes selected by the tile's file name, so
+ * that different tiles can be read and written concurrently.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class StripedFileLock
+{
+	public final static int DEFAULT_STRIPE_COUNT = 32;
+
+	private final Object[] stripes;
+
+	public StripedFileLock()
+	{
+		this(DEFAULT_STRIPE_COUNT);
+	}
+
+	public StripedFileLock(int stripeCount)
+	{
+		stripes = new Object[stripeCount];
+		for (int i = 0; i < stripeCount; i++)
+		{
+			stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * Get an object on which to synchronize for reading/writing the given
+	 * tile. The stripe is selected by the file name (the last path segment),
+	 * so a tile's cache path and its file URL path return the same lock.
+	 * 
+	 * @param path
+	 *            Tile path or file URL path
+	 * @return Object on which to synchronize
+	 */
+	public Object getTileLock(String path)
+	{
+		int start = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+		int hash = 0;
+		for (int i = start; i < path.length(); i++)
+		{
+			hash = 31 * hash + path.charAt(i);
+		}
+		hash ^= (hash >>> 16);
+		return stripes[(hash & 0x7fffffff) % stripes.length];
+	}
+}
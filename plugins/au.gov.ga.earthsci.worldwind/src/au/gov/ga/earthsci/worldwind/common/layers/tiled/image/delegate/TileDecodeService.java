@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Executor for tile load/decode tasks, used in place of the WorldWind task
+ * service by the {@link DelegatorTiledImageLayer}.
+ * <p/>
+ * Decoding tiles (and running the reader and transformer delegates) is CPU
+ * bound, so each tile format (such as jpg or bil) gets its own pool, so that
+ * expensive formats don't starve cheap ones. Each pool has one thread less
+ * than the number of processors (but at least one), leaving a processor free
+ * for the render thread. Tasks are run in priority order, and the queue is
+ * bounded: when it is full, {@link #addTask(Runnable)} rejects new tasks
+ * (which are requested again on the next frame if still required), in the
+ * same way as the WorldWind task service.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TileDecodeService
+{
+	public final static int DEFAULT_QUEUE_SIZE = 64;
+
+	private final static Map<String, TileDecodeService> instances = new HashMap<String, TileDecodeService>();
+
+	private final ThreadPoolExecutor executor;
+	private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<Runnable>();
+	private final Set<Runnable> tasks = Collections.synchronizedSet(new HashSet<Runnable>());
+	private final int queueSize;
+
+	/**
+	 * Get the shared decode service for the given tile format.
+	 * 
+	 * @param format
+	 *            Tile format (eg file suffix); null for a generic pool
+	 * @return Decode service for the format
+	 */
+	public static TileDecodeService getInstance(String format)
+	{
+		String key = format == null ? "" : format.toLowerCase();
+		synchronized (instances)
+		{
+			TileDecodeService service = instances.get(key);
+			if (service == null)
+			{
+				int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+				service = new TileDecodeService("Tile decoder " + key, threads, DEFAULT_QUEUE_SIZE);
+				instances.put(key, service);
+			}
+			return service;
+		}
+	}
+
+	public TileDecodeService(String threadName, int threads, int queueSize)
+	{
+		this.queueSize = queueSize;
+		executor =
+				new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, queue, new DaemonThreadFactory(
+						threadName));
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return True if this service's queue is full, and new tasks will be
+	 *         rejected
+	 */
+	public boolean isFull()
+	{
+		return queue.size() >= queueSize;
+	}
+
+	/**
+	 * Add a task to this service. Tasks that are equal to a task already
+	 * queued or running are ignored. Tasks should implement {@link Comparable}
+	 * to be run in priority order.
+	 * 
+	 * @param task
+	 *            Task to run
+	 * @return True if the task was added, false if it was rejected because
+	 *         the queue is full or the task is a duplicate
+	 */
+	public boolean addTask(Runnable task)
+	{
+		if (isFull() || !tasks.add(task))
+		{
+			return false;
+		}
+		executor.execute(new DecodeTask(task));
+		return true;
+	}
+
+	/**
+	 * @return Number of tasks queued or running
+	 */
+	public int getTaskCount()
+	{
+		return tasks.size();
+	}
+
+	/**
+	 * Wrapper that removes the task from the set of active tasks when it
+	 * completes, and orders tasks by the wrapped task's priority.
+	 */
+	private class DecodeTask implements Runnable, Comparable<DecodeTask>
+	{
+		private final Runnable task;
+
+		public DecodeTask(Runnable task)
+		{
+			this.task = task;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				tasks.remove(task);
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		public int compareTo(DecodeTask o)
+		{
+			if (task instanceof Comparable && o.task instanceof Comparable && task.getClass() == o.task.getClass())
+			{
+				return ((Comparable) task).compareTo(o.task);
+			}
+			return 0;
+		}
+	}
+}
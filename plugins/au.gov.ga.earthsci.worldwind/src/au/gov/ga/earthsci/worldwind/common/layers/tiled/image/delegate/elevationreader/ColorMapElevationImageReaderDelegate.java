@@ -18,11 +18,14 @@ package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevatio
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.BufferWrapper;
+import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.net.URL;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,7 +39,7 @@ import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
  * Treats the retrieved image tiles as an elevation model, and applies a colour
  * map based on the elevations recorded in the retrieved tiles.
  * <p/>
- * <code>&lt;Delegate&gt;ColorMapReader(pixelType,byteOrder,missingData)&lt;/Delegate&gt;</code>
+ * <code>&lt;Delegate&gt;ColorMapReader(pixelType,byteOrder,missingData[,(sunX,sunY,sunZ),exaggeration])&lt;/Delegate&gt;</code>
  * Where:
  * <ul>
  * <li>pixelType = the pixel format of the elevation tiles (one of "
@@ -46,6 +49,11 @@ import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
  * <code>little</code>" or "<code>big</code>")
  * <li>missingData = the value used in the elevation tiles to represent missing
  * data (float)
+ * <li>(sunX, sunY, sunZ) = (Optional) the vector representing the location of
+ * the virtual sun, used to shade the colour relief (see
+ * {@link ShadedElevationImageReaderDelegate})
+ * <li>exaggeration = (Optional) The vertical exaggeration to bake into the
+ * shading (double)
  * </ul>
  * <p/>
  * When parsing from a layer definition file, the colour map must be provided in
@@ -78,6 +86,9 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	private final static String DEFINITION_STRING = "ColorMapReader";
 
 	private final ColorMap colorMap;
+	private final Vec4 sunPosition;
+	private final double exaggeration;
+	private final Hillshader hillshader;
 
 	@SuppressWarnings("unused")
 	private ColorMapElevationImageReaderDelegate()
@@ -87,9 +98,18 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 
 	public ColorMapElevationImageReaderDelegate(String pixelType, String byteOrder, Double missingDataSignal,
 			ColorMap colorMap)
+	{
+		this(pixelType, byteOrder, missingDataSignal, colorMap, null, 0);
+	}
+
+	public ColorMapElevationImageReaderDelegate(String pixelType, String byteOrder, Double missingDataSignal,
+			ColorMap colorMap, Vec4 sunPosition, double exaggeration)
 	{
 		super(pixelType, byteOrder, missingDataSignal);
 		this.colorMap = colorMap;
+		this.sunPosition = sunPosition;
+		this.exaggeration = exaggeration;
+		this.hillshader = sunPosition == null ? null : new Hillshader(sunPosition.x, sunPosition.y, sunPosition.z);
 	}
 
 	@Override
@@ -97,7 +117,11 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	{
 		if (definition.toLowerCase().startsWith(DEFINITION_STRING.toLowerCase()))
 		{
-			Pattern pattern = Pattern.compile("(?:\\((\\w+),(\\w+)," + doublePattern + "\\))");
+			String optionalShadingGroup =
+					"(?:,\\(" + doublePattern + "," + doublePattern + "," + doublePattern + "\\)," + doublePattern
+							+ ")?";
+			Pattern pattern =
+					Pattern.compile("(?:\\((\\w+),(\\w+)," + doublePattern + optionalShadingGroup + "\\))");
 			Matcher matcher = pattern.matcher(definition);
 			if (matcher.find())
 			{
@@ -105,9 +129,20 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 				String byteOrder = matcher.group(2);
 				double missingDataSignal = Double.parseDouble(matcher.group(3));
 
+				Vec4 sunPosition = null;
+				double exaggeration = 0;
+				if (matcher.group(4) != null)
+				{
+					double sunPositionX = Double.parseDouble(matcher.group(4));
+					double sunPositionY = Double.parseDouble(matcher.group(5));
+					double sunPositionZ = Double.parseDouble(matcher.group(6));
+					sunPosition = new Vec4(sunPositionX, sunPositionY, sunPositionZ).normalize3();
+					exaggeration = Double.parseDouble(matcher.group(7));
+				}
+
 				ColorMap colorMap = XMLUtil.getColorMap(layerElement, "ColorMap", null);
 				return new ColorMapElevationImageReaderDelegate(WWXML.parseDataType(pixelType),
-						WWXML.parseByteOrder(byteOrder), missingDataSignal, colorMap);
+						WWXML.parseByteOrder(byteOrder), missingDataSignal, colorMap, sunPosition, exaggeration);
 			}
 		}
 		return null;
@@ -120,32 +155,60 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 		{
 			XMLUtil.appendColorMap(layerElement, "ColorMap", colorMap);
 		}
+		String shading = "";
+		if (sunPosition != null)
+		{
+			shading = ",(" + sunPosition.x + "," + sunPosition.y + "," + sunPosition.z + ")," + exaggeration;
+		}
 		return DEFINITION_STRING + "(" + WWXML.dataTypeAsText(pixelType) + "," + WWXML.byteOrderAsText(byteOrder) + ","
-				+ missingDataSignal + ")";
+				+ missingDataSignal + shading + ")";
 	}
 
 	@Override
-	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
+	protected BufferedImage generateImage(Tile tile, URL url, BufferWrapper elevations, Globe globe)
 	{
-		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		if (hillshader == null)
+		{
+			return super.generateImage(tile, url, elevations, globe);
+		}
 
+		int width = tile.getWidth();
+		int height = tile.getHeight();
+		float[] grid = createApronGrid(tile, url, elevations);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = getPixels(image);
 		for (int y = 0, i = 0; y < height; y++)
 		{
-			for (int x = 0; x < width; x++, i++)
+			for (int x = 0, g = y * (width + 1); x < width; x++, i++, g++)
 			{
-				double elevation = elevations.getDouble(i);
-				if (elevation == missingDataSignal)
-				{
-					image.setRGB(x, y, 0);
-				}
-				else
-				{
-					int rgba = colorMap.calculateColor(elevation).getRGB();
-					image.setRGB(x, y, rgba);
-				}
+				pixels[i] = calculateColor(grid[g]);
 			}
 		}
 
+		//shade the colors in place
+		Sector sector = tile.getSector();
+		hillshader.shade(grid, width, height, sector.getDeltaLatDegrees() / height, sector.getDeltaLonDegrees()
+				/ width, exaggeration * 0.000005, pixels, pixels);
 		return image;
 	}
+
+	@Override
+	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = getPixels(image);
+		float[] values = toFloatArray(elevations, width * height);
+		for (int i = 0; i < values.length; i++)
+		{
+			pixels[i] = calculateColor(values[i]);
+		}
+		return image;
+	}
+
+	private int calculateColor(float elevation)
+	{
+		if (elevation != elevation) //NaN (missing data)
+			return 0;
+		return colorMap.calculateColor(elevation).getRGB();
+	}
 }
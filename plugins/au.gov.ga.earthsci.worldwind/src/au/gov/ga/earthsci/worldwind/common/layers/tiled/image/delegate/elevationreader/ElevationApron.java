@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import au.gov.ga.earthsci.worldwind.common.util.Util;
+
+/**
+ * Helper for building elevation grids with a one sample apron on the east and
+ * south edges, filled from the neighbouring tiles, so that normals can be
+ * calculated for every sample of a tile.
+ * <p/>
+ * Only the first column and row of each tile are required by its neighbours,
+ * so these edges are kept in a small LRU cache, and neighbouring tiles are
+ * only read if their edges are not already cached.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ElevationApron
+{
+	private final static int DEFAULT_CACHE_SIZE = 512;
+
+	//matches tile files stored in the standard row/row_col.ext directory structure
+	private final static Pattern TILE_PATTERN = Pattern.compile("(.*[/\\\\])(\\d+)([/\\\\])(\\d+)_(\\d+)(\\.[^/\\\\]*)?");
+
+	private final Map<String, Edges> cache;
+
+	public ElevationApron()
+	{
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	public ElevationApron(final int cacheSize)
+	{
+		cache = new LinkedHashMap<String, Edges>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Entry<String, Edges> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Get the cached edges for the tile with the given key.
+	 * 
+	 * @return Cached edges, or null if not cached
+	 */
+	public Edges getEdges(String key)
+	{
+		synchronized (cache)
+		{
+			return cache.get(key);
+		}
+	}
+
+	/**
+	 * Cache the edges of the given elevation tile.
+	 * 
+	 * @return The cached edges
+	 */
+	public Edges putEdges(String key, float[] elevations, int width, int height)
+	{
+		Edges edges = new Edges(elevations, width, height);
+		synchronized (cache)
+		{
+			cache.put(key, edges);
+		}
+		return edges;
+	}
+
+	/**
+	 * Create an elevation grid with an extra column and row containing the
+	 * given neighbouring edges. If a neighbouring edge is not available, the
+	 * tile's elevations are linearly extrapolated.
+	 * 
+	 * @param elevations
+	 *            Tile elevations (<code>width * height</code>)
+	 * @param width
+	 *            Tile width
+	 * @param height
+	 *            Tile height
+	 * @param eastColumn
+	 *            First column of the tile to the east (<code>height</code>
+	 *            values), or null
+	 * @param southRow
+	 *            First row of the tile to the south (<code>width</code>
+	 *            values), or null
+	 * @return Grid of <code>(width + 1) * (height + 1)</code> elevations
+	 */
+	public static float[] createGrid(float[] elevations, int width, int height, float[] eastColumn, float[] southRow)
+	{
+		int stride = width + 1;
+		float[] grid = new float[stride * (height + 1)];
+		for (int y = 0; y < height; y++)
+		{
+			int row = y * width;
+			System.arraycopy(elevations, row, grid, y * stride, width);
+			grid[y * stride + width] =
+					eastColumn != null ? eastColumn[y] : extrapolate(elevations, row + width - 1, row + width - 2,
+							width > 1);
+		}
+		int last = height * stride;
+		for (int x = 0; x < width; x++)
+		{
+			int index = (height - 1) * width + x;
+			grid[last + x] =
+					southRow != null ? southRow[x] : extrapolate(elevations, index, index - width, height > 1);
+		}
+		grid[last + width] = Float.NaN;
+		return grid;
+	}
+
+	private static float extrapolate(float[] elevations, int edge, int inside, boolean hasInside)
+	{
+		if (!hasInside)
+			return elevations[edge];
+		return 2f * elevations[edge] - elevations[inside];
+	}
+
+	/**
+	 * Calculate the URL of a neighbouring tile, for tiles stored in the
+	 * standard <code>row/row_col.ext</code> directory structure (zero padding
+	 * is preserved).
+	 * 
+	 * @param url
+	 *            URL of the tile
+	 * @param row
+	 *            Row of the tile
+	 * @param col
+	 *            Column of the tile
+	 * @param neighbourRow
+	 *            Row of the neighbouring tile
+	 * @param neighbourCol
+	 *            Column of the neighbouring tile
+	 * @return URL of the neighbouring tile, or null if the url does not match
+	 *         the tile's row and column
+	 */
+	public static URL getNeighbourURL(URL url, int row, int col, int neighbourRow, int neighbourCol)
+	{
+		Matcher matcher = TILE_PATTERN.matcher(url.toExternalForm());
+		if (!matcher.matches())
+			return null;
+
+		String rowDirectory = matcher.group(2);
+		String fileRow = matcher.group(4);
+		String fileCol = matcher.group(5);
+		if (Integer.parseInt(rowDirectory) != row || Integer.parseInt(fileRow) != row
+				|| Integer.parseInt(fileCol) != col)
+		{
+			return null;
+		}
+
+		String ext = matcher.group(6) == null ? "" : matcher.group(6);
+		String neighbour =
+				matcher.group(1) + pad(neighbourRow, rowDirectory) + matcher.group(3) + pad(neighbourRow, fileRow) + "_"
+						+ pad(neighbourCol, fileCol) + ext;
+		try
+		{
+			return new URL(neighbour);
+		}
+		catch (MalformedURLException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Format the value with the same zero padding as the original string.
+	 */
+	private static String pad(int value, String original)
+	{
+		boolean padded = original.length() > 1 && original.charAt(0) == '0';
+		return padded ? Util.paddedInt(value, original.length()) : String.valueOf(value);
+	}
+
+	/**
+	 * The first column and row of an elevation tile.
+	 */
+	public static class Edges
+	{
+		public final float[] firstColumn;
+		public final float[] firstRow;
+
+		public Edges(float[] elevations, int width, int height)
+		{
+			firstColumn = new float[height];
+			firstRow = new float[width];
+			System.arraycopy(elevations, 0, firstRow, 0, width);
+			for (int y = 0; y < height; y++)
+			{
+				firstColumn[y] = elevations[y * width];
+			}
+		}
+	}
+}
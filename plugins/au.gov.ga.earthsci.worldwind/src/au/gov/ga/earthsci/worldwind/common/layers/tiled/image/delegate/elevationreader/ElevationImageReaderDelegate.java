@@ -21,7 +21,10 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.Tile;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -33,6 +36,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileReaderDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.reader.MaskHelper;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.reader.MaskHelper.MaskInsideZipDelegate;
 import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 
 /**
  * Abstract class that acts as a super class of all {@link ITileReaderDelegate}s
@@ -50,6 +54,9 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 
 	protected final boolean checkForMask = true;
 
+	//caches the edges of recently read tiles, for filling the apron of their neighbours
+	protected final ElevationApron apron = new ElevationApron();
+
 	public ElevationImageReaderDelegate(String pixelType, String byteOrder, double missingDataSignal)
 	{
 		this.pixelType = pixelType;
@@ -79,16 +86,16 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			MaskInsideZipDelegate delegate = new MaskInsideZipDelegate()
 			{
 				@Override
-				public void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException
+				public void readEntry(String name, InputStream is) throws IOException
 				{
-					String lower = entry.getName().toLowerCase();
+					String lower = name.toLowerCase();
 					if (lower.endsWith(".png"))
 					{
-						mask[0] = ImageIO.read(zis);
+						mask[0] = ImageIO.read(is);
 					}
 					else
 					{
-						byteBuffer[0] = IOUtil.readByteBuffer(zis, pixelType, byteOrder);
+						byteBuffer[0] = IOUtil.readByteBuffer(is, pixelType, byteOrder);
 					}
 				}
 			};
@@ -97,32 +104,173 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			URL maskUrl = MaskHelper.getMaskURL(url, 3, delegate);
 			if (mask[0] == null)
 			{
-				try
-				{
-					mask[0] = ImageIO.read(maskUrl);
-				}
-				catch (Exception e)
-				{
-				}
+				mask[0] = MaskHelper.readMask(maskUrl);
 			}
 			if (byteBuffer[0] == null)
 			{
 				byteBuffer[0] = IOUtil.readByteBuffer(url, pixelType, byteOrder);
 			}
 
-			BufferedImage image =
-					generateImage(byteBuffer[0], tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+			BufferedImage image = generateImage(tile, url, byteBuffer[0], globe);
 			if (mask[0] == null)
 				return image;
-			return MaskHelper.compose(image, mask[0]);
+			return MaskHelper.applyMask(image, mask[0]);
 		}
 		else
 		{
 			BufferWrapper byteBuffer = IOUtil.readByteBuffer(url, pixelType, byteOrder);
-			return generateImage(byteBuffer, tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+			return generateImage(tile, url, byteBuffer, globe);
 		}
 	}
 
+	/**
+	 * Generate an image for a tile from its elevation data. Subclasses that
+	 * require the elevations of the neighbouring tiles should override this
+	 * function and use {@link #createApronGrid(Tile, URL, BufferWrapper)}.
+	 * 
+	 * @param tile
+	 *            Tile to generate an image for
+	 * @param url
+	 *            URL the elevation data was read from
+	 * @param elevations
+	 *            Wrapped elevation data
+	 * @param globe
+	 *            Current globe
+	 * @return Image generated from the elevation data
+	 */
+	protected BufferedImage generateImage(Tile tile, URL url, BufferWrapper elevations, Globe globe)
+	{
+		return generateImage(elevations, tile.getWidth(), tile.getHeight(), globe, tile.getSector());
+	}
+
+	/**
+	 * @return Should the given elevation value be used (ie is it not missing
+	 *         data)?
+	 */
+	protected boolean isValidElevation(double elevation)
+	{
+		return elevation != missingDataSignal;
+	}
+
+	/**
+	 * Copy the elevations to a float array, replacing invalid elevations with
+	 * NaN.
+	 */
+	protected float[] toFloatArray(BufferWrapper elevations, int length)
+	{
+		float[] values = new float[length];
+		for (int i = 0; i < length; i++)
+		{
+			double elevation = elevations.getDouble(i);
+			values[i] = isValidElevation(elevation) ? (float) elevation : Float.NaN;
+		}
+		return values;
+	}
+
+	/**
+	 * Create a grid of the tile's elevations with an extra column and row,
+	 * filled from the first column of the tile to the east, and the first row
+	 * of the tile to the south. Invalid elevations are NaN.
+	 * 
+	 * @see ElevationApron
+	 */
+	protected float[] createApronGrid(Tile tile, URL url, BufferWrapper elevations)
+	{
+		int width = tile.getWidth();
+		int height = tile.getHeight();
+		float[] values = toFloatArray(elevations, width * height);
+
+		String key = getApronCacheKey(url);
+		if (key != null)
+		{
+			apron.putEdges(key, values, width, height);
+		}
+
+		int row = tile.getRow();
+		int col = tile.getColumn();
+		int eastCol = tile.getSector().getMaxLongitude().degrees >= 180 ? 0 : col + 1;
+		ElevationApron.Edges east = getNeighbourEdges(tile, url, row, eastCol);
+		ElevationApron.Edges south = row > 0 ? getNeighbourEdges(tile, url, row - 1, col) : null;
+		return ElevationApron.createGrid(values, width, height, east != null ? east.firstColumn : null,
+				south != null ? south.firstRow : null);
+	}
+
+	private ElevationApron.Edges getNeighbourEdges(Tile tile, URL url, int row, int col)
+	{
+		URL neighbour = ElevationApron.getNeighbourURL(url, tile.getRow(), tile.getColumn(), row, col);
+		if (neighbour == null)
+			return null;
+		String key = getApronCacheKey(neighbour);
+		if (key == null)
+			return null;
+
+		ElevationApron.Edges edges = apron.getEdges(key);
+		if (edges != null)
+			return edges;
+
+		int length = tile.getWidth() * tile.getHeight();
+		try
+		{
+			BufferWrapper elevations = readElevations(neighbour);
+			if (elevations == null || elevations.length() < length)
+				return null;
+			return apron.putEdges(key, toFloatArray(elevations, length), tile.getWidth(), tile.getHeight());
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return Key used to cache the edges of the tile at the given url, or
+	 *         null if the tile file doesn't exist
+	 */
+	private static String getApronCacheKey(URL url)
+	{
+		File file = URLUtil.urlToFile(url);
+		if (file == null)
+			return url.toExternalForm();
+		if (!file.exists())
+			return null;
+		//include the modification date, so that the edges of updated tiles are not used
+		return url.toExternalForm() + "#" + file.lastModified();
+	}
+
+	/**
+	 * Read the elevation data from the given URL, ignoring any mask.
+	 */
+	protected BufferWrapper readElevations(URL url) throws IOException
+	{
+		if (!url.toString().toLowerCase().endsWith("zip"))
+			return IOUtil.readByteBuffer(url, pixelType, byteOrder);
+
+		ZipInputStream zis = new ZipInputStream(url.openStream());
+		try
+		{
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null)
+			{
+				if (!entry.getName().toLowerCase().endsWith(".png"))
+					return IOUtil.readByteBuffer(zis, pixelType, byteOrder);
+			}
+			return null;
+		}
+		finally
+		{
+			zis.close();
+		}
+	}
+
+	/**
+	 * @return The integer array backing the given
+	 *         {@link BufferedImage#TYPE_INT_ARGB} image
+	 */
+	protected static int[] getPixels(BufferedImage image)
+	{
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
 	/**
 	 * Generate an image from elevation data.
 	 * 
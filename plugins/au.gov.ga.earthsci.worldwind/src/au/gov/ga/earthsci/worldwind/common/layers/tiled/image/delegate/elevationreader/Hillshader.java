@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevationreader;
+
+/**
+ * Calculates hillshading for a grid of elevations, writing ARGB pixels
+ * directly into an integer array (such as the raster of a
+ * {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} image).
+ * <p/>
+ * The normal at each sample is calculated from the sample and its east and
+ * south neighbours, so the grid must contain one more column and row than the
+ * output (see {@link ElevationApron}). If the extra column and row are filled
+ * from the neighbouring tiles, the shading is continuous across tile edges.
+ * <p/>
+ * Shading is calculated as a simple dot product between the normal and the
+ * sun vector. No objects are allocated per sample.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class Hillshader
+{
+	private final double sunX;
+	private final double sunY;
+	private final double sunZ;
+
+	/**
+	 * Create a new hillshader. The sun vector is expressed in (latitude,
+	 * longitude, elevation) space, and should be normalized.
+	 */
+	public Hillshader(double sunX, double sunY, double sunZ)
+	{
+		this.sunX = sunX;
+		this.sunY = sunY;
+		this.sunZ = sunZ;
+	}
+
+	/**
+	 * Shade the given elevation grid.
+	 * 
+	 * @param grid
+	 *            Elevations, row by row from the north-west corner, with
+	 *            <code>(width + 1) * (height + 1)</code> values; missing
+	 *            elevations are NaN
+	 * @param width
+	 *            Width of the output
+	 * @param height
+	 *            Height of the output
+	 * @param dlat
+	 *            Latitude spacing between rows, in degrees
+	 * @param dlon
+	 *            Longitude spacing between columns, in degrees
+	 * @param zScale
+	 *            Scale to apply to the elevations when calculating normals
+	 *            (vertical exaggeration)
+	 * @param colors
+	 *            ARGB colors to shade (of length <code>width * height</code>),
+	 *            or null to output grayscale shading; samples with colors but
+	 *            without neighbours are output unshaded
+	 * @param out
+	 *            Array to write the ARGB output to (of length
+	 *            <code>width * height</code>); samples that can't be shaded
+	 *            are transparent
+	 */
+	public void shade(float[] grid, int width, int height, double dlat, double dlon, double zScale, int[] colors,
+			int[] out)
+	{
+		int stride = width + 1;
+		double nz = -dlon * dlat;
+		double nzSun = nz * sunZ;
+		double nz2 = nz * nz;
+		double sx = dlon * zScale * sunX;
+		double sy = dlat * zScale * sunY;
+		double xScale = dlon * zScale;
+		double yScale = dlat * zScale;
+
+		for (int y = 0, i = 0; y < height; y++)
+		{
+			int g = y * stride;
+			for (int x = 0; x < width; x++, i++, g++)
+			{
+				float z0 = grid[g];
+				if (z0 != z0) //NaN
+				{
+					out[i] = 0;
+					continue;
+				}
+
+				float z1 = grid[g + 1];
+				float z2 = grid[g + stride];
+				if (z1 != z1 || z2 != z2)
+				{
+					out[i] = colors == null ? 0 : colors[i];
+					continue;
+				}
+
+				//normal = (v1 - v0) x (v0 - v2), where v1 is east and v2 is south of v0
+				double south = z0 - z2;
+				double east = z1 - z0;
+				double dot = south * sx + east * sy + nzSun;
+				double light = 0;
+				if (dot > 0)
+				{
+					double nx = south * xScale;
+					double ny = east * yScale;
+					light = dot / Math.sqrt(nx * nx + ny * ny + nz2);
+				}
+
+				if (colors == null)
+				{
+					int c = (int) (255.0 * light) & 0xff;
+					out[i] = 0xff000000 | c << 16 | c << 8 | c;
+				}
+				else
+				{
+					int argb = colors[i];
+					int r = (int) (((argb >> 16) & 0xff) * light);
+					int gr = (int) (((argb >> 8) & 0xff) * light);
+					int b = (int) ((argb & 0xff) * light);
+					out[i] = (argb & 0xff000000) | r << 16 | gr << 8 | b;
+				}
+			}
+		}
+	}
+}
@@ -17,14 +17,15 @@ package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevatio
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.BufferWrapper;
+import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.net.URL;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,7 +61,8 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
  * when calculating shading (in metres as doubles)
  * </ul>
  * Shading is calculated as a simple dot product between the calculated normals
- * of the elevation model and the sun vector.
+ * of the elevation model and the sun vector (see {@link Hillshader}). Normals on
+ * the tile edges are calculated using the neighbouring tiles, if available.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -72,6 +74,7 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 	protected final Vec4 sunPosition;
 	protected final double minElevation;
 	protected final double maxElevation;
+	protected final Hillshader hillshader;
 
 	@SuppressWarnings("unused")
 	private ShadedElevationImageReaderDelegate()
@@ -88,6 +91,7 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 		this.sunPosition = sunPosition;
 		this.minElevation = minElevation;
 		this.maxElevation = maxElevation;
+		this.hillshader = new Hillshader(sunPosition.x, sunPosition.y, sunPosition.z);
 	}
 
 	@Override
@@ -137,87 +141,32 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 	}
 
 	@Override
-	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
+	protected BufferedImage generateImage(Tile tile, URL url, BufferWrapper elevations, Globe globe)
 	{
-		//image has one less in width and height than verts array, because normals are calculated using neighbors
-		//it would be optimal to read the neighboring tiles for normals on tile edges; this would fix visible tile edges
-
-		BufferedImage image = new BufferedImage(width - 1, height - 1, BufferedImage.TYPE_INT_ARGB);
-
-		Vec4[] verts =
-				calculateTileVerts(width, height, sector, elevations, missingDataSignal, exaggeration * 0.000005);
-		Vec4[] normals = calculateNormals(width, height, verts);
-
-		for (int y = 0, i = 0; y < height - 1; y++)
-		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				int argb = 0;
-				Vec4 normal = normals[i];
-				if (normal != null)
-				{
-					double light = Math.max(0d, normal.dot3(sunPosition));
-
-					int r = (int) (255.0 * light);
-					int g = (int) (255.0 * light);
-					int b = (int) (255.0 * light);
-
-					argb = (0xff) << 24 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
-				}
-				image.setRGB(x, y, argb);
-			}
-		}
-
-		return image;
+		float[] grid = createApronGrid(tile, url, elevations);
+		return generateImage(grid, tile.getWidth(), tile.getHeight(), tile.getSector());
 	}
 
-	protected Vec4[] calculateTileVerts(int width, int height, Sector sector, BufferWrapper elevations,
-			double missingDataSignal, double exaggeration)
+	@Override
+	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
 	{
-		Vec4[] verts = new Vec4[width * height];
-		double dlon = sector.getDeltaLonDegrees() / width;
-		double dlat = sector.getDeltaLatDegrees() / height;
-
-		for (int y = 0, i = 0; y < height; y++)
-		{
-			Angle lat = sector.getMaxLatitude().subtractDegrees(dlat * y);
-			for (int x = 0; x < width; x++, i++)
-			{
-				Angle lon = sector.getMinLongitude().addDegrees(dlon * x);
-				double elevation = elevations.getDouble(i);
-				if (elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation)
-				{
-					verts[i] = new Vec4(lat.degrees, lon.degrees, elevation * exaggeration);
-				}
-			}
-		}
-
-		return verts;
+		//no neighbouring tiles available, so extrapolate the edges
+		float[] grid = ElevationApron.createGrid(toFloatArray(elevations, width * height), width, height, null, null);
+		return generateImage(grid, width, height, sector);
 	}
 
-	protected Vec4[] calculateNormals(int width, int height, Vec4[] verts)
+	protected BufferedImage generateImage(float[] grid, int width, int height, Sector sector)
 	{
-		Vec4[] norms = new Vec4[(width - 1) * (height - 1)];
-		for (int y = 0, i = 0; y < height - 1; y++)
-		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				//v0-v1
-				//|
-				//v2
-
-				int vertIndex = width * y + x;
-				Vec4 v0 = verts[vertIndex];
-				if (v0 != null)
-				{
-					Vec4 v1 = verts[vertIndex + 1];
-					Vec4 v2 = verts[vertIndex + width];
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		hillshader.shade(grid, width, height, sector.getDeltaLatDegrees() / height, sector.getDeltaLonDegrees()
+				/ width, exaggeration * 0.000005, null, getPixels(image));
+		return image;
+	}
 
-					norms[i] = v1 != null && v2 != null ? v1.subtract3(v0).cross3(v0.subtract3(v2)).normalize3() : null;
-				}
-			}
-		}
-		return norms;
+	@Override
+	protected boolean isValidElevation(double elevation)
+	{
+		return super.isValidElevation(elevation) && minElevation <= elevation && elevation <= maxElevation;
 	}
 
 	protected double[] getMinMax(BufferWrapper elevations, double missingDataSignal)
@@ -202,6 +202,23 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 		}
 	}
 
+	@Override
+	public void getSlice(int axis, int position, float[] values)
+	{
+		int uSize = axis == 0 ? ySize : xSize;
+		int vSize = axis == 2 ? ySize : zSize;
+		for (int v = 0; v < vSize; v++)
+		{
+			for (int u = 0; u < uSize; u++)
+			{
+				int x = axis == 0 ? position : u;
+				int y = axis == 0 ? u : axis == 1 ? position : v;
+				int z = axis == 2 ? position : v;
+				values[u + v * uSize] = getValue(x, y, z);
+			}
+		}
+	}
+
 	@Override
 	public boolean isCellCentred()
 	{
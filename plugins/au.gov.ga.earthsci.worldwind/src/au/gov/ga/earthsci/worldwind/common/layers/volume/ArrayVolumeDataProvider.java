@@ -164,9 +164,17 @@ public class ArrayVolumeDataProvider extends AbstractVolumeDataProvider
 				{
 					oos.writeDouble(position.elevation);
 				}
-				for (int i = 0; i < provider.data.limit(); i++)
+				if (provider.data != null)
 				{
-					oos.writeFloat(provider.data.get(i));
+					for (int i = 0; i < provider.data.limit(); i++)
+					{
+						oos.writeFloat(provider.data.get(i));
+					}
+				}
+				else
+				{
+					//providers such as the BrickedVolumeDataProvider don't hold their data in memory
+					writeValues(provider, oos);
 				}
 			}
 			finally
@@ -179,4 +187,23 @@ public class ArrayVolumeDataProvider extends AbstractVolumeDataProvider
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * Write the values of the given provider in x, then y, then z order, which
+	 * is the order that the values are read in by
+	 * {@link #doLoadData(URL, VolumeLayer)}.
+	 */
+	static void writeValues(AbstractVolumeDataProvider provider, ObjectOutputStream oos) throws IOException
+	{
+		for (int z = 0; z < provider.zSize; z++)
+		{
+			for (int y = 0; y < provider.ySize; y++)
+			{
+				for (int x = 0; x < provider.xSize; x++)
+				{
+					oos.writeFloat(provider.getValue(x, y, z));
+				}
+			}
+		}
+	}
 }
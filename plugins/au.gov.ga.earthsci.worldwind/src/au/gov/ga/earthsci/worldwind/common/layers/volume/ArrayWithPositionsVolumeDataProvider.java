@@ -158,9 +158,16 @@ public class ArrayWithPositionsVolumeDataProvider extends AbstractVolumeDataProv
 					oos.writeDouble(position.longitude.degrees);
 					oos.writeDouble(position.elevation);
 				}
-				for (int i = 0; i < provider.data.limit(); i++)
+				if (provider.data != null)
 				{
-					oos.writeFloat(provider.data.get(i));
+					for (int i = 0; i < provider.data.limit(); i++)
+					{
+						oos.writeFloat(provider.data.get(i));
+					}
+				}
+				else
+				{
+					ArrayVolumeDataProvider.writeValues(provider, oos);
 				}
 			}
 			finally
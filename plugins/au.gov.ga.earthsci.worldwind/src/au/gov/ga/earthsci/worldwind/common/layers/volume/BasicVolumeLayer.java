@@ -46,6 +46,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.media.opengl.GL2;
 
@@ -59,6 +61,7 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShapeRenderListe
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.earthsci.worldwind.common.util.GeometryUtil;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
@@ -67,6 +70,12 @@ import com.jogamp.opengl.util.awt.TextureRenderer;
 
 /**
  * Basic implementation of the {@link VolumeLayer} interface.
+ * <p/>
+ * Slice textures of large volumes are first generated at a reduced level of
+ * detail, so that dragging slices stays interactive, and then progressively
+ * refined in a background thread to match the size of the slice on screen.
+ * Reduced resolution textures are sampled from a {@link VolumePyramid}, which
+ * is built in the background after the data is loaded.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -112,6 +121,25 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected int dragStartSlice;
 	protected Vec4 dragStartCenter;
 
+	/**
+	 * Maximum number of texels along each side of the textures generated
+	 * while a slice is being dragged.
+	 */
+	protected static final int INTERACTIVE_TEXTURE_SIZE = 256;
+
+	/**
+	 * Indices of each surface in the texture level arrays.
+	 */
+	protected static final int MIN_X = 0, MAX_X = 1, MIN_Y = 2, MAX_Y = 3, TOP = 4, BOTTOM = 5;
+
+	private static final ExecutorService refinementExecutor = Executors
+			.newSingleThreadExecutor(new DaemonThreadFactory("Volume texture refinement"));
+
+	protected volatile VolumePyramid pyramid;
+	protected final int[] textureLevels = new int[6];
+	protected final boolean[] refining = new boolean[6];
+	protected final RefinedTexture[] refinedTextures = new RefinedTexture[6];
+
 	/**
 	 * Create a new {@link BasicVolumeLayer}, using the provided layer params.
 	 * 
@@ -241,9 +269,64 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	public void dataAvailable(VolumeDataProvider provider)
 	{
 		calculateSurfaces();
+		buildPyramid();
 		dataAvailable = true;
 	}
 
+	/**
+	 * Start building the {@link VolumePyramid} used to generate reduced
+	 * resolution textures, if the volume is large enough to need one.
+	 */
+	protected void buildPyramid()
+	{
+		int xSize = dataProvider.getXSize();
+		int ySize = dataProvider.getYSize();
+		int zSize = dataProvider.getZSize();
+		if (Math.max(xSize, Math.max(ySize, zSize * dataProvider.getZSubsamples())) <= INTERACTIVE_TEXTURE_SIZE)
+		{
+			return;
+		}
+
+		if (pyramid != null)
+		{
+			pyramid.cancel();
+		}
+		final VolumePyramid pyramid = new VolumePyramid(new BrickedVolume.ValueSource()
+		{
+			@Override
+			public float getValue(int x, int y, int z)
+			{
+				return dataProvider.getValue(x, y, z);
+			}
+		}, xSize, ySize, zSize, dataProvider.getNoDataValue(), VolumePyramid.DEFAULT_MEMORY_SIZE);
+		this.pyramid = pyramid;
+		DaemonThreadFactory.newThread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				pyramid.build();
+			}
+		}, "Volume pyramid builder").start();
+	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		if (pyramid != null)
+		{
+			//stop reading the volume data in the background
+			pyramid.cancel();
+			pyramid = null;
+		}
+		if (dataProvider instanceof BrickedVolumeDataProvider)
+		{
+			//release the file that the volume data is paged from
+			((BrickedVolumeDataProvider) dataProvider).close();
+		}
+	}
+
 	/**
 	 * Calculate the 4 curtain and 2 horizontal surfaces used to render this
 	 * volume. Should be called once after the {@link VolumeDataProvider}
@@ -364,7 +447,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinXCurtain = dataProvider.createXCurtain(minXOffset);
 			minXCurtain.setPositions(newMinXCurtain.getPositions());
 
-			updateTexture(generateTexture(0, minXOffset, xTextureSize), minXTexture, minXCurtain);
+			updateSliceTexture(MIN_X, 0, minXOffset, xTextureSize);
 			lastMinXOffset = minXOffset;
 		}
 		if (recalculateMaxX)
@@ -374,7 +457,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxXCurtain = dataProvider.createXCurtain(xSize - 1 - maxXOffset);
 			maxXCurtain.setPositions(newMaxXCurtain.getPositions());
 
-			updateTexture(generateTexture(0, maxXSlice, xTextureSize), maxXTexture, maxXCurtain);
+			updateSliceTexture(MAX_X, 0, maxXSlice, xTextureSize);
 			lastMaxXOffset = maxXOffset;
 		}
 		if (recalculateMinY)
@@ -384,7 +467,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinYCurtain = dataProvider.createYCurtain(minYOffset);
 			minYCurtain.setPositions(newMinYCurtain.getPositions());
 
-			updateTexture(generateTexture(1, minYOffset, yTextureSize), minYTexture, minYCurtain);
+			updateSliceTexture(MIN_Y, 1, minYOffset, yTextureSize);
 			lastMinYOffset = minYOffset;
 		}
 		if (recalculateMaxY)
@@ -394,7 +477,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxYCurtain = dataProvider.createYCurtain(ySize - 1 - maxYOffset);
 			maxYCurtain.setPositions(newMaxYCurtain.getPositions());
 
-			updateTexture(generateTexture(1, maxYSlice, yTextureSize), maxYTexture, maxYCurtain);
+			updateSliceTexture(MAX_Y, 1, maxYSlice, yTextureSize);
 			lastMaxYOffset = maxYOffset;
 		}
 		if (recalculateTop)
@@ -402,7 +485,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			topClipDirty = true;
 			double elevation = -dataProvider.getDepth() * topPercent;
 
-			updateTexture(generateTexture(2, topOffset, zTextureSize), topTexture, topSurface);
+			updateSliceTexture(TOP, 2, topOffset, zTextureSize);
 			lastTopOffset = topOffset;
 
 			topSurface.setElevation(elevation);
@@ -418,7 +501,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			bottomClipDirty = true;
 			double elevation = -dataProvider.getDepth() * bottomPercent;
 
-			updateTexture(generateTexture(2, bottomSlice, zTextureSize), bottomTexture, bottomSurface);
+			updateSliceTexture(BOTTOM, 2, bottomSlice, zTextureSize);
 			lastBottomOffset = bottomOffset;
 
 			bottomSurface.setElevation(elevation);
@@ -677,6 +760,291 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		clippingPlaneArray[arrayOffset + 3] = v.w;
 	}
 
+	/**
+	 * Regenerate the texture for the given surface at the interactive level of
+	 * detail. The texture is refined later by
+	 * {@link #refineTextures(DrawContext, FastShape[])}.
+	 * 
+	 * @param index
+	 *            Index of the surface (eg {@link #MIN_X})
+	 * @param axis
+	 *            Slicing axis
+	 * @param position
+	 *            Position at which to slice
+	 * @param size
+	 *            Full resolution size of the texture
+	 */
+	protected void updateSliceTexture(int index, int axis, int position, Dimension size)
+	{
+		int level = getInteractiveLevel(axis, size);
+		updateTexture(generateTexture(axis, position, size, level), getTexture(index), getShape(index), level);
+		textureLevels[index] = level;
+	}
+
+	/**
+	 * Calculate the coarsest level of detail that can be used for a texture,
+	 * where each level halves the resolution of the previous. Textures at this
+	 * level are cheap enough to regenerate every frame while dragging. Once
+	 * the finest level stored by the {@link VolumePyramid} is built, the level
+	 * is coarsened if required to that level, so that dragging never reads
+	 * the volume data directly.
+	 * 
+	 * @param axis
+	 *            Slicing axis
+	 * @param size
+	 *            Full resolution size of the texture
+	 * @return Interactive level of detail
+	 */
+	protected int getInteractiveLevel(int axis, Dimension size)
+	{
+		int texels = Math.max(size.width, getTextureHeight(axis, size));
+		int level = VolumePyramid.getLevelForSize(texels, INTERACTIVE_TEXTURE_SIZE);
+		VolumePyramid pyramid = this.pyramid;
+		if (level > 0 && pyramid != null && pyramid.isLevelAvailable(pyramid.getStoredLevel(level)))
+		{
+			level = pyramid.getStoredLevel(level);
+		}
+		return level;
+	}
+
+	/**
+	 * Calculate the level of detail at which the texels of a surface's texture
+	 * are approximately the size of a pixel on screen.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @param shape
+	 *            Surface that the texture is applied to
+	 * @param axis
+	 *            Slicing axis
+	 * @param size
+	 *            Full resolution size of the texture
+	 * @return Screen-space level of detail
+	 */
+	protected int getScreenLevel(DrawContext dc, FastShape shape, int axis, Dimension size)
+	{
+		Extent extent = shape.getExtent();
+		if (extent == null)
+		{
+			return 0;
+		}
+		View view = dc.getView();
+		double distance = extent.getCenter().distanceTo3(view.getEyePoint()) - extent.getRadius();
+		double pixelSize = view.computePixelSizeAtDistance(Math.max(distance, 1));
+		double pixels = 2 * extent.getRadius() / pixelSize;
+		int texels = Math.max(size.width, getTextureHeight(axis, size));
+		int level = 0;
+		while (texels >> (level + 1) > 0 && texels >> (level + 1) >= pixels)
+		{
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Refine the textures of the given visible surfaces towards the level of
+	 * detail required for their size on screen. Refinement happens in a
+	 * background thread, two levels at a time; the textures are updated once
+	 * the refined images are ready. Refinement is paused while dragging.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @param shapes
+	 *            Visible surfaces (may contain nulls)
+	 */
+	protected void refineTextures(DrawContext dc, FastShape[] shapes)
+	{
+		applyRefinedTextures();
+		if (dragging)
+		{
+			return;
+		}
+
+		for (FastShape shape : shapes)
+		{
+			final int index = getTextureIndex(shape);
+			if (index < 0 || refining[index] || textureLevels[index] == 0)
+			{
+				continue;
+			}
+			final int axis = index / 2;
+			final Dimension size = getTextureSize(axis);
+			int target = getScreenLevel(dc, shape, axis, size);
+			if (target >= textureLevels[index])
+			{
+				continue;
+			}
+
+			final int level = Math.max(target, textureLevels[index] - 2);
+			final int position = getSlicePosition(index);
+			refining[index] = true;
+			refinementExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					BufferedImage image = null;
+					try
+					{
+						image = generateTexture(axis, position, size, level);
+					}
+					finally
+					{
+						synchronized (refinedTextures)
+						{
+							refinedTextures[index] = new RefinedTexture(position, level, image);
+						}
+						firePropertyChange(AVKey.LAYER, null, BasicVolumeLayer.this);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Update any textures that have been refined in the background, as long as
+	 * their surface hasn't been moved to a different slice in the meantime.
+	 * Must be called from the rendering thread.
+	 */
+	protected void applyRefinedTextures()
+	{
+		for (int index = 0; index < refinedTextures.length; index++)
+		{
+			RefinedTexture refined;
+			synchronized (refinedTextures)
+			{
+				refined = refinedTextures[index];
+				refinedTextures[index] = null;
+			}
+			if (refined == null)
+			{
+				continue;
+			}
+			refining[index] = false;
+			if (refined.image != null && refined.position == getSlicePosition(index)
+					&& refined.level < textureLevels[index])
+			{
+				updateTexture(refined.image, getTexture(index), getShape(index), refined.level);
+				textureLevels[index] = refined.level;
+			}
+		}
+	}
+
+	protected int getTextureIndex(FastShape shape)
+	{
+		return shape == null ? -1 : shape == minXCurtain ? MIN_X : shape == maxXCurtain ? MAX_X
+				: shape == minYCurtain ? MIN_Y : shape == maxYCurtain ? MAX_Y : shape == topSurface ? TOP
+						: shape == bottomSurface ? BOTTOM : -1;
+	}
+
+	protected FastShape getShape(int index)
+	{
+		FastShape[] shapes = { minXCurtain, maxXCurtain, minYCurtain, maxYCurtain, topSurface, bottomSurface };
+		return shapes[index];
+	}
+
+	protected TextureRenderer getTexture(int index)
+	{
+		TextureRenderer[] textures = { minXTexture, maxXTexture, minYTexture, maxYTexture, topTexture, bottomTexture };
+		return textures[index];
+	}
+
+	protected int getSlicePosition(int index)
+	{
+		switch (index)
+		{
+		case MIN_X:
+			return minXOffset;
+		case MAX_X:
+			return dataProvider.getXSize() - 1 - maxXOffset;
+		case MIN_Y:
+			return minYOffset;
+		case MAX_Y:
+			return dataProvider.getYSize() - 1 - maxYOffset;
+		case TOP:
+			return topOffset;
+		default:
+			return dataProvider.getZSize() - 1 - bottomOffset;
+		}
+	}
+
+	protected Dimension getTextureSize(int axis)
+	{
+		int xSize = dataProvider.getXSize();
+		int ySize = dataProvider.getYSize();
+		int zSize = dataProvider.getZSize();
+		return axis == 0 ? new Dimension(ySize, zSize) : axis == 1 ? new Dimension(xSize, zSize) : new Dimension(
+				xSize, ySize);
+	}
+
+	/**
+	 * @return Height of the full resolution texture for the given axis,
+	 *         including any z subsampling
+	 */
+	protected int getTextureHeight(int axis, Dimension size)
+	{
+		int zSubsamples = dataProvider.getZSubsamples();
+		return axis != 2 && zSubsamples > 1 ? size.height * zSubsamples : size.height;
+	}
+
+	/**
+	 * Generate a texture slice through the volume at the given position and
+	 * level of detail. Level 0 is full resolution, and each following level
+	 * halves the resolution along each side of the texture. Samples are taken
+	 * from the mean values of the {@link VolumePyramid} if it has been built,
+	 * or directly from the data otherwise.
+	 * 
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice).
+	 * @param position
+	 *            Longitude, latitude, or elevation at which to slice.
+	 * @param size
+	 *            Full resolution size of the texture.
+	 * @param level
+	 *            Level of detail at which to generate the texture.
+	 * @return A {@link BufferedImage} containing a representation of the volume
+	 *         slice, with dimensions reduced by the level of detail.
+	 */
+	protected BufferedImage generateTexture(int axis, int position, Dimension size, int level)
+	{
+		if (level <= 0)
+		{
+			return generateTexture(axis, position, size);
+		}
+
+		boolean subsample = axis != 2 && dataProvider.getZSubsamples() > 1;
+		int fullHeight = getTextureHeight(axis, size);
+		int width = ((size.width - 1) >> level) + 1;
+		int height = ((fullHeight - 1) >> level) + 1;
+		VolumePyramid pyramid = this.pyramid;
+		boolean usePyramid = pyramid != null && pyramid.isLevelAvailable(level);
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		float minimum = dataProvider.getMinValue();
+		float maximum = dataProvider.getMaxValue();
+		for (int y = 0; y < height; y++)
+		{
+			int fy = Math.min(y << level, fullHeight - 1);
+			int rowZ = fy;
+			if (subsample)
+			{
+				double percent = fy / (double) Math.max(fullHeight - 1, 1);
+				rowZ = (int) Math.round(dataProvider.getElevationPercentSlice(percent));
+			}
+			for (int x = 0; x < width; x++)
+			{
+				int fx = Math.min(x << level, size.width - 1);
+				int vx = axis == 2 ? fx : axis == 1 ? fx : position;
+				int vy = axis == 2 ? fy : axis == 1 ? position : fx;
+				int vz = axis == 2 ? position : rowZ;
+				float value = usePyramid ? pyramid.getMean(level, vx, vy, vz) : dataProvider.getValue(vx, vy, vz);
+				image.setRGB(x, y, getColor(value, minimum, maximum));
+			}
+		}
+		return image;
+	}
+
 	/**
 	 * Generate a texture slice through the volume at the given position. Uses a
 	 * {@link ColorMap} to map values to colors (or simply interpolates the hue
@@ -702,6 +1070,10 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			height *= zSubsamples;
 		}
 
+		//the slice's columns and rows match the texture's, before any z subsampling
+		float[] slice = new float[size.width * size.height];
+		dataProvider.getSlice(axis, position, slice);
+
 		BufferedImage image = new BufferedImage(size.width, height, BufferedImage.TYPE_INT_ARGB);
 		float minimum = dataProvider.getMinValue();
 		float maximum = dataProvider.getMaxValue();
@@ -709,9 +1081,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			for (int x = 0; x < size.width; x++)
 			{
-				int vx = axis == 2 ? x : axis == 1 ? x : position;
-				int vy = axis == 2 ? y : axis == 1 ? position : x;
-				int vz = axis == 2 ? position : y;
 				float value;
 				if (subsample)
 				{
@@ -719,33 +1088,49 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 					double z = dataProvider.getElevationPercentSlice(percent);
 					int z1 = (int) Math.floor(z);
 					int z2 = (int) Math.ceil(z);
-					float value1 = dataProvider.getValue(vx, vy, z1);
-					float value2 = dataProvider.getValue(vx, vy, z2);
+					float value1 = slice[x + z1 * size.width];
+					float value2 = slice[x + z2 * size.width];
 					float zp = (float) (z % 1.0);
 					value = value1 * (1f - zp) + value2 * zp;
 				}
 				else
 				{
-					value = dataProvider.getValue(vx, vy, vz);
-				}
-				int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
-				if (value != dataProvider.getNoDataValue())
-				{
-					if (colorMap != null)
-					{
-						rgb = colorMap.calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
-					}
-					else
-					{
-						rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
-					}
+					value = slice[x + y * size.width];
 				}
-				image.setRGB(x, y, rgb);
+				image.setRGB(x, y, getColor(value, minimum, maximum));
 			}
 		}
 		return image;
 	}
 
+	/**
+	 * Calculate the texture color for the given volume value.
+	 * 
+	 * @param value
+	 *            Volume value
+	 * @param minimum
+	 *            Minimum value in the volume
+	 * @param maximum
+	 *            Maximum value in the volume
+	 * @return ARGB color
+	 */
+	protected int getColor(float value, float minimum, float maximum)
+	{
+		int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
+		if (value != dataProvider.getNoDataValue())
+		{
+			if (colorMap != null)
+			{
+				rgb = colorMap.calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
+			}
+			else
+			{
+				rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
+			}
+		}
+		return rgb;
+	}
+
 	/**
 	 * Update the given {@link TextureRenderer} with the provided image, and
 	 * sets the {@link FastShape}'s texture it.
@@ -758,13 +1143,33 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	 *            Shape to set texture in
 	 */
 	protected void updateTexture(BufferedImage image, TextureRenderer texture, FastShape shape)
+	{
+		updateTexture(image, texture, shape, 0);
+	}
+
+	/**
+	 * Update the given {@link TextureRenderer} with the provided reduced
+	 * resolution image, scaling it up to fill the texture, and sets the
+	 * {@link FastShape}'s texture to it.
+	 * 
+	 * @param image
+	 *            Image to update texture with
+	 * @param texture
+	 *            Texture to update
+	 * @param shape
+	 *            Shape to set texture in
+	 * @param level
+	 *            Level of detail of the image (see
+	 *            {@link #generateTexture(int, int, Dimension, int)})
+	 */
+	protected void updateTexture(BufferedImage image, TextureRenderer texture, FastShape shape, int level)
 	{
 		Graphics2D g = null;
 		try
 		{
 			g = (Graphics2D) texture.getImage().getGraphics();
 			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-			g.drawImage(image, 0, 0, null);
+			g.drawImage(image, 0, 0, image.getWidth() << level, image.getHeight() << level, null);
 		}
 		finally
 		{
@@ -889,6 +1294,11 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 				//render a bounding box around the data if the user is dragging a surface
 				renderBoundingBox(dc);
 			}
+
+			if (!dc.isPickingMode())
+			{
+				refineTextures(dc, shapes);
+			}
 		}
 	}
 
@@ -1241,6 +1651,23 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		}
 	}
 
+	/**
+	 * Texture image generated at a finer level of detail in the background.
+	 */
+	protected static class RefinedTexture
+	{
+		public final int position;
+		public final int level;
+		public final BufferedImage image;
+
+		public RefinedTexture(int position, int level, BufferedImage image)
+		{
+			this.position = position;
+			this.level = level;
+			this.image = image;
+		}
+	}
+
 	/**
 	 * {@link Comparator} used to sort {@link FastShape}s from back-to-front
 	 * (from the view eye point).
@@ -0,0 +1,479 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Out-of-core storage for the values of a volume. The volume is split into
+ * cubic bricks, which are stored contiguously in a file, and read into a
+ * bounded least-recently-used cache on demand. This allows random access to
+ * volumes that are too large to fit in memory, while reading only the bricks
+ * that are actually used.
+ * <p/>
+ * Bricks are stored in x, then y, then z order, with the values in each brick
+ * also stored in x, then y, then z order. Bricks on the maximum edges of the
+ * volume are truncated to the volume size. Values are stored as big-endian
+ * IEEE floats.
+ * <p/>
+ * This class is thread safe.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class BrickedVolume
+{
+	/**
+	 * Default number of values along each side of a brick (a 128KB brick)
+	 */
+	public static final int DEFAULT_BRICK_SIZE = 32;
+
+	/**
+	 * Default maximum size in bytes of the bricks held in memory
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long dataOffset;
+	private final int xSize;
+	private final int ySize;
+	private final int zSize;
+	private final int brickSize;
+	private final int xBricks;
+	private final int yBricks;
+	private final long[] brickOffsets;
+	private final long cacheSize;
+
+	private final Map<Integer, Brick> cache = new LinkedHashMap<Integer, Brick>(16, 0.75f, true);
+	private long cachedBytes = 0;
+	private volatile Brick lastBrick;
+
+	/**
+	 * Create a bricked volume that reads from the given channel.
+	 * 
+	 * @param channel
+	 *            Channel to read bricks from
+	 * @param dataOffset
+	 *            Position of the first brick in the channel
+	 * @param xSize
+	 *            Number of values along the x-axis
+	 * @param ySize
+	 *            Number of values along the y-axis
+	 * @param zSize
+	 *            Number of values along the z-axis
+	 * @param brickSize
+	 *            Number of values along each side of a brick
+	 * @param cacheSize
+	 *            Maximum size in bytes of the bricks held in memory; at least
+	 *            one brick is always held
+	 */
+	public BrickedVolume(FileChannel channel, long dataOffset, int xSize, int ySize, int zSize, int brickSize,
+			long cacheSize)
+	{
+		if (xSize <= 0 || ySize <= 0 || zSize <= 0 || brickSize <= 0)
+		{
+			throw new IllegalArgumentException("Volume and brick sizes must be positive");
+		}
+		this.channel = channel;
+		this.dataOffset = dataOffset;
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.zSize = zSize;
+		this.brickSize = brickSize;
+		this.cacheSize = cacheSize;
+		this.xBricks = brickCount(xSize, brickSize);
+		this.yBricks = brickCount(ySize, brickSize);
+		this.brickOffsets = calculateBrickOffsets(xSize, ySize, zSize, brickSize);
+	}
+
+	public int getXSize()
+	{
+		return xSize;
+	}
+
+	public int getYSize()
+	{
+		return ySize;
+	}
+
+	public int getZSize()
+	{
+		return zSize;
+	}
+
+	public int getBrickSize()
+	{
+		return brickSize;
+	}
+
+	/**
+	 * @return Number of bytes the bricks of this volume occupy in the channel
+	 */
+	public long getDataLength()
+	{
+		return brickOffsets[brickOffsets.length - 1];
+	}
+
+	/**
+	 * Get the value at the given coordinates, reading the brick containing it
+	 * if it isn't already cached.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return Value at (x,y,z)
+	 * @throws IndexOutOfBoundsException
+	 *             If the coordinates are outside the volume
+	 * @throws IllegalStateException
+	 *             If the brick could not be read
+	 */
+	public float getValue(int x, int y, int z)
+	{
+		if (x < 0 || y < 0 || z < 0 || x >= xSize || y >= ySize || z >= zSize)
+		{
+			throw new IndexOutOfBoundsException("(" + x + "," + y + "," + z + ") is outside the volume");
+		}
+		int bx = x / brickSize, by = y / brickSize, bz = z / brickSize;
+		Brick brick = getBrick(bx + by * xBricks + bz * xBricks * yBricks);
+		return brick.values[brick.index(x - bx * brickSize, y - by * brickSize, z - bz * brickSize)];
+	}
+
+	/**
+	 * Extract an axis-aligned slice through the volume. Each brick
+	 * intersecting the slice is only fetched once.
+	 * 
+	 * @param axis
+	 *            Axis perpendicular to the slice (0 for x, 1 for y, 2 for z)
+	 * @param position
+	 *            Coordinate along the axis at which to slice
+	 * @param values
+	 *            Array to store the slice values in; the slice is stored with
+	 *            the lower of the two other axes incrementing first (eg, for a
+	 *            y slice, <code>values[x + z * xSize]</code>)
+	 */
+	public void getSlice(int axis, int position, float[] values)
+	{
+		int uSize = axis == 0 ? ySize : xSize;
+		int vSize = axis == 2 ? ySize : zSize;
+		int axisSize = axis == 0 ? xSize : axis == 1 ? ySize : zSize;
+		if (axis < 0 || axis > 2 || position < 0 || position >= axisSize)
+		{
+			throw new IndexOutOfBoundsException("Slice " + position + " on axis " + axis + " is outside the volume");
+		}
+		if (values.length < uSize * vSize)
+		{
+			throw new IllegalArgumentException("Values array is too small for slice");
+		}
+
+		int b = position / brickSize;
+		int local = position - b * brickSize;
+		int uBricks = brickCount(uSize, brickSize);
+		int vBricks = brickCount(vSize, brickSize);
+		for (int bv = 0; bv < vBricks; bv++)
+		{
+			for (int bu = 0; bu < uBricks; bu++)
+			{
+				int bx = axis == 0 ? b : bu;
+				int by = axis == 0 ? bu : axis == 1 ? b : bv;
+				int bz = axis == 2 ? b : bv;
+				Brick brick = getBrick(bx + by * xBricks + bz * xBricks * yBricks);
+
+				int uStart = bu * brickSize, vStart = bv * brickSize;
+				int uEnd = Math.min(uSize, uStart + brickSize), vEnd = Math.min(vSize, vStart + brickSize);
+				for (int v = vStart; v < vEnd; v++)
+				{
+					for (int u = uStart; u < uEnd; u++)
+					{
+						int lu = u - uStart, lv = v - vStart;
+						int index =
+								axis == 0 ? brick.index(local, lu, lv) : axis == 1 ? brick.index(lu, local, lv) : brick
+										.index(lu, lv, local);
+						values[u + v * uSize] = brick.values[index];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Number of bricks currently held in memory
+	 */
+	public synchronized int getCachedBrickCount()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * Remove all the bricks from the memory cache.
+	 */
+	public synchronized void clearCache()
+	{
+		cache.clear();
+		cachedBytes = 0;
+		lastBrick = null;
+	}
+
+	protected Brick getBrick(int brickIndex)
+	{
+		//most accesses are to the same brick as the previous access, so avoid the lock
+		Brick brick = lastBrick;
+		if (brick != null && brick.brickIndex == brickIndex)
+		{
+			return brick;
+		}
+
+		synchronized (this)
+		{
+			brick = cache.get(brickIndex);
+			if (brick == null)
+			{
+				try
+				{
+					brick = readBrick(brickIndex);
+				}
+				catch (IOException e)
+				{
+					throw new IllegalStateException("Error reading volume brick " + brickIndex, e);
+				}
+				cache.put(brickIndex, brick);
+				cachedBytes += brick.values.length * 4L;
+				trimCache();
+			}
+			lastBrick = brick;
+			return brick;
+		}
+	}
+
+	private void trimCache()
+	{
+		Iterator<Brick> iterator = cache.values().iterator();
+		while (cachedBytes > cacheSize && cache.size() > 1 && iterator.hasNext())
+		{
+			Brick eldest = iterator.next();
+			cachedBytes -= eldest.values.length * 4L;
+			iterator.remove();
+		}
+	}
+
+	private Brick readBrick(int brickIndex) throws IOException
+	{
+		int bx = brickIndex % xBricks;
+		int by = (brickIndex / xBricks) % yBricks;
+		int bz = brickIndex / (xBricks * yBricks);
+		Brick brick =
+				new Brick(brickIndex, brickExtent(bx, xSize, brickSize), brickExtent(by, ySize, brickSize),
+						brickExtent(bz, zSize, brickSize));
+
+		ByteBuffer buffer = ByteBuffer.allocate(brick.values.length * 4);
+		long position = dataOffset + brickOffsets[brickIndex];
+		while (buffer.hasRemaining())
+		{
+			//positional reads don't modify the channel's position, so are safe to use concurrently
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0)
+			{
+				throw new IOException("Unexpected end of volume file");
+			}
+		}
+		buffer.flip();
+		buffer.asFloatBuffer().get(brick.values);
+		return brick;
+	}
+
+	/**
+	 * Write a z-slice of values into the bricks of this volume, using
+	 * positional writes. Slices can be written in any order, so a volume can be
+	 * converted one slice at a time from a source that is too large to fit in
+	 * memory. The channel must be writable. Clears the brick cache.
+	 * 
+	 * @param z
+	 *            Z coordinate of the slice
+	 * @param values
+	 *            Slice values, with x incrementing first (
+	 *            <code>values[x + y * xSize]</code>)
+	 * @throws IOException
+	 */
+	public void writeSlice(int z, float[] values) throws IOException
+	{
+		if (z < 0 || z >= zSize)
+		{
+			throw new IndexOutOfBoundsException("Slice " + z + " is outside the volume");
+		}
+		if (values.length < xSize * ySize)
+		{
+			throw new IllegalArgumentException("Values array is too small for slice");
+		}
+
+		int bz = z / brickSize;
+		int localZ = z - bz * brickSize;
+		ByteBuffer buffer = ByteBuffer.allocate(brickSize * brickSize * 4);
+		for (int by = 0; by < yBricks; by++)
+		{
+			for (int bx = 0; bx < xBricks; bx++)
+			{
+				int xs = bx * brickSize, ys = by * brickSize;
+				int width = brickExtent(bx, xSize, brickSize);
+				int height = brickExtent(by, ySize, brickSize);
+				buffer.clear();
+				FloatBuffer floats = buffer.asFloatBuffer();
+				for (int y = ys; y < ys + height; y++)
+				{
+					floats.put(values, xs + y * xSize, width);
+				}
+				buffer.limit(width * height * 4);
+
+				int brickIndex = bx + by * xBricks + bz * xBricks * yBricks;
+				long position = dataOffset + brickOffsets[brickIndex] + (long) localZ * width * height * 4;
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer, position + buffer.position());
+				}
+			}
+		}
+		clearCache();
+	}
+
+	/**
+	 * Write the values of a volume to the given channel in bricked form,
+	 * starting at the channel's current position.
+	 * 
+	 * @param channel
+	 *            Channel to write to
+	 * @param xSize
+	 *            Number of values along the x-axis
+	 * @param ySize
+	 *            Number of values along the y-axis
+	 * @param zSize
+	 *            Number of values along the z-axis
+	 * @param brickSize
+	 *            Number of values along each side of a brick
+	 * @param source
+	 *            Source of the volume's values
+	 * @throws IOException
+	 */
+	public static void write(FileChannel channel, int xSize, int ySize, int zSize, int brickSize, ValueSource source)
+			throws IOException
+	{
+		int xBricks = brickCount(xSize, brickSize);
+		int yBricks = brickCount(ySize, brickSize);
+		int zBricks = brickCount(zSize, brickSize);
+		ByteBuffer buffer = ByteBuffer.allocate(brickSize * brickSize * brickSize * 4);
+		for (int bz = 0; bz < zBricks; bz++)
+		{
+			for (int by = 0; by < yBricks; by++)
+			{
+				for (int bx = 0; bx < xBricks; bx++)
+				{
+					buffer.clear();
+					FloatBuffer floats = buffer.asFloatBuffer();
+					int xs = bx * brickSize, ys = by * brickSize, zs = bz * brickSize;
+					int xe = Math.min(xSize, xs + brickSize), ye = Math.min(ySize, ys + brickSize), ze =
+							Math.min(zSize, zs + brickSize);
+					for (int z = zs; z < ze; z++)
+					{
+						for (int y = ys; y < ye; y++)
+						{
+							for (int x = xs; x < xe; x++)
+							{
+								floats.put(source.getValue(x, y, z));
+							}
+						}
+					}
+					buffer.limit(floats.position() * 4);
+					while (buffer.hasRemaining())
+					{
+						channel.write(buffer);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the byte offset of each brick from the start of the brick
+	 * data. The last element is the total length of the brick data.
+	 */
+	static long[] calculateBrickOffsets(int xSize, int ySize, int zSize, int brickSize)
+	{
+		int xBricks = brickCount(xSize, brickSize);
+		int yBricks = brickCount(ySize, brickSize);
+		int zBricks = brickCount(zSize, brickSize);
+		long[] offsets = new long[xBricks * yBricks * zBricks + 1];
+		int i = 0;
+		for (int bz = 0; bz < zBricks; bz++)
+		{
+			long depth = brickExtent(bz, zSize, brickSize);
+			for (int by = 0; by < yBricks; by++)
+			{
+				long height = brickExtent(by, ySize, brickSize);
+				for (int bx = 0; bx < xBricks; bx++)
+				{
+					long width = brickExtent(bx, xSize, brickSize);
+					offsets[i + 1] = offsets[i] + width * height * depth * 4L;
+					i++;
+				}
+			}
+		}
+		return offsets;
+	}
+
+	private static int brickCount(int size, int brickSize)
+	{
+		return (size + brickSize - 1) / brickSize;
+	}
+
+	private static int brickExtent(int brick, int size, int brickSize)
+	{
+		return Math.min(brickSize, size - brick * brickSize);
+	}
+
+	/**
+	 * Source of values to write to a bricked volume.
+	 */
+	public static interface ValueSource
+	{
+		float getValue(int x, int y, int z);
+	}
+
+	/**
+	 * A brick of volume values held in memory.
+	 */
+	protected static class Brick
+	{
+		public final int brickIndex;
+		public final int width;
+		public final int height;
+		public final float[] values;
+
+		public Brick(int brickIndex, int width, int height, int depth)
+		{
+			this.brickIndex = brickIndex;
+			this.width = width;
+			this.height = height;
+			this.values = new float[width * height * depth];
+		}
+
+		public int index(int x, int y, int z)
+		{
+			return x + y * width + z * width * height;
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.Channels;
+
+import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.PositionList;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
+
+/**
+ * {@link VolumeDataProvider} which pages its data from a bricked volume file
+ * on demand, rather than loading the entire volume into memory. This allows
+ * volumes that are larger than the available memory to be displayed. Only the
+ * header and the positions of the top slice are read when the data is loaded;
+ * the values are read brick by brick as they are requested, and held in a
+ * bounded cache (see {@link BrickedVolume}).
+ * <p>
+ * The file stores the volume's values as they are returned by
+ * {@link VolumeDataProvider#getValue(int, int, int)}, so any reversal or
+ * cell-centred clamping of the original data has already been applied.
+ * <p>
+ * Any {@link VolumeDataProvider} instance can be converted to a file which this
+ * class supports, using the
+ * {@link BrickedVolumeDataProvider#saveVolumeDataProviderToBrickedFile(VolumeDataProvider, File)}
+ * function. This requires the provider to have loaded its data, so is limited
+ * to volumes that fit in memory. Binary GOCAD SGrids of any size can be
+ * converted by streaming their property file one slice at a time, using the
+ * {@link BrickedVolumeDataProvider#saveSGridToBrickedFile(URL, VolumeLayer, File)}
+ * function. The file must be available locally, as bricks are read from it
+ * using random access.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class BrickedVolumeDataProvider extends AbstractVolumeDataProvider
+{
+	private static final int MAGIC = 0x42564F4C; //BVOL
+	private static final int VERSION = 1;
+	private static final int DATA_ALIGNMENT = 4096;
+
+	private long cacheSize = BrickedVolume.DEFAULT_CACHE_SIZE;
+	private RandomAccessFile file;
+	private volatile BrickedVolume volume;
+
+	/**
+	 * @return Maximum size in bytes of the volume bricks held in memory
+	 */
+	public long getCacheSize()
+	{
+		return cacheSize;
+	}
+
+	/**
+	 * Set the maximum size in bytes of the volume bricks held in memory. Only
+	 * takes effect for data loaded after this is called.
+	 * 
+	 * @param cacheSize
+	 */
+	public void setCacheSize(long cacheSize)
+	{
+		this.cacheSize = cacheSize;
+	}
+
+	@Override
+	protected boolean doLoadData(URL url, VolumeLayer layer)
+	{
+		try
+		{
+			File volumeFile = URLUtil.urlToFile(url);
+			if (volumeFile == null)
+			{
+				throw new IOException("Bricked volume data must be read from a local file: " + url);
+			}
+
+			int brickSize;
+			long dataOffset;
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(volumeFile)));
+			try
+			{
+				if (dis.readInt() != MAGIC)
+				{
+					throw new IOException("Not a bricked volume file: " + volumeFile);
+				}
+				int version = dis.readInt();
+				if (version != VERSION)
+				{
+					throw new IOException("Unsupported bricked volume file version: " + version);
+				}
+				xSize = dis.readInt();
+				ySize = dis.readInt();
+				zSize = dis.readInt();
+				brickSize = dis.readInt();
+				cellCentred = dis.readBoolean();
+				noDataValue = dis.readFloat();
+				minValue = dis.readFloat();
+				maxValue = dis.readFloat();
+				top = dis.readDouble();
+				depth = dis.readDouble();
+				double minLatitude = dis.readDouble();
+				double maxLatitude = dis.readDouble();
+				double minLongitude = dis.readDouble();
+				double maxLongitude = dis.readDouble();
+				bounds = new Bounds(Position.fromDegrees(minLatitude, minLongitude, top - depth),
+						Position.fromDegrees(maxLatitude, maxLongitude, top));
+
+				PositionList positionList = new PositionList(xSize * ySize);
+				for (int i = 0; i < xSize * ySize; i++)
+				{
+					double latitude = dis.readDouble();
+					double longitude = dis.readDouble();
+					positionList.add(latitude, longitude, dis.readDouble());
+				}
+				positions = positionList;
+				dataOffset = alignedDataOffset(xSize, ySize);
+			}
+			finally
+			{
+				dis.close();
+			}
+
+			RandomAccessFile raf = new RandomAccessFile(volumeFile, "r");
+			BrickedVolume brickedVolume =
+					new BrickedVolume(raf.getChannel(), dataOffset, xSize, ySize, zSize, brickSize, cacheSize);
+			if (raf.length() < dataOffset + brickedVolume.getDataLength())
+			{
+				raf.close();
+				throw new IOException("Bricked volume file is truncated: " + volumeFile);
+			}
+			close();
+			file = raf;
+			volume = brickedVolume;
+
+			layer.dataAvailable(this);
+			return true;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public float getValue(int x, int y, int z)
+	{
+		//background readers may still be running when the provider is closed
+		BrickedVolume volume = this.volume;
+		return volume == null ? noDataValue : volume.getValue(x, y, z);
+	}
+
+	@Override
+	public void getSlice(int axis, int position, float[] values)
+	{
+		BrickedVolume volume = this.volume;
+		if (volume == null)
+		{
+			super.getSlice(axis, position, values);
+			return;
+		}
+		volume.getSlice(axis, position, values);
+	}
+
+	/**
+	 * @return The {@link BrickedVolume} that this provider reads its values
+	 *         from, or null if the data has not been loaded
+	 */
+	public BrickedVolume getBrickedVolume()
+	{
+		return volume;
+	}
+
+	/**
+	 * Close the file that the volume data is read from. Values read after this
+	 * is called are the no data value, until the data is reloaded.
+	 */
+	public void close()
+	{
+		volume = null;
+		if (file != null)
+		{
+			try
+			{
+				file.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			file = null;
+		}
+	}
+
+	/**
+	 * Save the given {@link VolumeDataProvider} to a bricked volume file, using
+	 * the default brick size. Values are read from the provider in brick order,
+	 * so the provider only needs to support random access to its values;
+	 * however the existing providers hold their entire volume in memory, so
+	 * this is only suitable for volumes that fit in memory (see
+	 * {@link #saveSGridToBrickedFile(URL, VolumeLayer, File)} for larger
+	 * volumes).
+	 * 
+	 * @param provider
+	 *            {@link VolumeDataProvider} to write to a file.
+	 * @param file
+	 *            {@link File} to write to.
+	 */
+	public static void saveVolumeDataProviderToBrickedFile(VolumeDataProvider provider, File file)
+	{
+		saveVolumeDataProviderToBrickedFile(provider, file, BrickedVolume.DEFAULT_BRICK_SIZE);
+	}
+
+	/**
+	 * Save the given {@link VolumeDataProvider} to a bricked volume file.
+	 * 
+	 * @param provider
+	 *            {@link VolumeDataProvider} to write to a file.
+	 * @param file
+	 *            {@link File} to write to.
+	 * @param brickSize
+	 *            Number of values along each side of a brick
+	 */
+	public static void saveVolumeDataProviderToBrickedFile(final VolumeDataProvider provider, File file,
+			int brickSize)
+	{
+		try
+		{
+			FileOutputStream fos = new FileOutputStream(file);
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			try
+			{
+				writeHeader(dos, provider, brickSize);
+				long dataOffset = alignedDataOffset(provider.getXSize(), provider.getYSize());
+				while (dos.size() < dataOffset)
+				{
+					dos.writeByte(0);
+				}
+				dos.flush();
+
+				BrickedVolume.write(fos.getChannel(), provider.getXSize(), provider.getYSize(), provider.getZSize(),
+						brickSize, new BrickedVolume.ValueSource()
+						{
+							@Override
+							public float getValue(int x, int y, int z)
+							{
+								return provider.getValue(x, y, z);
+							}
+						});
+			}
+			finally
+			{
+				dos.close();
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Convert a binary GOCAD SGrid to a bricked volume file, using the default
+	 * brick size. The SGrid's property values are streamed from its property
+	 * file one slice at a time, so SGrids larger than the available memory can
+	 * be converted.
+	 * 
+	 * @param sgridUrl
+	 *            URL of the SGrid (.sg) file; must be a local file
+	 * @param layer
+	 *            Layer providing the coordinate transformation and painted
+	 *            variable, as when loading the SGrid with a
+	 *            {@link SGridVolumeDataProvider}
+	 * @param file
+	 *            {@link File} to write to.
+	 */
+	public static void saveSGridToBrickedFile(URL sgridUrl, VolumeLayer layer, File file)
+	{
+		saveSGridToBrickedFile(sgridUrl, layer, file, BrickedVolume.DEFAULT_BRICK_SIZE);
+	}
+
+	/**
+	 * Convert a binary GOCAD SGrid to a bricked volume file.
+	 * 
+	 * @param sgridUrl
+	 *            URL of the SGrid (.sg) file; must be a local file
+	 * @param layer
+	 *            Layer providing the coordinate transformation and painted
+	 *            variable
+	 * @param file
+	 *            {@link File} to write to.
+	 * @param brickSize
+	 *            Number of values along each side of a brick
+	 * @see #saveSGridToBrickedFile(URL, VolumeLayer, File)
+	 */
+	public static void saveSGridToBrickedFile(URL sgridUrl, VolumeLayer layer, File file, int brickSize)
+	{
+		try
+		{
+			SGridVolumeDataProvider sgrid = new SGridVolumeDataProvider();
+			sgrid.loadWithoutValues(sgridUrl, layer);
+
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try
+			{
+				raf.setLength(0);
+				long dataOffset = alignedDataOffset(sgrid.getXSize(), sgrid.getYSize());
+				BrickedVolume volume =
+						new BrickedVolume(raf.getChannel(), dataOffset, sgrid.getXSize(), sgrid.getYSize(),
+								sgrid.getZSize(), brickSize, 0);
+				sgrid.writeValues(volume);
+
+				//the header contains the minimum and maximum values, so is written last
+				raf.seek(0);
+				DataOutputStream dos =
+						new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(raf.getChannel())));
+				writeHeader(dos, sgrid, brickSize);
+				dos.flush();
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the header and top slice positions of a bricked volume file.
+	 */
+	private static void writeHeader(DataOutputStream dos, VolumeDataProvider provider, int brickSize)
+			throws IOException
+	{
+		int xSize = provider.getXSize();
+		int ySize = provider.getYSize();
+		Bounds bounds = provider.getBounds();
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(xSize);
+		dos.writeInt(ySize);
+		dos.writeInt(provider.getZSize());
+		dos.writeInt(brickSize);
+		dos.writeBoolean(provider.isCellCentred());
+		dos.writeFloat(provider.getNoDataValue());
+		dos.writeFloat(provider.getMinValue());
+		dos.writeFloat(provider.getMaxValue());
+		dos.writeDouble(provider.getTop());
+		dos.writeDouble(provider.getDepth());
+		dos.writeDouble(bounds.minimum.latitude.degrees);
+		dos.writeDouble(bounds.maximum.latitude.degrees);
+		dos.writeDouble(bounds.minimum.longitude.degrees);
+		dos.writeDouble(bounds.maximum.longitude.degrees);
+		for (int y = 0; y < ySize; y++)
+		{
+			for (int x = 0; x < xSize; x++)
+			{
+				Position position = provider.getPosition(x, y);
+				dos.writeDouble(position.latitude.degrees);
+				dos.writeDouble(position.longitude.degrees);
+				dos.writeDouble(position.elevation);
+			}
+		}
+	}
+
+	/**
+	 * Calculate the offset of the brick data in the file, which follows the
+	 * header and positions, aligned to a page boundary.
+	 */
+	private static long alignedDataOffset(int xSize, int ySize)
+	{
+		long headerLength = 6 * 4 + 1 + 3 * 4 + 6 * 8 + (long) xSize * ySize * 3 * 8;
+		return (headerLength + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+	}
+}
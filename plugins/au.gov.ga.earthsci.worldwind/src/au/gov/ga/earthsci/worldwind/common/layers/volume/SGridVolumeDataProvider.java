@@ -75,6 +75,8 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 			.compile("PROP_NO_DATA_VALUE\\s+(\\d+)\\s+([\\d.\\-]+)\\s*");
 
 	private VolumeLayer layer;
+	private URL url;
+	private boolean readValues = true;
 
 	private String asciiDataFile;
 	private String pointsDataFile;
@@ -94,6 +96,8 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 	protected boolean doLoadData(URL url, VolumeLayer layer)
 	{
 		this.layer = layer;
+		this.url = url;
+		this.readValues = true;
 
 		Object source = null;
 		try
@@ -130,6 +134,135 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		return true;
 	}
 
+	/**
+	 * Load the header and positions of a binary SGrid, without reading the
+	 * painted property values into memory. The values can then be streamed
+	 * into a {@link BrickedVolume} using {@link #writeValues(BrickedVolume)}.
+	 * 
+	 * @param url
+	 *            URL of the SGrid file (must be a local file)
+	 * @param layer
+	 *            Layer providing the coordinate transformation and painted
+	 *            variable
+	 * @throws IOException
+	 */
+	void loadWithoutValues(URL url, VolumeLayer layer) throws IOException
+	{
+		this.layer = layer;
+		this.url = url;
+		this.readValues = false;
+
+		Object source = openSource(url);
+		if (source == null)
+		{
+			throw new IOException("Unable to load SGrid from URL " + url);
+		}
+		try
+		{
+			parseHeaderFile(source);
+
+			validatePaintedPropertyAvailable();
+			validateDataFileSpecified();
+			validateNonZeroDimensions();
+			if (asciiDataFile != null)
+			{
+				throw new IOException("Only binary SGrid data can be streamed");
+			}
+
+			readSGridData(source);
+
+			validateDataFileLoadedCorrectly();
+
+			correctForReversedAxes();
+		}
+		finally
+		{
+			closeSource(source);
+		}
+	}
+
+	/**
+	 * Stream the painted property values of an SGrid loaded using
+	 * {@link #loadWithoutValues(URL, VolumeLayer)} into the given volume, one
+	 * slice at a time. The values are written as they would be returned by
+	 * {@link #getValue(int, int, int)}, with reversed axes and cell-centred
+	 * clamping applied. Also calculates the minimum and maximum values.
+	 * 
+	 * @param volume
+	 *            Volume to write to, with the same dimensions as this SGrid
+	 * @throws IOException
+	 */
+	void writeValues(BrickedVolume volume) throws IOException
+	{
+		Object source = openSource(url);
+		if (source == null)
+		{
+			throw new IOException("Unable to load SGrid from URL " + url);
+		}
+		InputStream propertiesInputStream = null;
+		try
+		{
+			GocadPropertyDefinition paintedProperty = getPaintedProperty();
+			propertiesInputStream = openSGridDataStream(source, paintedProperty.getFile());
+			FloatReader propertiesReader = FloatReader.Builder.newFloatReaderForStream(propertiesInputStream)
+					.withGroupSize(1)
+					.withOffset(paintedProperty.getOffset())
+					.withFormat(FloatFormat.valueOf(paintedProperty.getType()))
+					.build();
+
+			int rawXSize = isCellCentred() ? xSize - 1 : xSize;
+			int rawYSize = isCellCentred() ? ySize - 1 : ySize;
+			int rawZSize = isCellCentred() ? zSize - 1 : zSize;
+			FloatBuffer raw = FloatBuffer.allocate(rawXSize * rawYSize);
+			float[] slice = new float[xSize * ySize];
+			minValue = Float.MAX_VALUE;
+			maxValue = -Float.MAX_VALUE;
+			for (int rawZ = 0; rawZ < rawZSize; rawZ++)
+			{
+				// Any values missing from the end of the file are NaN
+				raw.clear();
+				propertiesReader.readValues(raw);
+				while (raw.hasRemaining())
+				{
+					raw.put(Float.NaN);
+				}
+				for (int i = 0; i < raw.limit(); i++)
+				{
+					float value = raw.get(i);
+					minValue = Math.min(minValue, value);
+					maxValue = Math.max(maxValue, value);
+				}
+
+				for (int y = 0; y < ySize; y++)
+				{
+					int ry = reverseY ? ySize - y - 1 : y;
+					ry = Math.min(ry, rawYSize - 1);
+					for (int x = 0; x < xSize; x++)
+					{
+						int rx = reverseX ? xSize - x - 1 : x;
+						rx = Math.min(rx, rawXSize - 1);
+						slice[x + y * xSize] = raw.get(rx + ry * rawXSize);
+					}
+				}
+
+				volume.writeSlice(reverseZ ? zSize - rawZ - 1 : rawZ, slice);
+				if (rawZ == rawZSize - 1 && rawZSize < zSize)
+				{
+					// Cell-centred data is clamped, so the last cell also provides the last slice
+					volume.writeSlice(reverseZ ? 0 : zSize - 1, slice);
+				}
+			}
+		}
+		finally
+		{
+			if (propertiesInputStream != null)
+			{
+				propertiesInputStream.close();
+			}
+			closeSource(source);
+		}
+	}
+
 
 	/**
 	 * Load the sgrid data from the specified data file(s)
@@ -320,10 +453,12 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 				boolean newZValue = positionIndex % (xSize * ySize) == 0;
 
 				// We only care about a specific subset of points (bottom slice and first point on the top slice).
-				// All other points can be ignored
+				// All other points can be ignored, so skip straight to the first point of the next slice
 				if ((positionIndex >= xSize * ySize) && (positionIndex != xSize * ySize * (zSize - 1)) && !newZValue)
 				{
-					pointsReader.skipToNextGroup();
+					int nextSlice = Math.min(totalNumberOfPositions(), (positionIndex / (xSize * ySize) + 1) * xSize * ySize);
+					pointsReader.skipGroups(nextSlice - positionIndex);
+					positionIndex = nextSlice - 1;
 					continue;
 				}
 
@@ -380,6 +515,11 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 				}
 			}
 
+			if (!readValues)
+			{
+				return;
+			}
+
 			// Read the painted property from the nominated property file
 			GocadPropertyDefinition paintedProperty = getPaintedProperty();
 			propertiesInputStream = openSGridDataStream(source, paintedProperty.getFile());
@@ -389,15 +529,22 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 					.withFormat(FloatFormat.valueOf(paintedProperty.getType()))
 					.build();
 
-			float[] value = new float[1];
-			for (int positionIndex = 0; positionIndex < totalNumberDataPoints(); positionIndex++)
+			// Read all the values in one call; any values missing from the end of the file are NaN
+			int start = data.position();
+			FloatBuffer values = data.slice();
+			values.limit(totalNumberDataPoints());
+			propertiesReader.readValues(values);
+			while (values.hasRemaining())
 			{
-				propertiesReader.readNextValues(value);
-
-				data.put(value[0]);
+				values.put(Float.NaN);
+			}
+			data.position(start + totalNumberDataPoints());
 
-				minValue = Math.min(minValue, value[0]);
-				maxValue = Math.max(maxValue, value[0]);
+			for (int i = start; i < data.position(); i++)
+			{
+				float value = data.get(i);
+				minValue = Math.min(minValue, value);
+				maxValue = Math.max(maxValue, value);
 			}
 		}
 		finally
@@ -441,7 +588,7 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 	{
 		bounds = null;
 		positions = new ArrayList<Position>(xSize * ySize);
-		data = FloatBuffer.allocate(totalNumberDataPoints());
+		data = readValues ? FloatBuffer.allocate(totalNumberDataPoints()) : null;
 		top = 0;
 		minValue = Float.MAX_VALUE;
 		maxValue = -Float.MAX_VALUE;
@@ -554,7 +701,8 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 			File data = new File(((File) source).getParent(), file);
 			if (data.exists())
 			{
-				return new BufferedInputStream(new FileInputStream(data));
+				//not buffered, as the FloatReader buffers internally and can seek within the file's channel
+				return new FileInputStream(data);
 			}
 		}
 		throw new IOException("Data file '" + file + "' not found");
@@ -109,6 +109,22 @@ public interface VolumeDataProvider extends DataProvider<VolumeLayer>
 	 */
 	float getValue(int x, int y, int z);
 
+	/**
+	 * Read an axis-aligned slice of the volume data. This is equivalent to
+	 * calling {@link #getValue(int, int, int)} for each point in the slice, but
+	 * allows providers that page their data to read each page once.
+	 * 
+	 * @param axis
+	 *            Axis perpendicular to the slice (0 for x, 1 for y, 2 for z)
+	 * @param position
+	 *            Coordinate along the axis at which to slice
+	 * @param values
+	 *            Array to store the slice values in; the slice is stored with
+	 *            the lower of the two other axes incrementing first (eg, for a
+	 *            y slice, <code>values[x + z * xSize]</code>)
+	 */
+	void getSlice(int axis, int position, float[] values);
+
 	/**
 	 * Returns whether the data in the volume is cell-centred (i.e. data stored
 	 * per-cell) or vertex-centred (i.e. data stored per-vertex).
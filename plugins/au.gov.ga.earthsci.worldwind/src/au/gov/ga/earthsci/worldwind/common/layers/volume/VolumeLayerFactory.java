@@ -116,6 +116,10 @@ public class VolumeLayerFactory
 		{
 			params.setValue(AVKeyMore.DATA_LAYER_PROVIDER, new ArrayWithPositionsVolumeDataProvider());
 		}
+		else if ("Bricked".equalsIgnoreCase(format))
+		{
+			params.setValue(AVKeyMore.DATA_LAYER_PROVIDER, new BrickedVolumeDataProvider());
+		}
 		else
 		{
 			throw new IllegalArgumentException("Could not find volume data provider for DataFormat: " + format);
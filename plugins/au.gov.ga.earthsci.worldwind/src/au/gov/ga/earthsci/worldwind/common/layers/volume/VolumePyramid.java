@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+/**
+ * Multi-resolution summary of a volume, used to generate slice textures at a
+ * reduced level of detail without reading every value in the slice. Each level
+ * halves the resolution of the previous along every axis; a cell at level
+ * <code>n</code> summarises the minimum, maximum and mean of the
+ * <code>2<sup>n</sup></code> cube of values it covers. Values equal to the
+ * volume's no-data value (and NaNs) are excluded from the summary; cells
+ * containing only no-data values are themselves no-data.
+ * <p/>
+ * The finer levels of a large volume would use as much memory as the volume
+ * itself, so only levels whose cells fit within a memory budget are stored.
+ * The finest stored level is calculated directly from the volume, and the
+ * coarser levels from the level below them.
+ * <p/>
+ * The pyramid is built by calling {@link #build()}, usually from a background
+ * thread. Each level is made available as soon as it has been built (see
+ * {@link #isLevelAvailable(int)}). As the coarser levels are calculated from
+ * the finest stored level, that level is available first, and the remaining
+ * levels follow shortly after.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class VolumePyramid
+{
+	/**
+	 * Default maximum size in bytes of the stored pyramid levels
+	 */
+	public static final long DEFAULT_MEMORY_SIZE = 64L * 1024 * 1024;
+
+	/**
+	 * Number of bytes used to store each cell (min, max, mean and count)
+	 */
+	private static final int BYTES_PER_CELL = 16;
+
+	private final BrickedVolume.ValueSource source;
+	private final int xSize;
+	private final int ySize;
+	private final int zSize;
+	private final float noDataValue;
+	private final int levelCount;
+	private final int firstLevel;
+	private final Level[] levels;
+
+	private volatile int builtLevel = -1;
+	private volatile boolean complete = false;
+	private volatile boolean cancelled = false;
+	private volatile float progress = 0;
+
+	/**
+	 * Create a pyramid for a volume. The pyramid is not built until
+	 * {@link #build()} is called.
+	 * 
+	 * @param source
+	 *            Source of the volume's values
+	 * @param xSize
+	 *            Number of values along the x-axis
+	 * @param ySize
+	 *            Number of values along the y-axis
+	 * @param zSize
+	 *            Number of values along the z-axis
+	 * @param noDataValue
+	 *            Value that represents no data
+	 * @param memorySize
+	 *            Maximum size in bytes of the stored levels
+	 */
+	public VolumePyramid(BrickedVolume.ValueSource source, int xSize, int ySize, int zSize, float noDataValue,
+			long memorySize)
+	{
+		this.source = source;
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.zSize = zSize;
+		this.noDataValue = noDataValue;
+
+		int maxSize = Math.max(xSize, Math.max(ySize, zSize));
+		int count = 1;
+		while ((maxSize - 1) >> count > 0)
+		{
+			count++;
+		}
+		this.levelCount = count + 1;
+
+		//find the finest level that fits (with all coarser levels) within the memory budget
+		long cells = 0;
+		int first = levelCount;
+		for (int level = levelCount - 1; level >= 1; level--)
+		{
+			cells += cellCount(level);
+			if (cells * BYTES_PER_CELL > memorySize)
+			{
+				break;
+			}
+			first = level;
+		}
+		this.firstLevel = first;
+		this.levels = new Level[levelCount];
+	}
+
+	/**
+	 * @return Number of levels in the pyramid, including the full resolution
+	 *         level 0 (which is never stored); the last level has a single cell
+	 */
+	public int getLevelCount()
+	{
+		return levelCount;
+	}
+
+	/**
+	 * @return The finest level stored by this pyramid, or
+	 *         {@link #getLevelCount()} if no levels fit in the memory budget
+	 */
+	public int getFirstLevel()
+	{
+		return firstLevel;
+	}
+
+	/**
+	 * Calculate the finest level at which a side of the given length has no
+	 * more than the given number of cells.
+	 * 
+	 * @param size
+	 *            Number of values along the side at full resolution
+	 * @param maxCells
+	 *            Maximum number of cells along the side
+	 * @return Level of detail
+	 */
+	public static int getLevelForSize(int size, int maxCells)
+	{
+		int level = 0;
+		while (levelSize(size, level) > maxCells)
+		{
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Get the level that will be sampled for a requested level. Levels finer
+	 * than the finest stored level are not stored, so the finest stored level
+	 * is returned instead; if no levels are stored, the requested level is
+	 * returned unchanged.
+	 * 
+	 * @param level
+	 *            Requested level
+	 * @return Level that is stored by this pyramid, at or coarser than the
+	 *         requested level
+	 */
+	public int getStoredLevel(int level)
+	{
+		if (firstLevel >= levelCount)
+		{
+			return level;
+		}
+		return Math.min(Math.max(level, firstLevel), levelCount - 1);
+	}
+
+	/**
+	 * @param level
+	 * @return Whether the given level has been built and can be sampled
+	 */
+	public boolean isLevelAvailable(int level)
+	{
+		return level >= firstLevel && level <= builtLevel;
+	}
+
+	/**
+	 * @return Whether the pyramid has been completely built
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * @return Fraction of the pyramid that has been built (0..1)
+	 */
+	public float getProgress()
+	{
+		return progress;
+	}
+
+	/**
+	 * Cancel a build in progress. The build method will return as soon as
+	 * possible, leaving the pyramid incomplete.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * Build the stored levels of the pyramid. Reads every value in the volume
+	 * once, in blocks of neighbouring values, so this can take a significant
+	 * amount of time for large volumes.
+	 */
+	public void build()
+	{
+		if (firstLevel >= levelCount)
+		{
+			return;
+		}
+
+		Level first = new Level(firstLevel);
+		int blockSize = 1 << firstLevel;
+		for (int cz = 0; cz < first.zSize; cz++)
+		{
+			for (int cy = 0; cy < first.ySize; cy++)
+			{
+				for (int cx = 0; cx < first.xSize; cx++)
+				{
+					if (cancelled)
+					{
+						return;
+					}
+					summariseBlock(first, cx, cy, cz, blockSize);
+				}
+			}
+			progress = (cz + 1) / (float) first.zSize;
+		}
+		levels[firstLevel] = first;
+		//publish each level once it is built; the volatile write makes the level visible to readers
+		builtLevel = firstLevel;
+
+		for (int level = firstLevel + 1; level < levelCount; level++)
+		{
+			if (cancelled)
+			{
+				return;
+			}
+			levels[level] = downsample(levels[level - 1]);
+			builtLevel = level;
+		}
+		progress = 1;
+		complete = true;
+	}
+
+	/**
+	 * Get the mean of the values covered by a cell.
+	 * 
+	 * @param level
+	 *            Available level (see {@link #isLevelAvailable(int)})
+	 * @param x
+	 *            Full resolution x coordinate
+	 * @param y
+	 *            Full resolution y coordinate
+	 * @param z
+	 *            Full resolution z coordinate
+	 * @return Mean value of the cell containing (x,y,z) at the given level, or
+	 *         the no-data value if the cell contains no data
+	 */
+	public float getMean(int level, int x, int y, int z)
+	{
+		Level l = levels[level];
+		return l.mean[l.index(x >> level, y >> level, z >> level)];
+	}
+
+	/**
+	 * @see #getMean(int, int, int, int)
+	 */
+	public float getMinimum(int level, int x, int y, int z)
+	{
+		Level l = levels[level];
+		return l.min[l.index(x >> level, y >> level, z >> level)];
+	}
+
+	/**
+	 * @see #getMean(int, int, int, int)
+	 */
+	public float getMaximum(int level, int x, int y, int z)
+	{
+		Level l = levels[level];
+		return l.max[l.index(x >> level, y >> level, z >> level)];
+	}
+
+	private void summariseBlock(Level level, int cx, int cy, int cz, int blockSize)
+	{
+		int xs = cx * blockSize, ys = cy * blockSize, zs = cz * blockSize;
+		int xe = Math.min(xSize, xs + blockSize), ye = Math.min(ySize, ys + blockSize), ze =
+				Math.min(zSize, zs + blockSize);
+		float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+		double sum = 0;
+		int count = 0;
+		for (int z = zs; z < ze; z++)
+		{
+			for (int y = ys; y < ye; y++)
+			{
+				for (int x = xs; x < xe; x++)
+				{
+					float value = source.getValue(x, y, z);
+					if (value == noDataValue || Float.isNaN(value))
+					{
+						continue;
+					}
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+					sum += value;
+					count++;
+				}
+			}
+		}
+		level.set(level.index(cx, cy, cz), min, max, sum, count);
+	}
+
+	private Level downsample(Level child)
+	{
+		Level parent = new Level(child.level + 1);
+		for (int cz = 0; cz < parent.zSize; cz++)
+		{
+			for (int cy = 0; cy < parent.ySize; cy++)
+			{
+				for (int cx = 0; cx < parent.xSize; cx++)
+				{
+					float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+					double sum = 0;
+					int count = 0;
+					for (int z = cz * 2; z < Math.min(child.zSize, cz * 2 + 2); z++)
+					{
+						for (int y = cy * 2; y < Math.min(child.ySize, cy * 2 + 2); y++)
+						{
+							for (int x = cx * 2; x < Math.min(child.xSize, cx * 2 + 2); x++)
+							{
+								int i = child.index(x, y, z);
+								int c = child.count[i];
+								if (c > 0)
+								{
+									min = Math.min(min, child.min[i]);
+									max = Math.max(max, child.max[i]);
+									sum += (double) child.mean[i] * c;
+									count += c;
+								}
+							}
+						}
+					}
+					parent.set(parent.index(cx, cy, cz), min, max, sum, count);
+				}
+			}
+		}
+		return parent;
+	}
+
+	private long cellCount(int level)
+	{
+		return (long) levelSize(xSize, level) * levelSize(ySize, level) * levelSize(zSize, level);
+	}
+
+	private static int levelSize(int size, int level)
+	{
+		return ((size - 1) >> level) + 1;
+	}
+
+	/**
+	 * Summary values for a single stored level.
+	 */
+	private class Level
+	{
+		public final int level;
+		public final int xSize;
+		public final int ySize;
+		public final int zSize;
+		public final float[] min;
+		public final float[] max;
+		public final float[] mean;
+		public final int[] count;
+
+		public Level(int level)
+		{
+			this.level = level;
+			this.xSize = levelSize(VolumePyramid.this.xSize, level);
+			this.ySize = levelSize(VolumePyramid.this.ySize, level);
+			this.zSize = levelSize(VolumePyramid.this.zSize, level);
+			int cells = xSize * ySize * zSize;
+			this.min = new float[cells];
+			this.max = new float[cells];
+			this.mean = new float[cells];
+			this.count = new int[cells];
+		}
+
+		public int index(int x, int y, int z)
+		{
+			return x + y * xSize + z * xSize * ySize;
+		}
+
+		public void set(int index, float min, float max, double sum, int count)
+		{
+			this.count[index] = count;
+			if (count == 0)
+			{
+				this.min[index] = this.max[index] = this.mean[index] = noDataValue;
+			}
+			else
+			{
+				this.min[index] = min;
+				this.max[index] = max;
+				this.mean[index] = (float) (sum / count);
+			}
+		}
+	}
+}
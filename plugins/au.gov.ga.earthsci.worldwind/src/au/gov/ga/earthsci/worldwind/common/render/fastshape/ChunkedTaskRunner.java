@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Helper class for running a task over a large range of elements in parallel.
+ * The range is split into fixed size chunks, which are claimed one at a time
+ * by the pool threads and the calling thread until none remain, so threads
+ * that finish early take over the remaining work.
+ * <p/>
+ * The calling thread always participates, so a chunked task will complete
+ * even if all the pool threads are busy with other tasks.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ChunkedTaskRunner
+{
+	private final ExecutorService executor;
+	private final int threadCount;
+
+	public ChunkedTaskRunner(String threadName)
+	{
+		this(threadName, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ChunkedTaskRunner(String threadName, int threadCount)
+	{
+		this.threadCount = Math.max(1, threadCount);
+		this.executor = Executors.newFixedThreadPool(this.threadCount, new DaemonThreadFactory(threadName));
+	}
+
+	/**
+	 * @return Maximum number of threads (including the calling thread) that
+	 *         will run a chunked task concurrently
+	 */
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	/**
+	 * Calculate the number of chunks a range of elements will be split into.
+	 * 
+	 * @param count
+	 *            Number of elements
+	 * @param chunkSize
+	 *            Maximum number of elements in each chunk
+	 * @return Number of chunks
+	 */
+	public static int getChunkCount(int count, int chunkSize)
+	{
+		return count <= 0 ? 0 : (count + chunkSize - 1) / chunkSize;
+	}
+
+	/**
+	 * Run the given task over the elements in the range [0, count), and wait
+	 * for it to complete. If any chunk throws an exception, the remaining
+	 * chunks are skipped and the exception is rethrown in the calling thread.
+	 * 
+	 * @param count
+	 *            Number of elements
+	 * @param chunkSize
+	 *            Maximum number of elements in each chunk
+	 * @param task
+	 *            Task to run for each chunk
+	 * @param listener
+	 *            Listener notified as chunks complete (can be null)
+	 */
+	public void run(int count, int chunkSize, ChunkTask task, ProgressListener listener)
+	{
+		if (chunkSize <= 0)
+		{
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		int chunkCount = getChunkCount(count, chunkSize);
+		if (chunkCount == 0)
+		{
+			return;
+		}
+
+		Job job = new Job(count, chunkSize, chunkCount, task, listener);
+		int helpers = Math.min(threadCount, chunkCount) - 1;
+		for (int i = 0; i < helpers; i++)
+		{
+			executor.execute(job);
+		}
+		job.run();
+		job.await();
+	}
+
+	/**
+	 * A task that is run for each chunk of a range.
+	 */
+	public static interface ChunkTask
+	{
+		/**
+		 * Process the elements in the range [start, end). Called concurrently
+		 * from multiple threads, each with a different chunk.
+		 * 
+		 * @param chunk
+		 *            Index of the chunk
+		 * @param start
+		 *            First element in the chunk (inclusive)
+		 * @param end
+		 *            Last element in the chunk (exclusive)
+		 */
+		void run(int chunk, int start, int end);
+	}
+
+	/**
+	 * Listener notified as the chunks of a task complete. May be called
+	 * concurrently from multiple threads.
+	 */
+	public static interface ProgressListener
+	{
+		void progressChanged(int completedChunks, int chunkCount);
+	}
+
+	/**
+	 * Runnable shared by every thread working on a single chunked task.
+	 */
+	private static class Job implements Runnable
+	{
+		private final int count;
+		private final int chunkSize;
+		private final int chunkCount;
+		private final ChunkTask task;
+		private final ProgressListener listener;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final AtomicInteger completedChunks = new AtomicInteger();
+		private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		private final CountDownLatch latch;
+
+		public Job(int count, int chunkSize, int chunkCount, ChunkTask task, ProgressListener listener)
+		{
+			this.count = count;
+			this.chunkSize = chunkSize;
+			this.chunkCount = chunkCount;
+			this.task = task;
+			this.listener = listener;
+			this.latch = new CountDownLatch(chunkCount);
+		}
+
+		@Override
+		public void run()
+		{
+			int chunk;
+			while ((chunk = nextChunk.getAndIncrement()) < chunkCount)
+			{
+				try
+				{
+					if (error.get() == null)
+					{
+						int start = chunk * chunkSize;
+						int end = Math.min(count, start + chunkSize);
+						task.run(chunk, start, end);
+						if (listener != null)
+						{
+							listener.progressChanged(completedChunks.incrementAndGet(), chunkCount);
+						}
+					}
+				}
+				catch (Throwable t)
+				{
+					error.compareAndSet(null, t);
+				}
+				finally
+				{
+					latch.countDown();
+				}
+			}
+		}
+
+		public void await()
+		{
+			boolean interrupted = false;
+			while (true)
+			{
+				try
+				{
+					latch.await();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			Throwable t = error.get();
+			if (t instanceof RuntimeException)
+			{
+				throw (RuntimeException) t;
+			}
+			if (t instanceof Error)
+			{
+				throw (Error) t;
+			}
+			if (t != null)
+			{
+				throw new RuntimeException(t);
+			}
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the primitives (points or triangles) of a {@link FastShape} by their
+ * distance from the eye, furthest first, for rendering transparent primitives.
+ * <p/>
+ * Each primitive's distance and index are packed into a single long, which
+ * are sorted with an LSD radix sort on the distance bits. No objects are
+ * allocated per primitive, and the key and scratch arrays are reused between
+ * sorts.
+ * <p/>
+ * The previous order is kept, and used as the starting point for the next
+ * sort of the same number of primitives. If the eye has only moved slightly,
+ * this order is nearly sorted, and is refined with an insertion sort; if the
+ * insertion sort has to move too many elements, it falls back to the radix
+ * sort.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class DepthSorter
+{
+	/**
+	 * Maximum average number of places each primitive may be moved by the
+	 * insertion sort before falling back to the radix sort
+	 */
+	public final static int INSERTION_SORT_MAX_SHIFTS = 4;
+
+	private final static int RADIX_BITS = 8;
+	private final static int RADIX = 1 << RADIX_BITS;
+
+	private long[] keys = new long[0];
+	private long[] scratch = new long[0];
+	private final int[] counts = new int[RADIX];
+	private int previousCount = -1;
+	private int previousPrimitiveSize = -1;
+	private boolean lastSortWasIncremental = false;
+
+	/**
+	 * Sort triangles by the sum of the squared distances of their vertices
+	 * from the eye.
+	 * 
+	 * @param vertices
+	 *            Vertices, 3 floats per vertex
+	 * @param indices
+	 *            Triangle indices; if null, each consecutive 3 vertices form a
+	 *            triangle
+	 * @param sortedIndices
+	 *            Array to fill with the sorted triangle indices; must be the
+	 *            same length as <code>indices</code> (or the number of
+	 *            vertices if <code>indices</code> is null)
+	 * @return Index of the first vertex of the triangle nearest the eye, or -1
+	 *         if there are no triangles
+	 */
+	public int sortTriangles(float[] vertices, int[] indices, double eyeX, double eyeY, double eyeZ,
+			int[] sortedIndices)
+	{
+		return sort(vertices, indices, 3, eyeX, eyeY, eyeZ, sortedIndices);
+	}
+
+	/**
+	 * Sort points by their squared distance from the eye.
+	 * 
+	 * @see #sortTriangles(float[], int[], double, double, double, int[])
+	 * @return Index of the vertex nearest the eye, or -1 if there are no
+	 *         points
+	 */
+	public int sortPoints(float[] vertices, int[] indices, double eyeX, double eyeY, double eyeZ,
+			int[] sortedIndices)
+	{
+		return sort(vertices, indices, 1, eyeX, eyeY, eyeZ, sortedIndices);
+	}
+
+	/**
+	 * @return Did the last sort refine the previous order with an insertion
+	 *         sort (instead of performing a full radix sort)?
+	 */
+	public synchronized boolean isLastSortIncremental()
+	{
+		return lastSortWasIncremental;
+	}
+
+	protected synchronized int sort(float[] vertices, int[] indices, int primitiveSize, double eyeX, double eyeY,
+			double eyeZ, int[] sortedIndices)
+	{
+		int elementCount = indices != null ? indices.length : vertices.length / 3;
+		int count = elementCount / primitiveSize;
+		if (count == 0)
+		{
+			return -1;
+		}
+
+		boolean coherent = count == previousCount && primitiveSize == previousPrimitiveSize;
+		if (keys.length < count)
+		{
+			keys = new long[count];
+			scratch = new long[count];
+			coherent = false;
+		}
+
+		//calculate the keys, in the previous order if available
+		for (int i = 0; i < count; i++)
+		{
+			int primitive = coherent ? (int) keys[i] : i;
+			double distance = 0;
+			for (int j = 0, e = primitive * primitiveSize; j < primitiveSize; j++, e++)
+			{
+				int v = (indices != null ? indices[e] : e) * 3;
+				double dx = vertices[v] - eyeX;
+				double dy = vertices[v + 1] - eyeY;
+				double dz = vertices[v + 2] - eyeZ;
+				distance += dx * dx + dy * dy + dz * dz;
+			}
+			keys[i] = pack(distance, primitive);
+		}
+
+		lastSortWasIncremental = coherent && insertionSort(keys, count, (long) count * INSERTION_SORT_MAX_SHIFTS);
+		if (!lastSortWasIncremental)
+		{
+			radixSort(count);
+		}
+		previousCount = count;
+		previousPrimitiveSize = primitiveSize;
+
+		for (int i = 0, k = 0; i < count; i++)
+		{
+			for (int j = 0, e = (int) keys[i] * primitiveSize; j < primitiveSize; j++, e++, k++)
+			{
+				sortedIndices[k] = indices != null ? indices[e] : e;
+			}
+		}
+
+		int nearest = (int) keys[count - 1] * primitiveSize;
+		return indices != null ? indices[nearest] : nearest;
+	}
+
+	/**
+	 * Pack the given distance and primitive index into a long, such that the
+	 * longs sort in descending distance order. Distances must not be negative.
+	 */
+	protected static long pack(double distance, int primitive)
+	{
+		//the bits of positive floats sort in the same order as the floats
+		int key = Integer.MAX_VALUE - Float.floatToIntBits((float) distance);
+		return ((long) key << 32) | (primitive & 0xffffffffL);
+	}
+
+	/**
+	 * Sort the first count keys using an insertion sort, giving up if more
+	 * than maxShifts shifts are required.
+	 * 
+	 * @return True if the keys were sorted, false if the shift limit was
+	 *         exceeded
+	 */
+	protected static boolean insertionSort(long[] keys, int count, long maxShifts)
+	{
+		long shifts = 0;
+		for (int i = 1; i < count; i++)
+		{
+			long key = keys[i];
+			int j = i - 1;
+			while (j >= 0 && keys[j] > key)
+			{
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			shifts += i - 1 - j;
+			if (shifts > maxShifts)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * LSD radix sort of the first count keys on their upper 32 bits (the
+	 * distance); the primitive indices in the lower bits don't need sorting.
+	 * Passes where all keys share the same digit are skipped.
+	 */
+	protected void radixSort(int count)
+	{
+		long[] source = keys;
+		long[] destination = scratch;
+		for (int shift = 32; shift < 64; shift += RADIX_BITS)
+		{
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < count; i++)
+			{
+				counts[(int) (source[i] >>> shift) & (RADIX - 1)]++;
+			}
+			if (counts[(int) (source[0] >>> shift) & (RADIX - 1)] == count)
+			{
+				continue;
+			}
+
+			int total = 0;
+			for (int i = 0; i < RADIX; i++)
+			{
+				int c = counts[i];
+				counts[i] = total;
+				total += c;
+			}
+			for (int i = 0; i < count; i++)
+			{
+				long key = source[i];
+				destination[counts[(int) (key >>> shift) & (RADIX - 1)]++] = key;
+			}
+
+			long[] temp = source;
+			source = destination;
+			destination = temp;
+		}
+		keys = source;
+		scratch = destination;
+	}
+}
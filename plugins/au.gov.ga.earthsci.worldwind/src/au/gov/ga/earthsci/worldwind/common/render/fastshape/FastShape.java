@@ -17,11 +17,14 @@ package au.gov.ga.earthsci.worldwind.common.render.fastshape;
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.Cacheable;
+import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Extent;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sphere;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Earth;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickSupport;
@@ -29,7 +32,6 @@ import gov.nasa.worldwind.render.BasicWWTexture;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.OrderedRenderable;
 import gov.nasa.worldwind.render.WWTexture;
-import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.OGLStackHandler;
 
@@ -37,11 +39,15 @@ import java.awt.Color;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URL;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -52,6 +58,9 @@ import javax.media.opengl.GL2GL3;
 import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
 import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
 import au.gov.ga.earthsci.worldwind.common.layers.Wireframeable;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ChunkTask;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ProgressListener;
+import au.gov.ga.earthsci.worldwind.common.util.Loader;
 
 import com.jogamp.opengl.util.texture.Texture;
 
@@ -63,12 +72,16 @@ import com.jogamp.opengl.util.texture.Texture;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wireframeable
+public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wireframeable, Loader
 {
 	protected final static SingleTaskRunner VertexUpdater = new SingleTaskRunner(FastShape.class.getName()
 			+ " VertexUpdater"); //$NON-NLS-1$
 	protected final static SingleTaskRunner IndexUpdater = new SingleTaskRunner(FastShape.class.getName()
 			+ " IndexUpdater"); //$NON-NLS-1$
+	protected final static ChunkedTaskRunner ChunkRunner = new ChunkedTaskRunner(FastShape.class.getName()
+			+ " ChunkRunner"); //$NON-NLS-1$
+	protected final static int VERTEX_CHUNK_SIZE = 8192;
+	private final static Map<Class<?>, Boolean> primitiveElevationClasses = new HashMap<Class<?>, Boolean>();
 
 	protected final ReadWriteLock positionLock = new ReentrantReadWriteLock();
 	protected final PickSupport pickSupport = new PickSupport();
@@ -83,6 +96,8 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected final FloatVBO vertexVBO = new FloatVBO(3);
 	protected final FloatVBO normalVBO = new FloatVBO(3);
 	protected final IntIndexVBO sortedIndexVBO = new IntIndexVBO();
+	protected final DepthSorter depthSorter = new DepthSorter();
+	protected final NormalCalculator normalCalculator = new NormalCalculator();
 
 	//set:
 	protected final IntIndexVBO indexVBO = new IntIndexVBO();
@@ -142,6 +157,9 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected long lastFollowTerrainUpdateTime;
 
 	protected final List<FastShapeRenderListener> renderListeners = new ArrayList<FastShapeRenderListener>();
+	protected final LoadingListenerList loadingListeners = new LoadingListenerList();
+	protected final AtomicInteger recalculationPercent = new AtomicInteger();
+	protected volatile boolean recalculating = false;
 
 	public FastShape(List<Position> positions, int mode)
 	{
@@ -595,10 +613,12 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			@Override
 			public void run()
 			{
+				setRecalculating(true);
 				positionsLock.readLock().lock();
 				try
 				{
 					int size = positions.size() * 3;
+					boolean willCalculateNormals = willCalculateNormals();
 					float[] vertices;
 
 					vertexVBO.lock();
@@ -609,7 +629,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 						{
 							vertices = new float[size];
 						}
-						calculateVertices(dc, vertices);
+						calculateVertices(dc, vertices, willCalculateNormals ? 0.5f : 1f);
 						vertexVBO.setBuffer(vertices);
 					}
 					finally
@@ -617,7 +637,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 						vertexVBO.unlock();
 					}
 
-					if (willCalculateNormals())
+					if (willCalculateNormals)
 					{
 						normalVBO.lock();
 						try
@@ -627,7 +647,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 							{
 								normals = new float[size];
 							}
-							calculateNormals(vertices, normals);
+							calculateNormals(vertices, normals, 0.5f, 1f);
 							normalVBO.setBuffer(normals);
 						}
 						finally
@@ -643,6 +663,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 				finally
 				{
 					positionsLock.readLock().unlock();
+					setRecalculating(false);
 				}
 
 				//when the vertices have been recalculated, trigger a render of the layer
@@ -664,45 +685,169 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 	}
 
-	protected synchronized void calculateVertices(DrawContext dc, float[] vertices)
+	protected void calculateVertices(DrawContext dc, float[] vertices)
 	{
-		int index = 0;
-		for (LatLon position : positions)
+		calculateVertices(dc, vertices, 1f);
+	}
+
+	/**
+	 * Calculate the model coordinates of this shape's positions, relative to
+	 * the center of the bounding sphere (which is stored in
+	 * {@link #modBoundingSphere}). Positions are calculated in parallel
+	 * chunks; on an ellipsoidal globe, the cartesian points are calculated
+	 * directly into the vertex array without allocating any objects (if the
+	 * positions are a {@link PositionList}, they are read from its primitive
+	 * accessors rather than as {@link Position} objects).
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @param vertices
+	 *            Array to store the vertices in
+	 * @param progressEnd
+	 *            Recalculation progress to report when the vertices are done
+	 */
+	protected synchronized void calculateVertices(final DrawContext dc, final float[] vertices, float progressEnd)
+	{
+		final List<Position> positions =
+				this.positions instanceof RandomAccess ? this.positions : new ArrayList<Position>(this.positions);
+		final PositionList positionList =
+				positions instanceof PositionList && canCalculatePrimitiveElevation(getClass())
+						? (PositionList) positions : null;
+		final int count = positions.size();
+		final Globe globe = dc.getGlobe();
+		final double verticalExaggeration = dc.getVerticalExaggeration();
+		final LatLon latLonOffset = calculateLatLonOffset();
+		final boolean ellipsoidal = isEllipsoidal(globe);
+		final double equatorialRadius = globe.getEquatorialRadius();
+		final double es = globe.getEccentricitySquared();
+
+		//min/max of each chunk, reduced after all the chunks have completed
+		final double[] chunkExtrema = new double[ChunkedTaskRunner.getChunkCount(count, VERTEX_CHUNK_SIZE) * 6];
+		ChunkRunner.run(count, VERTEX_CHUNK_SIZE, new ChunkTask()
 		{
-			Vec4 v = calculateVertex(dc, position);
-			vertices[index++] = (float) v.x;
-			vertices[index++] = (float) v.y;
-			vertices[index++] = (float) v.z;
-		}
+			@Override
+			public void run(int chunk, int start, int end)
+			{
+				double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+				double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+				for (int i = start, index = start * 3; i < end; i++, index += 3)
+				{
+					if (ellipsoidal)
+					{
+						double latDegrees, lonRadians, elevation;
+						if (positionList != null)
+						{
+							latDegrees = positionList.getLatitude(i);
+							double lonDegrees = positionList.getLongitude(i);
+							lonRadians = Math.toRadians(lonDegrees);
+							elevation =
+									calculateElevation(globe, verticalExaggeration, latDegrees, lonDegrees,
+											positionList.getElevation(i));
+						}
+						else
+						{
+							Position position = positions.get(i);
+							latDegrees = position.getLatitude().degrees;
+							lonRadians = position.getLongitude().radians;
+							elevation = calculateElevation(globe, verticalExaggeration, position);
+						}
+						double lat = Math.toRadians(normalizedLatitude(latDegrees + latLonOffset.getLatitude().degrees));
+						double lon = lonRadians + latLonOffset.getLongitude().radians;
+
+						//same as EllipsoidalGlobe.geodeticToCartesian(), without creating a Vec4
+						double cosLat = Math.cos(lat);
+						double sinLat = Math.sin(lat);
+						double cosLon = Math.cos(lon);
+						double sinLon = Math.sin(lon);
+						double rpm = equatorialRadius / Math.sqrt(1.0 - es * sinLat * sinLat);
+						vertices[index + 0] = (float) ((rpm + elevation) * cosLat * sinLon);
+						vertices[index + 1] = (float) ((rpm * (1.0 - es) + elevation) * sinLat);
+						vertices[index + 2] = (float) ((rpm + elevation) * cosLat * cosLon);
+					}
+					else
+					{
+						Vec4 v = calculateVertex(dc, positions.get(i));
+						vertices[index + 0] = (float) v.x;
+						vertices[index + 1] = (float) v.y;
+						vertices[index + 2] = (float) v.z;
+					}
 
-		BufferWrapper wrapper = new BufferWrapper.FloatBufferWrapper(FloatBuffer.wrap(vertices));
-		modBoundingSphere = createBoundingSphere(wrapper);
+					minX = Math.min(minX, vertices[index + 0]);
+					minY = Math.min(minY, vertices[index + 1]);
+					minZ = Math.min(minZ, vertices[index + 2]);
+					maxX = Math.max(maxX, vertices[index + 0]);
+					maxY = Math.max(maxY, vertices[index + 1]);
+					maxZ = Math.max(maxZ, vertices[index + 2]);
+				}
+				int e = chunk * 6;
+				chunkExtrema[e + 0] = minX;
+				chunkExtrema[e + 1] = minY;
+				chunkExtrema[e + 2] = minZ;
+				chunkExtrema[e + 3] = maxX;
+				chunkExtrema[e + 4] = maxY;
+				chunkExtrema[e + 5] = maxZ;
+			}
+		}, createProgressListener(0f, progressEnd));
 
-		//prevent NullPointerExceptions when there's no vertices:
-		if (modBoundingSphere == null)
-		{
-			modBoundingSphere = new Sphere(Vec4.ZERO, 1);
-		}
+		modBoundingSphere = createBoundingSphere(chunkExtrema);
 
-		for (int i = 0; i < vertices.length; i += 3)
+		final float centerX = (float) modBoundingSphere.getCenter().x;
+		final float centerY = (float) modBoundingSphere.getCenter().y;
+		final float centerZ = (float) modBoundingSphere.getCenter().z;
+		ChunkRunner.run(count, VERTEX_CHUNK_SIZE, new ChunkTask()
 		{
-			vertices[i + 0] -= (float) modBoundingSphere.getCenter().x;
-			vertices[i + 1] -= (float) modBoundingSphere.getCenter().y;
-			vertices[i + 2] -= (float) modBoundingSphere.getCenter().z;
-		}
+			@Override
+			public void run(int chunk, int start, int end)
+			{
+				for (int index = start * 3; index < end * 3; index += 3)
+				{
+					vertices[index + 0] -= centerX;
+					vertices[index + 1] -= centerY;
+					vertices[index + 2] -= centerZ;
+				}
+			}
+		}, null);
 	}
 
 	protected Vec4 calculateVertex(DrawContext dc, LatLon position)
+	{
+		double elevation = calculateElevation(dc.getGlobe(), dc.getVerticalExaggeration(), position);
+		return dc.getGlobe().computePointFromPosition(position.add(calculateLatLonOffset()), elevation);
+	}
+
+	protected double calculateElevation(Globe globe, double verticalExaggeration, LatLon position)
 	{
 		double elevation = this.elevation;
 		if (followTerrain)
 		{
-			elevation += dc.getGlobe().getElevation(position.getLatitude(), position.getLongitude());
+			elevation += globe.getElevation(position.getLatitude(), position.getLongitude());
 		}
 		elevation += calculateElevationOffset(position);
-		elevation *= dc.getVerticalExaggeration();
-		elevation = Math.max(elevation, -dc.getGlobe().getMaximumRadius());
-		return dc.getGlobe().computePointFromPosition(position.add(calculateLatLonOffset()), elevation);
+		elevation *= verticalExaggeration;
+		return Math.max(elevation, -globe.getMaximumRadius());
+	}
+
+	/**
+	 * Primitive version of {@link #calculateElevation(Globe, double, LatLon)},
+	 * used for {@link PositionList} elements (which are plain
+	 * {@link Position}s, so their elevation offset is their elevation).
+	 * <p/>
+	 * Only used if the subclass doesn't override
+	 * {@link #calculateElevation(Globe, double, LatLon)} or
+	 * {@link #calculateElevationOffset(LatLon)}; otherwise each element is
+	 * passed to those methods as a {@link Position}.
+	 */
+	protected double calculateElevation(Globe globe, double verticalExaggeration, double latitude,
+			double longitude, double positionElevation)
+	{
+		double elevation = this.elevation;
+		if (followTerrain)
+		{
+			elevation += globe.getElevation(Angle.fromDegrees(latitude), Angle.fromDegrees(longitude));
+		}
+		elevation += positionElevation;
+		elevation *= verticalExaggeration;
+		return Math.max(elevation, -globe.getMaximumRadius());
 	}
 
 	protected double calculateElevationOffset(LatLon position)
@@ -719,80 +864,177 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		return LatLon.ZERO;
 	}
 
-	protected static Sphere createBoundingSphere(BufferWrapper wrapper)
+	/**
+	 * Can the cartesian points on the given globe be calculated directly from
+	 * the ellipsoid parameters? Only true for the standard ellipsoidal globes,
+	 * as subclasses (such as flat globes) may use a different projection.
+	 */
+	protected static boolean isEllipsoidal(Globe globe)
 	{
-		//the Sphere.createBoundingSphere() function doesn't ensure that the radius is at least 1, causing errors
-		Vec4[] extrema = Vec4.computeExtrema(wrapper);
-		if (extrema == null)
+		return globe.getClass() == Earth.class || globe.getClass() == EllipsoidalGlobe.class;
+	}
+
+	/**
+	 * Can the elevations of the given {@link FastShape} class be calculated
+	 * using the primitive
+	 * {@link #calculateElevation(Globe, double, double, double, double)}? Only
+	 * true if the class doesn't override the {@link LatLon} versions of the
+	 * elevation calculation methods, which the primitive version bypasses.
+	 */
+	protected static boolean canCalculatePrimitiveElevation(Class<?> c)
+	{
+		synchronized (primitiveElevationClasses)
 		{
-			return null;
+			Boolean primitive = primitiveElevationClasses.get(c);
+			if (primitive == null)
+			{
+				primitive = !overrides(c, "calculateElevation", Globe.class, double.class, LatLon.class)
+						&& !overrides(c, "calculateElevationOffset", LatLon.class);
+				primitiveElevationClasses.put(c, primitive);
+			}
+			return primitive;
 		}
-		Vec4 center =
-				new Vec4((extrema[0].x + extrema[1].x) / 2.0, (extrema[0].y + extrema[1].y) / 2.0,
-						(extrema[0].z + extrema[1].z) / 2.0);
-		double radius = Math.max(1, extrema[0].distanceTo3(extrema[1]) / 2.0);
-		return new Sphere(center, radius);
 	}
 
-	protected void calculateNormals(float[] vertices, float[] normals)
+	private static boolean overrides(Class<?> c, String name, Class<?>... parameterTypes)
+	{
+		for (; c != null && c != FastShape.class; c = c.getSuperclass())
+		{
+			for (Method method : c.getDeclaredMethods())
+			{
+				if (method.getName().equals(name) && Arrays.equals(method.getParameterTypes(), parameterTypes))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	protected static double normalizedLatitude(double degrees)
 	{
-		int size = normals.length / 3;
-		int[] count = new int[size];
-		Vec4[] verts = new Vec4[size];
-		Vec4[] norms = new Vec4[size];
+		//same as Angle.normalizedLatitude()
+		double lat = degrees % 180;
+		return lat > 90 ? 180 - lat : lat < -90 ? -180 - lat : lat;
+	}
 
-		for (int i = 0, j = 0; i < vertices.length; i += 3, j++)
+	/**
+	 * Create a bounding sphere from an array of extrema, containing a set of
+	 * (minX, minY, minZ, maxX, maxY, maxZ) for each chunk of vertices.
+	 */
+	protected static Sphere createBoundingSphere(double[] chunkExtrema)
+	{
+		if (chunkExtrema.length == 0)
 		{
-			verts[j] = new Vec4(vertices[i + 0], vertices[i + 1], vertices[i + 2]);
-			norms[j] = new Vec4(0);
+			//prevent NullPointerExceptions when there's no vertices:
+			return new Sphere(Vec4.ZERO, 1);
 		}
 
-		int[] indices = indexVBO.getBuffer();
-		boolean hasIndices = indices != null;
-		int loopLimit = hasIndices ? indices.length : size;
-		int loopIncrement = 3;
-		if (mode == GL2.GL_TRIANGLE_STRIP)
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int e = 0; e < chunkExtrema.length; e += 6)
 		{
-			loopLimit -= 2;
-			loopIncrement = 1;
+			minX = Math.min(minX, chunkExtrema[e + 0]);
+			minY = Math.min(minY, chunkExtrema[e + 1]);
+			minZ = Math.min(minZ, chunkExtrema[e + 2]);
+			maxX = Math.max(maxX, chunkExtrema[e + 3]);
+			maxY = Math.max(maxY, chunkExtrema[e + 4]);
+			maxZ = Math.max(maxZ, chunkExtrema[e + 5]);
 		}
 
-		for (int i = 0; i < loopLimit; i += loopIncrement)
+		//the Sphere.createBoundingSphere() function doesn't ensure that the radius is at least 1, causing errors
+		Vec4 center = new Vec4((minX + maxX) / 2.0, (minY + maxY) / 2.0, (minZ + maxZ) / 2.0);
+		double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		double radius = Math.max(1, Math.sqrt(dx * dx + dy * dy + dz * dz) / 2.0);
+		return new Sphere(center, radius);
+	}
+
+	protected void calculateNormals(float[] vertices, float[] normals)
+	{
+		calculateNormals(vertices, normals, 0f, 1f);
+	}
+
+	/**
+	 * Calculate the vertex normals in parallel, reporting progress between the
+	 * given progress values.
+	 */
+	protected void calculateNormals(float[] vertices, float[] normals, float progressStart, float progressEnd)
+	{
+		normalCalculator.calculateNormals(vertices, indexVBO.getBuffer(), mode == GL2.GL_TRIANGLE_STRIP,
+				reverseNormals, normals, ChunkRunner, createProgressListener(progressStart, progressEnd));
+	}
+
+	protected ProgressListener createProgressListener(final float progressStart, final float progressEnd)
+	{
+		return new ProgressListener()
 		{
-			//don't touch indices's position/mark, because it may currently be in use by OpenGL thread
-			int index0 = hasIndices ? indices[i + 0] : i + 0;
-			int index1 = hasIndices ? indices[i + 1] : i + 1;
-			int index2 = hasIndices ? indices[i + 2] : i + 2;
-			Vec4 v0 = verts[index0];
-			Vec4 v1 = verts[index1];
-			Vec4 v2 = verts[index2];
-
-			Vec4 e1 = v1.subtract3(v0);
-			Vec4 e2 = mode == GL2.GL_TRIANGLE_STRIP && i % 2 == 0 ? v0.subtract3(v2) : v2.subtract3(v0);
-			Vec4 N = reverseNormals ? e2.cross3(e1).normalize3() : e1.cross3(e2).normalize3();
-
-			// if N is 0, the triangle is degenerate
-			if (N.getLength3() > 0)
+			@Override
+			public void progressChanged(int completedChunks, int chunkCount)
 			{
-				norms[index0] = norms[index0].add3(N);
-				norms[index1] = norms[index1].add3(N);
-				norms[index2] = norms[index2].add3(N);
+				setRecalculationProgress(progressStart + (progressEnd - progressStart) * completedChunks / chunkCount);
+			}
+		};
+	}
 
-				count[index0]++;
-				count[index1]++;
-				count[index2]++;
+	protected void setRecalculationProgress(float progress)
+	{
+		//only notify the layer when the progress increases by a whole percent
+		int percent = (int) (progress * 100);
+		int current;
+		do
+		{
+			current = recalculationPercent.get();
+			if (percent <= current)
+			{
+				return;
 			}
 		}
+		while (!recalculationPercent.compareAndSet(current, percent));
 
-		for (int i = 0, j = 0; i < normals.length; i += 3, j++)
+		Layer layer = lastLayer;
+		if (layer != null)
 		{
-			int c = count[j] > 0 ? count[j] : 1; //prevent divide by zero
-			normals[i + 0] = (float) norms[j].x / c;
-			normals[i + 1] = (float) norms[j].y / c;
-			normals[i + 2] = (float) norms[j].z / c;
+			layer.firePropertyChange(AVKey.PROGRESS, null, percent / 100d);
 		}
 	}
 
+	/**
+	 * @return Progress (between 0 and 1) of the current recalculation of this
+	 *         shape's vertices; 1 if the vertices are not being recalculated
+	 */
+	public double getRecalculationProgress()
+	{
+		return recalculating ? recalculationPercent.get() / 100d : 1d;
+	}
+
+	protected void setRecalculating(boolean recalculating)
+	{
+		recalculationPercent.set(0);
+		this.recalculating = recalculating;
+		loadingListeners.notifyListeners(this, recalculating);
+	}
+
+	/**
+	 * @return Are this shape's vertices currently being recalculated?
+	 */
+	@Override
+	public boolean isLoading()
+	{
+		return recalculating;
+	}
+
+	@Override
+	public void addLoadingListener(LoadingListener listener)
+	{
+		loadingListeners.add(listener);
+	}
+
+	@Override
+	public void removeLoadingListener(LoadingListener listener)
+	{
+		loadingListeners.remove(listener);
+	}
+
 	protected synchronized void resortIndices(final DrawContext dc, final Vec4 eyePoint)
 	{
 		Runnable runnable = new Runnable()
@@ -831,70 +1073,28 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 
 	protected void sortIndices(DrawContext dc, Vec4 eyePoint, float[] vertices, int[] indices, int[] sortedIndices)
 	{
-		int size = vertices.length / 3;
-		Vec4[] verts = new Vec4[size];
-
-		for (int i = 0, j = 0; i < vertices.length; i += 3, j++)
-		{
-			verts[j] = new Vec4(vertices[i + 0], vertices[i + 1], vertices[i + 2]);
-		}
-
 		if (boundingSphere != null)
 		{
 			eyePoint = eyePoint.subtract3(boundingSphere.getCenter());
 		}
 
+		int closest = -1;
 		if (mode == GL2.GL_TRIANGLES)
 		{
-			boolean hasIndices = indices != null;
-			int triangleCountBy3 = hasIndices ? indices.length : size;
-			IndexAndDistance[] distances = new IndexAndDistance[triangleCountBy3 / 3];
-
-			for (int i = 0, j = 0; i < triangleCountBy3; i += 3, j++)
-			{
-				int index0 = hasIndices ? indices[i + 0] : i + 0;
-				int index1 = hasIndices ? indices[i + 1] : i + 1;
-				int index2 = hasIndices ? indices[i + 2] : i + 2;
-				Vec4 v0 = verts[index0];
-				Vec4 v1 = verts[index1];
-				Vec4 v2 = verts[index2];
-				double distance =
-						v0.distanceToSquared3(eyePoint) + v1.distanceToSquared3(eyePoint)
-								+ v2.distanceToSquared3(eyePoint);
-				distances[j] = new IndexAndDistance(distance, i);
-			}
-
-			Arrays.sort(distances);
-			IndexAndDistance closest = distances[distances.length - 1];
-			Vec4 closestPoint = verts[hasIndices ? indices[closest.index] : closest.index];
-			distanceFromEye = closestPoint.distanceTo3(eyePoint);
-
-			for (int i = 0, j = 0; i < triangleCountBy3; i += 3, j++)
-			{
-				IndexAndDistance distance = distances[j];
-				sortedIndices[i + 0] = hasIndices ? indices[distance.index + 0] : distance.index + 0;
-				sortedIndices[i + 1] = hasIndices ? indices[distance.index + 1] : distance.index + 1;
-				sortedIndices[i + 2] = hasIndices ? indices[distance.index + 2] : distance.index + 2;
-			}
+			closest = depthSorter.sortTriangles(vertices, indices, eyePoint.x, eyePoint.y, eyePoint.z, sortedIndices);
 		}
 		else if (mode == GL2.GL_POINTS)
 		{
-			IndexAndDistance[] distances = new IndexAndDistance[size];
-			for (int i = 0; i < size; i++)
-			{
-				double distance = verts[i].distanceToSquared3(eyePoint);
-				distances[i] = new IndexAndDistance(distance, i);
-			}
-
-			Arrays.sort(distances);
-			IndexAndDistance closest = distances[distances.length - 1];
-			Vec4 closestPoint = verts[closest.index];
-			distanceFromEye = closestPoint.distanceTo3(eyePoint);
+			closest = depthSorter.sortPoints(vertices, indices, eyePoint.x, eyePoint.y, eyePoint.z, sortedIndices);
+		}
 
-			for (int i = 0; i < size; i++)
-			{
-				sortedIndices[i] = distances[i].index;
-			}
+		if (closest >= 0)
+		{
+			int v = closest * 3;
+			double dx = vertices[v + 0] - eyePoint.x;
+			double dy = vertices[v + 1] - eyePoint.y;
+			double dz = vertices[v + 2] - eyePoint.z;
+			distanceFromEye = Math.sqrt(dx * dx + dy * dy + dz * dz);
 		}
 	}
 
@@ -1012,9 +1212,16 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			verticesDirty = true;
 
 			bounds = null;
-			for (Position position : positions)
+			if (positions instanceof PositionList)
+			{
+				bounds = ((PositionList) positions).getBounds();
+			}
+			else
 			{
-				bounds = Bounds.union(bounds, position);
+				for (Position position : positions)
+				{
+					bounds = Bounds.union(bounds, position);
+				}
 			}
 		}
 		finally
@@ -1031,6 +1238,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	public void setIndices(int[] indices)
 	{
 		indexVBO.setBuffer(indices);
+		normalCalculator.invalidate();
 	}
 
 	@Override
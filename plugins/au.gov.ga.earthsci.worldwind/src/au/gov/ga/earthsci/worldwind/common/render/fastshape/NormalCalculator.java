@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ChunkTask;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.ChunkedTaskRunner.ProgressListener;
+
+/**
+ * Calculates smooth per-vertex normals for triangle meshes, by averaging the
+ * normals of the triangles that share each vertex.
+ * <p/>
+ * Rather than scattering each triangle's normal to its vertices (which can't
+ * be done concurrently without locking), this class builds a vertex to
+ * triangle adjacency table, and each vertex then gathers the normals of its
+ * triangles. The adjacency table only depends on the indices, so it is reused
+ * until they change, and the gather pass runs in parallel without any
+ * allocation. Triangles are summed in index order, so the result doesn't
+ * depend on the number of threads.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class NormalCalculator
+{
+	public final static int DEFAULT_CHUNK_SIZE = 16384;
+
+	private final int chunkSize;
+
+	//adjacency table, cached for the last indices
+	private int[] lastIndices;
+	private int lastVertexCount = -1;
+	private boolean lastTriangleStrip;
+	private int[] adjacencyOffsets;
+	private int[] adjacentTriangles;
+
+	public NormalCalculator()
+	{
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public NormalCalculator(int chunkSize)
+	{
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Calculate the vertex normals for the given triangles.
+	 * 
+	 * @param vertices
+	 *            Vertex array (3 floats per vertex)
+	 * @param indices
+	 *            Triangle indices, or null if the vertices are not indexed
+	 * @param triangleStrip
+	 *            Do the indices describe a triangle strip (instead of
+	 *            separate triangles)?
+	 * @param reverseNormals
+	 *            Should the normals point in the opposite direction?
+	 * @param normals
+	 *            Array to store the normals in (same length as vertices)
+	 * @param runner
+	 *            Runner used to calculate the normals in parallel; if null,
+	 *            they are calculated in the calling thread
+	 * @param listener
+	 *            Listener notified of progress (can be null)
+	 */
+	public synchronized void calculateNormals(final float[] vertices, final int[] indices,
+			final boolean triangleStrip, final boolean reverseNormals, final float[] normals, ChunkedTaskRunner runner,
+			ProgressListener listener)
+	{
+		final int vertexCount = normals.length / 3;
+		updateAdjacency(indices, vertexCount, triangleStrip);
+
+		final int[] offsets = adjacencyOffsets;
+		final int[] triangles = adjacentTriangles;
+		ChunkTask task = new ChunkTask()
+		{
+			@Override
+			public void run(int chunk, int start, int end)
+			{
+				for (int v = start; v < end; v++)
+				{
+					double x = 0, y = 0, z = 0;
+					int count = 0;
+					for (int j = offsets[v]; j < offsets[v + 1]; j++)
+					{
+						int t = triangles[j];
+						int first = triangleStrip ? t : t * 3;
+						int i0 = (indices != null ? indices[first + 0] : first + 0) * 3;
+						int i1 = (indices != null ? indices[first + 1] : first + 1) * 3;
+						int i2 = (indices != null ? indices[first + 2] : first + 2) * 3;
+
+						double e1x = (double) vertices[i1 + 0] - vertices[i0 + 0];
+						double e1y = (double) vertices[i1 + 1] - vertices[i0 + 1];
+						double e1z = (double) vertices[i1 + 2] - vertices[i0 + 2];
+						double e2x = (double) vertices[i2 + 0] - vertices[i0 + 0];
+						double e2y = (double) vertices[i2 + 1] - vertices[i0 + 1];
+						double e2z = (double) vertices[i2 + 2] - vertices[i0 + 2];
+						if (triangleStrip && t % 2 == 0)
+						{
+							//every second triangle in a strip has the opposite winding
+							e2x = -e2x;
+							e2y = -e2y;
+							e2z = -e2z;
+						}
+
+						double nx = e1y * e2z - e1z * e2y;
+						double ny = e1z * e2x - e1x * e2z;
+						double nz = e1x * e2y - e1y * e2x;
+						double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+						//if the normal has no length, the triangle is degenerate
+						if (length > 0)
+						{
+							if (reverseNormals)
+							{
+								length = -length;
+							}
+							x += nx / length;
+							y += ny / length;
+							z += nz / length;
+							count++;
+						}
+					}
+
+					int c = count > 0 ? count : 1; //prevent divide by zero
+					normals[v * 3 + 0] = (float) x / c;
+					normals[v * 3 + 1] = (float) y / c;
+					normals[v * 3 + 2] = (float) z / c;
+				}
+			}
+		};
+
+		if (runner != null)
+		{
+			runner.run(vertexCount, chunkSize, task, listener);
+		}
+		else
+		{
+			task.run(0, 0, vertexCount);
+		}
+	}
+
+	/**
+	 * Discard the cached adjacency table. Must be called if the indices array
+	 * is modified in place.
+	 */
+	public synchronized void invalidate()
+	{
+		adjacencyOffsets = null;
+		adjacentTriangles = null;
+		lastIndices = null;
+	}
+
+	/**
+	 * Calculate the number of triangles described by the given element count.
+	 * 
+	 * @param elementCount
+	 *            Number of indices (or vertices if not indexed)
+	 * @param triangleStrip
+	 *            Do the elements describe a triangle strip?
+	 * @return Number of triangles
+	 */
+	public static int getTriangleCount(int elementCount, boolean triangleStrip)
+	{
+		return triangleStrip ? Math.max(0, elementCount - 2) : elementCount / 3;
+	}
+
+	private void updateAdjacency(int[] indices, int vertexCount, boolean triangleStrip)
+	{
+		if (adjacencyOffsets != null && indices == lastIndices && vertexCount == lastVertexCount
+				&& triangleStrip == lastTriangleStrip)
+		{
+			return;
+		}
+
+		int elementCount = indices != null ? indices.length : vertexCount;
+		int triangleCount = getTriangleCount(elementCount, triangleStrip);
+		int increment = triangleStrip ? 1 : 3;
+
+		//counting sort of the triangle corners by vertex, keeping triangle order
+		int[] offsets = new int[vertexCount + 1];
+		for (int t = 0, first = 0; t < triangleCount; t++, first += increment)
+		{
+			for (int k = 0; k < 3; k++)
+			{
+				offsets[(indices != null ? indices[first + k] : first + k) + 1]++;
+			}
+		}
+		for (int v = 0; v < vertexCount; v++)
+		{
+			offsets[v + 1] += offsets[v];
+		}
+		int[] fill = new int[vertexCount];
+		int[] triangles = new int[triangleCount * 3];
+		for (int t = 0, first = 0; t < triangleCount; t++, first += increment)
+		{
+			for (int k = 0; k < 3; k++)
+			{
+				int v = indices != null ? indices[first + k] : first + k;
+				triangles[offsets[v] + fill[v]++] = t;
+			}
+		}
+
+		adjacencyOffsets = offsets;
+		adjacentTriangles = triangles;
+		lastIndices = indices;
+		lastVertexCount = vertexCount;
+		lastTriangleStrip = triangleStrip;
+	}
+}
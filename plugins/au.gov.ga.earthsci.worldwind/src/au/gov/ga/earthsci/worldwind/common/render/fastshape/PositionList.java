@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
+
+/**
+ * {@link java.util.List} of {@link Position}s that stores the latitude,
+ * longitude and elevation of each position in a single primitive array,
+ * rather than as objects. This uses around a fifth of the memory of a list of
+ * {@link Position} objects, and is the preferred way to pass large numbers of
+ * positions to a {@link FastShape}.
+ * <p/>
+ * {@link #get(int)} creates a new {@link Position} each time it is called;
+ * use the primitive accessors in performance critical code.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PositionList extends AbstractList<Position> implements RandomAccess
+{
+	private final GrowableDoubleArray coordinates;
+
+	public PositionList()
+	{
+		coordinates = new GrowableDoubleArray();
+	}
+
+	public PositionList(int capacity)
+	{
+		coordinates = new GrowableDoubleArray(capacity * 3);
+	}
+
+	@Override
+	public int size()
+	{
+		return coordinates.size() / 3;
+	}
+
+	@Override
+	public Position get(int index)
+	{
+		return Position.fromDegrees(getLatitude(index), getLongitude(index), getElevation(index));
+	}
+
+	@Override
+	public Position set(int index, Position element)
+	{
+		Position previous = get(index);
+		setDegrees(index, element.latitude.degrees, element.longitude.degrees, element.elevation);
+		return previous;
+	}
+
+	@Override
+	public boolean add(Position element)
+	{
+		add(element.latitude.degrees, element.longitude.degrees, element.elevation);
+		return true;
+	}
+
+	/**
+	 * Append a position to the end of this list.
+	 * 
+	 * @param latitude
+	 *            Latitude in degrees
+	 * @param longitude
+	 *            Longitude in degrees
+	 * @param elevation
+	 *            Elevation in meters
+	 */
+	public void add(double latitude, double longitude, double elevation)
+	{
+		coordinates.add(latitude);
+		coordinates.add(longitude);
+		coordinates.add(elevation);
+		modCount++;
+	}
+
+	public void setDegrees(int index, double latitude, double longitude, double elevation)
+	{
+		checkIndex(index);
+		coordinates.set(index * 3, latitude);
+		coordinates.set(index * 3 + 1, longitude);
+		coordinates.set(index * 3 + 2, elevation);
+	}
+
+	/**
+	 * @return Latitude in degrees of the position at the given index
+	 */
+	public double getLatitude(int index)
+	{
+		checkIndex(index);
+		return coordinates.array()[index * 3];
+	}
+
+	/**
+	 * @return Longitude in degrees of the position at the given index
+	 */
+	public double getLongitude(int index)
+	{
+		checkIndex(index);
+		return coordinates.array()[index * 3 + 1];
+	}
+
+	/**
+	 * @return Elevation of the position at the given index
+	 */
+	public double getElevation(int index)
+	{
+		checkIndex(index);
+		return coordinates.array()[index * 3 + 2];
+	}
+
+	@Override
+	public void clear()
+	{
+		coordinates.clear();
+		modCount++;
+	}
+
+	/**
+	 * Shrink the backing array to the number of positions in this list.
+	 */
+	public void trimToSize()
+	{
+		coordinates.trimToSize();
+	}
+
+	/**
+	 * Calculate the bounds of the positions in this list, without creating a
+	 * {@link Position} for each element.
+	 * 
+	 * @return Bounds of the positions, or null if this list is empty
+	 */
+	public Bounds getBounds()
+	{
+		int size = size();
+		if (size == 0)
+		{
+			return null;
+		}
+		double[] array = coordinates.array();
+		double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE, minElevation = Double.MAX_VALUE;
+		double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE, maxElevation = -Double.MAX_VALUE;
+		for (int i = 0; i < size * 3; i += 3)
+		{
+			minLat = Math.min(minLat, array[i]);
+			minLon = Math.min(minLon, array[i + 1]);
+			minElevation = Math.min(minElevation, array[i + 2]);
+			maxLat = Math.max(maxLat, array[i]);
+			maxLon = Math.max(maxLon, array[i + 1]);
+			maxElevation = Math.max(maxElevation, array[i + 2]);
+		}
+		return new Bounds(Position.fromDegrees(minLat, minLon, minElevation), Position.fromDegrees(maxLat, maxLon,
+				maxElevation));
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size())
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+		}
+	}
+}
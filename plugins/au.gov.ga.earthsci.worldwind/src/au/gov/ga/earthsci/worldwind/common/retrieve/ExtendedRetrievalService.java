@@ -15,8 +15,11 @@ import gov.nasa.worldwind.util.Logging;
 
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -47,7 +50,8 @@ public class ExtendedRetrievalService extends WWObjectImpl
         "BasicRetrievalService.IdleThreadNamePrefix");
 
     private RetrievalExecutor executor; // thread pool for running retrievers
-    private ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    private Set<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    private ConcurrentHashMap<RetrievalTask, RetrievalTask> tasks; // index of tasks queued or allocated a thread
     private int queueSize; // maximum queue size
 
     /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
@@ -55,7 +59,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
         implements RetrievalFuture, Comparable<RetrievalTask>
     {
         private Retriever retriever;
-        private double priority; // retrieval secondary priority (primary priority is submit time)
+        private volatile double priority; // retrieval secondary priority (primary priority is submit time)
 
         private RetrievalTask(Retriever retriever, double priority)
         {
@@ -180,6 +184,9 @@ public class ExtendedRetrievalService extends WWObjectImpl
                     Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected",
                         ((RetrievalTask) runnable).getRetriever().getName()));
 
+                    // Rejected tasks will never run, so must be removed from the index here
+                    ExtendedRetrievalService.this.tasks.remove(runnable);
+
                     super.rejectedExecution(runnable, threadPoolExecutor);
                 }
             });
@@ -264,10 +271,18 @@ public class ExtendedRetrievalService extends WWObjectImpl
             RetrievalTask task = (RetrievalTask) runnable;
             
 			// ADDED
-			afterDownload(task);
+			try
+			{
+				afterDownload(task);
+			}
+			finally
+			{
+				// A throwing listener must not leave the task indexed, or the retriever could never be run again
+				ExtendedRetrievalService.this.activeTasks.remove(task);
+				ExtendedRetrievalService.this.tasks.remove(task);
+			}
 			// ADDED
             
-            ExtendedRetrievalService.this.activeTasks.remove(task);
             task.retriever.setEndTime(System.currentTimeMillis());
 
             try
@@ -326,8 +341,11 @@ public class ExtendedRetrievalService extends WWObjectImpl
         // this.executor runs the retrievers, each in their own thread
         this.executor = new RetrievalExecutor(poolSize, this.queueSize);
 
-        // this.activeTasks holds the list of currently executing tasks (*not* those pending on the queue)
-        this.activeTasks = new ConcurrentLinkedQueue<RetrievalTask>();
+        // this.activeTasks holds the set of currently executing tasks (*not* those pending on the queue)
+        this.activeTasks = Collections.newSetFromMap(new ConcurrentHashMap<RetrievalTask, Boolean>());
+
+        // this.tasks indexes both executing and pending tasks, so duplicates can be found without scanning the queue
+        this.tasks = new ConcurrentHashMap<RetrievalTask, RetrievalTask>();
     }
 
     public void shutdown(boolean immediately)
@@ -338,6 +356,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
             this.executor.shutdown();
 
         this.activeTasks.clear();
+        this.tasks.clear();
     }
 
     /**
@@ -374,7 +393,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
      *
      * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
      */
-    public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+    public RetrievalFuture runRetriever(Retriever retriever, double priority)
     {
         if (retriever == null)
         {
@@ -398,8 +417,9 @@ public class ExtendedRetrievalService extends WWObjectImpl
         RetrievalTask task = new RetrievalTask(retriever, priority);
         retriever.setSubmitTime(System.currentTimeMillis());
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        // Do not queue duplicates. The index is updated atomically, so concurrent submissions of the same
+        // retriever can't both be queued.
+        if (this.tasks.putIfAbsent(task, task) != null)
             return null;
 
         this.executor.execute(task);
@@ -407,6 +427,43 @@ public class ExtendedRetrievalService extends WWObjectImpl
         return task;
     }
 
+    /**
+     * Change the secondary priority of a retriever that is pending execution. Has no effect if the retriever is not
+     * pending, or is already being run.
+     *
+     * @param retriever the retriever to re-prioritise
+     * @param priority  the new secondary priority of the retriever, or negative if it is to be the primary priority
+     *
+     * @return <code>true</code> if the retriever was pending and has been re-prioritised
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null
+     */
+    public boolean reprioritize(Retriever retriever, double priority)
+    {
+        if (retriever == null)
+        {
+            String msg = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.logger().fine(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        RetrievalTask task = this.tasks.get(new RetrievalTask(retriever, 0d));
+        if (task == null || this.activeTasks.contains(task))
+            return false;
+
+        // The priority queue doesn't reorder elements in place, so the task must be removed and reinserted. The
+        // queue's threads are core threads, so will take the reinserted task without going through execute().
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        synchronized (task)
+        {
+            if (!queue.remove(task))
+                return false;
+            task.priority = priority;
+            queue.add(task);
+        }
+        return true;
+    }
+
     /**
      * @param poolSize the number of threads in the thread pool
      *
@@ -456,7 +513,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
     public int getNumRetrieversPending()
     {
         // Could use same method to determine active tasks as hasRetrievers() above, but this method only advisory.
-        return this.activeTasks.size() + this.executor.getQueue().size();
+        return this.tasks.size();
     }
 
     /**
@@ -474,8 +531,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
             Logging.logger().fine(msg);
             throw new IllegalArgumentException(msg);
         }
-        RetrievalTask task = new RetrievalTask(retriever, 0d);
-        return (this.activeTasks.contains(task) || this.executor.getQueue().contains(task));
+        return this.tasks.containsKey(new RetrievalTask(retriever, 0d));
     }
 
     public double getProgress()
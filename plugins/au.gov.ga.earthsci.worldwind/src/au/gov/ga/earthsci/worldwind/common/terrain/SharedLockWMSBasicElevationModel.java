@@ -36,6 +36,7 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.StripedFileLock;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
 
@@ -50,7 +51,7 @@ import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
  */
 public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationModel
 {
-	protected final Object fileLock;
+	protected final StripedFileLock fileLock;
 	protected boolean extractZipEntry = false;
 
 	public SharedLockWMSBasicElevationModel(Element domElement, AVList params)
@@ -100,24 +101,27 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * tile's stripe of this class' shared fileLock instead of the superclass'
+	 * fileLock.
 	 * 
 	 * @author Michael de Hoog
 	 */
 	protected static class DownloadPostProcessor extends BasicElevationModel.DownloadPostProcessor
 	{
+		private final Tile tile;
 		private final SharedLockWMSBasicElevationModel em;
 
 		public DownloadPostProcessor(Tile tile, SharedLockWMSBasicElevationModel em)
 		{
 			super(tile, em);
+			this.tile = tile;
 			this.em = em;
 		}
 
 		@Override
 		protected Object getFileLock()
 		{
-			return em.fileLock;
+			return em.fileLock.getTileLock(tile.getPath());
 		}
 	}
 
@@ -130,7 +134,7 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 	{
 		try
 		{
-			synchronized (this.fileLock)
+			synchronized (this.fileLock.getTileLock(url.getPath()))
 			{
 				return IOUtil.readByteBuffer(url, getElevationDataType(), getElevationDataByteOrder());
 			}
@@ -87,6 +87,10 @@ public interface AVKeyMore extends AVKey
 	//elevation model
 	final static String EXTRACT_ZIP_ENTRY = "au.gov.ga.worldwind.AVKeyMore.ExtractZipEntry";
 
+	//tiled image layer
+	final static String CACHE_DECODED_TILES = "au.gov.ga.worldwind.AVKeyMore.CacheDecodedTiles";
+	final static String DECODED_TILE_CACHE_SIZE = "au.gov.ga.worldwind.AVKeyMore.DecodedTileCacheSize";
+
 	//voxet model
 	final static String BILINEAR_MINIFICATION = "au.gov.ga.worldwind.AVKeyMore.BilinearMinification";
 	final static String SUBSAMPLING_U = "au.gov.ga.worldwind.AVKeyMore.SubsamplingU";
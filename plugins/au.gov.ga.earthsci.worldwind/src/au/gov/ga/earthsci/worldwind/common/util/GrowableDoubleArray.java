@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+/**
+ * Growable array of primitive <code>double</code> values. Used instead of a
+ * <code>List&lt;Double&gt;</code> when reading large datasets, to avoid the
+ * overhead of boxing each value.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GrowableDoubleArray
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private double[] array;
+	private int size;
+
+	public GrowableDoubleArray()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public GrowableDoubleArray(int capacity)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("Capacity cannot be negative");
+		}
+		array = new double[capacity];
+	}
+
+	/**
+	 * @return Number of values in this array
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Append a value to the end of this array, growing the backing array if
+	 * required.
+	 * 
+	 * @param value
+	 *            Value to add
+	 */
+	public void add(double value)
+	{
+		if (size == array.length)
+		{
+			ensureCapacity(size + 1);
+		}
+		array[size++] = value;
+	}
+
+	public double get(int index)
+	{
+		checkIndex(index);
+		return array[index];
+	}
+
+	public void set(int index, double value)
+	{
+		checkIndex(index);
+		array[index] = value;
+	}
+
+	/**
+	 * Remove all values from this array. The backing array is kept.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Ensure the backing array can hold at least the given number of values.
+	 * The backing array grows by 50% each time, so appending is amortized
+	 * constant time.
+	 * 
+	 * @param capacity
+	 *            Minimum capacity
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity > array.length)
+		{
+			int newCapacity = Math.max(capacity, array.length + (array.length >> 1));
+			if (newCapacity < 0)
+			{
+				//overflow
+				newCapacity = Integer.MAX_VALUE - 8;
+			}
+			double[] newArray = new double[newCapacity];
+			System.arraycopy(array, 0, newArray, 0, size);
+			array = newArray;
+		}
+	}
+
+	/**
+	 * Shrink the backing array to the number of values in this array.
+	 */
+	public void trimToSize()
+	{
+		if (size < array.length)
+		{
+			double[] newArray = new double[size];
+			System.arraycopy(array, 0, newArray, 0, size);
+			array = newArray;
+		}
+	}
+
+	/**
+	 * Backing array of this object. Only the first {@link #size()} elements
+	 * are valid. The returned array is replaced if this array grows.
+	 * 
+	 * @return Backing array
+	 */
+	public double[] array()
+	{
+		return array;
+	}
+
+	/**
+	 * Return an array containing exactly the values in this array. If the
+	 * backing array is already the correct size, it is returned without
+	 * copying.
+	 * 
+	 * @return Array of values
+	 */
+	public double[] toArray()
+	{
+		trimToSize();
+		return array;
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+	}
+}
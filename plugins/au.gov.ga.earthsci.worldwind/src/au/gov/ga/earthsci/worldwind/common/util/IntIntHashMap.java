@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive <code>int</code> keys to <code>int</code> values.
+ * Uses open addressing with linear probing in two flat arrays, so no objects
+ * are allocated per entry, unlike a <code>Map&lt;Integer, Integer&gt;</code>.
+ * <p/>
+ * Entries cannot be removed individually; use {@link #clear()}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class IntIntHashMap
+{
+	private static final int FREE_KEY = Integer.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.5f;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	private int threshold;
+
+	//the free key marks empty slots, so it is stored outside the table
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+
+	public IntIntHashMap()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            Number of entries the map should hold before resizing
+	 */
+	public IntIntHashMap(int expectedSize)
+	{
+		if (expectedSize < 0)
+		{
+			throw new IllegalArgumentException("Expected size cannot be negative");
+		}
+		allocate(tableSizeFor((int) Math.min(MAXIMUM_CAPACITY, (long) (expectedSize / LOAD_FACTOR) + 1)));
+	}
+
+	/**
+	 * @return Number of entries in this map
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean containsKey(int key)
+	{
+		if (key == FREE_KEY)
+		{
+			return hasFreeKey;
+		}
+		return keys[indexOf(key)] != FREE_KEY;
+	}
+
+	/**
+	 * Get the value mapped to the given key.
+	 * 
+	 * @param key
+	 *            Key to find
+	 * @param defaultValue
+	 *            Value to return if the key isn't in the map
+	 * @return Value mapped to the key, or defaultValue if not found
+	 */
+	public int get(int key, int defaultValue)
+	{
+		if (key == FREE_KEY)
+		{
+			return hasFreeKey ? freeKeyValue : defaultValue;
+		}
+		int index = indexOf(key);
+		return keys[index] != FREE_KEY ? values[index] : defaultValue;
+	}
+
+	/**
+	 * Map the given key to the given value, replacing any existing mapping.
+	 * 
+	 * @param key
+	 *            Key
+	 * @param value
+	 *            Value
+	 * @return True if the key was not already in the map
+	 */
+	public boolean put(int key, int value)
+	{
+		if (key == FREE_KEY)
+		{
+			boolean added = !hasFreeKey;
+			hasFreeKey = true;
+			freeKeyValue = value;
+			if (added)
+			{
+				size++;
+			}
+			return added;
+		}
+
+		int index = indexOf(key);
+		values[index] = value;
+		if (keys[index] != FREE_KEY)
+		{
+			return false;
+		}
+		keys[index] = key;
+		if (++size > threshold)
+		{
+			rehash(keys.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all entries from this map. The table is kept at its current
+	 * size.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	/**
+	 * @return Index of the slot containing the given key, or of the empty slot
+	 *         where it would be inserted
+	 */
+	private int indexOf(int key)
+	{
+		int index = hash(key) & mask;
+		int k;
+		while ((k = keys[index]) != FREE_KEY && k != key)
+		{
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private static int hash(int key)
+	{
+		//spread sequential ids (the common case) across the table
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash(int capacity)
+	{
+		if (capacity > MAXIMUM_CAPACITY || capacity <= 0)
+		{
+			throw new IllegalStateException("Map is too large");
+		}
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			int key = oldKeys[i];
+			if (key != FREE_KEY)
+			{
+				int index = indexOf(key);
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE_KEY);
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int tableSizeFor(int n)
+	{
+		int capacity = 2;
+		while (capacity < n && capacity < MAXIMUM_CAPACITY)
+		{
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
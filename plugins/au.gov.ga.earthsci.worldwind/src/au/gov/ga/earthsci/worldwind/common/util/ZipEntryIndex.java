@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright 2016 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Index of the entries in a zip file, read from the zip file's central
+ * directory. Allows random access to individual entries without streaming
+ * through the preceding entries, or holding the zip file open.
+ * <p/>
+ * Indices are cached per file, and are rebuilt if the file's length or
+ * modification time changes. ZIP64 archives are not supported.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ZipEntryIndex
+{
+	public final static int CACHE_SIZE = 64;
+
+	private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private final static int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private final static int END_SIGNATURE = 0x06054b50;
+	private final static int LOCAL_HEADER_LENGTH = 30;
+	private final static int CENTRAL_HEADER_LENGTH = 46;
+	private final static int END_LENGTH = 22;
+	private final static int MAX_COMMENT_LENGTH = 0xffff;
+
+	private final static Map<File, ZipEntryIndex> cache = new LinkedHashMap<File, ZipEntryIndex>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, ZipEntryIndex> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final File file;
+	private final long length;
+	private final long lastModified;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	/**
+	 * Get the (possibly cached) index for the given zip file.
+	 * 
+	 * @param file
+	 *            Zip file to index
+	 * @return Index of the entries in the zip file, or null if the file
+	 *         doesn't exist
+	 * @throws IOException
+	 *             If the file's central directory could not be read
+	 */
+	public static ZipEntryIndex get(File file) throws IOException
+	{
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		File key = file.getAbsoluteFile();
+		synchronized (cache)
+		{
+			ZipEntryIndex index = cache.get(key);
+			if (index != null && index.isCurrent())
+			{
+				return index;
+			}
+		}
+
+		//read the central directory outside the lock; concurrent readers may
+		//both build the index, which is harmless
+		ZipEntryIndex index = new ZipEntryIndex(key);
+		synchronized (cache)
+		{
+			cache.put(key, index);
+		}
+		return index;
+	}
+
+	private ZipEntryIndex(File file) throws IOException
+	{
+		this.file = file;
+		this.length = file.length();
+		this.lastModified = file.lastModified();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			readCentralDirectory(raf);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return The names of the entries in the zip file, in the order they
+	 *         appear in the central directory
+	 */
+	public Collection<String> getNames()
+	{
+		return Collections.unmodifiableCollection(entries.keySet());
+	}
+
+	/**
+	 * @return Does the zip file contain an entry with the given name?
+	 */
+	public boolean contains(String name)
+	{
+		return entries.containsKey(normalizeName(name));
+	}
+
+	/**
+	 * Open an input stream for the given entry. The entry is read fully into
+	 * memory, so this is intended for small entries such as image tiles.
+	 * 
+	 * @param name
+	 *            Entry name
+	 * @return Input stream containing the uncompressed entry, or null if the
+	 *         zip file doesn't contain the entry
+	 * @throws IOException
+	 *             If the entry could not be read
+	 */
+	public InputStream getInputStream(String name) throws IOException
+	{
+		Entry entry = entries.get(normalizeName(name));
+		if (entry == null)
+		{
+			return null;
+		}
+
+		byte[] data;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			raf.seek(entry.localHeaderOffset);
+			byte[] header = new byte[LOCAL_HEADER_LENGTH];
+			raf.readFully(header);
+			if (getInt(header, 0) != LOCAL_HEADER_SIGNATURE)
+			{
+				throw new ZipException("Invalid local header for entry " + entry.name + " in " + file);
+			}
+			int nameLength = getShort(header, 26);
+			int extraLength = getShort(header, 28);
+			raf.seek(entry.localHeaderOffset + LOCAL_HEADER_LENGTH + nameLength + extraLength);
+			//the inflater requires an extra dummy byte when not expecting a zlib header
+			data = new byte[(int) entry.compressedSize + 1];
+			raf.readFully(data, 0, (int) entry.compressedSize);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		if (entry.method == ZipEntry.STORED)
+		{
+			return new ByteArrayInputStream(data, 0, (int) entry.compressedSize);
+		}
+		if (entry.method == ZipEntry.DEFLATED)
+		{
+			final Inflater inflater = new Inflater(true);
+			return new InflaterInputStream(new ByteArrayInputStream(data), inflater)
+			{
+				@Override
+				public void close() throws IOException
+				{
+					super.close();
+					inflater.end();
+				}
+			};
+		}
+		throw new ZipException("Unsupported compression method " + entry.method + " for entry " + entry.name
+				+ " in " + file);
+	}
+
+	private boolean isCurrent()
+	{
+		return file.length() == length && file.lastModified() == lastModified;
+	}
+
+	private void readCentralDirectory(RandomAccessFile raf) throws IOException
+	{
+		//find the end of central directory record, which is followed by a variable length comment
+		int tailLength = (int) Math.min(length, END_LENGTH + MAX_COMMENT_LENGTH);
+		byte[] tail = new byte[tailLength];
+		raf.seek(length - tailLength);
+		raf.readFully(tail);
+
+		int end = -1;
+		for (int i = tailLength - END_LENGTH; i >= 0; i--)
+		{
+			if (getInt(tail, i) == END_SIGNATURE)
+			{
+				end = i;
+				break;
+			}
+		}
+		if (end < 0)
+		{
+			throw new ZipException("End of central directory not found in " + file);
+		}
+
+		int count = getShort(tail, end + 10);
+		long directorySize = getInt(tail, end + 12) & 0xffffffffL;
+		long directoryOffset = getInt(tail, end + 16) & 0xffffffffL;
+		if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL)
+		{
+			throw new ZipException("ZIP64 archives are not supported: " + file);
+		}
+
+		byte[] directory = new byte[(int) directorySize];
+		raf.seek(directoryOffset);
+		raf.readFully(directory);
+
+		int position = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (position + CENTRAL_HEADER_LENGTH > directory.length
+					|| getInt(directory, position) != CENTRAL_HEADER_SIGNATURE)
+			{
+				throw new ZipException("Invalid central directory in " + file);
+			}
+			int flags = getShort(directory, position + 8);
+			int method = getShort(directory, position + 10);
+			long compressedSize = getInt(directory, position + 20) & 0xffffffffL;
+			int nameLength = getShort(directory, position + 28);
+			int extraLength = getShort(directory, position + 30);
+			int commentLength = getShort(directory, position + 32);
+			long localHeaderOffset = getInt(directory, position + 42) & 0xffffffffL;
+			if (compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL)
+			{
+				throw new ZipException("ZIP64 archives are not supported: " + file);
+			}
+
+			//bit 11 indicates UTF-8 names; otherwise assume UTF-8 anyway, like ZipFile
+			String name = new String(directory, position + CENTRAL_HEADER_LENGTH, nameLength, "UTF-8");
+			//skip directories and encrypted entries (flag bit 0)
+			if ((flags & 1) == 0 && !name.endsWith("/"))
+			{
+				Entry entry = new Entry(name, method, compressedSize, localHeaderOffset);
+				entries.put(normalizeName(name), entry);
+			}
+
+			position += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+		}
+	}
+
+	private static String normalizeName(String name)
+	{
+		name = name.replace('\\', '/');
+		while (name.startsWith("/"))
+		{
+			name = name.substring(1);
+		}
+		return name;
+	}
+
+	private static int getShort(byte[] b, int offset)
+	{
+		return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8);
+	}
+
+	private static int getInt(byte[] b, int offset)
+	{
+		return getShort(b, offset) | (getShort(b, offset + 2) << 16);
+	}
+
+	private static class Entry
+	{
+		private final String name;
+		private final int method;
+		private final long compressedSize;
+		private final long localHeaderOffset;
+
+		public Entry(String name, int method, long compressedSize, long localHeaderOffset)
+		{
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+}
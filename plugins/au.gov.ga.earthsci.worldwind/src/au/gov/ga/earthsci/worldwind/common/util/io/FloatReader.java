@@ -15,9 +15,14 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.util.io;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
@@ -29,6 +34,17 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
  * the pattern of bytes that are read. This allows complex striding patterns to be specified 
  * as required.
  * <p/>
+ * The source can be an {@link InputStream}, a {@link ReadableByteChannel} or a {@link ByteBuffer}
+ * (such as a {@link java.nio.MappedByteBuffer}). Bytes are read from streams and channels in large
+ * blocks, and values are decoded from each block in bulk, so {@link #readValues(FloatBuffer)} is the
+ * most efficient way to read large numbers of values. Skips are always exact; skipping within a 
+ * {@link FileChannel} (or a {@link FileInputStream}'s channel) or a {@link ByteBuffer} simply
+ * moves the position.
+ * <p/>
+ * Note that the {@link ByteOrder} of this reader describes the order of the bytes from the 
+ * perspective of the least significant byte being read last; {@link ByteOrder#LITTLE_ENDIAN} 
+ * (the default) reads the most significant byte first, as stored in GOCAD binary files.
+ * <p/>
  * This implementation is threadsafe <em>if all access to the underlying stream is performed through this class's methods</em>.
  * If the underlying stream is accessed outside of this class behaviour is indeterminate.
  * 
@@ -36,9 +52,17 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
  */
 public class FloatReader
 {
+	/** Size of the blocks read from streams and channels */
+	private static final int BLOCK_SIZE = 64 * 1024;
+	
+	/** Minimum number of contiguous values to decode using a bulk view of the block */
+	private static final int BULK_THRESHOLD = 16;
 
-	/** The input stream to read bytes from */
-	private final InputStream is;
+	/** The source to read bytes from; null if reading directly from a buffer */
+	private final Source source;
+	
+	/** Block of bytes read from the source, positioned at the next unread byte */
+	private final ByteBuffer block;
 	
 	/** The offset to start reading from in the provided input stream */
 	private final int offset;
@@ -53,11 +77,14 @@ public class FloatReader
 	private final int groupValueGap;
 	
 	/** The format of floats to read */
-	private final FloatFormat format;;
+	private final FloatFormat format;
 	
 	/** The byte order of the stream being read */
 	private final ByteOrder byteOrder;
 	
+	/** Index of the next value to read within the current group */
+	private int groupIndex = 0;
+	
 	/**
 	 * Create a new float reader that reads floats one at a time from the provided input stream.
 	 * <p/>
@@ -65,7 +92,7 @@ public class FloatReader
 	 */
 	public FloatReader(InputStream is) throws IOException
 	{
-		this(is, 0, 1, 0, 0, FloatFormat.IEEE, ByteOrder.LITTLE_ENDIAN);
+		this(createSource(is), null, 0, 1, 0, 0, FloatFormat.IEEE, ByteOrder.LITTLE_ENDIAN);
 	}
 	
 	/**
@@ -73,16 +100,31 @@ public class FloatReader
 	 * <p/>
 	 * Use the builder class to instantiate fully configured readers.
 	 */
-	private FloatReader(InputStream is, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder byteOrder) throws IOException
+	private FloatReader(Source source, ByteBuffer buffer, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder byteOrder) throws IOException
 	{
-		Validate.notNull(is, "An input stream is required");
-		this.is = is;
+		Validate.isTrue(source != null || buffer != null, "An input source is required");
+		Validate.isTrue(groupSize > 0, "Group size must be positive");
+		Validate.isTrue(offset >= 0 && groupSeparation >= 0 && groupValueGap >= 0, "Offset, separation and gap cannot be negative");
+		this.source = source;
 		this.offset = offset;
 		this.groupSize = groupSize;
 		this.groupSeparation = groupSeparation;
 		this.groupValueGap = groupValueGap;
 		this.format = format;
 		this.byteOrder = byteOrder;
+		
+		if (buffer != null)
+		{
+			block = buffer.slice();
+		}
+		else
+		{
+			block = ByteBuffer.allocate(BLOCK_SIZE);
+			block.flip();
+		}
+		//see class javadoc; this reader's byte order is the reverse of the NIO byte order
+		block.order(byteOrder == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		
 		skipToStart();
 	}
 
@@ -113,12 +155,7 @@ public class FloatReader
 		for (int i = 0; i < groupSize; i++)
 		{
 			values[i] = readFloat();
-			if (i != groupSize - 1)
-			{
-				skipToNextValueInGroup();
-			}
 		}
-		skipToStartOfNextGroup();
 	}
 
 	/**
@@ -137,6 +174,63 @@ public class FloatReader
 		return values;
 	}
 	
+	/**
+	 * Read values from the input into the provided buffer until it is full, or the end of
+	 * the input is reached. Values are read following the configured group pattern, and
+	 * groups may span multiple calls to this method.
+	 * <p/>
+	 * Values are written from the buffer's current position, which is advanced by the 
+	 * number of values read.
+	 * 
+	 * @param values Buffer to store the read float values in
+	 * @return The number of values read; less than the buffer's remaining space only if the end of the input was reached
+	 * 
+	 * @throws IOException if there is a problem reading from the underlying stream
+	 */
+	synchronized public int readValues(FloatBuffer values) throws IOException
+	{
+		Validate.notNull(values, "A values buffer is required");
+		
+		boolean contiguous = groupValueGap == 0 && groupSeparation == 0;
+		int count = 0;
+		while (values.hasRemaining() && ensureAvailable(4))
+		{
+			//number of values that can be decoded before a gap or separation needs to be skipped
+			int run = groupValueGap > 0 ? 1 : groupSize - groupIndex;
+			int n = Math.min(values.remaining(), block.remaining() / 4);
+			if (!contiguous)
+			{
+				n = Math.min(n, run);
+			}
+			
+			decode(values, n);
+			count += n;
+			
+			if (contiguous)
+			{
+				groupIndex = (groupIndex + n) % groupSize;
+			}
+			else if (n == run)
+			{
+				groupIndex += n;
+				if (groupIndex == groupSize)
+				{
+					groupIndex = 0;
+					skipBytes(groupSeparation);
+				}
+				else
+				{
+					skipBytes(groupValueGap);
+				}
+			}
+			else
+			{
+				groupIndex += n;
+			}
+		}
+		return count;
+	}
+	
 	/**
 	 * Skip ahead to the start of the next value group.
 	 * <p/>
@@ -147,8 +241,27 @@ public class FloatReader
 	 */
 	synchronized public void skipToNextGroup() throws IOException
 	{
-		int skipCount = groupSize * 4 + (groupSize - 1) * groupValueGap + groupSeparation;
-		skip(skipCount);
+		skipGroups(1);
+	}
+	
+	/**
+	 * Skip ahead past the given number of value groups, starting from the current
+	 * position in the current group.
+	 * 
+	 * @param count The number of groups to skip
+	 * 
+	 * @throws IOException if there is a problem reading from the underlying stream
+	 */
+	synchronized public void skipGroups(long count) throws IOException
+	{
+		if (count <= 0)
+		{
+			return;
+		}
+		long groupLength = groupSize * 4L + (groupSize - 1) * (long) groupValueGap + groupSeparation;
+		long consumed = groupIndex * (4L + groupValueGap);
+		groupIndex = 0;
+		skipBytes(groupLength * count - consumed);
 	}
 	
 	/**
@@ -161,51 +274,104 @@ public class FloatReader
 	 */
 	synchronized public void skip(long numBytes) throws IOException
 	{
-		is.skip(numBytes);
+		skipBytes(numBytes);
 	}
 	
 	/**
-	 * @return The next float value in the stream
+	 * @return The next float value in the input, or NaN if there are not enough bytes left
 	 */
 	private float readFloat() throws IOException
 	{
-		int b0, b1, b2, b3;
-		if (byteOrder == ByteOrder.LITTLE_ENDIAN)
+		if (!ensureAvailable(4))
+		{
+			return Float.NaN;
+		}
+		float value = format.intBitsToFloat(block.getInt());
+		if (++groupIndex == groupSize)
+		{
+			groupIndex = 0;
+			skipBytes(groupSeparation);
+		}
+		else
+		{
+			skipBytes(groupValueGap);
+		}
+		return value;
+	}
+	
+	/**
+	 * Decode n values from the current block into the provided buffer.
+	 */
+	private void decode(FloatBuffer values, int n)
+	{
+		if (format == FloatFormat.IEEE && n >= BULK_THRESHOLD)
 		{
-			b3 = is.read();
-			b2 = is.read();
-			b1 = is.read();
-			b0 = is.read();
+			FloatBuffer view = block.asFloatBuffer();
+			view.limit(n);
+			values.put(view);
 		}
 		else
 		{
-			b0 = is.read();
-			b1 = is.read();
-			b2 = is.read();
-			b3 = is.read();
+			for (int i = 0, position = block.position(); i < n; i++, position += 4)
+			{
+				values.put(format.intBitsToFloat(block.getInt(position)));
+			}
 		}
-		return format.bytesToFloat(b0, b1, b2, b3);
+		block.position(block.position() + n * 4);
 	}
 	
 	/**
-	 * Skip forward to the start of the next value in the current value group
+	 * Ensure that at least the given number of bytes are available in the block, reading from
+	 * the source if required.
+	 * 
+	 * @return False if the end of the input was reached before the bytes were available
 	 */
-	private void skipToNextValueInGroup() throws IOException
+	private boolean ensureAvailable(int bytes) throws IOException
 	{
-		if (groupValueGap > 0)
+		if (block.remaining() >= bytes)
+		{
+			return true;
+		}
+		if (source == null)
+		{
+			return false;
+		}
+		block.compact();
+		try
+		{
+			while (block.position() < bytes)
+			{
+				if (source.read(block) < 0)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		finally
 		{
-			skip(groupValueGap);
+			block.flip();
 		}
 	}
 	
 	/**
-	 * Skip forward to the start of the next value group
+	 * Skip exactly the given number of bytes, or to the end of the input.
 	 */
-	private void skipToStartOfNextGroup() throws IOException
+	private void skipBytes(long numBytes) throws IOException
 	{
-		if (groupSeparation > 0)
+		if (numBytes <= 0)
 		{
-			skip(groupSeparation);
+			return;
+		}
+		int fromBlock = (int) Math.min(numBytes, block.remaining());
+		block.position(block.position() + fromBlock);
+		numBytes -= fromBlock;
+		if (numBytes > 0 && source != null)
+		{
+			//block is now empty, so it can be used as scratch space by the source
+			block.clear();
+			source.skip(numBytes, block);
+			block.clear().flip();
 		}
 	}
 	
@@ -214,7 +380,124 @@ public class FloatReader
 	 */
 	private void skipToStart() throws IOException
 	{
-		skip(offset);
+		skipBytes(offset);
+	}
+	
+	private static Source createSource(InputStream is)
+	{
+		Validate.notNull(is, "An input stream is required");
+		if (is instanceof FileInputStream)
+		{
+			return new ChannelSource(((FileInputStream) is).getChannel());
+		}
+		return new StreamSource(is);
+	}
+	
+	/**
+	 * A source of bytes for the reader.
+	 */
+	private static interface Source
+	{
+		/**
+		 * Read bytes into the remaining space of the provided buffer.
+		 * 
+		 * @return Number of bytes read, or -1 at the end of the source
+		 */
+		int read(ByteBuffer buffer) throws IOException;
+		
+		/**
+		 * Skip exactly the given number of bytes, stopping early only at the end of the source.
+		 * 
+		 * @param scratch Empty buffer that can be used to read and discard bytes
+		 */
+		void skip(long numBytes, ByteBuffer scratch) throws IOException;
+	}
+	
+	/**
+	 * {@link Source} implementation that reads from an {@link InputStream}.
+	 */
+	private static class StreamSource implements Source
+	{
+		private final InputStream is;
+		
+		public StreamSource(InputStream is)
+		{
+			this.is = is;
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer) throws IOException
+		{
+			int read = is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			if (read > 0)
+			{
+				buffer.position(buffer.position() + read);
+			}
+			return read;
+		}
+		
+		@Override
+		public void skip(long numBytes, ByteBuffer scratch) throws IOException
+		{
+			while (numBytes > 0)
+			{
+				long skipped = is.skip(numBytes);
+				if (skipped <= 0)
+				{
+					//InputStream.skip can skip fewer bytes than requested (even none) before the
+					//end of the stream; read a byte to find out if the end has been reached
+					if (is.read() < 0)
+					{
+						return;
+					}
+					skipped = 1;
+				}
+				numBytes -= skipped;
+			}
+		}
+	}
+	
+	/**
+	 * {@link Source} implementation that reads from a {@link ReadableByteChannel}. Skipping
+	 * within a {@link FileChannel} simply moves the channel's position.
+	 */
+	private static class ChannelSource implements Source
+	{
+		private final ReadableByteChannel channel;
+		
+		public ChannelSource(ReadableByteChannel channel)
+		{
+			this.channel = channel;
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer) throws IOException
+		{
+			return channel.read(buffer);
+		}
+		
+		@Override
+		public void skip(long numBytes, ByteBuffer scratch) throws IOException
+		{
+			if (channel instanceof FileChannel)
+			{
+				FileChannel fileChannel = (FileChannel) channel;
+				long position = fileChannel.position();
+				fileChannel.position(Math.min(fileChannel.size(), position + numBytes));
+				return;
+			}
+			while (numBytes > 0)
+			{
+				scratch.clear();
+				scratch.limit((int) Math.min(scratch.capacity(), numBytes));
+				int read = channel.read(scratch);
+				if (read < 0)
+				{
+					return;
+				}
+				numBytes -= read;
+			}
+		}
 	}
 	
 	/** An enumeration of supported floating point formats */ 
@@ -224,35 +507,40 @@ public class FloatReader
 		
 		IEEE {
 			@Override
-			public float bytesToFloat(int b0, int b1, int b2, int b3)
+			public float intBitsToFloat(int bits)
 			{
-				return Float.intBitsToFloat((b0) | (b1 << 8) | (b2 << 16) | b3 << 24);
+				return Float.intBitsToFloat(bits);
 			}
 		},
 		IBM {
 			@Override
-			public float bytesToFloat(int b0, int b1, int b2, int b3)
+			public float intBitsToFloat(int bits)
 			{
-				byte S = (byte) ((b3 & 0x80) >> 7);
-				int E = (b3 & 0x7f);
-				long F = (b2 << 16) + (b1 << 8) + b0;
-		
-				if (S == 0 && E == 0 && F == 0)
+				// IBM hexadecimal floating point: 1 sign bit, 7 bit base-16 exponent biased by 64, 24 bit fraction
+				int E = (bits >>> 24) & 0x7f;
+				int F = bits & 0xffffff;
+				double F1 = bits < 0 ? -1.0 : 1.0;
+				if (F == 0)
 				{
-					return 0;
+					return bits < 0 ? -0f : 0f;
 				}
-		
-				double A = 16.0;
-				double B = 64.0;
-				double e24 = 16777216.0; // 2^24
-				double M = F / e24;
-		
-				double F1 = S == 0 ? 1.0 : -1.0;
-				return (float) (F1 * M * Math.pow(A, E - B));
+				// F * 2^-24 * 16^(E - 64); exact in double precision
+				return (float) (F1 * Math.scalb((double) F, 4 * (E - 64) - 24));
 			}
 		};
 		
-		public abstract float bytesToFloat(int b0, int b1, int b2, int b3);
+		/**
+		 * Convert the provided bytes to a float. b3 is the most significant byte.
+		 */
+		public float bytesToFloat(int b0, int b1, int b2, int b3)
+		{
+			return intBitsToFloat((b0) | (b1 << 8) | (b2 << 16) | b3 << 24);
+		}
+		
+		/**
+		 * Convert the provided 32 bits to a float.
+		 */
+		public abstract float intBitsToFloat(int bits);
 	}
 	
 	/**
@@ -264,7 +552,8 @@ public class FloatReader
 	{
 		private Builder(){};
 		
-		private InputStream is;
+		private Source source;
+		private ByteBuffer buffer;
 		private int offset = 0;
 		private int groupSize = 1;
 		private int groupSeparation = 0;
@@ -276,7 +565,28 @@ public class FloatReader
 		public static Builder newFloatReaderForStream(InputStream s)
 		{
 			Builder result = new Builder();
-			result.is = s;
+			result.source = createSource(s);
+			return result;
+		}
+		
+		/** Create a new builder for a {@link FloatReader} that reads from the provided channel's current position */
+		public static Builder newFloatReaderForChannel(ReadableByteChannel channel)
+		{
+			Validate.notNull(channel, "A channel is required");
+			Builder result = new Builder();
+			result.source = new ChannelSource(channel);
+			return result;
+		}
+		
+		/**
+		 * Create a new builder for a {@link FloatReader} that reads from the provided buffer's remaining bytes
+		 * (for example a {@link java.nio.MappedByteBuffer}). The provided buffer's position is not modified.
+		 */
+		public static Builder newFloatReaderForBuffer(ByteBuffer buffer)
+		{
+			Validate.notNull(buffer, "A buffer is required");
+			Builder result = new Builder();
+			result.buffer = buffer;
 			return result;
 		}
 		
@@ -325,7 +635,7 @@ public class FloatReader
 		/** Construct a {@link FloatReader} using the configured parameters */
 		public FloatReader build() throws IOException
 		{
-			return new FloatReader(is, offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
+			return new FloatReader(source, buffer, offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
 		}
 	}
 